@@ -1,11 +1,8 @@
 package com.example.breadboard;
 
 import android.app.AlertDialog;
-import android.widget.ImageButton;
 import android.widget.Toast;
 
-import androidx.core.content.ContextCompat;
-
 import com.example.breadboard.ComponentToDB;
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
@@ -15,7 +12,7 @@ import java.util.List;
 public class AddConnection {
 
     private MainActivity mainActivity;
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private Attribute[][][] pinAttributes;
     private ICSetup icSetup;
     private InputManager inputManager;
@@ -29,7 +26,7 @@ public class AddConnection {
     private static final int COLS = 64;
 
     public AddConnection(MainActivity mainActivity,
-                         ImageButton[][][] pins,
+                         BreadboardView breadboardView,
                          Attribute[][][] pinAttributes,
                          ICSetup icSetup,
                          InputManager inputManager,
@@ -38,7 +35,7 @@ public class AddConnection {
                          List<Coordinate> vccPins,
                          List<Coordinate> gndPins) {
         this.mainActivity = mainActivity;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.pinAttributes = pinAttributes;
         this.icSetup = icSetup;
         this.inputManager = inputManager;
@@ -118,12 +115,10 @@ public class AddConnection {
     }
 
     boolean isEmptyPin(Coordinate coord) {
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
         Attribute attr = pinAttributes[coord.s][coord.r][coord.c];
 
         // Check if pin has original drawable and no special attributes
-        boolean hasOriginalDrawable = pin.getDrawable().getConstantState().equals(
-                ContextCompat.getDrawable(mainActivity, R.drawable.breadboard_pin).getConstantState());
+        boolean hasOriginalDrawable = breadboardView.getPinImage(coord) == R.drawable.breadboard_pin;
 
         // Pin is empty if it has original drawable AND no attributes set (including IC markers)
         return hasOriginalDrawable && attr.link == -1 && attr.value == -1;
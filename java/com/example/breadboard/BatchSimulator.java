@@ -0,0 +1,156 @@
+package com.example.breadboard;
+
+import android.content.Context;
+
+import com.example.breadboard.sim.Netlist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates saved circuits without opening MainActivity. Each circuit is loaded through the
+ * *ToDB classes into a headless Netlist and swept over its input combinations on a bounded
+ * thread pool.
+ */
+public class BatchSimulator {
+    // Circuits with more inputs are swept over the first 2^MAX_SWEEP_INPUTS combinations only
+    public static final int MAX_SWEEP_INPUTS = 12;
+
+    private Context context;
+    private CircuitToDB circuitToDB;
+    private int threadCount;
+
+    public static class CircuitResult {
+        public String circuitName;
+        public String username;
+        public String[] inputNames;
+        public String[] outputLabels;
+        public int[][] outputStates; // [vector][output], vector bits follow inputNames (first name = MSB)
+        public boolean truncated;    // true when not every input combination was simulated
+        public long loadNanos;
+        public long simulateNanos;
+        public String error;
+
+        public CircuitResult(String circuitName, String username) {
+            this.circuitName = circuitName;
+            this.username = username;
+        }
+
+        public boolean isSuccessful() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            if (error != null) return circuitName + ": error " + error;
+            return circuitName + ": " + outputStates.length + " vectors, load "
+                    + (loadNanos / 1000) + "us, simulate " + (simulateNanos / 1000) + "us";
+        }
+    }
+
+    public BatchSimulator(Context context) {
+        this(context, Math.max(1, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public BatchSimulator(Context context, int threadCount) {
+        this.context = context.getApplicationContext();
+        this.circuitToDB = new CircuitToDB(this.context);
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /** Simulate every circuit belonging to a user. Blocks until all circuits are done. */
+    public List<CircuitResult> simulateCircuitsForUser(String username) {
+        return simulateCircuits(circuitToDB.getCircuitsForUser(username));
+    }
+
+    /** Simulate every circuit of every user, e.g. a whole class. */
+    public List<CircuitResult> simulateAllCircuits() {
+        return simulateCircuits(circuitToDB.getAllCircuits());
+    }
+
+    public List<CircuitResult> simulateCircuits(List<CircuitToDB.CircuitData> circuits) {
+        List<CircuitResult> results = new ArrayList<>();
+        if (circuits == null || circuits.isEmpty()) return results;
+
+        int threads = Math.min(threadCount, circuits.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CircuitResult>> futures = new ArrayList<>();
+            for (CircuitToDB.CircuitData circuit : circuits) {
+                futures.add(executor.submit(() -> simulateCircuit(circuit.username, circuit.circuitName)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    CircuitResult failed = new CircuitResult(circuits.get(i).circuitName, circuits.get(i).username);
+                    failed.error = String.valueOf(e.getCause());
+                    results.add(failed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Batch simulation interrupted: " + e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /** Load and simulate a single circuit on the calling thread. */
+    public CircuitResult simulateCircuit(String username, String circuitName) {
+        CircuitResult result = new CircuitResult(circuitName, username);
+        try {
+            long start = System.nanoTime();
+            Netlist netlist = new CircuitLoader(context).loadNetlist(username, circuitName);
+            long loaded = System.nanoTime();
+            sweep(netlist, result);
+            result.loadNanos = loaded - start;
+            result.simulateNanos = System.nanoTime() - loaded;
+        } catch (Exception e) {
+            result.error = e.getMessage() != null ? e.getMessage() : e.toString();
+            System.err.println("Error simulating circuit " + circuitName + ": " + result.error);
+        }
+        return result;
+    }
+
+    // Exhaustive sweep, 64 vectors per pass
+    static void sweep(Netlist netlist, CircuitResult result) {
+        int inputCount = netlist.inputCount();
+        int outputCount = netlist.outputCount();
+        int swept = Math.min(inputCount, MAX_SWEEP_INPUTS);
+        int vectorCount = 1 << swept;
+
+        result.inputNames = new String[inputCount];
+        for (int i = 0; i < inputCount; i++) result.inputNames[i] = netlist.inputName(i);
+        result.outputLabels = new String[outputCount];
+        for (int o = 0; o < outputCount; o++) result.outputLabels[o] = netlist.outputLabel(o);
+        result.outputStates = new int[vectorCount][outputCount];
+        result.truncated = swept < inputCount;
+
+        long[] words = new long[inputCount];
+        long[] values = netlist.newState();
+        for (int base = 0; base < vectorCount; base += 64) {
+            int count = Math.min(64, vectorCount - base);
+            for (int i = 0; i < inputCount; i++) {
+                words[i] = 0L;
+                int shift = swept - 1 - i; // first input is the most significant bit
+                if (shift < 0) continue;
+                for (int k = 0; k < count; k++) {
+                    if ((((base + k) >> shift) & 1) != 0) words[i] |= 1L << k;
+                }
+            }
+            netlist.simulate(words, values);
+            for (int o = 0; o < outputCount; o++) {
+                long word = values[netlist.outputNet(o)];
+                for (int k = 0; k < count; k++) {
+                    result.outputStates[base + k][o] = (int) ((word >>> k) & 1L);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.breadboard;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.util.SparseArray;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.breadboard.model.Coordinate;
+
+/**
+ * The breadboard pins and row labels as one view. Each pin is an image resource, optionally
+ * enlarged (inputs, outputs, power), tinted (wire selection) and labelled (input names);
+ * the view draws them from those arrays and hit-tests touches itself, so the board costs one
+ * view instead of an ImageButton per pin.
+ *
+ * Geometry matches the GridLayout this replaces, so ICSetup's IC placement still lines up:
+ * a row label column pinSize wide, then COLS columns of pinSize plus PIN_MARGIN on either
+ * side; ROWS rows of pinSize per section, with the IC gap (middle_height) between them.
+ * Changing a pin invalidates only that pin's bounds.
+ */
+public class BreadboardView extends View {
+    public static final int SECTIONS = 2;
+    public static final int ROWS = 5;
+    public static final int COLS = 64;
+
+    // Same spacing the grid gave each pin, in pixels
+    private static final int PIN_MARGIN = 2;
+    // Inputs, outputs and power pins are drawn this much larger, as resizeSpecialPin did
+    private static final int ENLARGED_EXTRA = 36;
+    private static final char[] ROW_LABELS = {'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J'};
+
+    private final int[][][] pinImages = new int[SECTIONS][ROWS][COLS];
+    private final int[][][] pinTints = new int[SECTIONS][ROWS][COLS];     // 0 for none
+    private final boolean[][][] enlarged = new boolean[SECTIONS][ROWS][COLS];
+    private final String[][][] labels = new String[SECTIONS][ROWS][COLS];
+    private final SparseArray<Drawable> drawables = new SparseArray<>();
+
+    private final Paint rowLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint pinLabelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Rect bounds = new Rect();
+    private final Rect clip = new Rect();
+
+    private int pinSize;
+    private int gapHeight;
+    private BreadboardSetup.OnPinClickListener pinClickListener;
+    private OnBoardTapListener boardTapListener;
+    private Coordinate pressed;
+    private float downX, downY;
+    private boolean tapping;
+    private final int touchSlop;
+
+    public BreadboardView(Context context) {
+        this(context, null);
+    }
+
+    public BreadboardView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        pinSize = context.getResources().getDimensionPixelSize(R.dimen.pin_size);
+        gapHeight = context.getResources().getDimensionPixelSize(R.dimen.middle_height);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+
+        rowLabelPaint.setColor(Color.BLACK);
+        rowLabelPaint.setTextAlign(Paint.Align.CENTER);
+        rowLabelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 12,
+                context.getResources().getDisplayMetrics()));
+
+        pinLabelPaint.setColor(Color.WHITE);
+        pinLabelPaint.setTextAlign(Paint.Align.CENTER);
+        pinLabelPaint.setTypeface(Typeface.DEFAULT_BOLD);
+        pinLabelPaint.setShadowLayer(2, 1, 1, Color.BLACK);
+        pinLabelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 14,
+                context.getResources().getDisplayMetrics()));
+
+        for (int s = 0; s < SECTIONS; s++) {
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = 0; c < COLS; c++) {
+                    pinImages[s][r][c] = R.drawable.breadboard_pin;
+                }
+            }
+        }
+    }
+
+    /** Offered each tap before pin clicks, e.g. to select something drawn over the board. */
+    public interface OnBoardTapListener {
+        /** Handle a tap at (x, y) in this view's coordinates; false lets the pin have it. */
+        boolean onBoardTap(float x, float y);
+    }
+
+    public void setPinClickListener(BreadboardSetup.OnPinClickListener listener) {
+        this.pinClickListener = listener;
+    }
+
+    public void setBoardTapListener(OnBoardTapListener listener) {
+        this.boardTapListener = listener;
+    }
+
+    public int getPinImage(Coordinate coord) {
+        return pinImages[coord.s][coord.r][coord.c];
+    }
+
+    public void setPinImage(Coordinate coord, int drawableResource) {
+        if (pinImages[coord.s][coord.r][coord.c] == drawableResource) return;
+        pinImages[coord.s][coord.r][coord.c] = drawableResource;
+        invalidatePin(coord);
+    }
+
+    /** Draw the pin larger than its cell, over its neighbours. */
+    public void setPinEnlarged(Coordinate coord, boolean large) {
+        if (enlarged[coord.s][coord.r][coord.c] == large) return;
+        invalidatePin(coord); // the larger of the old and new bounds
+        enlarged[coord.s][coord.r][coord.c] = large;
+        invalidatePin(coord);
+    }
+
+    /** Text drawn over the pin, e.g. an input name; null for none. */
+    public void setPinLabel(Coordinate coord, String label) {
+        labels[coord.s][coord.r][coord.c] = label;
+        invalidatePin(coord);
+    }
+
+    public String getPinLabel(Coordinate coord) {
+        return labels[coord.s][coord.r][coord.c];
+    }
+
+    /** Colour the pin image, as ImageView.setColorFilter did; 0 clears it. */
+    public void setPinTint(Coordinate coord, int color) {
+        if (pinTints[coord.s][coord.r][coord.c] == color) return;
+        pinTints[coord.s][coord.r][coord.c] = color;
+        invalidatePin(coord);
+    }
+
+    /** Back to a plain pin: default image, normal size, no label. The tint is kept. */
+    public void resetPin(Coordinate coord) {
+        setPinLabel(coord, null);
+        setPinEnlarged(coord, false);
+        setPinImage(coord, R.drawable.breadboard_pin);
+    }
+
+    public static boolean isOnBoard(Coordinate coord) {
+        return coord != null && coord.s >= 0 && coord.s < SECTIONS && coord.r >= 0 && coord.r < ROWS
+                && coord.c >= 0 && coord.c < COLS;
+    }
+
+    /** Centre of a pin in this view's coordinates. */
+    public float pinCenterX(Coordinate coord) {
+        return columnLeft(coord.c) + PIN_MARGIN + pinSize / 2f;
+    }
+
+    public float pinCenterY(Coordinate coord) {
+        return rowTop(coord.s, coord.r) + pinSize / 2f;
+    }
+
+    private int columnLeft(int c) {
+        return getPaddingLeft() + pinSize + c * (pinSize + 2 * PIN_MARGIN);
+    }
+
+    private int rowTop(int s, int r) {
+        return getPaddingTop() + (s * ROWS + r) * pinSize + (s > 0 ? gapHeight : 0);
+    }
+
+    // Bounds the pin is drawn in, enlarged pins included
+    private void pinBounds(int s, int r, int c, Rect out) {
+        int size = enlarged[s][r][c] ? pinSize + ENLARGED_EXTRA : pinSize;
+        int left = Math.round(columnLeft(c) + PIN_MARGIN + (pinSize - size) / 2f);
+        int top = Math.round(rowTop(s, r) + (pinSize - size) / 2f);
+        out.set(left, top, left + size, top + size);
+    }
+
+    private void invalidatePin(Coordinate coord) {
+        pinBounds(coord.s, coord.r, coord.c, bounds);
+        invalidate(bounds);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int width = getPaddingLeft() + pinSize + COLS * (pinSize + 2 * PIN_MARGIN) + getPaddingRight();
+        int height = getPaddingTop() + SECTIONS * ROWS * pinSize + gapHeight + getPaddingBottom();
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (!canvas.getClipBounds(clip)) return;
+
+        Paint.FontMetrics metrics = rowLabelPaint.getFontMetrics();
+        float labelX = getPaddingLeft() + pinSize / 2f;
+        for (int s = 0; s < SECTIONS; s++) {
+            for (int r = 0; r < ROWS; r++) {
+                float baseline = rowTop(s, r) + pinSize / 2f - (metrics.ascent + metrics.descent) / 2f;
+                canvas.drawText(String.valueOf(ROW_LABELS[s * ROWS + r]), labelX, baseline, rowLabelPaint);
+            }
+        }
+
+        // Only the columns the clip touches, widened by how far an enlarged pin reaches
+        int pitch = pinSize + 2 * PIN_MARGIN;
+        int reach = ENLARGED_EXTRA / 2 + pitch - 1;
+        int first = Math.max(0, (clip.left - reach - columnLeft(0)) / pitch);
+        int last = Math.min(COLS - 1, (clip.right + reach - columnLeft(0)) / pitch);
+
+        // Enlarged pins last, so they sit over their neighbours
+        for (int pass = 0; pass < 2; pass++) {
+            for (int s = 0; s < SECTIONS; s++) {
+                for (int r = 0; r < ROWS; r++) {
+                    for (int c = first; c <= last; c++) {
+                        if (enlarged[s][r][c] != (pass == 1)) continue;
+                        pinBounds(s, r, c, bounds);
+                        if (Rect.intersects(bounds, clip)) drawPin(canvas, s, r, c);
+                    }
+                }
+            }
+        }
+    }
+
+    private void drawPin(Canvas canvas, int s, int r, int c) {
+        Drawable drawable = drawable(pinImages[s][r][c]);
+        if (drawable != null) {
+            // Scaled down to fit, never up, and centred, like CENTER_INSIDE
+            int width = drawable.getIntrinsicWidth() > 0 ? drawable.getIntrinsicWidth() : bounds.width();
+            int height = drawable.getIntrinsicHeight() > 0 ? drawable.getIntrinsicHeight() : bounds.height();
+            float scale = Math.min(1f, Math.min(bounds.width() / (float) width, bounds.height() / (float) height));
+            int drawWidth = Math.round(width * scale);
+            int drawHeight = Math.round(height * scale);
+            int left = bounds.centerX() - drawWidth / 2;
+            int top = bounds.centerY() - drawHeight / 2;
+            drawable.setBounds(left, top, left + drawWidth, top + drawHeight);
+
+            int tint = pinTints[s][r][c];
+            if (tint != 0) drawable.setColorFilter(tint, PorterDuff.Mode.SRC_ATOP);
+            drawable.draw(canvas);
+            if (tint != 0) drawable.clearColorFilter();
+        }
+
+        String label = labels[s][r][c];
+        if (label != null) {
+            Paint.FontMetrics metrics = pinLabelPaint.getFontMetrics();
+            canvas.drawText(label, bounds.exactCenterX(), bounds.exactCenterY() - (metrics.ascent + metrics.descent) / 2f,
+                    pinLabelPaint);
+        }
+    }
+
+    private Drawable drawable(int resource) {
+        Drawable drawable = drawables.get(resource);
+        if (drawable == null) {
+            drawable = ContextCompat.getDrawable(getContext(), resource);
+            if (drawable == null) return null;
+            drawable = drawable.mutate();
+            drawables.put(resource, drawable);
+        }
+        return drawable;
+    }
+
+    /** The pin under (x, y), enlarged pins first; null between pins. */
+    public Coordinate pinAt(float x, float y) {
+        int pitch = pinSize + 2 * PIN_MARGIN;
+        int column = (int) Math.floor((x - columnLeft(0)) / pitch);
+        for (int s = 0; s < SECTIONS; s++) {
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = Math.max(0, column - 1); c <= Math.min(COLS - 1, column + 1); c++) {
+                    if (!enlarged[s][r][c]) continue;
+                    pinBounds(s, r, c, bounds);
+                    if (bounds.contains((int) x, (int) y)) return new Coordinate(s, r, c);
+                }
+            }
+        }
+
+        // Otherwise the cell under the touch; the margins between pins count as the pin
+        if (column < 0 || column >= COLS) return null;
+        for (int s = 0; s < SECTIONS; s++) {
+            float row = (y - rowTop(s, 0)) / pinSize;
+            if (row >= 0 && row < ROWS) return new Coordinate(s, (int) row, column);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                pressed = pinAt(event.getX(), event.getY());
+                downX = event.getX();
+                downY = event.getY();
+                // Taps between pins may still be wanted by the board tap listener
+                tapping = boardTapListener != null;
+                return pressed != null || tapping;
+            case MotionEvent.ACTION_MOVE:
+                if (Math.abs(event.getX() - downX) > touchSlop || Math.abs(event.getY() - downY) > touchSlop) {
+                    tapping = false;
+                }
+                return pressed != null || tapping;
+            case MotionEvent.ACTION_UP:
+                if (tapping && boardTapListener.onBoardTap(event.getX(), event.getY())) {
+                    pressed = null;
+                    tapping = false;
+                    performClick();
+                    return true;
+                }
+                Coordinate released = pinAt(event.getX(), event.getY());
+                boolean same = pressed != null && pressed.equals(released);
+                pressed = null;
+                tapping = false;
+                if (same) {
+                    performClick();
+                    if (pinClickListener != null) pinClickListener.onPinClicked(released);
+                }
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                pressed = null;
+                tapping = false;
+                return true;
+            default:
+                return pressed != null || tapping;
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+}
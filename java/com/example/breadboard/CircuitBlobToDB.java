@@ -0,0 +1,247 @@
+package com.example.breadboard;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
+import com.example.breadboard.sim.BoardModel;
+import com.example.breadboard.sim.CircuitCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Whole-circuit snapshots in circuit_blobs, one CircuitCodec blob per circuit. With snapshots
+ * enabled, opening a saved circuit is one indexed read and one decode instead of a scan of
+ * each of the five component tables. The tables stay the record of truth: any change to a
+ * circuit's rows drops its snapshot (see DBHelper), and a missing snapshot is rebuilt from
+ * the tables the next time the circuit is loaded.
+ */
+public class CircuitBlobToDB {
+    private static final String PREFS_NAME = "CircuitStoragePrefs";
+    private static final String KEY_USE_SNAPSHOTS = "use_circuit_snapshots";
+
+    private DBHelper dbHelper;
+    private Context context;
+
+    public CircuitBlobToDB(Context context) {
+        this.context = context;
+        this.dbHelper = DBHelper.getInstance(context);
+    }
+
+    /** Whether circuits are saved and opened through snapshots; off by default. */
+    public static boolean isEnabled(Context context) {
+        return prefs(context).getBoolean(KEY_USE_SNAPSHOTS, false);
+    }
+
+    public static void setEnabled(Context context, boolean enabled) {
+        prefs(context).edit().putBoolean(KEY_USE_SNAPSHOTS, enabled).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * The board of a saved circuit. Reads the snapshot when there is a valid one; otherwise
+     * reads the tables and stores a fresh snapshot for next time.
+     */
+    public BoardModel loadCircuit(String username, String circuitName) {
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        byte[] data = readBlob(circuitId);
+        if (data != null) {
+            try {
+                return CircuitCodec.decode(data);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Discarding snapshot of circuit " + circuitName + ": " + e.getMessage());
+            }
+        }
+
+        BoardModel model = readTables(username, circuitName);
+        storeSnapshot(circuitId, circuitName, model);
+        return model;
+    }
+
+    /** Store a snapshot of the circuit as it is in the tables. */
+    public boolean saveCircuit(String username, String circuitName) {
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        if (circuitId == -1) return false;
+        return storeSnapshot(circuitId, circuitName, readTables(username, circuitName)) != null;
+    }
+
+    /**
+     * Record the content hash (CircuitCodec.contentHash) and search features of a circuit as
+     * it is in the tables, so CircuitToDB.deduplicateCircuit can find circuits with the same
+     * contents and CircuitIndex can search it without loading it.
+     */
+    public boolean updateContentHash(String username, String circuitName) {
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        if (circuitId == -1) return false;
+        try {
+            return new CircuitIndex(context).refresh(circuitId, readTables(username, circuitName));
+        } catch (Exception e) {
+            System.err.println("Error hashing circuit " + circuitName + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** The circuit in the exchange format (the snapshot itself), or null on error. */
+    public byte[] exportCircuit(String username, String circuitName) {
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        byte[] data = readBlob(circuitId);
+        if (data != null) return data;
+        return storeSnapshot(circuitId, circuitName, readTables(username, circuitName));
+    }
+
+    /**
+     * Replace the contents of a circuit with exported data, creating the circuit if needed.
+     * Nothing is written unless the data decodes cleanly and every table syncs.
+     */
+    public boolean importCircuit(String username, String circuitName, byte[] data) {
+        BoardModel model;
+        try {
+            model = CircuitCodec.decode(data);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error importing circuit " + circuitName + ": " + e.getMessage());
+            return false;
+        }
+
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            // Blob written after the rows, whose triggers would otherwise drop it again
+            if (!syncTables(username, circuitName, model) || !writeBlob(circuitId, data)) return false;
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            System.err.println("Error importing circuit " + circuitName + ": " + e.getMessage());
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+        // Indexed once committed, so an indexing error cannot roll the import back
+        new CircuitIndex(context).refresh(circuitId, model);
+        System.out.println("Imported circuit " + circuitName + " with " + model.size() + " elements");
+        return true;
+    }
+
+    /**
+     * Make the tables of a circuit hold exactly model, creating the circuit if needed. Only
+     * the differences are written, in one transaction; returns false and changes nothing if
+     * any table fails to sync.
+     */
+    public boolean saveModel(String username, String circuitName, BoardModel model) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            if (!syncTables(username, circuitName, model)) return false;
+            db.setTransactionSuccessful();
+        } catch (Exception e) {
+            System.err.println("Error saving circuit " + circuitName + ": " + e.getMessage());
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+        new CircuitIndex(context).refresh(dbHelper.findCircuitId(username, circuitName), model);
+        return true;
+    }
+
+    private boolean syncTables(String username, String circuitName, BoardModel model) {
+        List<ICToDB.ICData> ics = new ArrayList<>();
+        List<WireToDB.WireData> wires = new ArrayList<>();
+        List<InputToDB.InputData> inputs = new ArrayList<>();
+        List<OutputToDB.OutputData> outputs = new ArrayList<>();
+        List<ComponentToDB.ComponentData> components = new ArrayList<>();
+        for (BoardElement element : model.elements()) {
+            Coordinate at = element.position;
+            switch (element.type) {
+                case BoardElement.IC:
+                    ics.add(new ICToDB.ICData(element.label, username, circuitName, at.s, at.r, at.c));
+                    break;
+                case BoardElement.WIRE:
+                    wires.add(new WireToDB.WireData(username, circuitName, at.s, at.r, at.c,
+                            element.end.s, element.end.r, element.end.c));
+                    break;
+                case BoardElement.INPUT:
+                    inputs.add(new InputToDB.InputData(element.label, username, circuitName, at.s, at.r, at.c));
+                    break;
+                case BoardElement.OUTPUT:
+                    outputs.add(new OutputToDB.OutputData(username, circuitName, at.s, at.r, at.c));
+                    break;
+                case BoardElement.POWER:
+                    components.add(new ComponentToDB.ComponentData(element.value, username, circuitName, at.s, at.r, at.c));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new ICToDB(context).syncICsForCircuit(username, circuitName, ics)
+                && new WireToDB(context).syncWiresForCircuit(username, circuitName, wires)
+                && new InputToDB(context).syncInputsForCircuit(username, circuitName, inputs)
+                && new OutputToDB(context).syncOutputsForCircuit(username, circuitName, outputs)
+                && new ComponentToDB(context).syncComponentsForCircuit(username, circuitName, components);
+    }
+
+    // Encoded model, also stored when the circuit exists; null if it cannot be encoded
+    private byte[] storeSnapshot(long circuitId, String circuitName, BoardModel model) {
+        byte[] data;
+        try {
+            data = CircuitCodec.encode(model);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error encoding circuit " + circuitName + ": " + e.getMessage());
+            return null;
+        }
+        if (circuitId != -1) {
+            writeBlob(circuitId, data);
+        }
+        return data;
+    }
+
+    private byte[] readBlob(long circuitId) {
+        if (circuitId == -1) return null;
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT data FROM circuit_blobs WHERE circuit_id = ? AND format = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(CircuitCodec.VERSION)});
+        try {
+            return cursor.moveToFirst() ? cursor.getBlob(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private boolean writeBlob(long circuitId, byte[] data) {
+        try {
+            dbHelper.executeInsert("INSERT OR REPLACE INTO circuit_blobs(circuit_id, format, data) VALUES (?, ?, ?)",
+                    circuitId, CircuitCodec.VERSION, data);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error writing snapshot of circuit " + circuitId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private BoardModel readTables(String username, String circuitName) {
+        BoardModel model = BoardModel.empty();
+        for (ICToDB.ICData ic : new ICToDB(context).getICsForCircuit(username, circuitName)) {
+            model = model.apply(BoardEdit.add(BoardElement.ic(ic.ic_type, ic.getCoordinate())));
+        }
+        for (WireToDB.WireData wire : new WireToDB(context).getWiresForCircuit(username, circuitName)) {
+            model = model.apply(BoardEdit.add(BoardElement.wire(wire.getSourceCoordinate(), wire.getDestinationCoordinate())));
+        }
+        for (InputToDB.InputData input : new InputToDB(context).getInputsForCircuit(username, circuitName)) {
+            model = model.apply(BoardEdit.add(BoardElement.input(input.name, input.getCoordinate())));
+        }
+        for (OutputToDB.OutputData output : new OutputToDB(context).getOutputsForCircuit(username, circuitName)) {
+            model = model.apply(BoardEdit.add(BoardElement.output(output.getCoordinate())));
+        }
+        for (ComponentToDB.ComponentData component : new ComponentToDB(context).getComponentsForCircuit(username, circuitName)) {
+            model = model.apply(BoardEdit.add(BoardElement.power(component.value, component.getCoordinate())));
+        }
+        return model;
+    }
+}
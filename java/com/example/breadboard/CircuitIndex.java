@@ -0,0 +1,232 @@
+package com.example.breadboard;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.breadboard.CircuitToDB.CircuitData;
+import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
+import com.example.breadboard.sim.BoardModel;
+import com.example.breadboard.sim.CircuitCodec;
+import com.example.breadboard.sim.CircuitFeatures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Inverted index of circuit structure: circuit_features holds one (feature, circuit_id) row
+ * per CircuitFeatures term of each circuit, keyed by feature, so "which circuits use an XOR"
+ * is one index range instead of loading every circuit. Wire and other counts come from the
+ * counters on the circuits row.
+ *
+ * The index is written together with content_hash, from the same board: when a circuit is
+ * saved, compacted or imported. Any change to a circuit's rows clears its content_hash (see
+ * DBHelper), which marks its features stale; search re-indexes stale circuits before it
+ * queries, so answers always match the tables. Clones share the features of the circuit
+ * they share rows with.
+ */
+public class CircuitIndex {
+
+    /** Conditions a circuit must all meet; built up like Netlist.Builder. */
+    public static class Query {
+        private final Set<String> features = new TreeSet<>();
+        private int minWires = 0;
+        private int maxWires = Integer.MAX_VALUE;
+
+        public Query usesIC(String icType) {
+            features.add(CircuitFeatures.ic(icType));
+            return this;
+        }
+
+        public Query hasInput(String name) {
+            features.add(CircuitFeatures.input(name));
+            return this;
+        }
+
+        /** Gates of these kinds, each driving an input of the next, e.g. feeds("NAND", "NOR"). */
+        public Query feeds(String... kinds) {
+            features.add(CircuitFeatures.chain(kinds));
+            return this;
+        }
+
+        public Query minWires(int count) {
+            minWires = count;
+            return this;
+        }
+
+        public Query maxWires(int count) {
+            maxWires = count;
+            return this;
+        }
+    }
+
+    private DBHelper dbHelper;
+
+    public CircuitIndex(Context context) {
+        this.dbHelper = DBHelper.getInstance(context);
+    }
+
+    /**
+     * Store the features and content hash of model, which must be what the tables now hold
+     * for circuitId. Clones sharing its rows get the same hash.
+     */
+    public boolean refresh(long circuitId, BoardModel model) {
+        if (circuitId == -1) return false;
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            dbHelper.executeUpdateDelete("DELETE FROM circuit_features WHERE circuit_id = ?", circuitId);
+            for (String feature : CircuitFeatures.of(model)) {
+                dbHelper.executeInsert("INSERT OR IGNORE INTO circuit_features(feature, circuit_id) VALUES (?, ?)",
+                        feature, circuitId);
+            }
+            dbHelper.executeUpdateDelete("UPDATE circuits SET content_hash = ? WHERE id = ? OR shared_from = ?",
+                    CircuitCodec.contentHash(model), circuitId, circuitId);
+            db.setTransactionSuccessful();
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error indexing circuit " + circuitId + ": " + e.getMessage());
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Re-index circuits changed since they were last indexed; username null for all users. */
+    public int refreshStale(String username) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        List<Long> stale = new ArrayList<>();
+        Cursor cursor = username == null
+                ? db.rawQuery("SELECT id FROM circuits WHERE content_hash IS NULL AND shared_from IS NULL", null)
+                : db.rawQuery("SELECT id FROM circuits WHERE content_hash IS NULL AND shared_from IS NULL " +
+                "AND username = ?", new String[]{username});
+        try {
+            while (cursor.moveToNext()) {
+                stale.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int refreshed = 0;
+        for (long circuitId : stale) {
+            if (refresh(circuitId, readModel(db, circuitId))) refreshed++;
+        }
+        if (refreshed > 0) {
+            System.out.println("CircuitIndex: re-indexed " + refreshed + " changed circuits");
+        }
+        return refreshed;
+    }
+
+    /**
+     * Circuits of a user, or of every user when username is null, that meet query; most
+     * recently modified first.
+     */
+    public List<CircuitData> search(String username, Query query) {
+        List<CircuitData> circuitList = new ArrayList<>();
+        refreshStale(username);
+
+        List<String> args = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT id, circuit_name, username, created_date, last_modified, " +
+                "input_count, output_count, ic_count, power_count, wire_count FROM circuits " +
+                "WHERE wire_count >= ? AND wire_count <= ?");
+        args.add(String.valueOf(query.minWires));
+        args.add(String.valueOf(query.maxWires));
+        if (username != null) {
+            sql.append(" AND username = ?");
+            args.add(username);
+        }
+        if (!query.features.isEmpty()) {
+            // Circuits having every feature: one index range per feature, grouped by circuit
+            sql.append(" AND IFNULL(shared_from, id) IN (SELECT circuit_id FROM circuit_features WHERE feature IN (");
+            boolean first = true;
+            for (String feature : query.features) {
+                sql.append(first ? "?" : ", ?");
+                args.add(feature);
+                first = false;
+            }
+            sql.append(") GROUP BY circuit_id HAVING COUNT(*) = ").append(query.features.size()).append(")");
+        }
+        sql.append(" ORDER BY last_modified DESC, id DESC");
+
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0]));
+            while (cursor.moveToNext()) {
+                CircuitData circuitData = new CircuitData(cursor.getInt(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4));
+                CircuitToDB.readCounts(cursor, circuitData);
+                circuitList.add(circuitData);
+            }
+        } catch (Exception e) {
+            System.err.println("Error searching circuits: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return circuitList;
+    }
+
+    // The board held in the tables for circuitId
+    private static BoardModel readModel(SQLiteDatabase db, long circuitId) {
+        String[] args = {String.valueOf(circuitId)};
+        BoardModel model = BoardModel.empty();
+
+        Cursor cursor = db.rawQuery("SELECT ic_type, section, row_pos, column_pos FROM ics WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                model = model.apply(BoardEdit.add(BoardElement.ic(cursor.getString(0), coordinate(cursor, 1))));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT src_section, src_row, src_column, dst_section, dst_row, dst_column " +
+                "FROM wires WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                model = model.apply(BoardEdit.add(BoardElement.wire(coordinate(cursor, 0), coordinate(cursor, 3))));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT name, section, row_pos, column_pos FROM inputs WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                model = model.apply(BoardEdit.add(BoardElement.input(cursor.getString(0), coordinate(cursor, 1))));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT section, row_pos, column_pos FROM outputs WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                model = model.apply(BoardEdit.add(BoardElement.output(coordinate(cursor, 0))));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT value, section, row_pos, column_pos FROM power_components WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                model = model.apply(BoardEdit.add(BoardElement.power(cursor.getInt(0), coordinate(cursor, 1))));
+            }
+        } finally {
+            cursor.close();
+        }
+        return model;
+    }
+
+    private static Coordinate coordinate(Cursor cursor, int first) {
+        return new Coordinate(cursor.getInt(first), cursor.getInt(first + 1), cursor.getInt(first + 2));
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.breadboard;
+
+import android.graphics.Color;
+import android.graphics.drawable.GradientDrawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.breadboard.CircuitToDB.CircuitData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The circuit list on the home screen. Circuits are read a page at a time with
+ * CircuitToDB.getCircuitPage on a background thread, and the next page is requested when
+ * the user scrolls near the end of what is loaded, so opening the screen costs one page
+ * however many circuits the user has.
+ */
+public class CircuitListAdapter extends RecyclerView.Adapter<CircuitListAdapter.CircuitViewHolder> {
+    public static final int PAGE_SIZE = 50;
+
+    // Ask for the next page once a row this close to the end is shown
+    private static final int PREFETCH_DISTANCE = 15;
+
+    public interface Listener {
+        void onCircuitClicked(CircuitData circuit);
+
+        void onCircuitLongClicked(CircuitData circuit);
+    }
+
+    static class CircuitViewHolder extends RecyclerView.ViewHolder {
+        final TextView circuitName;
+        final TextView circuitStats;
+        CircuitData circuit;
+
+        CircuitViewHolder(LinearLayout itemView, TextView circuitName, TextView circuitStats) {
+            super(itemView);
+            this.circuitName = circuitName;
+            this.circuitStats = circuitStats;
+        }
+    }
+
+    private final CircuitToDB circuitToDB;
+    private final Listener listener;
+    private final ExecutorService loader = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<CircuitData> circuits = new ArrayList<>();
+
+    // Main thread only
+    private String username;
+    private int generation = 0;     // bumped by reload() so late pages of an old list are dropped
+    private boolean loading = false;
+    private boolean endReached = false;
+
+    public CircuitListAdapter(CircuitToDB circuitToDB, Listener listener) {
+        this.circuitToDB = circuitToDB;
+        this.listener = listener;
+    }
+
+    /** Start over from the first page, e.g. after circuits were added or deleted. */
+    public void reload(String username) {
+        this.username = username;
+        generation++;
+        loading = false;
+        endReached = false;
+        circuits.clear();
+        notifyDataSetChanged();
+        loadNextPage();
+    }
+
+    /** Stop the background loader; the adapter cannot load pages afterwards. */
+    public void release() {
+        loader.shutdownNow();
+    }
+
+    private void loadNextPage() {
+        if (loading || endReached || username == null || loader.isShutdown()) return;
+        loading = true;
+
+        final int requested = generation;
+        final String user = username;
+        final CircuitData after = circuits.isEmpty() ? null : circuits.get(circuits.size() - 1);
+        loader.execute(() -> {
+            List<CircuitData> page = circuitToDB.getCircuitPage(user, after, PAGE_SIZE);
+            mainHandler.post(() -> {
+                if (requested != generation) return;
+                loading = false;
+                if (page.size() < PAGE_SIZE) endReached = true;
+                int start = circuits.size();
+                circuits.addAll(page);
+                notifyItemRangeInserted(start, page.size());
+                System.out.println("Loaded " + circuits.size() + " circuits for user: " + user
+                        + (endReached ? " (all)" : ""));
+            });
+        });
+    }
+
+    @NonNull
+    @Override
+    public CircuitViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // Create the main container for the circuit item
+        LinearLayout circuitItem = new LinearLayout(parent.getContext());
+        circuitItem.setOrientation(LinearLayout.VERTICAL);
+
+        // Set layout with margins
+        RecyclerView.LayoutParams itemParams = new RecyclerView.LayoutParams(
+                RecyclerView.LayoutParams.MATCH_PARENT,
+                RecyclerView.LayoutParams.WRAP_CONTENT
+        );
+        itemParams.setMargins(0, 0, 0, 50); // Bottom margin between items
+        circuitItem.setLayoutParams(itemParams);
+        circuitItem.setPadding(50, 70, 50, 37);
+
+        // Create the background drawable
+        GradientDrawable background = new GradientDrawable();
+        background.setShape(GradientDrawable.RECTANGLE);
+        background.setColor(Color.parseColor("#FFFAF0")); // Light cream color
+        background.setStroke(6, Color.parseColor("#000000")); // Black border
+        background.setCornerRadius(8); // Rounded corners
+        circuitItem.setBackground(background);
+
+        TextView circuitName = new TextView(parent.getContext());
+        circuitName.setTextSize(18);
+        circuitName.setTextColor(Color.parseColor("#000000"));
+        circuitItem.addView(circuitName, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
+        ));
+
+        // Counts come from the circuit row itself, so showing them costs no extra query
+        TextView circuitStats = new TextView(parent.getContext());
+        circuitStats.setTextSize(13);
+        circuitStats.setTextColor(Color.parseColor("#555555"));
+        circuitItem.addView(circuitStats, new LinearLayout.LayoutParams(
+                LinearLayout.LayoutParams.MATCH_PARENT,
+                LinearLayout.LayoutParams.WRAP_CONTENT
+        ));
+
+        CircuitViewHolder holder = new CircuitViewHolder(circuitItem, circuitName, circuitStats);
+        circuitItem.setOnClickListener(v -> {
+            if (holder.circuit != null) listener.onCircuitClicked(holder.circuit);
+        });
+        circuitItem.setOnLongClickListener(v -> {
+            if (holder.circuit == null) return false;
+            listener.onCircuitLongClicked(holder.circuit);
+            return true;
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull CircuitViewHolder holder, int position) {
+        CircuitData circuit = circuits.get(position);
+        holder.circuit = circuit;
+        holder.circuitName.setText(circuit.circuitName);
+        holder.circuitStats.setText(circuit.icCount + " ICs, " + circuit.wireCount + " wires, "
+                + circuit.inputCount + " inputs, " + circuit.outputCount + " outputs");
+
+        if (position >= circuits.size() - PREFETCH_DISTANCE) {
+            loadNextPage();
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return circuits.size();
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.breadboard;
+
+import android.content.Context;
+
+import com.example.breadboard.sim.Atpg;
+import com.example.breadboard.sim.BoardElement;
+import com.example.breadboard.sim.ICPinout;
+import com.example.breadboard.sim.Netlist;
+import com.example.breadboard.sim.NetlistCache;
+import com.example.breadboard.sim.TestBench;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the headless Netlist of a saved circuit from the *ToDB tables, without any UI.
+ * With circuit snapshots enabled each circuit is read from its snapshot instead.
+ */
+public class CircuitLoader {
+    // Compiled subcircuit definitions, keyed by content so every instance shares one
+    private static final NetlistCache definitions = new NetlistCache(64);
+
+    private ICToDB icToDB;
+    private WireToDB wireToDB;
+    private InputToDB inputToDB;
+    private OutputToDB outputToDB;
+    private ComponentToDB componentToDB;
+    private CircuitToDB circuitToDB;
+    private CircuitBlobToDB circuitBlobToDB;
+    private boolean useSnapshots;
+
+    public CircuitLoader(Context context) {
+        icToDB = new ICToDB(context);
+        wireToDB = new WireToDB(context);
+        inputToDB = new InputToDB(context);
+        outputToDB = new OutputToDB(context);
+        componentToDB = new ComponentToDB(context);
+        circuitToDB = new CircuitToDB(context);
+        circuitBlobToDB = new CircuitBlobToDB(context);
+        useSnapshots = CircuitBlobToDB.isEnabled(context);
+    }
+
+    public Netlist loadNetlist(String username, String circuitName) {
+        return loadBuilder(username, circuitName).build();
+    }
+
+    /** Board records of a saved circuit, not yet compiled. */
+    public Netlist.Builder loadBuilder(String username, String circuitName) {
+        Set<String> enclosing = new HashSet<>();
+        enclosing.add(circuitName);
+        return loadBuilder(username, circuitName, enclosing, new HashMap<>());
+    }
+
+    // enclosing: circuits being loaded further up; resolved: definitions already looked up
+    private Netlist.Builder loadBuilder(String username, String circuitName, Set<String> enclosing,
+                                        Map<String, Netlist> resolved) {
+        if (useSnapshots) {
+            return snapshotBuilder(username, circuitName, enclosing, resolved);
+        }
+        Netlist.Builder builder = new Netlist.Builder();
+        for (ICToDB.ICData ic : icToDB.getICsForCircuit(username, circuitName)) {
+            if (ICPinout.isSubcircuit(ic.ic_type)) {
+                String name = ICPinout.subcircuitName(ic.ic_type);
+                builder.addSubcircuit(name, resolveSubcircuit(username, name, enclosing, resolved), ic.getCoordinate());
+            } else {
+                builder.addIC(ic.ic_type, ic.getCoordinate());
+            }
+        }
+        for (WireToDB.WireData wire : wireToDB.getWiresForCircuit(username, circuitName)) {
+            builder.addWire(wire.getSourceCoordinate(), wire.getDestinationCoordinate());
+        }
+        for (InputToDB.InputData input : inputToDB.getInputsForCircuit(username, circuitName)) {
+            builder.addInput(input.name, input.getCoordinate());
+        }
+        for (OutputToDB.OutputData output : outputToDB.getOutputsForCircuit(username, circuitName)) {
+            builder.addOutput(output.getCoordinate());
+        }
+        for (ComponentToDB.ComponentData component : componentToDB.getComponentsForCircuit(username, circuitName)) {
+            builder.addPower(component.value, component.getCoordinate());
+        }
+        logSkipped(circuitName, builder);
+        return builder;
+    }
+
+    private Netlist.Builder snapshotBuilder(String username, String circuitName, Set<String> enclosing,
+                                            Map<String, Netlist> resolved) {
+        Netlist.Builder builder = new Netlist.Builder();
+        for (BoardElement element : circuitBlobToDB.loadCircuit(username, circuitName).elements()) {
+            switch (element.type) {
+                case BoardElement.IC:
+                    if (ICPinout.isSubcircuit(element.label)) {
+                        String name = ICPinout.subcircuitName(element.label);
+                        builder.addSubcircuit(name, resolveSubcircuit(username, name, enclosing, resolved), element.position);
+                    } else {
+                        builder.addIC(element.label, element.position);
+                    }
+                    break;
+                case BoardElement.WIRE:
+                    builder.addWire(element.position, element.end);
+                    break;
+                case BoardElement.INPUT:
+                    builder.addInput(element.label, element.position);
+                    break;
+                case BoardElement.OUTPUT:
+                    builder.addOutput(element.position);
+                    break;
+                case BoardElement.POWER:
+                    builder.addPower(element.value, element.position);
+                    break;
+                default:
+                    break;
+            }
+        }
+        logSkipped(circuitName, builder);
+        return builder;
+    }
+
+    private static void logSkipped(String circuitName, Netlist.Builder builder) {
+        for (String placement : builder.skipped()) {
+            System.out.println("CircuitLoader: " + circuitName + ": skipping " + placement);
+        }
+    }
+
+    /**
+     * Compiled definition of a saved circuit for use as an IC inside enclosingCircuit, or
+     * null when it has no usable pins, needs more than 12, or would contain itself at any depth.
+     */
+    public Netlist loadSubcircuit(String username, String circuitName, String enclosingCircuit) {
+        Set<String> enclosing = new HashSet<>();
+        if (enclosingCircuit != null) enclosing.add(enclosingCircuit);
+        try {
+            return resolveSubcircuit(username, circuitName, enclosing, new HashMap<>());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Cannot use " + circuitName + " as an IC: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saved circuits of a user that may be placed as ICs inside enclosingCircuit, from their
+     * summary counters without loading any of them; loadSubcircuit compiles the one chosen.
+     */
+    public List<String> getAvailableSubcircuits(String username, String enclosingCircuit) {
+        return circuitToDB.getSubcircuitCandidates(username, enclosingCircuit,
+                ICPinout.subcircuitType(enclosingCircuit), ICPinout.MAX_SUBCIRCUIT_PINS);
+    }
+
+    private Netlist resolveSubcircuit(String username, String circuitName, Set<String> enclosing,
+                                      Map<String, Netlist> resolved) {
+        if (resolved.containsKey(circuitName)) return resolved.get(circuitName);
+        if (enclosing.contains(circuitName)) {
+            // Rejects the whole load rather than dropping the one instance
+            throw new IllegalArgumentException("Subcircuit " + circuitName + " would contain itself");
+        }
+        enclosing.add(circuitName);
+        Netlist definition;
+        try {
+            definition = definitions.get(loadBuilder(username, circuitName, enclosing, resolved));
+        } finally {
+            enclosing.remove(circuitName);
+        }
+        int pins = definition.inputCount() + definition.outputCount();
+        if (definition.outputCount() == 0 || pins > ICPinout.MAX_SUBCIRCUIT_PINS) {
+            System.out.println("Circuit " + circuitName + " has " + definition.inputCount() + " inputs and "
+                    + definition.outputCount() + " outputs; cannot be used as an IC");
+            definition = null;
+        }
+        resolved.put(circuitName, definition);
+        return definition;
+    }
+
+    /**
+     * Generate a compact stuck-at test set for a saved circuit and write it as a test bench.
+     * Returns the ATPG result, or null when the circuit cannot be tested.
+     */
+    public Atpg.Result generateTestBench(String username, String circuitName, File destination) {
+        try {
+            Netlist netlist = loadNetlist(username, circuitName);
+            Atpg.Result result = new Atpg(netlist).run();
+            try (Writer writer = new FileWriter(destination)) {
+                result.testBench.write(writer);
+            }
+            System.out.println("Test bench for " + circuitName + ": " + result);
+            return result;
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Error generating test bench for " + circuitName + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Check a saved circuit against a test bench; returns the number of failing vectors or -1 on error. */
+    public int runTestBench(String username, String circuitName, TestBench testBench) {
+        try {
+            return testBench.verify(loadNetlist(username, circuitName)).size();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error running test bench for " + circuitName + ": " + e.getMessage());
+            return -1;
+        }
+    }
+}
@@ -5,6 +5,9 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 
+import com.example.breadboard.sim.ICPinout;
+
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,7 +17,7 @@ public class CircuitToDB {
 
     public CircuitToDB(Context context) {
         this.context = context;
-        this.dbHelper = new DBHelper(context);
+        this.dbHelper = DBHelper.getInstance(context);
     }
 
     public static class CircuitData {
@@ -24,6 +27,13 @@ public class CircuitToDB {
         public String createdDate;
         public String lastModified;
 
+        // Summary counters kept by DBHelper triggers; 0 unless read from circuits
+        public int inputCount;
+        public int outputCount;
+        public int icCount;
+        public int powerCount;
+        public int wireCount;
+
         public CircuitData(int id, String circuitName, String username, String createdDate, String lastModified) {
             this.id = id;
             this.circuitName = circuitName;
@@ -80,10 +90,6 @@ public class CircuitToDB {
         } catch (Exception e) {
             System.err.println("Error inserting circuit: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
         
         return success;
@@ -106,10 +112,6 @@ public class CircuitToDB {
         } catch (Exception e) {
             System.err.println("Error updating circuit modified time: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
         
         return success;
@@ -120,6 +122,11 @@ public class CircuitToDB {
         boolean success = false;
         
         try {
+            // Placed copies refer to it by name
+            if (isUsedAsIC(circuitId)) {
+                System.err.println("Circuit " + circuitId + " is used as an IC; not renaming it");
+                return false;
+            }
             db = dbHelper.getWritableDatabase();
             ContentValues values = new ContentValues();
             
@@ -132,10 +139,6 @@ public class CircuitToDB {
         } catch (Exception e) {
             System.err.println("Error updating circuit name: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
         
         return success;
@@ -146,21 +149,31 @@ public class CircuitToDB {
         boolean success = false;
         
         try {
+            if (isUsedAsIC(circuitId)) {
+                System.err.println("Circuit " + circuitId + " is used as an IC; not deleting it");
+                return false;
+            }
             db = dbHelper.getWritableDatabase();
-            int rowsDeleted = db.delete("circuits", "id = ?", new String[]{String.valueOf(circuitId)});
+            int rowsDeleted;
+            db.beginTransaction();
+            try {
+                // Rows of the circuit go with it
+                DBHelper.deleteCircuitContents(db, "id = ?", new String[]{String.valueOf(circuitId)});
+                rowsDeleted = db.delete("circuits", "id = ?", new String[]{String.valueOf(circuitId)});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
             success = rowsDeleted > 0;
             
             if (success) {
+                EditJournal.delete(EditJournal.directory(context), circuitId);
                 System.out.println("Circuit with ID " + circuitId + " deleted successfully");
             }
             
         } catch (Exception e) {
             System.err.println("Error deleting circuit: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
         
         return success;
@@ -171,23 +184,90 @@ public class CircuitToDB {
         boolean success = false;
         
         try {
+            if (isUsedAsIC(getCircuitId(circuitName, username))) {
+                System.err.println("Circuit " + circuitName + " is used as an IC; not deleting it");
+                return false;
+            }
             db = dbHelper.getWritableDatabase();
-            int rowsDeleted = db.delete("circuits", "circuit_name = ? AND username = ?", 
-                new String[]{circuitName, username});
+            int rowsDeleted;
+            List<Long> circuitIds;
+            db.beginTransaction();
+            try {
+                String[] whereArgs = {circuitName, username};
+                circuitIds = circuitIds(db, "circuit_name = ? AND username = ?", whereArgs);
+                DBHelper.deleteCircuitContents(db, "circuit_name = ? AND username = ?", whereArgs);
+                rowsDeleted = db.delete("circuits", "circuit_name = ? AND username = ?", whereArgs);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
             success = rowsDeleted > 0;
+            deleteJournals(circuitIds);
             
         } catch (Exception e) {
             System.err.println("Error deleting circuit by name: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
         
         return success;
     }
 
+    /**
+     * Whether another circuit of the same user has this one placed as a custom IC. Those
+     * placements refer to it by name, so it must not be renamed or deleted while they exist.
+     */
+    public boolean isUsedAsIC(int circuitId) {
+        Cursor cursor = null;
+        boolean used = false;
+
+        try {
+            cursor = dbHelper.getReadableDatabase().rawQuery("SELECT 1 FROM circuits t " +
+                    "JOIN circuits c ON c.username = t.username AND c.id <> t.id " +
+                    "JOIN ics i ON i.circuit_id = IFNULL(c.shared_from, c.id) " +
+                    "WHERE t.id = ? AND i.ic_type = ? || t.circuit_name LIMIT 1",
+                    new String[]{String.valueOf(circuitId), ICPinout.SUBCIRCUIT_PREFIX});
+            used = cursor.moveToFirst();
+        } catch (Exception e) {
+            System.err.println("Error checking if circuit is used as an IC: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return used;
+    }
+
+    /**
+     * Key naming the current contents of a circuit, "circuit:<id>:<content_hash>", or null when
+     * there is none: the circuit is missing, changed since its hash was recorded, or places
+     * other circuits as ICs, whose own edits its hash does not cover.
+     */
+    public String getContentKey(String username, String circuitName) {
+        Cursor cursor = null;
+        String key = null;
+
+        try {
+            cursor = dbHelper.getReadableDatabase().rawQuery("SELECT c.id, c.content_hash FROM circuits c " +
+                    "WHERE c.username = ? AND c.circuit_name = ? AND c.content_hash IS NOT NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM ics i WHERE i.circuit_id = IFNULL(c.shared_from, c.id) " +
+                    "AND substr(i.ic_type, 1, ?) = ?)",
+                    new String[]{username, circuitName, String.valueOf(ICPinout.SUBCIRCUIT_PREFIX.length()),
+                            ICPinout.SUBCIRCUIT_PREFIX});
+            if (cursor.moveToFirst()) {
+                key = "circuit:" + cursor.getLong(0) + ":" + cursor.getString(1);
+            }
+        } catch (Exception e) {
+            System.err.println("Error reading content key: " + e.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return key;
+    }
+
     public boolean circuitNameExistsForUser(String circuitName, String username) {
         SQLiteDatabase db = null;
         Cursor cursor = null;
@@ -207,9 +287,6 @@ public class CircuitToDB {
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                db.close();
-            }
         }
         
         return exists;
@@ -238,9 +315,6 @@ public class CircuitToDB {
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                db.close();
-            }
         }
 
         return circuitId;
@@ -263,6 +337,7 @@ public class CircuitToDB {
                     cursor.getString(cursor.getColumnIndexOrThrow("created_date")),
                     cursor.getString(cursor.getColumnIndexOrThrow("last_modified"))
                 );
+                readCounts(cursor, circuitData);
             }
             
         } catch (Exception e) {
@@ -272,9 +347,6 @@ public class CircuitToDB {
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                db.close();
-            }
         }
         
         return circuitData;
@@ -298,6 +370,7 @@ public class CircuitToDB {
                         cursor.getString(cursor.getColumnIndexOrThrow("created_date")),
                         cursor.getString(cursor.getColumnIndexOrThrow("last_modified"))
                     );
+                    readCounts(cursor, circuitData);
                     circuitList.add(circuitData);
                 } while (cursor.moveToNext());
             }
@@ -309,14 +382,92 @@ public class CircuitToDB {
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                db.close();
-            }
         }
         
         return circuitList;
     }
 
+    /**
+     * One page of a user's circuits with their summary counters, most recently modified first.
+     * Pass the last circuit of the previous page as after, or null for the first page; the query
+     * seeks straight to it through idx_circuits_user_modified, so every page costs the same
+     * however deep it is.
+     */
+    public List<CircuitData> getCircuitPage(String username, CircuitData after, int limit) {
+        List<CircuitData> circuitList = new ArrayList<>();
+        Cursor cursor = null;
+
+        try {
+            SQLiteDatabase db = dbHelper.getReadableDatabase();
+            String columns = "SELECT id, circuit_name, username, created_date, last_modified, " +
+                    "input_count, output_count, ic_count, power_count, wire_count FROM circuits ";
+            if (after == null) {
+                cursor = db.rawQuery(columns + "WHERE username = ? ORDER BY last_modified DESC, id DESC LIMIT ?",
+                        new String[]{username, String.valueOf(limit)});
+            } else {
+                cursor = db.rawQuery(columns + "WHERE username = ? AND last_modified <= ? " +
+                                "AND (last_modified < ? OR id < ?) ORDER BY last_modified DESC, id DESC LIMIT ?",
+                        new String[]{username, after.lastModified, after.lastModified,
+                                String.valueOf(after.id), String.valueOf(limit)});
+            }
+
+            while (cursor.moveToNext()) {
+                CircuitData circuitData = new CircuitData(cursor.getInt(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getString(3), cursor.getString(4));
+                readCounts(cursor, circuitData);
+                circuitList.add(circuitData);
+            }
+
+        } catch (Exception e) {
+            System.err.println("Error getting circuit page for user: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return circuitList;
+    }
+
+    static void readCounts(Cursor cursor, CircuitData circuitData) {
+        circuitData.inputCount = cursor.getInt(cursor.getColumnIndexOrThrow("input_count"));
+        circuitData.outputCount = cursor.getInt(cursor.getColumnIndexOrThrow("output_count"));
+        circuitData.icCount = cursor.getInt(cursor.getColumnIndexOrThrow("ic_count"));
+        circuitData.powerCount = cursor.getInt(cursor.getColumnIndexOrThrow("power_count"));
+        circuitData.wireCount = cursor.getInt(cursor.getColumnIndexOrThrow("wire_count"));
+    }
+
+    /**
+     * Names of a user's circuits, other than enclosingName, whose counters fit a custom IC: at
+     * least one output and at most maxPins inputs and outputs, and not directly containing
+     * enclosingName. One query over the circuits rows; whether a circuit really compiles is
+     * checked when it is placed.
+     */
+    public List<String> getSubcircuitCandidates(String username, String enclosingName, String enclosingType,
+                                                int maxPins) {
+        List<String> names = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            cursor = dbHelper.getReadableDatabase().rawQuery("SELECT DISTINCT circuit_name FROM circuits c " +
+                    "WHERE c.username = ? AND c.circuit_name <> ? AND c.output_count > 0 " +
+                    "AND c.input_count + c.output_count <= ? AND NOT EXISTS (SELECT 1 FROM ics i " +
+                    "WHERE i.circuit_id = IFNULL(c.shared_from, c.id) AND i.ic_type = ?) ORDER BY circuit_name",
+                    new String[]{username, enclosingName, String.valueOf(maxPins), enclosingType});
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } catch (Exception e) {
+            System.err.println("Error listing subcircuit candidates: " + e.getMessage());
+            e.printStackTrace();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        return names;
+    }
+
     public List<CircuitData> getAllCircuits() {
         List<CircuitData> circuitList = new ArrayList<>();
         SQLiteDatabase db = null;
@@ -335,6 +486,7 @@ public class CircuitToDB {
                         cursor.getString(cursor.getColumnIndexOrThrow("created_date")),
                         cursor.getString(cursor.getColumnIndexOrThrow("last_modified"))
                     );
+                    readCounts(cursor, circuitData);
                     circuitList.add(circuitData);
                 } while (cursor.moveToNext());
             }
@@ -346,9 +498,6 @@ public class CircuitToDB {
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                db.close();
-            }
         }
         
         return circuitList;
@@ -374,9 +523,6 @@ public class CircuitToDB {
             if (cursor != null) {
                 cursor.close();
             }
-            if (db != null) {
-                db.close();
-            }
         }
         
         return count;
@@ -388,18 +534,25 @@ public class CircuitToDB {
         
         try {
             db = dbHelper.getWritableDatabase();
-            int rowsDeleted = db.delete("circuits", "username = ?", new String[]{username});
+            int rowsDeleted;
+            List<Long> circuitIds;
+            db.beginTransaction();
+            try {
+                circuitIds = circuitIds(db, "username = ?", new String[]{username});
+                DBHelper.deleteCircuitContents(db, "username = ?", new String[]{username});
+                rowsDeleted = db.delete("circuits", "username = ?", new String[]{username});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
             success = rowsDeleted >= 0;
+            deleteJournals(circuitIds);
             
             System.out.println("Cleared " + rowsDeleted + " circuits for user: " + username);
             
         } catch (Exception e) {
             System.err.println("Error clearing circuits for user: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
         
         return success;
@@ -411,27 +564,163 @@ public class CircuitToDB {
         
         try {
             db = dbHelper.getWritableDatabase();
-            int rowsDeleted = db.delete("circuits", null, null);
+            int rowsDeleted;
+            List<Long> circuitIds;
+            db.beginTransaction();
+            try {
+                circuitIds = circuitIds(db, null, null);
+                DBHelper.deleteCircuitContents(db, null, null);
+                rowsDeleted = db.delete("circuits", null, null);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
             success = rowsDeleted >= 0;
+            deleteJournals(circuitIds);
             
             System.out.println("Cleared all circuits from database");
             
         } catch (Exception e) {
             System.err.println("Error clearing all circuits: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            if (db != null) {
-                db.close();
-            }
         }
         
         return success;
     }
 
+    // Ids of the circuits matching circuitWhere (null for all), read before they are deleted
+    private static List<Long> circuitIds(SQLiteDatabase db, String circuitWhere, String[] whereArgs) {
+        List<Long> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT id FROM circuits" +
+                (circuitWhere != null ? " WHERE " + circuitWhere : ""), whereArgs);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    // Edit journals of deleted circuits; called once their rows are gone
+    private void deleteJournals(List<Long> circuitIds) {
+        File directory = EditJournal.directory(context);
+        for (long circuitId : circuitIds) {
+            EditJournal.delete(directory, circuitId);
+        }
+    }
+
     public List<CircuitData> loadCircuitsFromDatabase(String username) {
         return getCircuitsForUser(username);
     }
 
+    /**
+     * Copy a circuit under a new name in constant time: the copy shares the rows of the
+     * original until either of them is changed (see DBHelper.findWritableCircuitId).
+     * Returns the id of the copy, or -1.
+     */
+    public long duplicateCircuit(int circuitId, String newName) {
+        try {
+            String timestamp = String.valueOf(System.currentTimeMillis());
+            long id = dbHelper.executeInsert("INSERT INTO circuits(circuit_name, username, created_date, last_modified, " +
+                    "input_count, output_count, ic_count, power_count, wire_count, content_hash, shared_from) " +
+                    "SELECT ?, username, ?, ?, input_count, output_count, ic_count, power_count, wire_count, " +
+                    "content_hash, IFNULL(shared_from, id) FROM circuits WHERE id = ?",
+                    newName, timestamp, timestamp, circuitId);
+            if (id != -1) {
+                System.out.println("Duplicated circuit " + circuitId + " as " + newName + " (id " + id + ")");
+            }
+            return id;
+        } catch (Exception e) {
+            System.err.println("Error duplicating circuit: " + e.getMessage());
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Make each of the user's circuits whose content hash matches an older circuit share that
+     * circuit's rows instead of keeping its own copy. Returns how many circuits were merged.
+     */
+    public int deduplicateCircuits(String username) {
+        return deduplicate("c.username = ?", new String[]{username});
+    }
+
+    /**
+     * As deduplicateCircuits, for the circuits of the same user with the same contents as
+     * circuitId only; for use right after its content_hash is recorded.
+     */
+    public int deduplicateCircuit(long circuitId) {
+        String id = String.valueOf(circuitId);
+        return deduplicate("c.username = (SELECT username FROM circuits WHERE id = ?) " +
+                "AND c.content_hash = (SELECT content_hash FROM circuits WHERE id = ?)", new String[]{id, id});
+    }
+
+    // circuitWhere: condition on circuits c selecting those that may be merged
+    private int deduplicate(String circuitWhere, String[] whereArgs) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        List<long[]> merges = new ArrayList<>();
+        Cursor cursor = null;
+        try {
+            // Only circuits that neither share nor are shared; the oldest match never merges itself
+            cursor = db.rawQuery("SELECT c.id, (SELECT MIN(o.id) FROM circuits o WHERE o.content_hash = c.content_hash " +
+                    "AND o.username = c.username AND o.shared_from IS NULL AND o.id < c.id) FROM circuits c " +
+                    "WHERE " + circuitWhere + " AND c.content_hash IS NOT NULL AND c.shared_from IS NULL " +
+                    "AND NOT EXISTS (SELECT 1 FROM circuits s WHERE s.shared_from = c.id)",
+                    whereArgs);
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(1)) {
+                    merges.add(new long[]{cursor.getLong(0), cursor.getLong(1)});
+                }
+            }
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+        if (merges.isEmpty()) return 0;
+
+        // Counters and hash are the other circuit's, which now has the same rows
+        StringBuilder shareSql = new StringBuilder("UPDATE circuits SET shared_from = ?1");
+        for (String column : DBHelper.COUNT_COLUMNS) {
+            shareSql.append(", ").append(column).append(" = (SELECT ").append(column).append(" FROM circuits WHERE id = ?1)");
+        }
+        shareSql.append(", content_hash = (SELECT content_hash FROM circuits WHERE id = ?1) WHERE id = ?2");
+
+        int merged = 0;
+        db.beginTransaction();
+        try {
+            for (long[] merge : merges) {
+                String[] circuitArg = {String.valueOf(merge[0])};
+                for (String table : DBHelper.CIRCUIT_TABLES) {
+                    db.delete(table, "circuit_id = ?", circuitArg);
+                }
+                db.delete("circuit_blobs", "circuit_id = ?", circuitArg);
+                db.execSQL(shareSql.toString(), new Object[]{merge[1], merge[0]});
+                merged++;
+            }
+            db.setTransactionSuccessful();
+            System.out.println("Deduplicated " + merged + " circuits");
+        } catch (Exception e) {
+            System.err.println("Error deduplicating circuits: " + e.getMessage());
+            e.printStackTrace();
+            merged = 0;
+        } finally {
+            db.endTransaction();
+        }
+        return merged;
+    }
+
+    public String generateCopyName(String username, String circuitName) {
+        String copyName = circuitName + " copy";
+        int copyNumber = 2;
+        while (circuitNameExistsForUser(copyName, username)) {
+            copyName = circuitName + " copy " + copyNumber++;
+        }
+        return copyName;
+    }
+
     public int getNextCircuitNumber(String username) {
         int count = getCircuitCountForUser(username);
         return count + 1;
@@ -0,0 +1,307 @@
+package com.example.breadboard;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Streaming text import and export of saved circuits, for moving many circuits between
+ * devices. Export writes each row as it comes off the cursor and import inserts each record
+ * as it is parsed, so memory use does not grow with the size of a circuit or of the file.
+ *
+ * Text format, one record per line, '#' starts a comment:
+ * <pre>
+ * circuit half-adder
+ * ic XOR 0:4:10
+ * input A 0:4:12
+ * output 1:0:30
+ * power VCC 0:0:3
+ * wire 0:4:12 1:2:12
+ * end
+ * </pre>
+ * Coordinates are section:row:column. A file holds any number of circuit blocks. In names,
+ * spaces, control characters, '#' and '%' are written as %XX, and an empty name as %.
+ * Importing a block replaces the contents of the user's circuit of that name.
+ */
+public class CircuitTransfer {
+    // Records per transaction on import
+    public static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_IC = "INSERT OR IGNORE INTO ics(circuit_id, ic_type, section, row_pos, column_pos) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_WIRE = "INSERT OR IGNORE INTO wires(circuit_id, src_section, src_row, src_column, " +
+            "dst_section, dst_row, dst_column) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_INPUT = "INSERT OR IGNORE INTO inputs(circuit_id, name, section, row_pos, column_pos) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_OUTPUT = "INSERT OR IGNORE INTO outputs(circuit_id, section, row_pos, column_pos) " +
+            "VALUES (?, ?, ?, ?)";
+    private static final String INSERT_POWER = "INSERT OR IGNORE INTO power_components(circuit_id, value, section, row_pos, column_pos) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private DBHelper dbHelper;
+
+    public CircuitTransfer(Context context) {
+        this.dbHelper = DBHelper.getInstance(context);
+    }
+
+    /** Write one circuit; returns false if it does not exist. */
+    public boolean exportCircuit(String username, String circuitName, Writer writer) throws IOException {
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        if (circuitId == -1) return false;
+        writeCircuit(dbHelper.getReadableDatabase(), circuitId, circuitName, writer);
+        writer.flush();
+        return true;
+    }
+
+    /** Write every circuit of a user; returns how many were written. */
+    public int exportCircuits(String username, Writer writer) throws IOException {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        int count = 0;
+        // The oldest circuit of each name, or the circuit it shares its rows with
+        Cursor circuits = db.rawQuery("SELECT IFNULL(c.shared_from, c.id), c.circuit_name FROM circuits c " +
+                "WHERE c.id IN (SELECT MIN(id) FROM circuits WHERE username = ? GROUP BY circuit_name) " +
+                "ORDER BY c.circuit_name", new String[]{username});
+        try {
+            while (circuits.moveToNext()) {
+                writeCircuit(db, circuits.getLong(0), circuits.getString(1), writer);
+                count++;
+            }
+        } finally {
+            circuits.close();
+        }
+        writer.flush();
+        return count;
+    }
+
+    private void writeCircuit(SQLiteDatabase db, long circuitId, String circuitName, Writer writer) throws IOException {
+        String[] args = {String.valueOf(circuitId)};
+        StringBuilder line = new StringBuilder();
+        writer.write("circuit " + escape(circuitName) + "\n");
+
+        Cursor cursor = db.rawQuery("SELECT ic_type, section, row_pos, column_pos FROM ics WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                line.setLength(0);
+                line.append("ic ").append(escape(cursor.getString(0))).append(' ');
+                appendCoordinate(line, cursor, 1).append('\n');
+                writer.write(line.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT name, section, row_pos, column_pos FROM inputs WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                line.setLength(0);
+                line.append("input ").append(escape(cursor.getString(0))).append(' ');
+                appendCoordinate(line, cursor, 1).append('\n');
+                writer.write(line.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT section, row_pos, column_pos FROM outputs WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                line.setLength(0);
+                line.append("output ");
+                appendCoordinate(line, cursor, 0).append('\n');
+                writer.write(line.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT value, section, row_pos, column_pos FROM power_components WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                line.setLength(0);
+                line.append("power ").append(cursor.getInt(0) == ComponentToDB.VCC ? "VCC " : "GND ");
+                appendCoordinate(line, cursor, 1).append('\n');
+                writer.write(line.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT src_section, src_row, src_column, dst_section, dst_row, dst_column " +
+                "FROM wires WHERE circuit_id = ?", args);
+        try {
+            while (cursor.moveToNext()) {
+                line.setLength(0);
+                line.append("wire ");
+                appendCoordinate(line, cursor, 0).append(' ');
+                appendCoordinate(line, cursor, 3).append('\n');
+                writer.write(line.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+
+        writer.write("end\n");
+    }
+
+    private static StringBuilder appendCoordinate(StringBuilder line, Cursor cursor, int first) {
+        return line.append(cursor.getInt(first)).append(':').append(cursor.getInt(first + 1))
+                .append(':').append(cursor.getInt(first + 2));
+    }
+
+    /**
+     * Read circuit blocks for a user and store each in place of the circuit of the same name.
+     * Records are committed BATCH_SIZE at a time. A malformed line throws an IOException naming
+     * it and rolls back the open batch; batches already committed stay, so an import that
+     * fails part-way can leave the circuit being read partly imported.
+     * Returns the number of circuits imported.
+     */
+    public int importCircuits(String username, Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = -1;
+        int circuits = 0;
+        int inBatch = 0;
+        int lineNumber = 0;
+        String line;
+
+        db.beginTransaction();
+        try {
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                if (comment >= 0) line = line.substring(0, comment);
+                line = line.trim();
+                if (line.isEmpty()) continue;
+                String[] parts = line.split("\\s+");
+
+                if (parts[0].equals("circuit")) {
+                    if (circuitId != -1) throw error(lineNumber, "circuit before end of previous circuit");
+                    expect(parts, 2, lineNumber);
+                    circuitId = dbHelper.requireCircuitId(username, unescape(parts[1], lineNumber));
+                    for (String table : DBHelper.CIRCUIT_TABLES) {
+                        db.delete(table, "circuit_id = ?", new String[]{String.valueOf(circuitId)});
+                    }
+                    continue;
+                }
+                if (circuitId == -1) throw error(lineNumber, parts[0] + " outside a circuit block");
+
+                switch (parts[0]) {
+                    case "end":
+                        expect(parts, 1, lineNumber);
+                        circuitId = -1;
+                        circuits++;
+                        break;
+                    case "ic": {
+                        expect(parts, 3, lineNumber);
+                        int[] at = parseCoordinate(parts[2], lineNumber);
+                        dbHelper.executeInsert(INSERT_IC, circuitId, unescape(parts[1], lineNumber), at[0], at[1], at[2]);
+                        break;
+                    }
+                    case "input": {
+                        expect(parts, 3, lineNumber);
+                        int[] at = parseCoordinate(parts[2], lineNumber);
+                        dbHelper.executeInsert(INSERT_INPUT, circuitId, unescape(parts[1], lineNumber), at[0], at[1], at[2]);
+                        break;
+                    }
+                    case "output": {
+                        expect(parts, 2, lineNumber);
+                        int[] at = parseCoordinate(parts[1], lineNumber);
+                        dbHelper.executeInsert(INSERT_OUTPUT, circuitId, at[0], at[1], at[2]);
+                        break;
+                    }
+                    case "power": {
+                        expect(parts, 3, lineNumber);
+                        int value;
+                        if (parts[1].equals("VCC")) value = ComponentToDB.VCC;
+                        else if (parts[1].equals("GND")) value = ComponentToDB.GND;
+                        else throw error(lineNumber, "power must be VCC or GND");
+                        int[] at = parseCoordinate(parts[2], lineNumber);
+                        dbHelper.executeInsert(INSERT_POWER, circuitId, value, at[0], at[1], at[2]);
+                        break;
+                    }
+                    case "wire": {
+                        expect(parts, 3, lineNumber);
+                        int[] src = parseCoordinate(parts[1], lineNumber);
+                        int[] dst = parseCoordinate(parts[2], lineNumber);
+                        dbHelper.executeInsert(INSERT_WIRE, circuitId, src[0], src[1], src[2], dst[0], dst[1], dst[2]);
+                        break;
+                    }
+                    default:
+                        throw error(lineNumber, "unknown record '" + parts[0] + "'");
+                }
+
+                if (++inBatch >= BATCH_SIZE) {
+                    db.setTransactionSuccessful();
+                    db.endTransaction();
+                    db.beginTransaction();
+                    inBatch = 0;
+                }
+            }
+            if (circuitId != -1) throw error(lineNumber, "missing end of circuit");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        System.out.println("Imported " + circuits + " circuits from " + lineNumber + " lines");
+        return circuits;
+    }
+
+    private static void expect(String[] parts, int count, int lineNumber) throws IOException {
+        if (parts.length != count) {
+            throw error(lineNumber, parts[0] + " takes " + (count - 1) + " fields");
+        }
+    }
+
+    private static int[] parseCoordinate(String text, int lineNumber) throws IOException {
+        String[] fields = text.split(":");
+        if (fields.length != 3) throw error(lineNumber, "bad coordinate '" + text + "'");
+        try {
+            return new int[]{Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2])};
+        } catch (NumberFormatException e) {
+            throw error(lineNumber, "bad coordinate '" + text + "'");
+        }
+    }
+
+    private static IOException error(int lineNumber, String message) {
+        return new IOException("Line " + lineNumber + ": " + message);
+    }
+
+    static String escape(String text) {
+        if (text == null || text.isEmpty()) return "%";
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '%' || ch == '#' || ch <= ' ') {
+                escaped.append('%').append(Character.forDigit(ch >> 4 & 0xF, 16))
+                        .append(Character.forDigit(ch & 0xF, 16));
+            } else {
+                escaped.append(ch);
+            }
+        }
+        return escaped.toString();
+    }
+
+    static String unescape(String text, int lineNumber) throws IOException {
+        if (text.equals("%")) return "";
+        if (text.indexOf('%') < 0) return text;
+        StringBuilder plain = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch != '%') {
+                plain.append(ch);
+                continue;
+            }
+            int high = i + 2 < text.length() ? Character.digit(text.charAt(i + 1), 16) : -1;
+            int low = i + 2 < text.length() ? Character.digit(text.charAt(i + 2), 16) : -1;
+            if (high < 0 || low < 0) throw error(lineNumber, "bad escape in '" + text + "'");
+            plain.append((char) (high << 4 | low));
+            i += 2;
+        }
+        return plain.toString();
+    }
+}
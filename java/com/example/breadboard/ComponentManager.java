@@ -1,12 +1,13 @@
 package com.example.breadboard;
 
-import android.widget.ImageButton;
 import android.widget.Toast;
 
 import com.example.breadboard.ComponentToDB;
 import com.example.breadboard.ComponentToDB.ComponentData;
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -17,12 +18,13 @@ public class ComponentManager {
 
     private MainActivity mainActivity;
     private ComponentToDB componentToDB;
+    private PersistenceQueue persistenceQueue;
     private String currentUsername;
     private String currentCircuitName;
     private String previousUsername = null;
     private String previousCircuitName = null;
     private boolean forceNextClear = false;
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private Attribute[][][] pinAttributes;
     private List<Coordinate> vccPins;
     private List<Coordinate> gndPins;
@@ -30,17 +32,18 @@ public class ComponentManager {
     // Map to track component states
     private Map<Coordinate, Integer> componentStates = new HashMap<>();
 
-    public ComponentManager(MainActivity mainActivity, ImageButton[][][] pins,
+    public ComponentManager(MainActivity mainActivity, BreadboardView breadboardView,
                             Attribute[][][] pinAttributes, List<Coordinate> vccPins,
                             List<Coordinate> gndPins, String username, String circuitName) {
         this.mainActivity = mainActivity;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.pinAttributes = pinAttributes;
         this.vccPins = vccPins;
         this.gndPins = gndPins;
         this.currentUsername = username;
         this.currentCircuitName = circuitName;
         this.componentToDB = new ComponentToDB(mainActivity);
+        this.persistenceQueue = PersistenceQueue.getInstance(mainActivity);
     }
 
     private void loadComponent(Coordinate coord, int componentType) {
@@ -83,13 +86,7 @@ public class ComponentManager {
             pinAttributes[coord.s][coord.r][coord.c] = new Attribute(-1, 1);
             
             // Save to database
-            boolean dbResult = componentToDB.insertVCC(currentUsername, currentCircuitName, coord);
-            if (!dbResult) {
-                System.err.println("Failed to save VCC to database at " + coord + " for circuit " + currentCircuitName);
-                showToast("Warning: Failed to save VCC to database");
-            } else {
-                System.out.println("VCC saved to database successfully at " + coord + " for circuit " + currentCircuitName);
-            }
+            saveComponent(coord, ComponentToDB.VCC);
             
         } else if (componentType == ComponentToDB.GND) {
             // Resize pin and set GND drawable
@@ -100,17 +97,14 @@ public class ComponentManager {
             pinAttributes[coord.s][coord.r][coord.c] = new Attribute(-1, -2);
             
             // Save to database
-            boolean dbResult = componentToDB.insertGND(currentUsername, currentCircuitName, coord);
-            if (!dbResult) {
-                System.err.println("Failed to save GND to database at " + coord + " for circuit " + currentCircuitName);
-                showToast("Warning: Failed to save GND to database");
-            } else {
-                System.out.println("GND saved to database successfully at " + coord + " for circuit " + currentCircuitName);
-            }
+            saveComponent(coord, ComponentToDB.GND);
         }
 
         // Track component state
         componentStates.put(coord, componentType);
+        if (componentType == ComponentToDB.VCC || componentType == ComponentToDB.GND) {
+            mainActivity.recordEdit(BoardEdit.add(BoardElement.power(componentType, coord)));
+        }
     }
 
     private boolean isComponentPlacementValid(Coordinate coord) {
@@ -164,10 +158,7 @@ public class ComponentManager {
         componentStates.remove(coord);
 
         // Reset pin to original state
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-        if (pin != null) {
-            pin.setImageResource(R.drawable.breadboard_pin);
-        }
+        breadboardView.resetPin(coord);
 
         // Reset attributes - IMPORTANT: Set both link and value to -1
         pinAttributes[coord.s][coord.r][coord.c] = new Attribute(-1, -1);
@@ -176,12 +167,20 @@ public class ComponentManager {
         clearColumnValues(coord);
 
         // Remove from database
-        boolean dbResult = componentToDB.deleteComponentByCoordinate(currentUsername, currentCircuitName, coord);
-        if (!dbResult) {
-            System.err.println("Failed to remove component from database at " + coord + " for circuit " + currentCircuitName);
-        } else {
-            System.out.println("Removed component from database at " + coord + " for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.delete(PersistenceQueue.key("power_components", username, circuitName, coord),
+                "remove component from database at " + coord + " for circuit " + circuitName,
+                () -> componentToDB.deleteComponentByCoordinate(username, circuitName, coord));
+    }
+
+    // Queued on the background writer
+    private void saveComponent(Coordinate coord, int componentType) {
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.insert(PersistenceQueue.key("power_components", username, circuitName, coord),
+                "save component " + componentType + " at " + coord + " for circuit " + circuitName,
+                () -> componentToDB.insertComponent(username, circuitName, coord, componentType));
     }
 
     /**
@@ -248,12 +247,10 @@ public class ComponentManager {
     }
 
     public void clearComponentsFromDatabase() {
-        boolean result = componentToDB.clearComponentsForCircuit(currentUsername, currentCircuitName);
-        if (result) {
-            System.out.println("Cleared all components from database for circuit " + currentCircuitName);
-        } else {
-            System.err.println("Failed to clear components from database for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.write("clear components from database for circuit " + circuitName,
+                () -> componentToDB.clearComponentsForCircuit(username, circuitName));
     }
 
     public void updateCircuitContext(String username, String circuitName) {
@@ -329,10 +326,7 @@ public class ComponentManager {
                 }
 
                 // Reset pin visual
-                ImageButton pin = pins[coord.s][coord.r][coord.c];
-                if (pin != null) {
-                    pin.setImageResource(R.drawable.breadboard_pin);
-                }
+                breadboardView.resetPin(coord);
 
             } catch (Exception e) {
                 System.err.println("Error clearing visual for VCC at " + coord + ": " + e.getMessage());
@@ -349,10 +343,7 @@ public class ComponentManager {
                 }
 
                 // Reset pin visual
-                ImageButton pin = pins[coord.s][coord.r][coord.c];
-                if (pin != null) {
-                    pin.setImageResource(R.drawable.breadboard_pin);
-                }
+                breadboardView.resetPin(coord);
 
             } catch (Exception e) {
                 System.err.println("Error clearing visual for GND at " + coord + ": " + e.getMessage());
@@ -20,7 +20,7 @@ public class ComponentToDB {
 
     public ComponentToDB(Context context) {
         this.context = context;
-        this.dbHelper = new DBHelper(context);
+        this.dbHelper = DBHelper.getInstance(context);
     }
 
     public static class ComponentData {
@@ -76,18 +76,10 @@ public class ComponentToDB {
             throw new IllegalArgumentException("Component value must be VCC (1) or GND (-2)");
         }
 
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put("value", componentValue);
-        values.put("username", username);
-        values.put("circuit_name", circuitName);
-        values.put("section", coord.s);
-        values.put("row_pos", coord.r);
-        values.put("column_pos", coord.c);
-
-        long result = db.insert("power_components", null, values);
-        db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        long result = dbHelper.executeInsert("INSERT OR IGNORE INTO power_components(value, circuit_id, section, row_pos, column_pos) " +
+                "VALUES (?, ?, ?, ?, ?)",
+                componentValue, circuitId, coord.s, coord.r, coord.c);
 
         return result != -1;
     }
@@ -111,6 +103,7 @@ public class ComponentToDB {
      */
     public boolean updateComponentPosition(String username, String circuitName, Coordinate oldCoord, Coordinate newCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
 
         values.put("section", newCoord.s);
@@ -118,10 +111,9 @@ public class ComponentToDB {
         values.put("column_pos", newCoord.c);
 
         int rowsAffected = db.update("power_components", values,
-                "username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(oldCoord.s),
+                "circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(oldCoord.s),
                         String.valueOf(oldCoord.r), String.valueOf(oldCoord.c)});
-        db.close();
 
         return rowsAffected > 0;
     }
@@ -135,14 +127,14 @@ public class ComponentToDB {
         }
 
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
         values.put("value", newComponentValue);
 
         int rowsAffected = db.update("power_components", values,
-                "username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s),
+                "circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s),
                         String.valueOf(coord.r), String.valueOf(coord.c)});
-        db.close();
 
         return rowsAffected > 0;
     }
@@ -152,11 +144,11 @@ public class ComponentToDB {
      */
     public boolean deleteComponentByCoordinate(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("power_components",
-                "username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s),
+                "circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s),
                         String.valueOf(coord.r), String.valueOf(coord.c)});
-        db.close();
 
         return rowsDeleted > 0;
     }
@@ -167,16 +159,17 @@ public class ComponentToDB {
     public List<ComponentData> getComponentsForCircuit(String username, String circuitName) {
         List<ComponentData> componentList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM power_components WHERE username = ? AND circuit_name = ? ORDER BY section, row_pos, column_pos",
-                new String[]{username, circuitName});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, value, section, row_pos, column_pos FROM power_components WHERE circuit_id = ? ORDER BY section, row_pos, column_pos",
+                new String[]{String.valueOf(circuitId)});
 
         if (cursor.moveToFirst()) {
             do {
                 ComponentData componentData = new ComponentData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("value")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("row_pos")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("column_pos"))
@@ -186,7 +179,6 @@ public class ComponentToDB {
         }
 
         cursor.close();
-        db.close();
 
         return componentList;
     }
@@ -197,16 +189,17 @@ public class ComponentToDB {
     public List<ComponentData> getVCCComponentsForCircuit(String username, String circuitName) {
         List<ComponentData> vccList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM power_components WHERE username = ? AND circuit_name = ? AND value = ? ORDER BY section, row_pos, column_pos",
-                new String[]{username, circuitName, String.valueOf(VCC)});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, value, section, row_pos, column_pos FROM power_components WHERE circuit_id = ? AND value = ? ORDER BY section, row_pos, column_pos",
+                new String[]{String.valueOf(circuitId), String.valueOf(VCC)});
 
         if (cursor.moveToFirst()) {
             do {
                 ComponentData componentData = new ComponentData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("value")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("row_pos")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("column_pos"))
@@ -216,7 +209,6 @@ public class ComponentToDB {
         }
 
         cursor.close();
-        db.close();
 
         return vccList;
     }
@@ -227,16 +219,17 @@ public class ComponentToDB {
     public List<ComponentData> getGNDComponentsForCircuit(String username, String circuitName) {
         List<ComponentData> gndList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM power_components WHERE username = ? AND circuit_name = ? AND value = ? ORDER BY section, row_pos, column_pos",
-                new String[]{username, circuitName, String.valueOf(GND)});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, value, section, row_pos, column_pos FROM power_components WHERE circuit_id = ? AND value = ? ORDER BY section, row_pos, column_pos",
+                new String[]{String.valueOf(circuitId), String.valueOf(GND)});
 
         if (cursor.moveToFirst()) {
             do {
                 ComponentData componentData = new ComponentData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("value")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("row_pos")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("column_pos"))
@@ -246,7 +239,6 @@ public class ComponentToDB {
         }
 
         cursor.close();
-        db.close();
 
         return gndList;
     }
@@ -256,9 +248,9 @@ public class ComponentToDB {
      */
     public boolean clearComponentsForCircuit(String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        int rowsDeleted = db.delete("power_components", "username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-        db.close();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
+        int rowsDeleted = db.delete("power_components", "circuit_id = ?",
+                new String[]{String.valueOf(circuitId)});
 
         return rowsDeleted >= 0;
     }
@@ -274,41 +266,13 @@ public class ComponentToDB {
      * Save current circuit components to database (replaces all existing components)
      */
     public boolean syncComponentsForCircuit(String username, String circuitName, List<ComponentData> currentComponents) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
-
-        try {
-            // Clear existing components for this circuit
-            db.delete("power_components", "username = ? AND circuit_name = ?",
-                    new String[]{username, circuitName});
-
-            // Insert current components
-            ContentValues values = new ContentValues();
-            for (ComponentData component : currentComponents) {
-                values.clear();
-                values.put("value", component.value);
-                values.put("username", username);
-                values.put("circuit_name", circuitName);
-                values.put("section", component.section);
-                values.put("row_pos", component.row_pos);
-                values.put("column_pos", component.column_pos);
-
-                long result = db.insert("power_components", null, values);
-                if (result == -1) {
-                    throw new Exception("Failed to insert component at: " + component.getCoordinate());
-                }
-            }
-
-            db.setTransactionSuccessful();
-            return true;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            db.endTransaction();
-            db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        List<Object[]> rows = new ArrayList<>();
+        for (ComponentData component : currentComponents) {
+            rows.add(new Object[]{component.value, component.section, component.row_pos, component.column_pos});
         }
+        return dbHelper.syncCircuitRows("power_components", circuitId,
+                new String[]{"value", "section", "row_pos", "column_pos"}, rows);
     }
 
     /**
@@ -316,8 +280,9 @@ public class ComponentToDB {
      */
     public boolean componentExistsAt(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM power_components WHERE username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s),
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM power_components WHERE circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s),
                         String.valueOf(coord.r), String.valueOf(coord.c)});
 
         boolean exists = false;
@@ -326,7 +291,6 @@ public class ComponentToDB {
         }
 
         cursor.close();
-        db.close();
         return exists;
     }
 
@@ -335,8 +299,9 @@ public class ComponentToDB {
      */
     public ComponentData getComponentAt(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM power_components WHERE username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s),
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, value, section, row_pos, column_pos FROM power_components WHERE circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s),
                         String.valueOf(coord.r), String.valueOf(coord.c)});
 
         ComponentData component = null;
@@ -344,8 +309,8 @@ public class ComponentToDB {
             component = new ComponentData(
                     cursor.getInt(cursor.getColumnIndexOrThrow("id")),
                     cursor.getInt(cursor.getColumnIndexOrThrow("value")),
-                    cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                    cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                    username,
+                    circuitName,
                     cursor.getInt(cursor.getColumnIndexOrThrow("section")),
                     cursor.getInt(cursor.getColumnIndexOrThrow("row_pos")),
                     cursor.getInt(cursor.getColumnIndexOrThrow("column_pos"))
@@ -353,7 +318,6 @@ public class ComponentToDB {
         }
 
         cursor.close();
-        db.close();
         return component;
     }
 
@@ -361,18 +325,9 @@ public class ComponentToDB {
      * Get total component count for a specific circuit
      */
     public int getComponentCountForCircuit(String username, String circuitName) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM power_components WHERE username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-
-        int count = 0;
-        if (cursor.moveToFirst()) {
-            count = cursor.getInt(0);
-        }
-
-        cursor.close();
-        db.close();
-        return count;
+        // Read from the counter on circuits rather than counting rows
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        return (int) dbHelper.queryForLong("SELECT IFNULL((SELECT power_count FROM circuits WHERE id = ?), 0)", circuitId);
     }
 
     /**
@@ -380,8 +335,9 @@ public class ComponentToDB {
      */
     public int getVCCCountForCircuit(String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM power_components WHERE username = ? AND circuit_name = ? AND value = ?",
-                new String[]{username, circuitName, String.valueOf(VCC)});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM power_components WHERE circuit_id = ? AND value = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(VCC)});
 
         int count = 0;
         if (cursor.moveToFirst()) {
@@ -389,7 +345,6 @@ public class ComponentToDB {
         }
 
         cursor.close();
-        db.close();
         return count;
     }
 
@@ -398,8 +353,9 @@ public class ComponentToDB {
      */
     public int getGNDCountForCircuit(String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM power_components WHERE username = ? AND circuit_name = ? AND value = ?",
-                new String[]{username, circuitName, String.valueOf(GND)});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM power_components WHERE circuit_id = ? AND value = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(GND)});
 
         int count = 0;
         if (cursor.moveToFirst()) {
@@ -407,7 +363,6 @@ public class ComponentToDB {
         }
 
         cursor.close();
-        db.close();
         return count;
     }
 }
\ No newline at end of file
@@ -36,7 +36,7 @@ public class ConfirmUser extends AppCompatActivity {
             return insets;
         });
 
-        DB = new DBHelper(this);
+        DB = DBHelper.getInstance(this);
 
         initializeViews();
         setupValidation();
@@ -1,12 +1,13 @@
 package com.example.breadboard;
 
-import android.widget.ImageButton;
 import android.widget.Toast;
 
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.SignalProbe;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -26,13 +27,19 @@ public class ConnectionManager {
     private WireManager wireManager;
     private ICPinManager icPinManager;
 
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private Attribute[][][] pinAttributes;
 
     // Connection tracking
     private Map<Coordinate, Set<Coordinate>> connectionMap; // Maps each pin to its connected pins
     private Map<Coordinate, Integer> propagatedValues; // Tracks propagated signal values
 
+    // Change notifications for observers, published once the outermost update finishes
+    private SignalProbe<Coordinate> signalProbe = new SignalProbe<>();
+    private Set<Coordinate> dirtyPins = new HashSet<>();
+    private Map<Coordinate, Integer> publishedValues = new HashMap<>();
+    private int updateDepth = 0;
+
     // Circuit context
     private String currentUsername;
     private String currentCircuitName;
@@ -42,7 +49,7 @@ public class ConnectionManager {
                              OutputManager outputManager,
                              WireManager wireManager,
                              ICPinManager icPinManager,
-                             ImageButton[][][] pins,
+                             BreadboardView breadboardView,
                              Attribute[][][] pinAttributes,
                              String username,
                              String circuitName) {
@@ -51,7 +58,7 @@ public class ConnectionManager {
         this.outputManager = outputManager;
         this.wireManager = wireManager;
         this.icPinManager = icPinManager;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.pinAttributes = pinAttributes;
         this.currentUsername = username;
         this.currentCircuitName = circuitName;
@@ -70,24 +77,29 @@ public class ConnectionManager {
      */
     public void buildConnectionMap() {
         System.out.println("=== BUILDING CONNECTION MAP START ===");
-        connectionMap.clear();
-        propagatedValues.clear();
-
-        // Build connections from wire data
-        if (wireManager != null) {
-            List<WireManager.Wire> allWires = wireManager.getAllWires();
-
-            for (WireManager.Wire wire : allWires) {
-                addConnection(wire.start, wire.end);
-                System.out.println("Added wire connection: " + wire.start + " <-> " + wire.end);
+        beginSignalUpdate();
+        try {
+            connectionMap.clear();
+            clearPropagatedValues();
+
+            // Build connections from wire data
+            if (wireManager != null) {
+                List<WireManager.Wire> allWires = wireManager.getAllWires();
+
+                for (WireManager.Wire wire : allWires) {
+                    addConnection(wire.start, wire.end);
+                    System.out.println("Added wire connection: " + wire.start + " <-> " + wire.end);
+                }
             }
-        }
 
-        // Add column-based connections (breadboard internal connections)
-        addBreadboardInternalConnections();
+            // Add column-based connections (breadboard internal connections)
+            addBreadboardInternalConnections();
 
-        System.out.println("Connection map built with " + connectionMap.size() + " nodes");
-        System.out.println("=== BUILDING CONNECTION MAP END ===");
+            System.out.println("Connection map built with " + connectionMap.size() + " nodes");
+            System.out.println("=== BUILDING CONNECTION MAP END ===");
+        } finally {
+            endSignalUpdate();
+        }
     }
 
     /**
@@ -159,8 +171,13 @@ public class ConnectionManager {
         }
 
         // Remove propagated values for disconnected pins
-        propagatedValues.remove(coord1);
-        propagatedValues.remove(coord2);
+        beginSignalUpdate();
+        try {
+            removePropagatedValue(coord1);
+            removePropagatedValue(coord2);
+        } finally {
+            endSignalUpdate();
+        }
     }
 
     /**
@@ -168,11 +185,16 @@ public class ConnectionManager {
      */
     public void onWireAdded(Coordinate coord1, Coordinate coord2) {
         System.out.println("ConnectionManager: Wire added " + coord1 + " <-> " + coord2);
-        addConnection(coord1, coord2);
-
-        // Propagate signals immediately after adding connection
-        propagateSignalsFromPin(coord1);
-        propagateSignalsFromPin(coord2);
+        beginSignalUpdate();
+        try {
+            addConnection(coord1, coord2);
+
+            // Propagate signals immediately after adding connection
+            propagateSignalsFromPin(coord1);
+            propagateSignalsFromPin(coord2);
+        } finally {
+            endSignalUpdate();
+        }
     }
 
     /**
@@ -180,10 +202,15 @@ public class ConnectionManager {
      */
     public void onWireRemoved(Coordinate coord1, Coordinate coord2) {
         System.out.println("ConnectionManager: Wire removed " + coord1 + " <-> " + coord2);
-        removeConnection(coord1, coord2);
-
-        // Update outputs after removing connection
-        updateConnectedOutputs();
+        beginSignalUpdate();
+        try {
+            removeConnection(coord1, coord2);
+
+            // Update outputs after removing connection
+            updateConnectedOutputs();
+        } finally {
+            endSignalUpdate();
+        }
     }
 
     /**
@@ -211,32 +238,37 @@ public class ConnectionManager {
             return;
         }
 
-        Set<Coordinate> visited = new HashSet<>();
-        Queue<Coordinate> queue = new LinkedList<>();
-        queue.offer(sourcePin);
-        visited.add(sourcePin);
-
-        while (!queue.isEmpty()) {
-            Coordinate current = queue.poll();
-            Set<Coordinate> connections = connectionMap.get(current);
-
-            if (connections != null) {
-                for (Coordinate connected : connections) {
-                    if (!visited.contains(connected)) {
-                        visited.add(connected);
-                        queue.offer(connected);
-
-                        // Set the signal value
-                        propagatedValues.put(connected, signalValue);
-                        System.out.println("Propagated signal " + signalValue + " to " + connected);
-
-                        // Update visual representation if it's an output
-                        if (outputManager != null && outputManager.isOutput(connected)) {
-                            outputManager.updateOutputVisual(connected);
+        beginSignalUpdate();
+        try {
+            Set<Coordinate> visited = new HashSet<>();
+            Queue<Coordinate> queue = new LinkedList<>();
+            queue.offer(sourcePin);
+            visited.add(sourcePin);
+
+            while (!queue.isEmpty()) {
+                Coordinate current = queue.poll();
+                Set<Coordinate> connections = connectionMap.get(current);
+
+                if (connections != null) {
+                    for (Coordinate connected : connections) {
+                        if (!visited.contains(connected)) {
+                            visited.add(connected);
+                            queue.offer(connected);
+
+                            // Set the signal value
+                            putPropagatedValue(connected, signalValue);
+                            System.out.println("Propagated signal " + signalValue + " to " + connected);
+
+                            // Update visual representation if it's an output
+                            if (outputManager != null && outputManager.isOutput(connected)) {
+                                outputManager.updateOutputVisual(connected);
+                            }
                         }
                     }
                 }
             }
+        } finally {
+            endSignalUpdate();
         }
 
         System.out.println("=== PROPAGATION COMPLETE ===");
@@ -360,31 +392,36 @@ public class ConnectionManager {
         if (outputManager == null) return;
 
         System.out.println("=== UPDATING ALL CONNECTED OUTPUTS ===");
-
-        // Clear all propagated values first
-        propagatedValues.clear();
-
-        // Find all input sources and propagate from them
-        if (pinAttributes != null) {
-            for (int s = 0; s < pinAttributes.length; s++) {
-                if (pinAttributes[s] == null) continue;
-                for (int r = 0; r < pinAttributes[s].length; r++) {
-                    if (pinAttributes[s][r] == null) continue;
-                    for (int c = 0; c < pinAttributes[s][r].length; c++) {
-                        Coordinate coord = new Coordinate(s, r, c);
-                        Attribute attr = pinAttributes[s][r][c];
-
-                        // Check if this is a signal source
-                        if (attr != null && (attr.value == 1 || attr.value == 0 || attr.value == -2 || attr.value == 2)) {
-                            propagateSignalsFromPin(coord);
+        beginSignalUpdate();
+        try {
+
+            // Clear all propagated values first
+            clearPropagatedValues();
+
+            // Find all input sources and propagate from them
+            if (pinAttributes != null) {
+                for (int s = 0; s < pinAttributes.length; s++) {
+                    if (pinAttributes[s] == null) continue;
+                    for (int r = 0; r < pinAttributes[s].length; r++) {
+                        if (pinAttributes[s][r] == null) continue;
+                        for (int c = 0; c < pinAttributes[s][r].length; c++) {
+                            Coordinate coord = new Coordinate(s, r, c);
+                            Attribute attr = pinAttributes[s][r][c];
+
+                            // Check if this is a signal source
+                            if (attr != null && (attr.value == 1 || attr.value == 0 || attr.value == -2 || attr.value == 2)) {
+                                propagateSignalsFromPin(coord);
+                            }
                         }
                     }
                 }
             }
-        }
 
-        // Update all output visuals
-        outputManager.updateAllOutputVisuals();
+            // Update all output visuals
+            outputManager.updateAllOutputVisuals();
+        } finally {
+            endSignalUpdate();
+        }
 
         System.out.println("=== OUTPUT UPDATE COMPLETE ===");
     }
@@ -437,8 +474,13 @@ public class ConnectionManager {
      */
     public void clearAllConnections() {
         System.out.println("Clearing all connections...");
-        connectionMap.clear();
-        propagatedValues.clear();
+        beginSignalUpdate();
+        try {
+            connectionMap.clear();
+            clearPropagatedValues();
+        } finally {
+            endSignalUpdate();
+        }
 
         // Update outputs to reflect cleared state
         if (outputManager != null) {
@@ -492,6 +534,86 @@ public class ConnectionManager {
         return new HashMap<>(propagatedValues);
     }
 
+    /**
+     * Flow publisher of propagated value changes (value -1 when a pin loses its signal).
+     * Use this instead of polling getPropagatedValues().
+     */
+    public SignalProbe<Coordinate> getSignalProbe() {
+        return signalProbe;
+    }
+
+    /**
+     * Write every propagated value into dest, one slot per pin (SimulationSnapshot order),
+     * with NO_VALUE where a pin carries no signal.
+     */
+    public void exportPropagatedValues(int[] dest, int offset) {
+        Arrays.fill(dest, offset, offset + SimulationSnapshot.PIN_COUNT, SimulationSnapshot.NO_VALUE);
+        for (Map.Entry<Coordinate, Integer> entry : propagatedValues.entrySet()) {
+            dest[offset + SimulationSnapshot.pinIndex(entry.getKey())] = entry.getValue();
+        }
+    }
+
+    /**
+     * Replace the propagated values with ones written by exportPropagatedValues
+     */
+    public void importPropagatedValues(int[] src, int offset) {
+        beginSignalUpdate();
+        try {
+            clearPropagatedValues();
+            for (int i = 0; i < SimulationSnapshot.PIN_COUNT; i++) {
+                if (src[offset + i] != SimulationSnapshot.NO_VALUE) {
+                    putPropagatedValue(SimulationSnapshot.pinCoordinate(i), src[offset + i]);
+                }
+            }
+        } finally {
+            endSignalUpdate();
+        }
+    }
+
+    private void putPropagatedValue(Coordinate coord, int value) {
+        propagatedValues.put(coord, value);
+        if (signalProbe.hasSubscribers()) dirtyPins.add(coord);
+    }
+
+    private void removePropagatedValue(Coordinate coord) {
+        if (propagatedValues.remove(coord) != null && signalProbe.hasSubscribers()) dirtyPins.add(coord);
+    }
+
+    private void clearPropagatedValues() {
+        if (signalProbe.hasSubscribers()) dirtyPins.addAll(propagatedValues.keySet());
+        propagatedValues.clear();
+    }
+
+    private void beginSignalUpdate() {
+        updateDepth++;
+    }
+
+    // Publish net changes once the outermost update is done, so transient clears never leak out
+    private void endSignalUpdate() {
+        if (--updateDepth > 0) return;
+        updateDepth = 0;
+        if (dirtyPins.isEmpty()) return;
+        if (!signalProbe.hasSubscribers()) {
+            dirtyPins.clear();
+            publishedValues.clear();
+            return;
+        }
+        for (Coordinate coord : dirtyPins) {
+            Integer current = propagatedValues.get(coord);
+            int value = current != null ? current : -1;
+            Integer previous = publishedValues.get(coord);
+            if (previous != null && previous == value) continue;
+            if (previous == null && value == -1) continue;
+            if (value == -1) {
+                publishedValues.remove(coord);
+            } else {
+                publishedValues.put(coord, value);
+            }
+            signalProbe.publish(coord, value);
+        }
+        dirtyPins.clear();
+    }
+
     public void setCurrentCircuit(String username, String circuitName) {
         this.currentUsername = username;
         this.currentCircuitName = circuitName;
@@ -527,13 +649,18 @@ public class ConnectionManager {
 
         // Clear any existing propagated values for this input's network
         // to ensure clean propagation with the new value
-        clearPropagatedValuesForNetwork(inputCoord);
+        beginSignalUpdate();
+        try {
+            clearPropagatedValuesForNetwork(inputCoord);
 
-        // Propagate the new signal from this input to all connected pins
-        propagateSignalsFromPin(inputCoord);
+            // Propagate the new signal from this input to all connected pins
+            propagateSignalsFromPin(inputCoord);
 
-        // Update all connected outputs to reflect the change
-        updateConnectedOutputs();
+            // Update all connected outputs to reflect the change
+            updateConnectedOutputs();
+        } finally {
+            endSignalUpdate();
+        }
 
         System.out.println("=== INPUT VALUE CHANGE PROPAGATION COMPLETE ===");
     }
@@ -547,7 +674,7 @@ public class ConnectionManager {
         networkPins.add(sourceCoord); // Include the source coordinate itself
 
         for (Coordinate coord : networkPins) {
-            propagatedValues.remove(coord);
+            removePropagatedValue(coord);
         }
 
         System.out.println("Cleared propagated values for " + networkPins.size() + " pins in network");
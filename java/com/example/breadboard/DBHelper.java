@@ -5,13 +5,151 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
-
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The app's single database access point. One instance holds one connection that stays open
+ * for the life of the process; WAL journaling lets reads proceed while a write commits, and
+ * frequently run statements are compiled once and reused. Callers must not close the
+ * database they get from here.
+ */
 public class DBHelper extends SQLiteOpenHelper {
 
     public static final String DBNAME = "Breadboard.db";
 
-    public DBHelper(Context context) {
-        super(context, "Breadboard.db", null, 10); // Version 10 for wires table
+    // Tables whose rows belong to one circuit through circuit_id
+    public static final String[] CIRCUIT_TABLES = {"inputs", "outputs", "ics", "power_components", "wires"};
+
+    // Column of circuits counting the rows of each CIRCUIT_TABLES table, in the same order
+    public static final String[] COUNT_COLUMNS = {"input_count", "output_count", "ic_count", "power_count", "wire_count"};
+
+    // Columns of each CIRCUIT_TABLES table besides id and circuit_id, in the same order
+    public static final String[] CONTENT_COLUMNS = {
+            "name, section, row_pos, column_pos",
+            "section, row_pos, column_pos",
+            "ic_type, section, row_pos, column_pos",
+            "value, section, row_pos, column_pos",
+            "src_section, src_row, src_column, dst_section, dst_row, dst_column"};
+
+    private static DBHelper instance;
+    private final Context context;
+    private static SchemaMigrator.ProgressListener migrationListener;
+
+    // Compiled statements of one thread by SQL text, valid for db only
+    private static final class StatementCache {
+        final Map<String, SQLiteStatement> statements = new HashMap<>();
+        SQLiteDatabase db;
+
+        void release() {
+            for (SQLiteStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+        }
+    }
+
+    private final ThreadLocal<StatementCache> statementCache = new ThreadLocal<StatementCache>() {
+        @Override
+        protected StatementCache initialValue() {
+            return new StatementCache();
+        }
+    };
+
+    public static synchronized DBHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DBHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DBHelper(Context context) {
+        super(context, "Breadboard.db", null, 16); // Version 16 for the circuit search index
+        this.context = context;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Compiled statement for sql, compiled once per thread and database. A statement holds
+     * its bindings, so each thread gets its own and none is ever locked: a lock held while
+     * SQLite waits for the write connection deadlocks against a transaction that holds the
+     * connection and needs the same statement.
+     */
+    private SQLiteStatement statement(String sql) {
+        SQLiteDatabase db = getWritableDatabase();
+        StatementCache cache = statementCache.get();
+        if (db != cache.db) {
+            // The database was reopened; statements of the old one are unusable
+            cache.release();
+            cache.db = db;
+        }
+        SQLiteStatement statement = cache.statements.get(sql);
+        if (statement == null) {
+            statement = db.compileStatement(sql);
+            cache.statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    /** Row id of the inserted row, or -1 when nothing was inserted. */
+    public long executeInsert(String sql, Object... args) {
+        SQLiteStatement statement = statement(sql);
+        bind(statement, args);
+        try {
+            return statement.executeInsert();
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    /** Number of rows changed. */
+    public int executeUpdateDelete(String sql, Object... args) {
+        SQLiteStatement statement = statement(sql);
+        bind(statement, args);
+        try {
+            return statement.executeUpdateDelete();
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    /** First column of the first row of a query that always returns one row. */
+    public long queryForLong(String sql, Object... args) {
+        SQLiteStatement statement = statement(sql);
+        bind(statement, args);
+        try {
+            return statement.simpleQueryForLong();
+        } finally {
+            statement.clearBindings();
+        }
+    }
+
+    private static void bind(SQLiteStatement statement, Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                statement.bindNull(i + 1);
+            } else if (arg instanceof Integer || arg instanceof Long) {
+                statement.bindLong(i + 1, ((Number) arg).longValue());
+            } else if (arg instanceof byte[]) {
+                statement.bindBlob(i + 1, (byte[]) arg);
+            } else {
+                statement.bindString(i + 1, arg.toString());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        // Other threads find their statements stale when they next use them
+        statementCache.get().release();
+        super.close();
     }
 
     @Override
@@ -19,41 +157,6 @@ public class DBHelper extends SQLiteOpenHelper {
         // Create users table
         MyDB.execSQL("create Table users(username TEXT primary key, password TEXT)");
 
-        // Create inputs table
-        MyDB.execSQL("create Table inputs(" +
-                "id INTEGER primary key AUTOINCREMENT, " +
-                "name TEXT, " +
-                "username TEXT, " +
-                "circuit_name TEXT, " +
-                "section INTEGER, " +
-                "row_pos INTEGER, " +
-                "column_pos INTEGER, " +
-                "UNIQUE(name, username, circuit_name), " +
-                "FOREIGN KEY (username) REFERENCES users(username))");
-
-        // Create outputs table
-        MyDB.execSQL("create Table outputs(" +
-                "id INTEGER primary key AUTOINCREMENT, " +
-                "username TEXT, " +
-                "circuit_name TEXT, " +
-                "section INTEGER, " +
-                "row_pos INTEGER, " +
-                "column_pos INTEGER, " +
-                "UNIQUE(username, circuit_name, section, row_pos, column_pos), " +
-                "FOREIGN KEY (username) REFERENCES users(username))");
-
-        // Create ics table
-        MyDB.execSQL("create Table ics(" +
-                "id INTEGER primary key AUTOINCREMENT, " +
-                "ic_type TEXT, " +
-                "username TEXT, " +
-                "circuit_name TEXT, " +
-                "section INTEGER, " +
-                "row_pos INTEGER, " +
-                "column_pos INTEGER, " +
-                "UNIQUE(ic_type, username, circuit_name, section, row_pos, column_pos), " +
-                "FOREIGN KEY (username) REFERENCES users(username))");
-
         // Create circuits table
         MyDB.execSQL("create Table circuits(" +
                 "id INTEGER primary key AUTOINCREMENT, " +
@@ -61,81 +164,74 @@ public class DBHelper extends SQLiteOpenHelper {
                 "username TEXT, " +
                 "created_date TEXT, " +
                 "last_modified TEXT, " +
+                "input_count INTEGER NOT NULL DEFAULT 0, " +
+                "output_count INTEGER NOT NULL DEFAULT 0, " +
+                "ic_count INTEGER NOT NULL DEFAULT 0, " +
+                "power_count INTEGER NOT NULL DEFAULT 0, " +
+                "wire_count INTEGER NOT NULL DEFAULT 0, " +
+                "content_hash TEXT, " +
+                "shared_from INTEGER REFERENCES circuits(id), " +
                 "FOREIGN KEY (username) REFERENCES users(username))");
 
-        // Create power_components table
-        MyDB.execSQL("create Table power_components(" +
-                "id INTEGER primary key AUTOINCREMENT, " +
-                "value INTEGER NOT NULL CHECK (value IN (1, -2)), " +
-                "username TEXT NOT NULL, " +
-                "circuit_name TEXT NOT NULL, " +
-                "section INTEGER NOT NULL, " +
-                "row_pos INTEGER NOT NULL, " +
-                "column_pos INTEGER NOT NULL, " +
-                "UNIQUE(username, circuit_name, section, row_pos, column_pos), " +
-                "FOREIGN KEY (username) REFERENCES users(username))");
+        MyDB.execSQL("create INDEX idx_circuits_user_name ON circuits(username, circuit_name, id)");
+        // Keyset pages of a user's circuits, most recently modified first
+        MyDB.execSQL("create INDEX idx_circuits_user_modified ON circuits(username, last_modified, id)");
 
-        // Create wires table
-        MyDB.execSQL("create Table wires(" +
-                "id INTEGER primary key AUTOINCREMENT, " +
-                "username TEXT NOT NULL, " +
-                "circuit_name TEXT NOT NULL, " +
-                "src_section INTEGER NOT NULL, " +
-                "src_row INTEGER NOT NULL, " +
-                "src_column INTEGER NOT NULL, " +
-                "dst_section INTEGER NOT NULL, " +
-                "dst_row INTEGER NOT NULL, " +
-                "dst_column INTEGER NOT NULL, " +
-                "UNIQUE(username, circuit_name, src_section, src_row, src_column, dst_section, dst_row, dst_column), " +
-                "FOREIGN KEY (username) REFERENCES users(username))");
+        createCircuitTables(MyDB);
+        createCircuitBlobs(MyDB);
+        createCircuitCounters(MyDB);
+        createCircuitSharing(MyDB);
+        createCircuitFeatures(MyDB);
 
-        System.out.println("Database created with version 10 - added wires table");
+        System.out.println("Database created with version 16 - circuit search index");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase MyDB, int oldVersion, int newVersion) {
         System.out.println("Upgrading database from version " + oldVersion + " to " + newVersion);
 
-        if (oldVersion < 5) {
-            try {
-                // Drop and recreate inputs table with new structure
-                MyDB.execSQL("DROP TABLE IF EXISTS inputs");
+        SchemaMigrator migrator = new SchemaMigrator(migrations());
+        migrator.setProgressListener(migrationListener);
+        migrator.migrate(MyDB, oldVersion, newVersion);
 
-                MyDB.execSQL("create Table inputs(" +
-                        "id INTEGER primary key AUTOINCREMENT, " +
-                        "name TEXT, " +
-                        "username TEXT, " +
-                        "circuit_name TEXT, " +
-                        "section INTEGER, " +
-                        "row_pos INTEGER, " +
-                        "column_pos INTEGER, " +
-                        "UNIQUE(name, username, circuit_name), " +
-                        "FOREIGN KEY (username) REFERENCES users(username))");
+        System.out.println("Database upgrade completed");
+    }
 
-                // Add circuits table if it doesn't exist
-                MyDB.execSQL("create Table IF NOT EXISTS circuits(" +
-                        "id INTEGER primary key AUTOINCREMENT, " +
-                        "circuit_name TEXT, " +
-                        "username TEXT, " +
-                        "created_date TEXT, " +
-                        "last_modified TEXT, " +
-                        "FOREIGN KEY (username) REFERENCES users(username))");
-
-                System.out.println("Updated inputs table with circuit association during upgrade");
-            } catch (Exception e) {
-                System.err.println("Error upgrading database: " + e.getMessage());
-                // If there's an error, recreate all tables
-                MyDB.execSQL("DROP TABLE IF EXISTS users");
-                MyDB.execSQL("DROP TABLE IF EXISTS inputs");
-                MyDB.execSQL("DROP TABLE IF EXISTS circuits");
-                onCreate(MyDB);
-            }
-        }
+    /** Receives progress of schema upgrades; set before the database is first opened. */
+    public static void setMigrationListener(SchemaMigrator.ProgressListener listener) {
+        migrationListener = listener;
+    }
 
-        // Handle upgrade to version 7 (outputs table)
-        if (oldVersion < 7) {
-            try {
-                MyDB.execSQL("create Table IF NOT EXISTS outputs(" +
+    /**
+     * Every schema change, oldest first. onCreate builds the latest layout directly, so a new
+     * version needs both a migration here and the matching change in onCreate.
+     */
+    private static List<SchemaMigrator.Migration> migrations() {
+        List<SchemaMigrator.Migration> migrations = new ArrayList<>();
+
+        migrations.add(SchemaMigrator.migration(5, "inputs belong to a circuit", (db, migrator) -> {
+            migrator.rebuildTable(db, "inputs",
+                    "id INTEGER primary key AUTOINCREMENT, " +
+                    "name TEXT, " +
+                    "username TEXT, " +
+                    "circuit_name TEXT, " +
+                    "section INTEGER, " +
+                    "row_pos INTEGER, " +
+                    "column_pos INTEGER, " +
+                    "UNIQUE(name, username, circuit_name), " +
+                    "FOREIGN KEY (username) REFERENCES users(username)");
+
+            db.execSQL("create Table IF NOT EXISTS circuits(" +
+                    "id INTEGER primary key AUTOINCREMENT, " +
+                    "circuit_name TEXT, " +
+                    "username TEXT, " +
+                    "created_date TEXT, " +
+                    "last_modified TEXT, " +
+                    "FOREIGN KEY (username) REFERENCES users(username))");
+        }));
+
+        migrations.add(SchemaMigrator.migration(7, "outputs table", (db, migrator) ->
+                db.execSQL("create Table IF NOT EXISTS outputs(" +
                         "id INTEGER primary key AUTOINCREMENT, " +
                         "username TEXT, " +
                         "circuit_name TEXT, " +
@@ -143,18 +239,10 @@ public class DBHelper extends SQLiteOpenHelper {
                         "row_pos INTEGER, " +
                         "column_pos INTEGER, " +
                         "UNIQUE(username, circuit_name, section, row_pos, column_pos), " +
-                        "FOREIGN KEY (username) REFERENCES users(username))");
-
-                System.out.println("Added outputs table during upgrade to version 7");
-            } catch (Exception e) {
-                System.err.println("Error adding outputs table: " + e.getMessage());
-            }
-        }
+                        "FOREIGN KEY (username) REFERENCES users(username))")));
 
-        // Handle upgrade to version 8 (ics table)
-        if (oldVersion < 8) {
-            try {
-                MyDB.execSQL("create Table IF NOT EXISTS ics(" +
+        migrations.add(SchemaMigrator.migration(8, "ics table", (db, migrator) ->
+                db.execSQL("create Table IF NOT EXISTS ics(" +
                         "id INTEGER primary key AUTOINCREMENT, " +
                         "ic_type TEXT, " +
                         "username TEXT, " +
@@ -163,18 +251,10 @@ public class DBHelper extends SQLiteOpenHelper {
                         "row_pos INTEGER, " +
                         "column_pos INTEGER, " +
                         "UNIQUE(ic_type, username, circuit_name, section, row_pos, column_pos), " +
-                        "FOREIGN KEY (username) REFERENCES users(username))");
-
-                System.out.println("Added ics table during upgrade to version 8");
-            } catch (Exception e) {
-                System.err.println("Error adding ics table: " + e.getMessage());
-            }
-        }
+                        "FOREIGN KEY (username) REFERENCES users(username))")));
 
-        // Handle upgrade to version 9 (power_components table)
-        if (oldVersion < 9) {
-            try {
-                MyDB.execSQL("create Table IF NOT EXISTS power_components(" +
+        migrations.add(SchemaMigrator.migration(9, "power_components table", (db, migrator) ->
+                db.execSQL("create Table IF NOT EXISTS power_components(" +
                         "id INTEGER primary key AUTOINCREMENT, " +
                         "value INTEGER NOT NULL CHECK (value IN (1, -2)), " + // 1 for VCC, -2 for GND
                         "username TEXT NOT NULL, " +
@@ -183,18 +263,10 @@ public class DBHelper extends SQLiteOpenHelper {
                         "row_pos INTEGER NOT NULL, " +
                         "column_pos INTEGER NOT NULL, " +
                         "UNIQUE(username, circuit_name, section, row_pos, column_pos), " +
-                        "FOREIGN KEY (username) REFERENCES users(username))");
-
-                System.out.println("Added power_components table during upgrade to version 9");
-            } catch (Exception e) {
-                System.err.println("Error adding power_components table: " + e.getMessage());
-            }
-        }
+                        "FOREIGN KEY (username) REFERENCES users(username))")));
 
-        // Handle upgrade to version 10 (wires table)
-        if (oldVersion < 10) {
-            try {
-                MyDB.execSQL("create Table IF NOT EXISTS wires(" +
+        migrations.add(SchemaMigrator.migration(10, "wires table", (db, migrator) ->
+                db.execSQL("create Table IF NOT EXISTS wires(" +
                         "id INTEGER primary key AUTOINCREMENT, " +
                         "username TEXT NOT NULL, " +
                         "circuit_name TEXT NOT NULL, " +
@@ -205,15 +277,432 @@ public class DBHelper extends SQLiteOpenHelper {
                         "dst_row INTEGER NOT NULL, " +
                         "dst_column INTEGER NOT NULL, " +
                         "UNIQUE(username, circuit_name, src_section, src_row, src_column, dst_section, dst_row, dst_column), " +
-                        "FOREIGN KEY (username) REFERENCES users(username))");
+                        "FOREIGN KEY (username) REFERENCES users(username))")));
+
+        migrations.add(SchemaMigrator.migration(11, "circuit_id references instead of username + circuit_name",
+                DBHelper::migrateToCircuitIds));
+
+        migrations.add(SchemaMigrator.migration(12, "circuit_blobs table", (db, migrator) ->
+                createCircuitBlobs(db)));
+
+        migrations.add(SchemaMigrator.migration(13, "index for paging circuits by last_modified", (db, migrator) -> {
+            // Keyset paging compares last_modified, which must not be NULL
+            db.execSQL("UPDATE circuits SET last_modified = IFNULL(created_date, '0') WHERE last_modified IS NULL");
+            db.execSQL("create INDEX IF NOT EXISTS idx_circuits_user_modified ON circuits(username, last_modified, id)");
+        }));
+
+        migrations.add(SchemaMigrator.migration(14, "per-circuit summary counters", (db, migrator) -> {
+            for (int i = 0; i < CIRCUIT_TABLES.length; i++) {
+                db.execSQL("ALTER TABLE circuits ADD COLUMN " + COUNT_COLUMNS[i] + " INTEGER NOT NULL DEFAULT 0");
+                db.execSQL("UPDATE circuits SET " + COUNT_COLUMNS[i] + " = (SELECT COUNT(*) FROM " +
+                        CIRCUIT_TABLES[i] + " t WHERE t.circuit_id = circuits.id)");
+                migrator.progress(i + 1, CIRCUIT_TABLES.length);
+            }
+            createCircuitCounters(db);
+        }));
+
+        migrations.add(SchemaMigrator.migration(15, "content hashes and shared circuit contents", (db, migrator) -> {
+            db.execSQL("ALTER TABLE circuits ADD COLUMN content_hash TEXT");
+            db.execSQL("ALTER TABLE circuits ADD COLUMN shared_from INTEGER REFERENCES circuits(id)");
+            createCircuitSharing(db);
+        }));
+
+        migrations.add(SchemaMigrator.migration(16, "circuit_features search index", (db, migrator) -> {
+            createCircuitFeatures(db);
+            // Nothing is indexed yet; a cleared hash makes CircuitIndex index the circuit
+            db.execSQL("UPDATE circuits SET content_hash = NULL");
+        }));
+
+        return migrations;
+    }
+
+    /**
+     * Version 11 layout of the per-circuit tables. Rows point at circuits(id); each UNIQUE
+     * constraint leads with circuit_id and carries every column the load queries read, so
+     * loading a circuit is a range scan of one index with no table lookups.
+     */
+    private static void createCircuitTables(SQLiteDatabase MyDB) {
+        MyDB.execSQL("create Table inputs(" +
+                "id INTEGER primary key AUTOINCREMENT, " +
+                "circuit_id INTEGER NOT NULL, " +
+                "name TEXT, " +
+                "section INTEGER, " +
+                "row_pos INTEGER, " +
+                "column_pos INTEGER, " +
+                "UNIQUE(circuit_id, name), " +
+                "FOREIGN KEY (circuit_id) REFERENCES circuits(id))");
+        MyDB.execSQL("create INDEX idx_inputs_circuit ON inputs(circuit_id, name, section, row_pos, column_pos)");
+
+        MyDB.execSQL("create Table outputs(" +
+                "id INTEGER primary key AUTOINCREMENT, " +
+                "circuit_id INTEGER NOT NULL, " +
+                "section INTEGER, " +
+                "row_pos INTEGER, " +
+                "column_pos INTEGER, " +
+                "UNIQUE(circuit_id, section, row_pos, column_pos), " +
+                "FOREIGN KEY (circuit_id) REFERENCES circuits(id))");
+
+        MyDB.execSQL("create Table ics(" +
+                "id INTEGER primary key AUTOINCREMENT, " +
+                "circuit_id INTEGER NOT NULL, " +
+                "ic_type TEXT, " +
+                "section INTEGER, " +
+                "row_pos INTEGER, " +
+                "column_pos INTEGER, " +
+                "UNIQUE(circuit_id, ic_type, section, row_pos, column_pos), " +
+                "FOREIGN KEY (circuit_id) REFERENCES circuits(id))");
+
+        MyDB.execSQL("create Table power_components(" +
+                "id INTEGER primary key AUTOINCREMENT, " +
+                "circuit_id INTEGER NOT NULL, " +
+                "value INTEGER NOT NULL CHECK (value IN (1, -2)), " +
+                "section INTEGER NOT NULL, " +
+                "row_pos INTEGER NOT NULL, " +
+                "column_pos INTEGER NOT NULL, " +
+                "UNIQUE(circuit_id, section, row_pos, column_pos), " +
+                "FOREIGN KEY (circuit_id) REFERENCES circuits(id))");
+        // Covers the all/VCC/GND loads, which read value alongside the position
+        MyDB.execSQL("create INDEX idx_power_components_circuit ON power_components(circuit_id, section, row_pos, column_pos, value)");
+
+        MyDB.execSQL("create Table wires(" +
+                "id INTEGER primary key AUTOINCREMENT, " +
+                "circuit_id INTEGER NOT NULL, " +
+                "src_section INTEGER NOT NULL, " +
+                "src_row INTEGER NOT NULL, " +
+                "src_column INTEGER NOT NULL, " +
+                "dst_section INTEGER NOT NULL, " +
+                "dst_row INTEGER NOT NULL, " +
+                "dst_column INTEGER NOT NULL, " +
+                "UNIQUE(circuit_id, src_section, src_row, src_column, dst_section, dst_row, dst_column), " +
+                "FOREIGN KEY (circuit_id) REFERENCES circuits(id))");
+        // Lookups by the destination end ("wires connected to")
+        MyDB.execSQL("create INDEX idx_wires_dst ON wires(circuit_id, dst_section, dst_row, dst_column)");
+    }
+
+    /**
+     * One encoded snapshot (CircuitCodec) per circuit. Triggers drop a circuit's snapshot as
+     * soon as any of its rows change, so a snapshot that exists always matches the tables.
+     */
+    private static void createCircuitBlobs(SQLiteDatabase MyDB) {
+        MyDB.execSQL("create Table IF NOT EXISTS circuit_blobs(" +
+                "circuit_id INTEGER primary key, " +
+                "format INTEGER NOT NULL, " +
+                "data BLOB NOT NULL, " +
+                "FOREIGN KEY (circuit_id) REFERENCES circuits(id))");
+
+        for (String table : CIRCUIT_TABLES) {
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_insert_stales_blob AFTER INSERT ON " + table +
+                    " BEGIN DELETE FROM circuit_blobs WHERE circuit_id = NEW.circuit_id; END");
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_delete_stales_blob AFTER DELETE ON " + table +
+                    " BEGIN DELETE FROM circuit_blobs WHERE circuit_id = OLD.circuit_id; END");
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_update_stales_blob AFTER UPDATE ON " + table +
+                    " BEGIN DELETE FROM circuit_blobs WHERE circuit_id IN (OLD.circuit_id, NEW.circuit_id); END");
+        }
+    }
+
+    /**
+     * Triggers keeping the count columns of circuits equal to the number of rows each circuit
+     * has in CIRCUIT_TABLES, in the same transaction as the write that changes them. Rows
+     * ignored by INSERT OR IGNORE fire nothing, so the counts stay exact.
+     */
+    private static void createCircuitCounters(SQLiteDatabase MyDB) {
+        for (int i = 0; i < CIRCUIT_TABLES.length; i++) {
+            String table = CIRCUIT_TABLES[i];
+            String column = COUNT_COLUMNS[i];
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_insert_counts AFTER INSERT ON " + table +
+                    " BEGIN UPDATE circuits SET " + column + " = " + column + " + 1 WHERE id = NEW.circuit_id; END");
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_delete_counts AFTER DELETE ON " + table +
+                    " BEGIN UPDATE circuits SET " + column + " = " + column + " - 1 WHERE id = OLD.circuit_id; END");
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_move_counts AFTER UPDATE OF circuit_id ON " + table +
+                    " WHEN OLD.circuit_id IS NOT NEW.circuit_id" +
+                    " BEGIN UPDATE circuits SET " + column + " = " + column + " - 1 WHERE id = OLD.circuit_id;" +
+                    " UPDATE circuits SET " + column + " = " + column + " + 1 WHERE id = NEW.circuit_id; END");
+        }
+    }
+
+    /**
+     * Copy-on-write circuit contents. A circuit whose shared_from is set has no rows of its own
+     * and reads those of circuit shared_from, which never shares in turn. Writers go through
+     * findWritableCircuitId, which gives circuits their own rows before they change; the guard
+     * triggers reject any write that skips it. content_hash (CircuitCodec.contentHash) is
+     * cleared by any change to a circuit's rows.
+     */
+    private static void createCircuitSharing(SQLiteDatabase MyDB) {
+        MyDB.execSQL("create INDEX IF NOT EXISTS idx_circuits_shared_from ON circuits(shared_from)");
+        MyDB.execSQL("create INDEX IF NOT EXISTS idx_circuits_content_hash ON circuits(content_hash)");
+
+        String shared = "EXISTS (SELECT 1 FROM circuits WHERE id = %1$s AND shared_from IS NOT NULL) " +
+                "OR EXISTS (SELECT 1 FROM circuits WHERE shared_from = %1$s)";
+        String reject = " BEGIN SELECT RAISE(ABORT, 'circuit contents are shared'); END";
+        for (String table : CIRCUIT_TABLES) {
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_insert_guards_shared BEFORE INSERT ON " + table +
+                    " WHEN " + String.format(shared, "NEW.circuit_id") + reject);
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_delete_guards_shared BEFORE DELETE ON " + table +
+                    " WHEN " + String.format(shared, "OLD.circuit_id") + reject);
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_update_guards_shared BEFORE UPDATE ON " + table +
+                    " WHEN " + String.format(shared, "OLD.circuit_id") + " OR " + String.format(shared, "NEW.circuit_id") + reject);
+
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_insert_stales_hash AFTER INSERT ON " + table +
+                    " BEGIN UPDATE circuits SET content_hash = NULL WHERE id = NEW.circuit_id; END");
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_delete_stales_hash AFTER DELETE ON " + table +
+                    " BEGIN UPDATE circuits SET content_hash = NULL WHERE id = OLD.circuit_id; END");
+            MyDB.execSQL("create TRIGGER IF NOT EXISTS " + table + "_update_stales_hash AFTER UPDATE ON " + table +
+                    " BEGIN UPDATE circuits SET content_hash = NULL WHERE id IN (OLD.circuit_id, NEW.circuit_id); END");
+        }
+    }
+
+    /**
+     * Search index of CircuitFeatures terms, maintained by CircuitIndex. The primary key leads
+     * with feature, so finding the circuits with a feature reads one index range.
+     */
+    private static void createCircuitFeatures(SQLiteDatabase MyDB) {
+        MyDB.execSQL("create Table IF NOT EXISTS circuit_features(" +
+                "feature TEXT NOT NULL, " +
+                "circuit_id INTEGER NOT NULL, " +
+                "PRIMARY KEY (feature, circuit_id), " +
+                "FOREIGN KEY (circuit_id) REFERENCES circuits(id))");
+        MyDB.execSQL("create INDEX IF NOT EXISTS idx_circuit_features_circuit ON circuit_features(circuit_id)");
+    }
+
+    /**
+     * Rebuild the per-circuit tables around circuit_id. Rows whose circuit has no circuits
+     * entry get one, and duplicate circuit names resolve to the oldest id.
+     */
+    private static void migrateToCircuitIds(SQLiteDatabase MyDB, SchemaMigrator migrator) {
+        String[] copyColumns = CONTENT_COLUMNS;
+        String now = String.valueOf(System.currentTimeMillis());
+
+        MyDB.execSQL("create INDEX IF NOT EXISTS idx_circuits_user_name ON circuits(username, circuit_name, id)");
+
+        for (String table : CIRCUIT_TABLES) {
+            MyDB.execSQL("INSERT INTO circuits(circuit_name, username, created_date, last_modified) " +
+                    "SELECT DISTINCT t.circuit_name, t.username, ?, ? FROM " + table + " t " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM circuits c " +
+                    "WHERE c.username = t.username AND c.circuit_name = t.circuit_name)",
+                    new Object[]{now, now});
+            MyDB.execSQL("ALTER TABLE " + table + " RENAME TO " + table + "_v10");
+        }
 
-                System.out.println("Added wires table during upgrade to version 10");
-            } catch (Exception e) {
-                System.err.println("Error adding wires table: " + e.getMessage());
+        createCircuitTables(MyDB);
+
+        // Copy-on-migrate: the old rows stay in the _v10 tables until they are all copied
+        for (int i = 0; i < CIRCUIT_TABLES.length; i++) {
+            String table = CIRCUIT_TABLES[i];
+            migrator.copyRows(MyDB, table + "_v10", table, "circuit_id, " + copyColumns[i],
+                    "(SELECT MIN(c.id) FROM circuits c " +
+                    "WHERE c.username = t.username AND c.circuit_name = t.circuit_name), " + copyColumns[i]);
+        }
+        for (String table : CIRCUIT_TABLES) {
+            MyDB.execSQL("DROP TABLE " + table + "_v10");
+        }
+
+        System.out.println("Migrated circuit tables to circuit_id references");
+    }
+
+    /**
+     * Id under which the rows of a user's circuit are stored, for reading them, or -1. For a
+     * clone that still shares its contents this is the circuit it was cloned from. With several
+     * circuits of the same name the oldest one wins, as it did when rows were keyed by name.
+     */
+    public long findCircuitId(String username, String circuitName) {
+        return queryForLong("SELECT IFNULL((SELECT IFNULL(shared_from, id) FROM circuits " +
+                "WHERE username = ? AND circuit_name = ? ORDER BY id LIMIT 1), -1)", username, circuitName);
+    }
+
+    /**
+     * Id of a user's circuit for changing its rows, or -1. If the circuit shares contents,
+     * with the circuit it was cloned from or with clones of itself, the clones get their own
+     * copy of the rows first, so the change affects this circuit only.
+     */
+    public long findWritableCircuitId(String username, String circuitName) {
+        long id = queryForLong("SELECT IFNULL(MIN(id), -1) FROM circuits WHERE username = ? AND circuit_name = ?",
+                username, circuitName);
+        if (id != -1 && queryForLong("SELECT EXISTS (SELECT 1 FROM circuits WHERE id = ? AND shared_from IS NOT NULL) " +
+                "OR EXISTS (SELECT 1 FROM circuits WHERE shared_from = ?)", id, id) != 0) {
+            SQLiteDatabase db = getWritableDatabase();
+            db.beginTransaction();
+            try {
+                long source = queryForLong("SELECT IFNULL((SELECT shared_from FROM circuits WHERE id = ?), -1)", id);
+                if (source != -1) {
+                    copyContents(db, id, source);
+                }
+                for (long clone : clonesOf(db, id)) {
+                    copyContents(db, clone, id);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
             }
         }
+        return id;
+    }
 
-        System.out.println("Database upgrade completed");
+    /**
+     * Like findWritableCircuitId, but creates the circuits row when the circuit has not been
+     * saved yet, so components placed before that still have a circuit to belong to.
+     */
+    public long requireCircuitId(String username, String circuitName) {
+        long id = findWritableCircuitId(username, circuitName);
+        if (id != -1) return id;
+
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        return executeInsert("INSERT INTO circuits(circuit_name, username, created_date, last_modified) " +
+                "VALUES (?, ?, ?, ?)", circuitName, username, timestamp, timestamp);
+    }
+
+    /**
+     * Make the rows of one circuit in table match rows, writing only the difference. Each
+     * entry of rows holds values for columns, which together identify a row; stored rows with
+     * no match are deleted and new ones inserted, all in one transaction. Returns false and
+     * leaves the table unchanged if anything fails.
+     */
+    public boolean syncCircuitRows(String table, long circuitId, String[] columns, List<Object[]> rows) {
+        String columnList = String.join(", ", columns);
+        SQLiteDatabase db = getWritableDatabase();
+
+        // Stored rows by key
+        Map<String, Long> stored = new HashMap<>();
+        Cursor cursor = db.rawQuery("SELECT id, " + columnList + " FROM " + table + " WHERE circuit_id = ?",
+                new String[]{String.valueOf(circuitId)});
+        try {
+            while (cursor.moveToNext()) {
+                Object[] key = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    key[i] = cursor.getString(i + 1);
+                }
+                stored.put(rowKey(key), cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<Object[]> inserts = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Object[] row : rows) {
+            String key = rowKey(row);
+            if (seen.add(key) && stored.remove(key) == null) {
+                inserts.add(row);
+            }
+        }
+        if (inserts.isEmpty() && stored.isEmpty()) return true;
+
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 0; i < columns.length; i++) placeholders.append(", ?");
+        String insertSql = "INSERT OR IGNORE INTO " + table + "(circuit_id, " + columnList + ") " +
+                "VALUES (" + placeholders + ")";
+        String deleteSql = "DELETE FROM " + table + " WHERE id = ?";
+
+        db.beginTransaction();
+        try {
+            // Deletes first, so a row that moved does not collide with its old self
+            for (long id : stored.values()) {
+                executeUpdateDelete(deleteSql, id);
+            }
+            for (Object[] row : inserts) {
+                Object[] args = new Object[row.length + 1];
+                args[0] = circuitId;
+                System.arraycopy(row, 0, args, 1, row.length);
+                executeInsert(insertSql, args);
+            }
+            db.setTransactionSuccessful();
+            System.out.println("Synced " + table + " for circuit " + circuitId + ": " + inserts.size() +
+                    " inserted, " + stored.size() + " deleted");
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error syncing " + table + ": " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Values compare as text, the way they come back from a cursor
+    private static String rowKey(Object[] values) {
+        StringBuilder key = new StringBuilder();
+        for (Object value : values) {
+            key.append(value).append('\u0001');
+        }
+        return key.toString();
+    }
+
+    private static List<Long> clonesOf(SQLiteDatabase db, long circuitId) {
+        List<Long> clones = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT id FROM circuits WHERE shared_from = ?",
+                new String[]{String.valueOf(circuitId)});
+        try {
+            while (cursor.moveToNext()) {
+                clones.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return clones;
+    }
+
+    // Give clone its own copy of the rows of source; the caller holds a transaction
+    private static void copyContents(SQLiteDatabase db, long clone, long source) {
+        String[] cloneArg = {String.valueOf(clone)};
+        ContentValues unshared = new ContentValues();
+        unshared.putNull("shared_from");
+        for (String column : COUNT_COLUMNS) {
+            unshared.put(column, 0); // counted up again by the inserts below
+        }
+        db.update("circuits", unshared, "id = ?", cloneArg);
+
+        for (int i = 0; i < CIRCUIT_TABLES.length; i++) {
+            db.execSQL("INSERT INTO " + CIRCUIT_TABLES[i] + "(circuit_id, " + CONTENT_COLUMNS[i] + ") " +
+                    "SELECT ?, " + CONTENT_COLUMNS[i] + " FROM " + CIRCUIT_TABLES[i] + " WHERE circuit_id = ?",
+                    new Object[]{clone, source});
+        }
+        // Same contents as before, so the hash the inserts cleared and the features still hold
+        db.execSQL("UPDATE circuits SET content_hash = (SELECT content_hash FROM circuits WHERE id = ?) WHERE id = ?",
+                new Object[]{source, clone});
+        db.execSQL("INSERT OR IGNORE INTO circuit_features(feature, circuit_id) " +
+                "SELECT feature, ? FROM circuit_features WHERE circuit_id = ?", new Object[]{clone, source});
+        System.out.println("Copied contents of circuit " + source + " to its clone " + clone);
+    }
+
+    /**
+     * Delete the inputs, outputs, ICs, power pins, wires, snapshot and search features of every
+     * circuit matching circuitWhere (a condition on the circuits table; null for all circuits).
+     * Clones of those circuits that are not deleted with them get their own copy of the rows first.
+     */
+    public static void deleteCircuitContents(SQLiteDatabase db, String circuitWhere, String[] whereArgs) {
+        // Deleted circuits stop sharing; they have no rows of their own to lose
+        ContentValues unshared = new ContentValues();
+        unshared.putNull("shared_from");
+        db.update("circuits", unshared, circuitWhere, whereArgs);
+        if (circuitWhere != null) {
+            List<long[]> clones = new ArrayList<>();
+            Cursor cursor = db.rawQuery("SELECT id, shared_from FROM circuits WHERE shared_from IN " +
+                    "(SELECT id FROM circuits WHERE " + circuitWhere + ")", whereArgs);
+            try {
+                while (cursor.moveToNext()) {
+                    clones.add(new long[]{cursor.getLong(0), cursor.getLong(1)});
+                }
+            } finally {
+                cursor.close();
+            }
+            for (long[] clone : clones) {
+                copyContents(db, clone[0], clone[1]);
+            }
+        }
+
+        for (String table : CIRCUIT_TABLES) {
+            if (circuitWhere == null) {
+                db.delete(table, null, null);
+            } else {
+                db.delete(table, "circuit_id IN (SELECT id FROM circuits WHERE " + circuitWhere + ")", whereArgs);
+            }
+        }
+        for (String table : new String[]{"circuit_blobs", "circuit_features"}) {
+            if (circuitWhere == null) {
+                db.delete(table, null, null);
+            } else {
+                db.delete(table, "circuit_id IN (SELECT id FROM circuits WHERE " + circuitWhere + ")", whereArgs);
+            }
+        }
     }
 
     // User management methods
@@ -223,7 +712,6 @@ public class DBHelper extends SQLiteOpenHelper {
         contentValues.put("username", username);
         contentValues.put("password", password);
         long result = MyDB.insert("users", null, contentValues);
-        MyDB.close();
         if (result == -1) return false;
         else return true;
     }
@@ -238,7 +726,6 @@ public class DBHelper extends SQLiteOpenHelper {
         Cursor cursor = MyDB.rawQuery("Select * from users where username = ?", new String[]{username});
         boolean exists = cursor.getCount() > 0;
         cursor.close();
-        MyDB.close();
         return exists;
     }
 
@@ -247,7 +734,6 @@ public class DBHelper extends SQLiteOpenHelper {
         Cursor cursor = MyDB.rawQuery("Select * from users where username = ? and password = ?", new String[]{username, password});
         boolean exists = cursor.getCount() > 0;
         cursor.close();
-        MyDB.close();
         return exists;
     }
 
@@ -262,14 +748,6 @@ public class DBHelper extends SQLiteOpenHelper {
         } catch (Exception e) {
             System.err.println("Error updating password for user " + username + ": " + e.getMessage());
             return false;
-        } finally {
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    System.err.println("Error closing database: " + e.getMessage());
-                }
-            }
         }
     }
 
@@ -288,7 +766,6 @@ public class DBHelper extends SQLiteOpenHelper {
         System.out.println("=====================");
 
         cursor.close();
-        db.close();
     }
 
     public void listAllTables() {
@@ -314,7 +791,6 @@ public class DBHelper extends SQLiteOpenHelper {
             System.err.println("Error listing tables: " + e.getMessage());
             e.printStackTrace();
         } finally {
-            // Always close cursor first, then database
             if (cursor != null) {
                 try {
                     cursor.close();
@@ -322,13 +798,6 @@ public class DBHelper extends SQLiteOpenHelper {
                     System.err.println("Error closing cursor: " + e.getMessage());
                 }
             }
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    System.err.println("Error closing database: " + e.getMessage());
-                }
-            }
         }
     }
 
@@ -363,7 +832,6 @@ public class DBHelper extends SQLiteOpenHelper {
             System.err.println("Error showing table structure for " + tableName + ": " + e.getMessage());
             e.printStackTrace();
         } finally {
-            // Always close cursor first, then database
             if (cursor != null) {
                 try {
                     cursor.close();
@@ -371,13 +839,6 @@ public class DBHelper extends SQLiteOpenHelper {
                     System.err.println("Error closing cursor: " + e.getMessage());
                 }
             }
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    System.err.println("Error closing database: " + e.getMessage());
-                }
-            }
         }
     }
 
@@ -419,7 +880,6 @@ public class DBHelper extends SQLiteOpenHelper {
             System.err.println("Error showing table data for " + tableName + ": " + e.getMessage());
             e.printStackTrace();
         } finally {
-            // Always close cursor first, then database
             if (cursor != null) {
                 try {
                     cursor.close();
@@ -427,13 +887,6 @@ public class DBHelper extends SQLiteOpenHelper {
                     System.err.println("Error closing cursor: " + e.getMessage());
                 }
             }
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    System.err.println("Error closing database: " + e.getMessage());
-                }
-            }
         }
     }
 
@@ -449,8 +902,6 @@ public class DBHelper extends SQLiteOpenHelper {
             System.out.println("Version: " + db.getVersion());
         } catch (Exception e) {
             System.err.println("Error getting database version: " + e.getMessage());
-        } finally {
-            if (db != null) db.close();
         }
 
         System.out.println("=".repeat(50));
@@ -488,7 +939,6 @@ public class DBHelper extends SQLiteOpenHelper {
             System.err.println("Error checking if table " + tableName + " exists: " + e.getMessage());
             return false;
         } finally {
-            // Always close cursor first, then database
             if (cursor != null) {
                 try {
                     cursor.close();
@@ -496,13 +946,6 @@ public class DBHelper extends SQLiteOpenHelper {
                     System.err.println("Error closing cursor: " + e.getMessage());
                 }
             }
-            if (db != null) {
-                try {
-                    db.close();
-                } catch (Exception e) {
-                    System.err.println("Error closing database: " + e.getMessage());
-                }
-            }
         }
     }
 
@@ -523,11 +966,15 @@ public class DBHelper extends SQLiteOpenHelper {
         db.execSQL("DROP TABLE IF EXISTS power_components");
         db.execSQL("DROP TABLE IF EXISTS wires");
         db.execSQL("DROP TABLE IF EXISTS user_circuit");
+        db.execSQL("DROP TABLE IF EXISTS circuit_blobs");
+        db.execSQL("DROP TABLE IF EXISTS circuit_features");
 
         // Recreate tables
         onCreate(db);
 
-        db.close();
+        // Circuit ids start again from 1, so journals of the old circuits must not survive
+        EditJournal.deleteAll(EditJournal.directory(context));
+
         System.out.println("✅ Database recreated successfully!");
     }
 }
\ No newline at end of file
@@ -0,0 +1,205 @@
+package com.example.breadboard;
+
+import com.example.breadboard.InputManager.InputInfo;
+import com.example.breadboard.logic.ICGateInfo;
+import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.model.Pins;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
+import com.example.breadboard.sim.BoardModel;
+import com.example.breadboard.sim.EditLog;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Undo and redo for board edits. The managers report every placement and removal here; the
+ * EditLog keeps them as invertible steps over a persistent BoardModel, and undo or redo
+ * performs the single inverse edit through the same managers the user would go through.
+ */
+public class EditHistory {
+    private ICSetup icSetup;
+    private WireManager wireManager;
+    private InputManager inputManager;
+    private OutputManager outputManager;
+    private ComponentManager componentManager;
+    private RemoveConnection removeConnection;
+
+    private List<ICGateInfo> icGateObjects;
+    private List<Pins> wires;
+    private Map<Coordinate, InputInfo> inputNames;
+    private List<Coordinate> outputs;
+    private List<Coordinate> vccPins;
+    private List<Coordinate> gndPins;
+
+    private final EditLog log = new EditLog();
+    private boolean performing = false;
+
+    public EditHistory(ICSetup icSetup, WireManager wireManager, InputManager inputManager,
+                       OutputManager outputManager, ComponentManager componentManager,
+                       RemoveConnection removeConnection, List<ICGateInfo> icGateObjects,
+                       List<Pins> wires, Map<Coordinate, InputInfo> inputNames,
+                       List<Coordinate> outputs, List<Coordinate> vccPins, List<Coordinate> gndPins) {
+        this.icSetup = icSetup;
+        this.wireManager = wireManager;
+        this.inputManager = inputManager;
+        this.outputManager = outputManager;
+        this.componentManager = componentManager;
+        this.removeConnection = removeConnection;
+        this.icGateObjects = icGateObjects;
+        this.wires = wires;
+        this.inputNames = inputNames;
+        this.outputs = outputs;
+        this.vccPins = vccPins;
+        this.gndPins = gndPins;
+    }
+
+    /** Called by the managers after an edit; ignored while undo/redo is replaying one. */
+    public void record(BoardEdit edit) {
+        if (performing) return;
+        log.record(edit);
+    }
+
+    /**
+     * Undo the last edit; false if there was none or the board refused it. A refused edit
+     * leaves the step on the undo stack, or resets the history if the board changed anyway.
+     */
+    public boolean undo() {
+        BoardEdit edit = log.undo();
+        if (edit == null) return false;
+        if (perform(edit)) return true;
+        log.redo();
+        resync();
+        return false;
+    }
+
+    /** Redo the last undone edit; false if there was none or the board refused it, as undo(). */
+    public boolean redo() {
+        BoardEdit edit = log.redo();
+        if (edit == null) return false;
+        if (perform(edit)) return true;
+        log.undo();
+        resync();
+        return false;
+    }
+
+    public boolean canUndo() {
+        return log.canUndo();
+    }
+
+    public boolean canRedo() {
+        return log.canRedo();
+    }
+
+    /** Drop all history and take the current board as the starting point, e.g. after loading. */
+    public void reset() {
+        log.reset(boardModel());
+    }
+
+    // The board as the managers hold it
+    private BoardModel boardModel() {
+        BoardModel model = BoardModel.empty();
+        for (ICGateInfo info : icGateObjects) {
+            model = model.apply(BoardEdit.add(BoardElement.ic(info.type, info.position)));
+        }
+        for (Pins wire : wires) {
+            model = model.apply(BoardEdit.add(BoardElement.wire(wire.getSrc(), wire.getDst())));
+        }
+        for (Map.Entry<Coordinate, InputInfo> entry : inputNames.entrySet()) {
+            model = model.apply(BoardEdit.add(BoardElement.input(entry.getValue().name, entry.getKey())));
+        }
+        for (Coordinate coord : outputs) {
+            model = model.apply(BoardEdit.add(BoardElement.output(coord)));
+        }
+        for (Coordinate coord : vccPins) {
+            model = model.apply(BoardEdit.add(BoardElement.power(ComponentToDB.VCC, coord)));
+        }
+        for (Coordinate coord : gndPins) {
+            model = model.apply(BoardEdit.add(BoardElement.power(ComponentToDB.GND, coord)));
+        }
+        return model;
+    }
+
+    // After a refused edit: keep the history only if the log still matches the board
+    private void resync() {
+        BoardModel board = boardModel();
+        if (!board.sameElements(log.getModel())) {
+            System.err.println("EditHistory: board and history diverged; history reset");
+            log.reset(board);
+        }
+    }
+
+    /**
+     * Perform edits recovered from a journal, skipping those the board already reflects, and
+     * take the result as the starting point. Returns the number the board took.
+     */
+    public int replay(List<BoardEdit> edits) {
+        BoardModel model = log.getModel();
+        int performed = 0;
+        for (BoardEdit edit : edits) {
+            for (BoardEdit step : model.steps(edit)) {
+                if (!model.changes(step)) continue;
+                if (perform(step)) {
+                    model = model.apply(step);
+                    performed++;
+                } else {
+                    // Later edits are checked against what the board really holds
+                    model = boardModel();
+                }
+            }
+        }
+        reset();
+        return performed;
+    }
+
+    public EditLog getLog() {
+        return log;
+    }
+
+    // Perform edit through the managers; true if the board now reflects it
+    private boolean perform(BoardEdit edit) {
+        BoardElement element = edit.element;
+        Coordinate position = new Coordinate(element.position.s, element.position.r, element.position.c);
+        performing = true;
+        try {
+            switch (element.type) {
+                case BoardElement.IC:
+                    if (edit.add) icSetup.addICGate(position, element.label);
+                    else icSetup.removeICByCoord(position);
+                    break;
+                case BoardElement.WIRE: {
+                    Coordinate end = new Coordinate(element.end.s, element.end.r, element.end.c);
+                    if (edit.add) wireManager.connectPins(position, end);
+                    else wireManager.disconnectPins(position, end);
+                    break;
+                }
+                case BoardElement.INPUT:
+                    if (edit.add) inputManager.createNamedInput(position, element.label);
+                    else removeConnection.removeConnection(position);
+                    break;
+                case BoardElement.OUTPUT:
+                    if (edit.add) outputManager.addOutput(position);
+                    else removeConnection.removeConnection(position);
+                    break;
+                case BoardElement.POWER:
+                    if (edit.add) componentManager.addComponent(position, element.value);
+                    else removeConnection.removeConnection(position);
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            System.err.println("Error performing " + edit + ": " + e.getMessage());
+            return false;
+        } finally {
+            performing = false;
+        }
+        // The managers refuse some edits without throwing, e.g. an IC on an occupied slot
+        if (boardModel().contains(element) != edit.add) {
+            System.err.println("EditHistory: board refused " + edit);
+            return false;
+        }
+        System.out.println("EditHistory: performed " + edit);
+        return true;
+    }
+}
@@ -0,0 +1,398 @@
+package com.example.breadboard;
+
+import android.content.Context;
+
+import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
+import com.example.breadboard.sim.CircuitCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the edits made to one open circuit, so that nothing placed on the
+ * board is lost if the app is killed before the edits reach the tables. Appending only
+ * encodes the edit into memory; a background thread writes everything appended within
+ * SYNC_DELAY_MS with one write and one fsync.
+ *
+ * The file is the magic "BBJ" and a version byte, then one record per edit: a varint body
+ * length, the body (operation and element type in one byte, the packed pin as in CircuitCodec,
+ * then the wire end, power value or label) and a CRC-32 of the body. A record cut short by a
+ * crash fails its length or CRC check; reading stops there and the tail is cut off.
+ *
+ * The journal holds the edits made since its records were last compacted into the tables:
+ * mark() names the end of what has been appended, and discardThrough(mark) drops those
+ * records once the board they produced has been stored.
+ */
+public class EditJournal {
+    public static final int VERSION = 1;
+    public static final long SYNC_DELAY_MS = 200;
+
+    private static final byte[] MAGIC = {'B', 'B', 'J'};
+    private static final int HEADER_LENGTH = MAGIC.length + 1;
+    private static final int REMOVE = 0x80;
+
+    private static final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "EditJournal-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+
+    // Guarded by this
+    private FileOutputStream out;
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long written;            // bytes in the file, header included
+    private long discarded = 0;      // record bytes dropped by discardThrough, so marks stay valid
+    private int recordsSinceMark = 0;
+    private boolean scheduled = false;
+    private boolean closed = false;
+
+    private EditJournal(File file) throws IOException {
+        this.file = file;
+        if (!file.exists() || !hasHeader(file)) {
+            if (file.exists()) {
+                System.err.println("EditJournal: " + file.getName() + " is not a journal of this version; starting over");
+            }
+            writeFile(file, new byte[0], 0);
+        }
+        this.written = file.length();
+        this.out = new FileOutputStream(file, true);
+    }
+
+    /** Where the journals of the app's circuits are kept. */
+    public static File directory(Context context) {
+        return new File(context.getFilesDir(), "journals");
+    }
+
+    /**
+     * The journal of a circuit by its circuits row id, created empty when it does not exist
+     * yet. Every path that deletes circuits deletes their journals too (deleteAll when the
+     * whole database is recreated and ids start over), so a new circuit never picks up the
+     * journal of an old one.
+     */
+    public static EditJournal open(File directory, long circuitId) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + directory);
+        }
+        return new EditJournal(new File(directory, fileName(circuitId)));
+    }
+
+    /** Delete the journal of a circuit, e.g. when the circuit is deleted. */
+    public static boolean delete(File directory, long circuitId) {
+        File file = new File(directory, fileName(circuitId));
+        return !file.exists() || file.delete();
+    }
+
+    /** Delete every journal, e.g. when the database and its circuit ids are recreated. */
+    public static boolean deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        boolean deleted = true;
+        if (files != null) {
+            for (File file : files) {
+                deleted &= file.delete();
+            }
+        }
+        return deleted;
+    }
+
+    private static String fileName(long circuitId) {
+        return "circuit-" + circuitId + ".bbj";
+    }
+
+    /** Add an edit to the journal; it reaches the disk within SYNC_DELAY_MS. */
+    public synchronized void append(BoardEdit edit) {
+        if (closed) return;
+        byte[] body;
+        try {
+            body = encode(edit);
+        } catch (IllegalArgumentException e) {
+            System.err.println("EditJournal: cannot record " + edit + ": " + e.getMessage());
+            return;
+        }
+        writeVarint(pending, body.length);
+        pending.write(body, 0, body.length);
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        writeInt(pending, (int) crc.getValue());
+        recordsSinceMark++;
+
+        if (!scheduled) {
+            scheduled = true;
+            syncer.schedule(this::sync, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Write and fsync everything appended so far. Returns false if that failed. */
+    public synchronized boolean sync() {
+        scheduled = false;
+        if (closed || pending.size() == 0) return true;
+        try {
+            pending.writeTo(out);
+            out.getFD().sync();
+            written += pending.size();
+            pending.reset();
+            return true;
+        } catch (IOException e) {
+            // The records stay pending and go out with the next sync
+            System.err.println("EditJournal: error writing " + file.getName() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Every edit in the journal, oldest first. A damaged or partly written tail is cut off
+     * the file so later appends follow the last good record.
+     */
+    public synchronized List<BoardEdit> readAll() {
+        List<BoardEdit> edits = new ArrayList<>();
+        if (closed) return edits;
+        sync();
+
+        byte[] data;
+        try {
+            data = readFile(file);
+        } catch (IOException e) {
+            System.err.println("EditJournal: error reading " + file.getName() + ": " + e.getMessage());
+            return edits;
+        }
+
+        int position = HEADER_LENGTH;
+        while (position < data.length) {
+            int[] cursor = {position};
+            try {
+                int length = readVarint(data, cursor);
+                int start = cursor[0];
+                if (length <= 0 || length > data.length - start - 4) break;
+                CRC32 crc = new CRC32();
+                crc.update(data, start, length);
+                if ((int) crc.getValue() != readInt(data, start + length)) break;
+                edits.add(decode(data, start, start + length));
+                position = start + length + 4;
+            } catch (IllegalArgumentException e) {
+                break;
+            }
+        }
+
+        if (position < data.length) {
+            System.err.println("EditJournal: dropping " + (data.length - position) + " damaged bytes at the end of "
+                    + file.getName());
+            try {
+                out.close();
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(position);
+                    raf.getFD().sync();
+                }
+                out = new FileOutputStream(file, true);
+                written = position;
+            } catch (IOException e) {
+                System.err.println("EditJournal: error truncating " + file.getName() + ": " + e.getMessage());
+            }
+        }
+        return edits;
+    }
+
+    /** Position after everything appended so far, for discardThrough. */
+    public synchronized long mark() {
+        recordsSinceMark = 0;
+        return discarded + written + pending.size();
+    }
+
+    public synchronized int getRecordsSinceMark() {
+        return recordsSinceMark;
+    }
+
+    /** Whether any records have not been discarded yet. */
+    public synchronized boolean hasRecords() {
+        return written + pending.size() > HEADER_LENGTH;
+    }
+
+    /**
+     * Drop the records up to mark, keeping any appended after it; the file is rewritten
+     * beside the old one and renamed over it. Returns false if that failed.
+     */
+    public synchronized boolean discardThrough(long mark) {
+        if (closed || !sync()) return false;
+        long end = mark - discarded;
+        if (end <= HEADER_LENGTH) return true;
+        try {
+            byte[] data = readFile(file);
+            end = Math.min(end, data.length);
+            out.close();
+            writeFile(file, data, (int) end);
+            out = new FileOutputStream(file, true);
+            discarded += end - HEADER_LENGTH;
+            written = HEADER_LENGTH + data.length - end;
+            return true;
+        } catch (IOException e) {
+            System.err.println("EditJournal: error compacting " + file.getName() + ": " + e.getMessage());
+            try {
+                out = new FileOutputStream(file, true);
+            } catch (IOException reopen) {
+                closed = true;
+            }
+            return false;
+        }
+    }
+
+    /** Sync and close; appends after this are ignored. */
+    public synchronized void close() {
+        if (closed) return;
+        sync();
+        closed = true;
+        try {
+            out.close();
+        } catch (IOException e) {
+            System.err.println("EditJournal: error closing " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // Header followed by data[from..], written to a temporary file that replaces file
+    private static void writeFile(File file, byte[] data, int from) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temporary)) {
+            stream.write(MAGIC);
+            stream.write(VERSION);
+            stream.write(data, from, data.length - from);
+            stream.getFD().sync();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Cannot replace " + file.getName());
+        }
+    }
+
+    private static boolean hasHeader(File file) throws IOException {
+        try (FileInputStream stream = new FileInputStream(file)) {
+            byte[] header = new byte[HEADER_LENGTH];
+            if (stream.read(header) != HEADER_LENGTH) return false;
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (header[i] != MAGIC[i]) return false;
+            }
+            return header[MAGIC.length] == VERSION;
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            byte[] data = new byte[(int) raf.length()];
+            raf.readFully(data);
+            return data;
+        }
+    }
+
+    private static byte[] encode(BoardEdit edit) {
+        BoardElement element = edit.element;
+        ByteArrayOutputStream body = new ByteArrayOutputStream(8);
+        body.write(element.type | (edit.add ? 0 : REMOVE));
+        writeVarint(body, CircuitCodec.pack(element.position));
+        switch (element.type) {
+            case BoardElement.WIRE:
+                writeVarint(body, CircuitCodec.pack(element.end));
+                break;
+            case BoardElement.POWER:
+                writeVarint(body, (element.value << 1) ^ (element.value >> 31));
+                break;
+            case BoardElement.IC:
+            case BoardElement.INPUT:
+                // Length plus one, 0 for no label
+                if (element.label == null) {
+                    writeVarint(body, 0);
+                } else {
+                    byte[] label = element.label.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(body, label.length + 1);
+                    body.write(label, 0, label.length);
+                }
+                break;
+            default:
+                break;
+        }
+        return body.toByteArray();
+    }
+
+    private static BoardEdit decode(byte[] data, int start, int end) {
+        int[] cursor = {start + 1};
+        int type = data[start] & 0x7F;
+        boolean add = (data[start] & REMOVE) == 0;
+        Coordinate position = unpack(readVarint(data, cursor));
+        BoardElement element;
+        switch (type) {
+            case BoardElement.IC:
+                element = BoardElement.ic(readLabel(data, cursor, end), position);
+                break;
+            case BoardElement.WIRE:
+                element = BoardElement.wire(position, unpack(readVarint(data, cursor)));
+                break;
+            case BoardElement.INPUT:
+                element = BoardElement.input(readLabel(data, cursor, end), position);
+                break;
+            case BoardElement.OUTPUT:
+                element = BoardElement.output(position);
+                break;
+            case BoardElement.POWER: {
+                int value = readVarint(data, cursor);
+                element = BoardElement.power((value >>> 1) ^ -(value & 1), position);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown element type " + type);
+        }
+        if (cursor[0] != end) throw new IllegalArgumentException("Record has trailing bytes");
+        return add ? BoardEdit.add(element) : BoardEdit.remove(element);
+    }
+
+    private static Coordinate unpack(int pin) {
+        if (pin < 0) throw new IllegalArgumentException("Pin off the board");
+        return CircuitCodec.unpack(pin);
+    }
+
+    private static String readLabel(byte[] data, int[] cursor, int end) {
+        int length = readVarint(data, cursor);
+        if (length == 0) return null;
+        if (length - 1 > end - cursor[0]) throw new IllegalArgumentException("Label is truncated");
+        String label = new String(data, cursor[0], length - 1, StandardCharsets.UTF_8);
+        cursor[0] += length - 1;
+        return label;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] cursor) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (cursor[0] >= data.length) throw new IllegalArgumentException("Record is truncated");
+            int b = data[cursor[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Bad varint");
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        for (int shift = 24; shift >= 0; shift -= 8) out.write(value >>> shift);
+    }
+
+    private static int readInt(byte[] data, int position) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) value = value << 8 | (data[position + i] & 0xFF);
+        return value;
+    }
+}
@@ -1,15 +1,13 @@
 package com.example.breadboard;
 
 import android.content.Intent;
-import android.graphics.Color;
-import android.graphics.drawable.GradientDrawable;
 import android.os.Bundle;
 import android.view.View;
-import android.widget.LinearLayout;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.breadboard.CircuitToDB;
 import com.example.breadboard.CircuitToDB.CircuitData;
@@ -20,7 +18,8 @@ import java.util.List;
 public class HomeActivity extends AppCompatActivity {
 
     FloatingActionButton newCircuit;
-    LinearLayout circuitContainer;
+    RecyclerView circuitList;
+    private CircuitListAdapter circuitListAdapter;
     private int circuitCounter = 1;
     private CircuitToDB circuitToDB;
     private String currentUsername;
@@ -35,7 +34,7 @@ public class HomeActivity extends AppCompatActivity {
 
         getCurrentUsername();
 
-        loadUserCircuits();
+        // onResume loads the first page
 
         newCircuit.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -53,10 +52,30 @@ public class HomeActivity extends AppCompatActivity {
         loadUserCircuits();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        circuitListAdapter.release();
+    }
+
     private void initializeComponents() {
         newCircuit = (FloatingActionButton) findViewById(R.id.floatingBtn);
-        circuitContainer = (LinearLayout) findViewById(R.id.circuitContainer);
         circuitToDB = new CircuitToDB(this);
+
+        circuitList = (RecyclerView) findViewById(R.id.circuitList);
+        circuitList.setLayoutManager(new LinearLayoutManager(this));
+        circuitListAdapter = new CircuitListAdapter(circuitToDB, new CircuitListAdapter.Listener() {
+            @Override
+            public void onCircuitClicked(CircuitData circuit) {
+                openCircuit(circuit);
+            }
+
+            @Override
+            public void onCircuitLongClicked(CircuitData circuit) {
+                showCircuitOptions(circuit);
+            }
+        });
+        circuitList.setAdapter(circuitListAdapter);
     }
 
     private void getCurrentUsername() {
@@ -135,21 +154,12 @@ public class HomeActivity extends AppCompatActivity {
 
     private void loadUserCircuits() {
         try {
-            List<CircuitData> userCircuits = circuitToDB.getCircuitsForUser(currentUsername);
-
-            // Clear existing circuit items
-            circuitContainer.removeAllViews();
-
-            // Create UI items for each circuit
-            for (CircuitData circuit : userCircuits) {
-                createCircuitItemFromDatabase(circuit);
-            }
+            // Pages are read in the background as the list scrolls
+            circuitListAdapter.reload(currentUsername);
 
             // Update circuit counter for next circuit
             circuitCounter = circuitToDB.getNextCircuitNumber(currentUsername);
 
-            System.out.println("Loaded " + userCircuits.size() + " circuits for user: " + currentUsername);
-
         } catch (Exception e) {
             showToast("Error loading circuits");
             System.err.println("Error loading circuits: " + e.getMessage());
@@ -157,120 +167,65 @@ public class HomeActivity extends AppCompatActivity {
         }
     }
 
-    private void createCircuitItemFromDatabase(CircuitData circuitData) {
-        // Create the main container for the circuit item
-        LinearLayout circuitItem = new LinearLayout(this);
-        circuitItem.setOrientation(LinearLayout.VERTICAL);
-
-        // Set layout with margins
-        LinearLayout.LayoutParams itemParams = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.MATCH_PARENT,
-                LinearLayout.LayoutParams.WRAP_CONTENT
-        );
-        itemParams.setMargins(0, 0, 0, 50); // Bottom margin between items
-        circuitItem.setLayoutParams(itemParams);
-
-        // Create and configure
-        TextView circuitName = new TextView(this);
-        circuitName.setText(circuitData.circuitName);
-        circuitName.setTextSize(18);
-        circuitName.setTextColor(Color.parseColor("#000000"));
-        circuitName.setPadding(50, 70, 50, 37);
-
-        // Create the background drawable
-        GradientDrawable background = new GradientDrawable();
-        background.setShape(GradientDrawable.RECTANGLE);
-        background.setColor(Color.parseColor("#FFFAF0")); // Light cream color
-        background.setStroke(6, Color.parseColor("#000000")); // Black border
-        background.setCornerRadius(8); // Rounded corners
-
-        // Set the background to the TextView
-        circuitName.setBackground(background);
-
-        // Set layout parameters for the TextView
-        LinearLayout.LayoutParams textParams = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.MATCH_PARENT,
-                LinearLayout.LayoutParams.WRAP_CONTENT
-        );
-        circuitName.setLayoutParams(textParams);
-
-        circuitItem.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                UserAuthentication userAuth = UserAuthentication.getInstance(HomeActivity.this);
-                String verifiedUsername = userAuth.getCurrentUsername();
-
-                if (verifiedUsername == null) {
-                    showToast("Please log in again");
-                    logoutUser();
-                    return;
-                }
+    private void openCircuit(CircuitData circuitData) {
+        UserAuthentication userAuth = UserAuthentication.getInstance(HomeActivity.this);
+        String verifiedUsername = userAuth.getCurrentUsername();
 
-                Intent intent = new Intent(HomeActivity.this, MainActivity.class);
-                intent.putExtra("circuit_name", circuitData.circuitName);
-                intent.putExtra("circuit_id", circuitData.id);
-                intent.putExtra("username", verifiedUsername);
-
-                // Add debug logging
-                System.out.println("HomeActivity: Opening existing circuit with context:");
-                System.out.println("- Username: " + verifiedUsername);
-                System.out.println("- Circuit Name: " + circuitData.circuitName);
-                System.out.println("- Circuit ID: " + circuitData.id);
-
-                startActivity(intent);
-            }
-        });
+        if (verifiedUsername == null) {
+            showToast("Please log in again");
+            logoutUser();
+            return;
+        }
 
-        circuitItem.setOnLongClickListener(new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View v) {
-                showCircuitOptions(circuitData);
-                return true;
-            }
-        });
+        Intent intent = new Intent(HomeActivity.this, MainActivity.class);
+        intent.putExtra("circuit_name", circuitData.circuitName);
+        intent.putExtra("circuit_id", circuitData.id);
+        intent.putExtra("username", verifiedUsername); // Use verified username
 
-        circuitItem.addView(circuitName);
+        // Add debug logging
+        System.out.println("HomeActivity: Opening existing circuit with context:");
+        System.out.println("- Username: " + verifiedUsername);
+        System.out.println("- Circuit Name: " + circuitData.circuitName);
+        System.out.println("- Circuit ID: " + circuitData.id);
 
-        circuitContainer.addView(circuitItem);
+        startActivity(intent);
     }
 
     private void showCircuitOptions(CircuitData circuitData) {
         //show a simple delete confirmation
 
+        String[] options = {"Open", "Duplicate", "Delete"};
         android.app.AlertDialog.Builder builder = new android.app.AlertDialog.Builder(this);
-        builder.setTitle("Circuit Options")
-                .setMessage("What would you like to do with '" + circuitData.circuitName + "'?")
-                .setPositiveButton("Delete", (dialog, which) -> deleteCircuit(circuitData))
-                .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
-                .setNeutralButton("Open", (dialog, which) -> {
-                    UserAuthentication userAuth = UserAuthentication.getInstance(HomeActivity.this);
-                    String verifiedUsername = userAuth.getCurrentUsername();
-
-                    if (verifiedUsername == null) {
-                        showToast("Please log in again");
-                        logoutUser();
-                        return;
-                    }
-
-                    Intent intent = new Intent(HomeActivity.this, MainActivity.class);
-                    intent.putExtra("circuit_name", circuitData.circuitName);
-                    intent.putExtra("circuit_id", circuitData.id);
-                    intent.putExtra("username", verifiedUsername); // Use verified username
-
-                    System.out.println("HomeActivity: Opening circuit from options with context:");
-                    System.out.println("- Username: " + verifiedUsername);
-                    System.out.println("- Circuit Name: " + circuitData.circuitName);
-
-                    startActivity(intent);
+        builder.setTitle("'" + circuitData.circuitName + "'")
+                .setItems(options, (dialog, which) -> {
+                    if (which == 0) openCircuit(circuitData);
+                    else if (which == 1) duplicateCircuit(circuitData);
+                    else deleteCircuit(circuitData);
                 })
+                .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
                 .show();
     }
 
+    private void duplicateCircuit(CircuitData circuitData) {
+        // Shares the original's rows until one of them is edited, so this is instant
+        String copyName = circuitToDB.generateCopyName(currentUsername, circuitData.circuitName);
+        if (circuitToDB.duplicateCircuit(circuitData.id, copyName) != -1) {
+            showToast("Circuit duplicated as '" + copyName + "'");
+            loadUserCircuits(); // Refresh the UI
+        } else {
+            showToast("Failed to duplicate circuit");
+        }
+    }
+
     private void deleteCircuit(CircuitData circuitData) {
         android.app.AlertDialog.Builder builder = new android.app.AlertDialog.Builder(this);
         builder.setTitle("Delete Circuit")
                 .setMessage("Are you sure you want to delete '" + circuitData.circuitName + "'? This action cannot be undone.")
                 .setPositiveButton("Delete", (dialog, which) -> {
+                    if (circuitToDB.isUsedAsIC(circuitData.id)) {
+                        showToast("'" + circuitData.circuitName + "' is used as an IC in another circuit");
+                        return;
+                    }
                     boolean success = circuitToDB.deleteCircuit(circuitData.id);
                     if (success) {
                         showToast("Circuit '" + circuitData.circuitName + "' deleted successfully");
@@ -283,12 +238,6 @@ public class HomeActivity extends AppCompatActivity {
                 .show();
     }
 
-    private void createCircuitItem(String circuitName) {
-        // Create a temporary CircuitData object for display
-        CircuitData tempCircuitData = new CircuitData(0, circuitName, currentUsername, "", "");
-        createCircuitItemFromDatabase(tempCircuitData);
-    }
-
     private void showToast(String message) {
         Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
     }
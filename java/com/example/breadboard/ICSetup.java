@@ -16,13 +16,23 @@ import com.example.breadboard.logic.NAND;
 import com.example.breadboard.logic.NOR;
 import com.example.breadboard.logic.NOT;
 import com.example.breadboard.logic.OR;
+import com.example.breadboard.logic.SubcircuitIC;
 import com.example.breadboard.logic.XOR;
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
+import com.example.breadboard.sim.EvaluationMemo;
+import com.example.breadboard.sim.ICPinout;
+import com.example.breadboard.sim.Netlist;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ICSetup {
     private MainActivity mainActivity;
@@ -37,6 +47,10 @@ public class ICSetup {
     private List<Coordinate> gndPins;
     private List<ICGateInfo> icGateObjects;
     private ICToDB icToDB;
+    private PersistenceQueue persistenceQueue;
+    private CircuitLoader circuitLoader;
+    private final Map<ICGate, EvaluationMemo> evaluationMemos = new IdentityHashMap<>();
+    private static final ExecutorService subcircuitLister = Executors.newSingleThreadExecutor();
     private RelativeLayout breadboardParentLayout;
     private static boolean canDisplay = false;
 
@@ -73,25 +87,51 @@ public class ICSetup {
         this.icGateObjects = icGateObjects;
         this.addConnection = addConnection;
         this.icToDB = new ICToDB(mainActivity);
+        this.persistenceQueue = PersistenceQueue.getInstance(mainActivity);
+        this.circuitLoader = new CircuitLoader(mainActivity);
 
         clearInMemoryICData();
     }
 
     public void showICSelectionDialog(Coordinate coord) {
-        String[] icTypes = {"AND", "OR", "NOT", "NAND", "NOR", "XOR"};
+        // The user's other saved circuits can be placed as custom ICs; listed off the UI thread
+        final String username = mainActivity.currentUsername;
+        final String circuitName = mainActivity.currentCircuitName;
+        subcircuitLister.execute(() -> {
+            List<String> subcircuits = circuitLoader.getAvailableSubcircuits(username, circuitName);
+            mainActivity.runOnUiThread(() -> showICSelectionDialog(coord, subcircuits));
+        });
+    }
+
+    private void showICSelectionDialog(Coordinate coord, List<String> subcircuits) {
+        if (mainActivity.isFinishing()) return;
+        List<String> icTypes = new ArrayList<>(Arrays.asList("AND", "OR", "NOT", "NAND", "NOR", "XOR"));
+        for (String circuitName : subcircuits) {
+            icTypes.add(ICPinout.subcircuitType(circuitName));
+        }
+        String[] labels = new String[icTypes.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = ICPinout.isSubcircuit(icTypes.get(i))
+                    ? getICLabel(icTypes.get(i)) + " (custom)" : icTypes.get(i);
+        }
 
         AlertDialog.Builder builder = new AlertDialog.Builder(mainActivity);
         builder.setTitle("Select IC Type")
-                .setItems(icTypes, (dialog, which) -> {
-                    String icType = icTypes[which];
+                .setItems(labels, (dialog, which) -> {
+                    String icType = icTypes.get(which);
                     addICGate(coord, icType);
                 })
                 .show();
     }
 
+    // Text shown on the IC button; custom ICs show the circuit name
+    private String getICLabel(String icType) {
+        return ICPinout.isSubcircuit(icType) ? ICPinout.subcircuitName(icType) : icType;
+    }
+
     public void loadICGate(String icType, Coordinate coord) {
         Button icButton = new Button(mainActivity);
-        icButton.setText(icType);
+        icButton.setText(getICLabel(icType));
         icButton.setBackgroundResource(R.drawable.breadboard_ic);
         icButton.setTextColor(Color.WHITE);
         icButton.setTextSize(12);
@@ -187,7 +227,7 @@ public class ICSetup {
 
     public void addICGate(Coordinate coord, String icType) {
         Button icButton = new Button(mainActivity);
-        icButton.setText(icType);
+        icButton.setText(getICLabel(icType));
         icButton.setBackgroundResource(R.drawable.breadboard_ic);
         icButton.setTextColor(Color.WHITE);
         icButton.setTextSize(12);
@@ -269,12 +309,12 @@ public class ICSetup {
             mainActivity.ICnum += 1;
         }
 
-        boolean saved = icToDB.insertIC(icType, mainActivity.currentUsername,
-                mainActivity.currentCircuitName, coord);
-        if (!saved) {
-            Toast.makeText(mainActivity, "Failed to save " + icType + " to database",
-                    Toast.LENGTH_SHORT).show();
-        }
+        final String username = mainActivity.currentUsername;
+        final String circuitName = mainActivity.currentCircuitName;
+        persistenceQueue.insert(PersistenceQueue.key("ics", username, circuitName, coord),
+                "save " + icType + " to database at " + coord,
+                () -> icToDB.insertIC(icType, username, circuitName, coord));
+        mainActivity.recordEdit(BoardEdit.add(BoardElement.ic(icType, coord)));
     }
 
     public void markICPins(Coordinate coord, String icType) {
@@ -332,32 +372,47 @@ public class ICSetup {
                 if (gateObj instanceof ICGate) {
                     ICGate gate = (ICGate) gateObj;
 
+                    if (gate instanceof SubcircuitIC) {
+                        executeSubcircuit((SubcircuitIC) gate);
+                        continue;
+                    }
+
                     // Get input values for this gate based on its pin connections
                     int[][] gateInputs = getGateInputs(gate);
 
+                    // Identical input bits give identical outputs; reuse them when seen before
+                    int numGates = getNumGatesInIC(gate.type);
+                    int key = EvaluationMemo.pack(flattenInputs(gateInputs));
+                    EvaluationMemo memo = getEvaluationMemo(gate, countInputs(gateInputs), numGates);
+                    int cached = key != EvaluationMemo.MISS ? memo.lookup(key) : EvaluationMemo.MISS;
+                    if (cached != EvaluationMemo.MISS) {
+                        setGateOutputs(gate, EvaluationMemo.unpack(cached, numGates));
+                        continue;
+                    }
+
                     // Execute the gate logic based on its type
+                    int[] outputs = null;
                     if (gate instanceof AND) {
-                        int[] outputs = ((AND) gate).executeAllGates(gateInputs);
-                        setGateOutputs(gate, outputs);
+                        outputs = ((AND) gate).executeAllGates(gateInputs);
                     } else if (gate instanceof OR) {
-                        int[] outputs = ((OR) gate).executeAllGates(gateInputs);
-                        setGateOutputs(gate, outputs);
+                        outputs = ((OR) gate).executeAllGates(gateInputs);
                     } else if (gate instanceof NOT) {
                         // NOT gates have single inputs
                         int[] singleInputs = new int[gateInputs.length];
                         for (int i = 0; i < gateInputs.length; i++) {
                             singleInputs[i] = gateInputs[i].length > 0 ? gateInputs[i][0] : 0;
                         }
-                        int[] outputs = ((NOT) gate).executeAllGates(singleInputs);
-                        setGateOutputs(gate, outputs);
+                        outputs = ((NOT) gate).executeAllGates(singleInputs);
                     } else if (gate instanceof NAND) {
-                        int[] outputs = ((NAND) gate).executeAllGates(gateInputs);
-                        setGateOutputs(gate, outputs);
+                        outputs = ((NAND) gate).executeAllGates(gateInputs);
                     } else if (gate instanceof NOR) {
-                        int[] outputs = ((NOR) gate).executeAllGates(gateInputs);
-                        setGateOutputs(gate, outputs);
+                        outputs = ((NOR) gate).executeAllGates(gateInputs);
                     } else if (gate instanceof XOR) {
-                        int[] outputs = ((XOR) gate).executeAllGates(gateInputs);
+                        outputs = ((XOR) gate).executeAllGates(gateInputs);
+                    }
+                    if (outputs != null) {
+                        int packed = EvaluationMemo.pack(outputs);
+                        if (key != EvaluationMemo.MISS && packed != EvaluationMemo.MISS) memo.store(key, packed);
                         setGateOutputs(gate, outputs);
                     }
                 }
@@ -374,6 +429,79 @@ public class ICSetup {
         }
     }
 
+    private void executeSubcircuit(SubcircuitIC gate) {
+        // A custom IC reads all of its input pins at once and drives every output pin
+        int[] inputPins = gate.getInputPins();
+        int[] outputPins = gate.getOutputPins();
+        int[] inputValues = new int[inputPins.length];
+        for (int i = 0; i < inputPins.length; i++) {
+            inputValues[i] = mainActivity.getICPinManager().getPinValue(getPhysicalPinCoordinate(inputPins[i], gate.position));
+        }
+
+        // pack gives MISS when an input is floating (-1) or otherwise not 0/1; the netlist would
+        // read that as 1, so the outputs float instead
+        int key = EvaluationMemo.pack(inputValues);
+        int[] outputValues;
+        if (key == EvaluationMemo.MISS) {
+            outputValues = new int[outputPins.length];
+            Arrays.fill(outputValues, -1);
+        } else {
+            EvaluationMemo memo = getEvaluationMemo(gate, inputPins.length, outputPins.length);
+            int cached = memo.lookup(key);
+            if (cached != EvaluationMemo.MISS) {
+                outputValues = EvaluationMemo.unpack(cached, outputPins.length);
+            } else {
+                outputValues = gate.executeAllGates(inputValues);
+                memo.store(key, EvaluationMemo.pack(outputValues));
+            }
+        }
+        for (int i = 0; i < outputPins.length && i < outputValues.length; i++) {
+            Coordinate outputCoord = getPhysicalPinCoordinate(outputPins[i], gate.position);
+            mainActivity.getICPinManager().setICPinValue(outputCoord, outputValues[i]);
+            setColumnValue(outputCoord, outputValues[i]);
+        }
+    }
+
+    // One memo table per placed IC, created on first use
+    private EvaluationMemo getEvaluationMemo(ICGate gate, int inputBits, int outputBits) {
+        EvaluationMemo memo = evaluationMemos.get(gate);
+        if (memo == null) {
+            memo = new EvaluationMemo(inputBits, outputBits, EvaluationMemo.DEFAULT_CAPACITY);
+            evaluationMemos.put(gate, memo);
+        }
+        return memo;
+    }
+
+    public EvaluationMemo getEvaluationMemo(ICGate gate) {
+        return evaluationMemos.get(gate);
+    }
+
+    /** Memo hits and misses summed over every placed IC. */
+    public long[] getEvaluationMemoStats() {
+        long hits = 0;
+        long misses = 0;
+        for (EvaluationMemo memo : evaluationMemos.values()) {
+            hits += memo.getHits();
+            misses += memo.getMisses();
+        }
+        return new long[]{hits, misses};
+    }
+
+    private static int countInputs(int[][] gateInputs) {
+        int count = 0;
+        for (int[] inputs : gateInputs) count += inputs.length;
+        return count;
+    }
+
+    private static int[] flattenInputs(int[][] gateInputs) {
+        int[] flat = new int[countInputs(gateInputs)];
+        int i = 0;
+        for (int[] inputs : gateInputs) {
+            for (int value : inputs) flat[i++] = value;
+        }
+        return flat;
+    }
+
     private int[][] getGateInputs(ICGate gate) {
         // Get the number of gates in this IC type
         int numGates = getNumGatesInIC(gate.type);
@@ -544,6 +672,11 @@ public class ICSetup {
             case "XOR":
                 return new XOR(coord, null, mainActivity);
             default:
+                if (ICPinout.isSubcircuit(icType)) {
+                    Netlist definition = circuitLoader.loadSubcircuit(mainActivity.currentUsername,
+                            ICPinout.subcircuitName(icType), mainActivity.currentCircuitName);
+                    return definition != null ? new SubcircuitIC(icType, coord, null, mainActivity, definition) : null;
+                }
                 return null;
         }
     }
@@ -621,6 +754,7 @@ public class ICSetup {
         // FIXED: Remove ALL duplicate ICs
         for (ICGateInfo icToRemove : icsToRemove) {
             System.out.println("Removing IC: " + icToRemove.type + " at " + icToRemove.position);
+            mainActivity.recordEdit(BoardEdit.remove(BoardElement.ic(icToRemove.type, icToRemove.position)));
 
             // Remove from in-memory collections
             icGateObjects.remove(icToRemove);
@@ -629,6 +763,7 @@ public class ICSetup {
             }
             if (icToRemove.gateLogic != null) {
                 gates.remove(icToRemove.gateLogic);
+                evaluationMemos.remove(icToRemove.gateLogic);
             }
 
             // Remove visual button (only once)
@@ -654,12 +789,12 @@ public class ICSetup {
         resetICPinAttributes(firstIC.position);
 
         // Remove from database
-        boolean dbResult = icToDB.deleteICByCoordinate(currentUsername, currentCircuitName, firstIC.position);
-        if (dbResult) {
-            System.out.println("Removed IC from database at " + firstIC.position);
-        } else {
-            System.err.println("Failed to remove IC from database");
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        final Coordinate position = firstIC.position;
+        persistenceQueue.delete(PersistenceQueue.key("ics", username, circuitName, position),
+                "remove IC from database at " + position,
+                () -> icToDB.deleteICByCoordinate(username, circuitName, position));
 
         // Update IC counter
         mainActivity.ICnum = Math.max(0, mainActivity.ICnum - 1);
@@ -836,6 +971,7 @@ public class ICSetup {
         icGateObjects.clear();
         icGates.clear();
         gates.clear();
+        evaluationMemos.clear();
 
         System.out.println("Cleared all in-memory IC data");
         System.out.println("After clearing:");
@@ -942,12 +1078,10 @@ public class ICSetup {
 
 
     public void clearICsFromDatabase() {
-        boolean result = icToDB.clearICsForCircuit(currentUsername, currentCircuitName);
-        if (result) {
-            System.out.println("Cleared all ICs from database for circuit " + currentCircuitName);
-        } else {
-            System.err.println("Failed to clear ICs from database for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.write("clear ICs from database for circuit " + circuitName,
+                () -> icToDB.clearICsForCircuit(username, circuitName));
     }
 
     public void setLoadingFromDatabase(boolean loading) {
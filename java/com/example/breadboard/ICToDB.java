@@ -18,7 +18,7 @@ public class ICToDB {
 
     public ICToDB(Context context) {
         this.context = context;
-        this.dbHelper = new DBHelper(context);
+        this.dbHelper = DBHelper.getInstance(context);
     }
 
     public static class ICData {
@@ -58,18 +58,10 @@ public class ICToDB {
      * Insert a new IC into the database for a specific circuit
      */
     public boolean insertIC(String icType, String username, String circuitName, Coordinate coord) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put("ic_type", icType);
-        values.put("username", username);
-        values.put("circuit_name", circuitName);
-        values.put("section", coord.s);
-        values.put("row_pos", coord.r);
-        values.put("column_pos", coord.c);
-
-        long result = db.insert("ics", null, values);
-        db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        long result = dbHelper.executeInsert("INSERT OR IGNORE INTO ics(ic_type, circuit_id, section, row_pos, column_pos) " +
+                "VALUES (?, ?, ?, ?, ?)",
+                icType, circuitId, coord.s, coord.r, coord.c);
 
         System.out.println("Inserted " + icType + " at " + coord);
 
@@ -81,6 +73,7 @@ public class ICToDB {
      */
     public boolean updateICPosition(String icType, String username, String circuitName, Coordinate oldCoord, Coordinate newCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
 
         values.put("section", newCoord.s);
@@ -88,9 +81,8 @@ public class ICToDB {
         values.put("column_pos", newCoord.c);
 
         int rowsAffected = db.update("ics", values,
-                "ic_type = ? AND username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{icType, username, circuitName, String.valueOf(oldCoord.s), String.valueOf(oldCoord.r), String.valueOf(oldCoord.c)});
-        db.close();
+                "circuit_id = ? AND ic_type = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), icType, String.valueOf(oldCoord.s), String.valueOf(oldCoord.r), String.valueOf(oldCoord.c)});
 
         return rowsAffected > 0;
     }
@@ -101,21 +93,21 @@ public class ICToDB {
     // Add this method to ICToDB.java if it doesn't exist
     public boolean deleteICByCoordinate(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("ics",
-                "username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s),
+                "circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s),
                         String.valueOf(coord.r), String.valueOf(coord.c)});
-        db.close();
 
         return rowsDeleted > 0;
     }
 
     public boolean deleteIC(String icType, String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("ics",
-                "ic_type = ? AND username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{icType, username, circuitName, String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
-        db.close();
+                "circuit_id = ? AND ic_type = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), icType, String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
 
         return rowsDeleted > 0;
     }
@@ -126,16 +118,17 @@ public class ICToDB {
     public List<ICData> getICsForCircuit(String username, String circuitName) {
         List<ICData> icList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM ics WHERE username = ? AND circuit_name = ? ORDER BY ic_type",
-                new String[]{username, circuitName});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, ic_type, section, row_pos, column_pos FROM ics WHERE circuit_id = ? ORDER BY ic_type",
+                new String[]{String.valueOf(circuitId)});
 
         if (cursor.moveToFirst()) {
             do {
                 ICData icData = new ICData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
                         cursor.getString(cursor.getColumnIndexOrThrow("ic_type")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("row_pos")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("column_pos"))
@@ -145,7 +138,6 @@ public class ICToDB {
         }
 
         cursor.close();
-        db.close();
 
         return icList;
     }
@@ -155,9 +147,9 @@ public class ICToDB {
      */
     public boolean clearICsForCircuit(String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        int rowsDeleted = db.delete("ics", "username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-        db.close();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
+        int rowsDeleted = db.delete("ics", "circuit_id = ?",
+                new String[]{String.valueOf(circuitId)});
 
         return rowsDeleted >= 0;
     }
@@ -173,40 +165,12 @@ public class ICToDB {
      * Save current circuit ICs to database
      */
     public boolean syncICsForCircuit(String username, String circuitName, List<ICData> currentICs) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
-
-        try {
-            // Clear existing ICs for this circuit
-            db.delete("ics", "username = ? AND circuit_name = ?",
-                    new String[]{username, circuitName});
-
-            // Insert current ICs
-            ContentValues values = new ContentValues();
-            for (ICData ic : currentICs) {
-                values.clear();
-                values.put("ic_type", ic.ic_type);
-                values.put("username", username);
-                values.put("circuit_name", circuitName);
-                values.put("section", ic.section);
-                values.put("row_pos", ic.row_pos);
-                values.put("column_pos", ic.column_pos);
-
-                long result = db.insert("ics", null, values);
-                if (result == -1) {
-                    throw new Exception("Failed to insert IC: " + ic.ic_type);
-                }
-            }
-
-            db.setTransactionSuccessful();
-            return true;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            db.endTransaction();
-            db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        List<Object[]> rows = new ArrayList<>();
+        for (ICData ic : currentICs) {
+            rows.add(new Object[]{ic.ic_type, ic.section, ic.row_pos, ic.column_pos});
         }
+        return dbHelper.syncCircuitRows("ics", circuitId,
+                new String[]{"ic_type", "section", "row_pos", "column_pos"}, rows);
     }
 }
\ No newline at end of file
@@ -5,17 +5,15 @@ import android.graphics.Color;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.FrameLayout;
-import android.widget.GridLayout;
-import android.widget.ImageButton;
 import android.widget.LinearLayout;
-import android.widget.TextView;
 import android.widget.Toast;
 
 import com.example.breadboard.InputToDB;
 import com.example.breadboard.InputToDB.InputData;
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -23,14 +21,13 @@ import java.util.Map;
 
 public class InputManager {
     private MainActivity mainActivity;
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private Attribute[][][] pinAttributes;
-    private GridLayout middleGrid;
     List<Coordinate> inputs;
     private Map<Coordinate, InputInfo> inputNames;
-    private Map<Coordinate, TextView> inputLabels;
     private LinearLayout inputDisplayContainer;
     private InputToDB inputToDB;
+    private PersistenceQueue persistenceQueue;
     private String currentUsername;
     private String currentCircuitName;
 
@@ -50,23 +47,21 @@ public class InputManager {
         }
     }
 
-    public InputManager(MainActivity mainActivity, ImageButton[][][] pins, Attribute[][][] pinAttributes,
-                        GridLayout middleGrid, List<Coordinate> inputs,
-                        Map<Coordinate, InputInfo> inputNames, Map<Coordinate, TextView> inputLabels,
+    public InputManager(MainActivity mainActivity, BreadboardView breadboardView, Attribute[][][] pinAttributes,
+                        List<Coordinate> inputs, Map<Coordinate, InputInfo> inputNames,
                         LinearLayout inputDisplayContainer, String username, String circuitName,
                         ConnectionManager connectionManager) {
         this.mainActivity = mainActivity;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.pinAttributes = pinAttributes;
-        this.middleGrid = middleGrid;
         this.inputs = inputs;
         this.inputNames = inputNames;
-        this.inputLabels = inputLabels;
         this.inputDisplayContainer = inputDisplayContainer;
         this.currentUsername = username;
         this.currentCircuitName = circuitName;
         this.connectionManager = connectionManager; // Initialize connectionManager
         this.inputToDB = new InputToDB(mainActivity);
+        this.persistenceQueue = PersistenceQueue.getInstance(mainActivity);
     }
     public void setConnectionManager(ConnectionManager connectionManager) {
         this.connectionManager = connectionManager;
@@ -140,19 +135,18 @@ public class InputManager {
         setInputName(coord, name);
 
         // Save to database WITHOUT value (remove the value parameter)
-        boolean dbResult = inputToDB.insertInput(name, currentUsername, currentCircuitName, coord);
-        if (!dbResult) {
-            System.err.println("Failed to save input " + name + " to database for circuit " + currentCircuitName);
-            showToast("Warning: Failed to save input to database");
-        } else {
-            System.out.println("Input " + name + " saved to database successfully for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.insert(PersistenceQueue.key("inputs", username, circuitName, coord),
+                "save input " + name + " to database for circuit " + circuitName,
+                () -> inputToDB.insertInput(name, username, circuitName, coord));
 
         createInputLabel(coord, name);
 
         updateInputDisplay();
 
         showToast("Input '" + name + "' created successfully!");
+        mainActivity.recordEdit(BoardEdit.add(BoardElement.input(name, coord)));
         //System.out.println("Input " + name + " created for circuit " + currentCircuitName);
     }
 
@@ -350,67 +344,23 @@ public class InputManager {
     }
 
     public void createInputLabel(Coordinate coord, String name) {
-        // Create a TextView for the input name
-        TextView inputLabel = new TextView(mainActivity);
-        inputLabel.setText(name);
-        inputLabel.setTextColor(Color.WHITE);
-        inputLabel.setTextSize(14);
-        inputLabel.setTypeface(null, android.graphics.Typeface.BOLD);
-        inputLabel.setGravity(android.view.Gravity.CENTER);
-        inputLabel.setShadowLayer(2, 1, 1, Color.BLACK); // Add shadow for better visibility
-
-        // Get the input pin button
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-
-        // Create a FrameLayout to overlay the text on the pin
-        FrameLayout frameLayout = new FrameLayout(mainActivity);
-
-        // Get pin's current layout parameters
-        GridLayout.LayoutParams pinParams = (GridLayout.LayoutParams) pin.getLayoutParams();
-
-        // Remove pin from its current parent
-        middleGrid.removeView(pin);
-
-        // Add pin to the FrameLayout
-        FrameLayout.LayoutParams pinFrameParams = new FrameLayout.LayoutParams(
-                pinParams.width, pinParams.height);
-        pin.setLayoutParams(pinFrameParams);
-        frameLayout.addView(pin);
-
-        FrameLayout.LayoutParams labelParams = new FrameLayout.LayoutParams(
-                pinParams.width, pinParams.height);
-        labelParams.gravity = android.view.Gravity.CENTER;
-        inputLabel.setLayoutParams(labelParams);
-        frameLayout.addView(inputLabel);
-
-        // Set the FrameLayout's layout parameters to match the original pin
-        frameLayout.setLayoutParams(pinParams);
-
-        // Add the FrameLayout (containing pin + label) back to the grid
-        middleGrid.addView(frameLayout);
-
-        // Store the label reference for later removal if needed
-        inputLabels.put(coord, inputLabel);
-
-        // Make sure the pin click listener still works
-        frameLayout.setOnClickListener(v -> mainActivity.onPinClicked(coord));
+        // Drawn over the input pin by the board view; removing the input clears it
+        breadboardView.setPinLabel(coord, name);
     }
 
     public void removeInputFromDatabase(Coordinate coord) {
         InputInfo info = getInputInfo(coord);
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        String key = PersistenceQueue.key("inputs", username, circuitName, coord);
         if (info != null) {
-            boolean dbResult = inputToDB.deleteInput(info.name, currentUsername, currentCircuitName);
-            if (!dbResult) {
-                System.err.println("Failed to remove input " + info.name + " from database for circuit " + currentCircuitName);
-            } else {
-                System.out.println("Removed input " + info.name + " from database for circuit " + currentCircuitName);
-            }
+            final String name = info.name;
+            persistenceQueue.delete(key, "remove input " + name + " from database for circuit " + circuitName,
+                    () -> inputToDB.deleteInput(name, username, circuitName));
         } else {
             // Try to remove by coordinate if name is not found
-            boolean dbResult = inputToDB.deleteInputByCoordinate(currentUsername, currentCircuitName, coord);
-            if (dbResult) {
-                System.out.println("Removed input at coordinate " + coord + " from database for circuit " + currentCircuitName);
-            }
+            persistenceQueue.delete(key, "remove input at coordinate " + coord + " from database for circuit " + circuitName,
+                    () -> inputToDB.deleteInputByCoordinate(username, circuitName, coord));
         }
     }
 
@@ -495,12 +445,10 @@ public class InputManager {
                 }
             }
 
-            boolean result = inputToDB.syncInputsForCircuit(currentUsername, currentCircuitName, currentInputs);
-            if (result) {
-                System.out.println("Successfully synced " + currentInputs.size() + " inputs to database for circuit " + currentCircuitName + " (names only)");
-            } else {
-                System.err.println("Failed to sync inputs to database for circuit " + currentCircuitName);
-            }
+            final String username = currentUsername;
+            final String circuitName = currentCircuitName;
+            persistenceQueue.write("sync " + currentInputs.size() + " inputs to database for circuit " + circuitName,
+                    () -> inputToDB.syncInputsForCircuit(username, circuitName, currentInputs));
 
         } catch (Exception e) {
             System.err.println("Error syncing inputs to database for circuit " + currentCircuitName + ": " + e.getMessage());
@@ -510,12 +458,10 @@ public class InputManager {
 
 
     public void clearInputsFromDatabase() {
-        boolean result = inputToDB.clearInputsForCircuit(currentUsername, currentCircuitName);
-        if (result) {
-            System.out.println("Cleared all inputs from database for circuit " + currentCircuitName);
-        } else {
-            System.err.println("Failed to clear inputs from database for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.write("clear inputs from database for circuit " + circuitName,
+                () -> inputToDB.clearInputsForCircuit(username, circuitName));
     }
 
     public void ensureInputDisplaySync() {
@@ -617,7 +563,6 @@ public class InputManager {
         System.out.println("Before clearing:");
         System.out.println("- inputs.size(): " + inputs.size());
         System.out.println("- inputNames.size(): " + inputNames.size());
-        System.out.println("- inputLabels.size(): " + inputLabels.size());
         System.out.println("- inputDisplayContainer child count: " +
                 (inputDisplayContainer != null ? inputDisplayContainer.getChildCount() : "null"));
 
@@ -627,9 +572,6 @@ public class InputManager {
         // Clear the input name/value mappings
         inputNames.clear();
 
-        // Clear the input label references
-        inputLabels.clear();
-
         // Clear the input display container
         if (inputDisplayContainer != null) {
             inputDisplayContainer.removeAllViews();
@@ -641,7 +583,6 @@ public class InputManager {
         System.out.println("After clearing:");
         System.out.println("- inputs.size(): " + inputs.size());
         System.out.println("- inputNames.size(): " + inputNames.size());
-        System.out.println("- inputLabels.size(): " + inputLabels.size());
         System.out.println("- inputDisplayContainer child count: " +
                 (inputDisplayContainer != null ? inputDisplayContainer.getChildCount() : "null"));
 
@@ -667,10 +608,8 @@ public class InputManager {
                 }
 
                 // Remove the input label if it exists
-                TextView label = inputLabels.get(coord);
-                if (label != null && label.getParent() != null) {
-                    // The label is inside a FrameLayout, so we need to handle this properly
-                    // This will be handled by MainActivity's pin reset functionality
+                if (breadboardView.getPinLabel(coord) != null) {
+                    breadboardView.resetPin(coord);
                     mainActivity.removeValue(coord);
                 }
 
@@ -18,7 +18,7 @@ public class InputToDB {
 
     public InputToDB(Context context) {
         this.context = context;
-        this.dbHelper = new DBHelper(context);
+        this.dbHelper = DBHelper.getInstance(context);
     }
 
     public static class InputData {
@@ -59,18 +59,10 @@ public class InputToDB {
      * Insert a new input into the database for a specific circuit
      */
     public boolean insertInput(String name, String username, String circuitName, Coordinate coord) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put("name", name);
-        values.put("username", username);
-        values.put("circuit_name", circuitName);
-        values.put("section", coord.s);
-        values.put("row_pos", coord.r);
-        values.put("column_pos", coord.c);
-
-        long result = db.insert("inputs", null, values);
-        db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        long result = dbHelper.executeInsert("INSERT OR IGNORE INTO inputs(name, circuit_id, section, row_pos, column_pos) " +
+                "VALUES (?, ?, ?, ?, ?)",
+                name, circuitId, coord.s, coord.r, coord.c);
 
         return result != -1;
     }
@@ -80,6 +72,7 @@ public class InputToDB {
      */
     public boolean updateInputPosition(String name, String username, String circuitName, Coordinate newCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
 
         values.put("section", newCoord.s);
@@ -87,9 +80,8 @@ public class InputToDB {
         values.put("column_pos", newCoord.c);
 
         int rowsAffected = db.update("inputs", values,
-                "name = ? AND username = ? AND circuit_name = ?",
-                new String[]{name, username, circuitName});
-        db.close();
+                "circuit_id = ? AND name = ?",
+                new String[]{String.valueOf(circuitId), name});
 
         return rowsAffected > 0;
     }
@@ -99,10 +91,10 @@ public class InputToDB {
      */
     public boolean deleteInput(String name, String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("inputs",
-                "name = ? AND username = ? AND circuit_name = ?",
-                new String[]{name, username, circuitName});
-        db.close();
+                "circuit_id = ? AND name = ?",
+                new String[]{String.valueOf(circuitId), name});
 
         return rowsDeleted > 0;
     }
@@ -112,10 +104,10 @@ public class InputToDB {
      */
     public boolean deleteInputByCoordinate(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("inputs",
-                "username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
-        db.close();
+                "circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
 
         return rowsDeleted > 0;
     }
@@ -126,16 +118,17 @@ public class InputToDB {
     public List<InputData> getInputsForCircuit(String username, String circuitName) {
         List<InputData> inputList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM inputs WHERE username = ? AND circuit_name = ? ORDER BY name",
-                new String[]{username, circuitName});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, name, section, row_pos, column_pos FROM inputs WHERE circuit_id = ? ORDER BY name",
+                new String[]{String.valueOf(circuitId)});
 
         if (cursor.moveToFirst()) {
             do {
                 InputData inputData = new InputData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
                         cursor.getString(cursor.getColumnIndexOrThrow("name")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("row_pos")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("column_pos"))
@@ -146,7 +139,6 @@ public class InputToDB {
         }
 
         cursor.close();
-        db.close();
 
         return inputList;
     }
@@ -156,9 +148,9 @@ public class InputToDB {
      */
     public boolean clearInputsForCircuit(String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        int rowsDeleted = db.delete("inputs", "username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-        db.close();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
+        int rowsDeleted = db.delete("inputs", "circuit_id = ?",
+                new String[]{String.valueOf(circuitId)});
 
         return rowsDeleted >= 0;
     }
@@ -174,40 +166,12 @@ public class InputToDB {
      * Save current circuit inputs to database
      */
     public boolean syncInputsForCircuit(String username, String circuitName, List<InputData> currentInputs) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
-
-        try {
-            // Clear existing inputs for this circuit
-            db.delete("inputs", "username = ? AND circuit_name = ?",
-                    new String[]{username, circuitName});
-
-            // Insert current inputs
-            ContentValues values = new ContentValues();
-            for (InputData input : currentInputs) {
-                values.clear();
-                values.put("name", input.name);
-                values.put("username", username);
-                values.put("circuit_name", circuitName);
-                values.put("section", input.section);
-                values.put("row_pos", input.row_pos);
-                values.put("column_pos", input.column_pos);
-
-                long result = db.insert("inputs", null, values);
-                if (result == -1) {
-                    throw new Exception("Failed to insert input: " + input.name);
-                }
-            }
-
-            db.setTransactionSuccessful();
-            return true;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            db.endTransaction();
-            db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        List<Object[]> rows = new ArrayList<>();
+        for (InputData input : currentInputs) {
+            rows.add(new Object[]{input.name, input.section, input.row_pos, input.column_pos});
         }
+        return dbHelper.syncCircuitRows("inputs", circuitId,
+                new String[]{"name", "section", "row_pos", "column_pos"}, rows);
     }
 }
\ No newline at end of file
@@ -37,7 +37,7 @@ public class LoginActivity extends AppCompatActivity {
         setContentView(R.layout.activity_login);
 
         // Initialize database
-        DB = new DBHelper(this);
+        DB = DBHelper.getInstance(this);
 
         initializeViews();
         setupPasswordValidation();
@@ -7,7 +7,6 @@ import android.view.View;
 import android.widget.Button;
 import android.widget.GridLayout;
 import android.widget.HorizontalScrollView;
-import android.widget.ImageButton;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
@@ -23,11 +22,21 @@ import com.example.breadboard.logic.ICGateInfo;
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
 import com.example.breadboard.model.Pins;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardModel;
+import com.example.breadboard.sim.HazardAnalyzer;
+import com.example.breadboard.sim.Netlist;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class MainActivity extends AppCompatActivity implements BreadboardSetup.OnPinClickListener {
 
@@ -45,8 +54,18 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
 
     private ConnectionManager connectionManager;
     private WireManager wireManager; // ADD THIS LINE
+    private WireVisualManager wireVisualManager;
+    private WaveformCapture waveformCapture;
+    private SimulationSnapshot simulationSnapshot;
+    private EditHistory editHistory;
+    private final ExecutorService hazardAnalyzer = Executors.newSingleThreadExecutor();
+    private final AtomicInteger hazardRequests = new AtomicInteger(); // latest analysis asked for
+    private PersistenceQueue persistenceQueue;
+    private EditJournal editJournal;
+    private boolean replayingJournal = false;
     // UI Components
-    private GridLayout topGrid, middleGrid, bottomGrid;
+    private GridLayout topGrid, bottomGrid;
+    private BreadboardView breadboardView;
     private HorizontalScrollView topScrollView;
     private HorizontalScrollView middleScrollView;
     private HorizontalScrollView bottomScrollView;
@@ -54,11 +73,9 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
     private LinearLayout inputDisplayContainer;
     private RelativeLayout icContainer;
     private RelativeLayout breadboardContainer; // ADD THIS LINE - main container for breadboard
-    private ImageButton[][][] pins;
     private TextView[] topLabels, bottomLabels;
     private TextView[] rowLabels;
     private static Map<Coordinate, ICPinInfo> icPinRegistry = new HashMap<>();
-    private Map<Coordinate, TextView> inputLabels = new HashMap<>();
     String currentUsername = "defaultUser";
     String currentCircuitName = "defaultCircuit";
 
@@ -82,6 +99,8 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
     private static final int ROWS = 5;
     private static final int COLS = 64;
     private static final int SECTIONS = 2;
+    // Journal records after which the board is compacted into the tables
+    private static final int COMPACT_THRESHOLD = 200;
     private static final char[] ROW_LABELS = {' ', 'A', 'B', 'C', 'D', 'E', 'F', 'G', 'H', 'I', 'J', ' '};
 
     // Public fields
@@ -102,9 +121,12 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
         // Get circuit context first before intializing other components.
         getCurrentCircuitContext();
 
+        // Background writer for the managers' database writes
+        persistenceQueue = PersistenceQueue.getInstance(this);
+
         //  Initializing UI Elements
         topGrid = findViewById(R.id.topGrid);
-        middleGrid = findViewById(R.id.middleGrid);
+        breadboardView = findViewById(R.id.breadboardView);
         bottomGrid = findViewById(R.id.bottomGrid);
         icContainer = findViewById(R.id.icContainer);
         inputDisplayScrollView = findViewById(R.id.inputDisplayScrollView);
@@ -115,15 +137,14 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
         // If you don't have a breadboardContainer in your layout, you can use icContainer or create one
 
         // Initialize data structures
-        pins = new ImageButton[SECTIONS][ROWS][COLS];
         pinAttributes = new Attribute[SECTIONS][ROWS][COLS];
         topLabels = new TextView[COLS];
         bottomLabels = new TextView[COLS];
         rowLabels = new TextView[12];
 
         // Initialize BreadboardSetup
-        breadboardSetup = new BreadboardSetup(this, topGrid, middleGrid, bottomGrid,
-                pins, pinAttributes, topLabels, bottomLabels, rowLabels);
+        breadboardSetup = new BreadboardSetup(this, topGrid, breadboardView, bottomGrid,
+                pinAttributes, topLabels, bottomLabels, rowLabels);
         breadboardSetup.setPinClickListener(this);
 
         // Initialize ICSetup
@@ -134,30 +155,44 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
         icPinManager = new ICPinManager(this, pinAttributes, vccPins, gndPins, inputs);
 
         // Initialize WireManager BEFORE ConnectionManager
-        wireManager = new WireManager(this, pins, pinAttributes, wires, icPinManager, breadboardContainer);
+        // Every wire is drawn by one overlay over the breadboard container
+        wireVisualManager = new WireVisualManager(this, breadboardView);
+        wireManager = new WireManager(this, breadboardView, pinAttributes, wires, icPinManager, wireVisualManager);
 
         // INITIALIZE ComponentManager HERE - BEFORE ConnectionManager
-        componentManager = new ComponentManager(this, pins, pinAttributes, vccPins, gndPins, currentUsername, currentCircuitName);
+        componentManager = new ComponentManager(this, breadboardView, pinAttributes, vccPins, gndPins, currentUsername, currentCircuitName);
 
         // Initialize ConnectionManager but DON'T build connection map yet
         connectionManager = new ConnectionManager(
                 this, inputManager, outputManager, wireManager,
-                icPinManager, pins, pinAttributes, currentUsername, currentCircuitName
+                icPinManager, breadboardView, pinAttributes, currentUsername, currentCircuitName
         );
 
         // Initialize InputManager (without loading from database yet)
-        inputManager = new InputManager(this, pins, pinAttributes, middleGrid, inputs,
-                inputNames, inputLabels, inputDisplayContainer, currentUsername, currentCircuitName, connectionManager);
+        inputManager = new InputManager(this, breadboardView, pinAttributes, inputs,
+                inputNames, inputDisplayContainer, currentUsername, currentCircuitName, connectionManager);
 
         // Intialize OutputManager
-        outputManager = new OutputManager(this, pins, pinAttributes, outputs, icPinManager, currentUsername, currentCircuitName);
+        outputManager = new OutputManager(this, breadboardView, pinAttributes, outputs, icPinManager, currentUsername, currentCircuitName);
+
+        // Waveform recording over inputs, outputs and probed nets
+        waveformCapture = new WaveformCapture(inputNames, outputManager, icPinManager);
+
+        // Checkpoints of pin, input and net values
+        simulationSnapshot = new SimulationSnapshot(pinAttributes, inputNames, connectionManager,
+                inputManager, outputManager);
 
         // Initialize AddConnection
-        addConnection = new AddConnection(this, pins, pinAttributes, icSetup,
+        addConnection = new AddConnection(this, breadboardView, pinAttributes, icSetup,
                 inputManager, outputManager, componentManager, vccPins, gndPins);
         // Initialize RemoveConnection
-        removeConnection = new RemoveConnection(this, pins, pinAttributes, middleGrid,
-                inputs, vccPins, gndPins, inputNames, inputLabels, inputManager, outputManager);
+        removeConnection = new RemoveConnection(this, breadboardView, pinAttributes,
+                inputs, vccPins, gndPins, inputNames, inputManager, outputManager);
+
+        // Undo/redo over everything the managers place and remove
+        editHistory = new EditHistory(icSetup, wireManager, inputManager, outputManager,
+                componentManager, removeConnection, icGateObjects, wires, inputNames, outputs,
+                vccPins, gndPins);
 
         // Connect the managers
         connectWireAndOutputManagers();
@@ -170,6 +205,15 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
         Button clearButton = findViewById(R.id.btnClear);
         clearButton.setOnClickListener(v -> clearCircuitAndDatabase());
 
+        Button undoButton = findViewById(R.id.btnUndo);
+        if (undoButton != null) {
+            undoButton.setOnClickListener(v -> undoEdit());
+        }
+        Button redoButton = findViewById(R.id.btnRedo);
+        if (redoButton != null) {
+            redoButton.setOnClickListener(v -> redoEdit());
+        }
+
         icSetup.updateCircuitContext(currentUsername, currentCircuitName);
 
         // ADD THIS BLOCK - Initialize wire toggle button
@@ -199,7 +243,7 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
     private void debugDatabase() {
         System.out.println("🔍 Starting Database Debug...");
 
-        DBHelper dbHelper = new DBHelper(this);
+        DBHelper dbHelper = DBHelper.getInstance(this);
 
         // Full comprehensive debug
         dbHelper.fullDatabaseDebug();
@@ -271,6 +315,8 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
 
         // Update output displays after execution
         updateOutputDisplay();
+
+        waveformCapture.sample();
     }
 
     private void setupBreadboard() {
@@ -280,6 +326,21 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
         setupScrollViews();
         synchronizeScrollViews();
 
+        // Edits queued by an earlier screen must be on disk before loading; the board is
+        // loaded once the writer has committed them, without the UI thread waiting for it
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.flushThen(() -> {
+            if (isDestroyed() || !isCurrentCircuit(username, circuitName)) return;
+            loadBoard();
+        });
+    }
+
+    private boolean isCurrentCircuit(String username, String circuitName) {
+        return Objects.equals(username, currentUsername) && Objects.equals(circuitName, currentCircuitName);
+    }
+
+    private void loadBoard() {
         // Load components from database
         if (inputManager != null) {
             inputManager.loadInputsFromDatabase();
@@ -297,8 +358,69 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
         }
         // Load wires from database
         if (wireManager != null) {
-            //wireManager.loadWiresFromDatabase();
+            wireManager.loadWiresFromDatabase(currentUsername, currentCircuitName);
+        }
+        // What was just loaded is the starting point, not something to undo
+        if (editHistory != null) {
+            editHistory.reset();
         }
+        openJournal();
+    }
+
+    /**
+     * Open the edit journal of the current circuit and replay what it holds: edits made since
+     * the last compaction that may not have reached the tables before the app was stopped.
+     */
+    private void openJournal() {
+        closeJournal();
+        // The circuit's own row id; requireCircuitId would detach a clone that is only viewed
+        int circuitId = new CircuitToDB(this).getCircuitId(currentCircuitName, currentUsername);
+        if (circuitId == -1 || editHistory == null) return;
+        try {
+            editJournal = EditJournal.open(EditJournal.directory(this), circuitId);
+        } catch (IOException e) {
+            System.err.println("Error opening edit journal: " + e.getMessage());
+            return;
+        }
+
+        List<BoardEdit> edits = editJournal.readAll();
+        if (edits.isEmpty()) return;
+        replayingJournal = true;
+        try {
+            int performed = editHistory.replay(edits);
+            System.out.println("Replayed " + performed + " of " + edits.size() + " journaled edits for " + currentCircuitName);
+        } finally {
+            replayingJournal = false;
+        }
+        compactJournal();
+    }
+
+    private void closeJournal() {
+        if (editJournal != null) {
+            editJournal.close();
+            editJournal = null;
+        }
+    }
+
+    /**
+     * Store the board in the tables on the persistence queue and then drop the journal
+     * records it covers. Records appended meanwhile stay for the next compaction. Each
+     * compaction saves the circuit, so its hazards are analysed once it is committed.
+     */
+    private void compactJournal() {
+        if (editJournal == null || !editJournal.hasRecords()) return;
+        final EditJournal journal = editJournal;
+        final BoardModel model = editHistory.getLog().getModel();
+        final long mark = journal.mark();
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        // Records are dropped only once the board they are folded into is committed
+        persistenceQueue.write("compact edit journal of " + circuitName,
+                () -> new CircuitBlobToDB(this).saveModel(username, circuitName, model),
+                () -> {
+                    journal.discardThrough(mark);
+                    analyzeHazards(username, circuitName);
+                });
     }
     private void setupScrollViews() {
         // Create HorizontalScrollViews of the label and breadboard body
@@ -356,44 +478,13 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
     }
 
     public void resizeSpecialPin(Coordinate coord, int drawableResource) {
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-
-        // Set the new drawable
-        pin.setImageResource(drawableResource);
-
-        // Get the current layout parameters
-        GridLayout.LayoutParams params = (GridLayout.LayoutParams) pin.getLayoutParams();
-
-        int originalSize = getResources().getDimensionPixelSize(R.dimen.pin_size);
-        int newSize = originalSize + 36;
-
-        // Update the size
-        params.width = newSize;
-        params.height = newSize;
-
-        // Adjust margins to center the larger pin in its grid cell
-        int extraSize = newSize - originalSize;
-        int marginAdjustment = -extraSize / 2;
-
-        params.setMargins(
-                2 + marginAdjustment, // left
-                -2 + marginAdjustment, // top
-                2 + marginAdjustment, // right
-                -2 + marginAdjustment  // bottom
-        );
-
-        // Apply the new layout parameters
-        pin.setLayoutParams(params);
-
-        // Ensure the pin is brought to front so it's visible over other elements
-        pin.bringToFront();
-        //extraPadding += 6;
+        // Drawn larger than its cell and over its neighbours
+        breadboardView.setPinImage(coord, drawableResource);
+        breadboardView.setPinEnlarged(coord, true);
     }
 
     @Override
     public void onPinClicked(Coordinate coord) {
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-
         // MODIFY THIS METHOD - Check if wire mode is active first
         if (wireManager != null && wireManager.handleWirePinClick(coord)) {
             // Wire manager handled the click
@@ -415,6 +506,59 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
     // New method to handle input toggle from display
     public void onInputDisplayToggle(Coordinate coord) {
         inputManager.toggleInputValue(coord);
+        waveformCapture.sample();
+    }
+
+    public void startWaveformCapture(List<Coordinate> probedNets) {
+        waveformCapture.start(probedNets, WaveformCapture.DEFAULT_CAPACITY_BYTES);
+    }
+
+    public void stopWaveformCapture() {
+        waveformCapture.stop();
+    }
+
+    public boolean exportWaveform(File destination) {
+        return waveformCapture.exportVcd(destination);
+    }
+
+    /** Current simulation state as one primitive array; see SimulationSnapshot. */
+    public int[] captureSimulationState() {
+        return simulationSnapshot.capture();
+    }
+
+    /** Called by the managers whenever something is placed on or removed from the board. */
+    public void recordEdit(BoardEdit edit) {
+        if (editHistory != null) {
+            editHistory.record(edit);
+        }
+        if (editJournal != null && !replayingJournal) {
+            editJournal.append(edit);
+            if (editJournal.getRecordsSinceMark() >= COMPACT_THRESHOLD) {
+                compactJournal();
+            }
+        }
+    }
+
+    public void undoEdit() {
+        if (editHistory == null || !editHistory.canUndo()) {
+            showToast("Nothing to undo");
+        } else if (!editHistory.undo()) {
+            showToast("Could not undo the last edit");
+        }
+    }
+
+    public void redoEdit() {
+        if (editHistory == null || !editHistory.canRedo()) {
+            showToast("Nothing to redo");
+        } else if (!editHistory.redo()) {
+            showToast("Could not redo the edit");
+        }
+    }
+
+    public boolean restoreSimulationState(int[] snapshot) {
+        boolean restored = simulationSnapshot.restore(snapshot);
+        if (restored) waveformCapture.sample();
+        return restored;
     }
 
     // Add this new method for updating outputs after circuit execution:
@@ -435,13 +579,66 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
     public void saveCircuitToDatabase() {
         try {
             inputManager.syncInputsToDatabase();
-            showToast("Circuit saved to database successfully");
+            compactJournal();
+            final String username = currentUsername;
+            final String circuitName = currentCircuitName;
+            // Queued behind the edits and the compaction, so it stores what they wrote
+            persistenceQueue.write("save circuit " + circuitName, () -> {
+                CircuitBlobToDB circuitBlobToDB = new CircuitBlobToDB(this);
+                if (CircuitBlobToDB.isEnabled(this) && !circuitBlobToDB.saveCircuit(username, circuitName)) {
+                    return false;
+                }
+                return circuitBlobToDB.updateContentHash(username, circuitName);
+            }, () -> {
+                // Still on the writer thread: share rows with an older circuit of the same contents
+                CircuitToDB circuitToDB = new CircuitToDB(this);
+                circuitToDB.deduplicateCircuit(circuitToDB.getCircuitId(circuitName, username));
+                runOnUiThread(() -> {
+                    showToast("Circuit saved to database successfully");
+                    analyzeHazards();
+                });
+            });
         } catch (Exception e) {
             showToast("Error saving circuit to database");
             System.err.println("Error saving circuit: " + e.getMessage());
         }
     }
 
+    // Hazard analysis of the saved circuit, off the UI thread; results go to the OutputManager
+    public void analyzeHazards() {
+        analyzeHazards(currentUsername, currentCircuitName);
+    }
+
+    // Safe to call from any thread, the persistence writer included. Runs one analysis at a
+    // time; a request still queued when a newer one arrives is dropped
+    private void analyzeHazards(final String username, final String circuitName) {
+        if (hazardAnalyzer.isShutdown()) return;
+        final int request = hazardRequests.incrementAndGet();
+        hazardAnalyzer.execute(() -> {
+            if (request != hazardRequests.get()) return;
+            try {
+                // Queued edits first, waited for here rather than on the UI thread
+                persistenceQueue.flushAndWait();
+                if (request != hazardRequests.get()) return;
+                Netlist netlist = new CircuitLoader(this).loadNetlist(username, circuitName);
+                HazardAnalyzer.Result result = HazardAnalyzer.analyze(netlist);
+                for (HazardAnalyzer.OutputReport report : result.outputs) {
+                    System.out.println("Hazard analysis " + circuitName + ": " + report);
+                }
+                runOnUiThread(() -> {
+                    // The board may have moved on to another circuit meanwhile
+                    if (isDestroyed() || !isCurrentCircuit(username, circuitName)) return;
+                    outputManager.setHazardReports(result);
+                    if (result.hazardCount() > 0) {
+                        showToast(result.hazardCount() + " output(s) may glitch; see output details");
+                    }
+                });
+            } catch (Exception e) {
+                System.err.println("Error analyzing hazards: " + e.getMessage());
+            }
+        });
+    }
+
     public void loadCircuitFromDatabase() {
         try {
             inputManager.loadInputsFromDatabase();
@@ -468,6 +665,8 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
 
             // Clear current circuit state
             clearCircuitState();
+            editHistory.reset();
+            compactJournal();
 
             showToast("Circuit '" + currentCircuitName + "' cleared successfully");
 
@@ -521,6 +720,9 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
     }
 
     public void switchCircuit(String username, String circuitName) {
+        // Clearing the board is not an edit of the circuit being left
+        closeJournal();
+        closeSignalProbe();
         // Clear current circuit state first
         clearCircuitState();
 
@@ -530,9 +732,18 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
 
         if (inputManager != null) {
             inputManager.updateCircuitContext(username, circuitName);
-            // Load the new circuit's data
-            inputManager.loadInputsFromDatabase();
         }
+        // Load the new circuit's data once the old one's queued edits are committed
+        persistenceQueue.flushThen(() -> {
+            if (isDestroyed() || !isCurrentCircuit(username, circuitName)) return;
+            if (inputManager != null) {
+                inputManager.loadInputsFromDatabase();
+            }
+            if (editHistory != null) {
+                editHistory.reset();
+            }
+            openJournal();
+        });
     }
 
     // Add method to clear current circuit state without affecting database
@@ -547,7 +758,6 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
             // Clear in-memory data
             inputs.clear();
             inputNames.clear();
-            inputLabels.clear();
             outputs.clear();
 
             // ADD THIS LINE - Clear wires from memory
@@ -595,6 +805,34 @@ public class MainActivity extends AppCompatActivity implements BreadboardSetup.O
 
         System.out.println("MainActivity onResume - Context refreshed: " + currentUsername + " / " + currentCircuitName);
     }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+
+        // Queued edits must be durable before the process can be stopped
+        if (editJournal != null) {
+            editJournal.sync();
+        }
+        if (persistenceQueue != null && !persistenceQueue.flushAndWait()) {
+            System.err.println("Some queued edits of " + currentCircuitName + " could not be saved");
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        closeJournal();
+        closeSignalProbe();
+        hazardAnalyzer.shutdownNow();
+        super.onDestroy();
+    }
+
+    // Signal subscribers belong to the circuit on the board; complete them when it goes
+    private void closeSignalProbe() {
+        if (connectionManager != null) {
+            connectionManager.getSignalProbe().close();
+        }
+    }
     private void addVcc(Coordinate coord) {
         // Use ComponentManager's addComponent method with VCC type
         componentManager.addComponent(coord, ComponentToDB.VCC);
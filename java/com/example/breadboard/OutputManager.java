@@ -1,12 +1,14 @@
 package com.example.breadboard;
 
-import android.widget.ImageButton;
 import android.widget.Toast;
 
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
 import com.example.breadboard.OutputToDB;
 import com.example.breadboard.OutputToDB.OutputData;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
+import com.example.breadboard.sim.HazardAnalyzer;
 import java.util.ArrayList;
 
 
@@ -18,12 +20,13 @@ public class OutputManager {
 
     private MainActivity mainActivity;
     private OutputToDB outputToDB;
+    private PersistenceQueue persistenceQueue;
     private String currentUsername;
     private String currentCircuitName;
     private String previousUsername = null;
     private String previousCircuitName = null;
     private boolean forceNextClear = false;
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private Attribute[][][] pinAttributes;
     private List<Coordinate> outputs;
     private ICPinManager icPinManager;
@@ -31,17 +34,21 @@ public class OutputManager {
     // Map to track output states
     private Map<Coordinate, Boolean> outputStates = new HashMap<>();
 
-    public OutputManager(MainActivity mainActivity, ImageButton[][][] pins,
+    // Latest hazard analysis per output, refreshed on save
+    private Map<Coordinate, HazardAnalyzer.OutputReport> hazardReports = new HashMap<>();
+
+    public OutputManager(MainActivity mainActivity, BreadboardView breadboardView,
                          Attribute[][][] pinAttributes, List<Coordinate> outputs,
                          ICPinManager icPinManager, String username, String circuitName) {
         this.mainActivity = mainActivity;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.pinAttributes = pinAttributes;
         this.outputs = outputs;
         this.icPinManager = icPinManager;
         this.currentUsername = username;
         this.currentCircuitName = circuitName;
         this.outputToDB = new OutputToDB(mainActivity);
+        this.persistenceQueue = PersistenceQueue.getInstance(mainActivity);
     }
 
     private void loadOutput(Coordinate coord) {
@@ -87,13 +94,12 @@ public class OutputManager {
         outputStates.put(coord, false);
 
         // Save to database
-        boolean dbResult = outputToDB.insertOutput(currentUsername, currentCircuitName, coord);
-        if (!dbResult) {
-            System.err.println("Failed to save output to database at " + coord + " for circuit " + currentCircuitName);
-            showToast("Warning: Failed to save output to database");
-        } else {
-            System.out.println("Output saved to database successfully at " + coord + " for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.insert(PersistenceQueue.key("outputs", username, circuitName, coord),
+                "save output to database at " + coord + " for circuit " + circuitName,
+                () -> outputToDB.insertOutput(username, circuitName, coord));
+        mainActivity.recordEdit(BoardEdit.add(BoardElement.output(coord)));
     }
 
     /**
@@ -200,14 +206,7 @@ public class OutputManager {
         System.out.println("Output at " + coord + " has value " + currentValue + ", isOn=" + isOn);
         Boolean previousState = outputStates.get(coord);
         if (previousState == null || previousState != isOn) {
-            ImageButton pin = pins[coord.s][coord.r][coord.c];
-            if (pin != null) {
-                if (isOn) {
-                    pin.setImageResource(R.drawable.breadboard_otpt_on);
-                } else {
-                    pin.setImageResource(R.drawable.breadboard_otpt);
-                }
-            }
+            breadboardView.setPinImage(coord, isOn ? R.drawable.breadboard_otpt_on : R.drawable.breadboard_otpt);
             outputStates.put(coord, isOn);
         }
     }
@@ -339,10 +338,7 @@ public class OutputManager {
         outputStates.remove(coord);
 
         // Reset pin to original state
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-        if (pin != null) {
-            pin.setImageResource(R.drawable.breadboard_pin);
-        }
+        breadboardView.resetPin(coord);
 
         // Reset attributes - IMPORTANT: Set both link and value to -1
         pinAttributes[coord.s][coord.r][coord.c] = new Attribute(-1, -1);
@@ -351,12 +347,11 @@ public class OutputManager {
         clearColumnValues(coord);
 
         // Remove from database
-        boolean dbResult = outputToDB.deleteOutputByCoordinate(currentUsername, currentCircuitName, coord);
-        if (!dbResult) {
-            System.err.println("Failed to remove output from database at " + coord + " for circuit " + currentCircuitName);
-        } else {
-            System.out.println("Removed output from database at " + coord + " for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.delete(PersistenceQueue.key("outputs", username, circuitName, coord),
+                "remove output from database at " + coord + " for circuit " + circuitName,
+                () -> outputToDB.deleteOutputByCoordinate(username, circuitName, coord));
     }
 
 
@@ -391,6 +386,25 @@ public class OutputManager {
         return outputs;
     }
 
+    /**
+     * Store the hazard analysis for the outputs currently on the board
+     */
+    public void setHazardReports(HazardAnalyzer.Result result) {
+        hazardReports.clear();
+        for (HazardAnalyzer.OutputReport report : result.outputs) {
+            if (outputs.contains(report.coordinate)) {
+                hazardReports.put(report.coordinate, report);
+            }
+        }
+    }
+
+    /**
+     * Hazard report of an output, or null if it has not been analysed yet
+     */
+    public HazardAnalyzer.OutputReport getHazardReport(Coordinate coord) {
+        return hazardReports.get(coord);
+    }
+
     /**
      * FIXED: Improved IC output propagation
      * Propagate IC output values to connected output pins
@@ -507,12 +521,10 @@ public class OutputManager {
                         coord.s, coord.r, coord.c));
             }
 
-            boolean result = outputToDB.syncOutputsForCircuit(currentUsername, currentCircuitName, currentOutputs);
-            if (result) {
-                System.out.println("Successfully synced " + currentOutputs.size() + " outputs to database for circuit " + currentCircuitName);
-            } else {
-                System.err.println("Failed to sync outputs to database for circuit " + currentCircuitName);
-            }
+            final String username = currentUsername;
+            final String circuitName = currentCircuitName;
+            persistenceQueue.write("sync " + currentOutputs.size() + " outputs to database for circuit " + circuitName,
+                    () -> outputToDB.syncOutputsForCircuit(username, circuitName, currentOutputs));
 
         } catch (Exception e) {
             System.err.println("Error syncing outputs to database for circuit " + currentCircuitName + ": " + e.getMessage());
@@ -524,12 +536,10 @@ public class OutputManager {
      * Clear outputs from database for the current circuit
      */
     public void clearOutputsFromDatabase() {
-        boolean result = outputToDB.clearOutputsForCircuit(currentUsername, currentCircuitName);
-        if (result) {
-            System.out.println("Cleared all outputs from database for circuit " + currentCircuitName);
-        } else {
-            System.err.println("Failed to clear outputs from database for circuit " + currentCircuitName);
-        }
+        final String username = currentUsername;
+        final String circuitName = currentCircuitName;
+        persistenceQueue.write("clear outputs from database for circuit " + circuitName,
+                () -> outputToDB.clearOutputsForCircuit(username, circuitName));
     }
 
     /**
@@ -621,6 +631,7 @@ public class OutputManager {
 
         // Clear the output state mappings
         outputStates.clear();
+        hazardReports.clear();
 
 //        System.out.println("After clearing:");
 //        System.out.println("- outputs.size(): " + outputs.size());
@@ -654,10 +665,7 @@ public class OutputManager {
                 }
 
                 // Reset pin visual
-                ImageButton pin = pins[coord.s][coord.r][coord.c];
-                if (pin != null) {
-                    pin.setImageResource(R.drawable.breadboard_pin);
-                }
+                breadboardView.resetPin(coord);
 
             } catch (Exception e) {
                 System.err.println("Error clearing visual for output at " + coord + ": " + e.getMessage());
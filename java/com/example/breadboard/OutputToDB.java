@@ -16,7 +16,7 @@ public class OutputToDB {
 
     public OutputToDB(Context context) {
         this.context = context;
-        this.dbHelper = new DBHelper(context);
+        this.dbHelper = DBHelper.getInstance(context);
     }
 
     public static class OutputData {
@@ -50,17 +50,10 @@ public class OutputToDB {
     }
 
     public boolean insertOutput(String username, String circuitName, Coordinate coord) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put("username", username);
-        values.put("circuit_name", circuitName);
-        values.put("section", coord.s);
-        values.put("row_pos", coord.r);
-        values.put("column_pos", coord.c);
-
-        long result = db.insert("outputs", null, values);
-        db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        long result = dbHelper.executeInsert("INSERT OR IGNORE INTO outputs(circuit_id, section, row_pos, column_pos) " +
+                "VALUES (?, ?, ?, ?)",
+                circuitId, coord.s, coord.r, coord.c);
 
         return result != -1;
     }
@@ -70,6 +63,7 @@ public class OutputToDB {
      */
     public boolean updateOutputPosition(String username, String circuitName, Coordinate oldCoord, Coordinate newCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
 
         values.put("section", newCoord.s);
@@ -77,10 +71,9 @@ public class OutputToDB {
         values.put("column_pos", newCoord.c);
 
         int rowsAffected = db.update("outputs", values,
-                "username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(oldCoord.s),
+                "circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(oldCoord.s),
                         String.valueOf(oldCoord.r), String.valueOf(oldCoord.c)});
-        db.close();
 
         return rowsAffected > 0;
     }
@@ -90,11 +83,11 @@ public class OutputToDB {
      */
     public boolean deleteOutputByCoordinate(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("outputs",
-                "username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s),
+                "circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s),
                         String.valueOf(coord.r), String.valueOf(coord.c)});
-        db.close();
 
         return rowsDeleted > 0;
     }
@@ -105,15 +98,16 @@ public class OutputToDB {
     public List<OutputData> getOutputsForCircuit(String username, String circuitName) {
         List<OutputData> outputList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM outputs WHERE username = ? AND circuit_name = ? ORDER BY section, row_pos, column_pos",
-                new String[]{username, circuitName});
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, section, row_pos, column_pos FROM outputs WHERE circuit_id = ? ORDER BY section, row_pos, column_pos",
+                new String[]{String.valueOf(circuitId)});
 
         if (cursor.moveToFirst()) {
             do {
                 OutputData outputData = new OutputData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("row_pos")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("column_pos"))
@@ -123,7 +117,6 @@ public class OutputToDB {
         }
 
         cursor.close();
-        db.close();
 
         return outputList;
     }
@@ -133,9 +126,9 @@ public class OutputToDB {
      */
     public boolean clearOutputsForCircuit(String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        int rowsDeleted = db.delete("outputs", "username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-        db.close();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
+        int rowsDeleted = db.delete("outputs", "circuit_id = ?",
+                new String[]{String.valueOf(circuitId)});
 
         return rowsDeleted >= 0;
     }
@@ -151,40 +144,13 @@ public class OutputToDB {
      * Save current circuit outputs to database
      */
     public boolean syncOutputsForCircuit(String username, String circuitName, List<OutputData> currentOutputs) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
-
-        try {
-            // Clear existing outputs for this circuit
-            db.delete("outputs", "username = ? AND circuit_name = ?",
-                    new String[]{username, circuitName});
-
-            // Insert current outputs
-            ContentValues values = new ContentValues();
-            for (OutputData output : currentOutputs) {
-                values.clear();
-                values.put("username", username);
-                values.put("circuit_name", circuitName);
-                values.put("section", output.section);
-                values.put("row_pos", output.row_pos);
-                values.put("column_pos", output.column_pos);
-
-                long result = db.insert("outputs", null, values);
-                if (result == -1) {
-                    throw new Exception("Failed to insert output at: " + output.getCoordinate());
-                }
-            }
-
-            db.setTransactionSuccessful();
-            return true;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            db.endTransaction();
-            db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        List<Object[]> rows = new ArrayList<>();
+        for (OutputData output : currentOutputs) {
+            rows.add(new Object[]{output.section, output.row_pos, output.column_pos});
         }
+        return dbHelper.syncCircuitRows("outputs", circuitId,
+                new String[]{"section", "row_pos", "column_pos"}, rows);
     }
 
     /**
@@ -192,8 +158,9 @@ public class OutputToDB {
      */
     public boolean outputExistsAt(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM outputs WHERE username = ? AND circuit_name = ? AND section = ? AND row_pos = ? AND column_pos = ?",
-                new String[]{username, circuitName, String.valueOf(coord.s),
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM outputs WHERE circuit_id = ? AND section = ? AND row_pos = ? AND column_pos = ?",
+                new String[]{String.valueOf(circuitId), String.valueOf(coord.s),
                         String.valueOf(coord.r), String.valueOf(coord.c)});
 
         boolean exists = false;
@@ -202,7 +169,6 @@ public class OutputToDB {
         }
 
         cursor.close();
-        db.close();
         return exists;
     }
 
@@ -210,17 +176,8 @@ public class OutputToDB {
      * Get output count for a specific circuit
      */
     public int getOutputCountForCircuit(String username, String circuitName) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM outputs WHERE username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-
-        int count = 0;
-        if (cursor.moveToFirst()) {
-            count = cursor.getInt(0);
-        }
-
-        cursor.close();
-        db.close();
-        return count;
+        // Read from the counter on circuits rather than counting rows
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        return (int) dbHelper.queryForLong("SELECT IFNULL((SELECT output_count FROM circuits WHERE id = ?), 0)", circuitId);
     }
 }
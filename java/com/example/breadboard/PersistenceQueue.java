@@ -0,0 +1,257 @@
+package com.example.breadboard;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.breadboard.model.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for board edits. The managers hand their database writes to this queue
+ * instead of running them on the UI thread; one background writer commits them in order, a
+ * batch per transaction, shortly after the first pending write or when flushed.
+ *
+ * Writes name the entity they touch. While still pending, a removal cancels the matching
+ * addition, so placing and removing a pin never reaches the disk, and a repeated addition or
+ * removal of the same entity is dropped. Writes that are not about one entity (clearing or
+ * syncing a whole circuit) are never coalesced and end coalescing with anything before them.
+ *
+ * A batch commits only if every write in it succeeds. A write that fails, and any nested
+ * transaction inside it that ends unsuccessfully, rolls the whole batch back, so the batch is
+ * then redone one write per transaction and only the failing writes are lost. Side effects
+ * outside the database (dropping journal records) belong in a write's onCommitted callback,
+ * which runs only once its transaction has committed.
+ *
+ * Anything that reads the tables must flush first: flushThen() from the UI thread, which
+ * does not block it, or flushAndWait() from a background thread. MainActivity waits only in
+ * onPause, so edits are committed before the app can be stopped.
+ */
+public class PersistenceQueue {
+    public static final long FLUSH_DELAY_MS = 300;
+
+    /** A database write; returns false when it did not take effect. */
+    public interface Write {
+        boolean run();
+    }
+
+    private static final int INSERT = 0;
+    private static final int DELETE = 1;
+    private static final int OTHER = 2;
+
+    private static final class Pending {
+        final String key;
+        final int kind;
+        final String description;
+        final Write write;
+        final Runnable onCommitted;
+        boolean cancelled;
+
+        Pending(String key, int kind, String description, Write write, Runnable onCommitted) {
+            this.key = key;
+            this.kind = kind;
+            this.description = description;
+            this.write = write;
+            this.onCommitted = onCommitted;
+        }
+    }
+
+    private static PersistenceQueue instance;
+
+    private DBHelper dbHelper;
+    private final ScheduledExecutorService writer;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Guarded by this
+    private List<Pending> pending = new ArrayList<>();
+    private final Map<String, Pending> lastByKey = new HashMap<>();
+    private boolean scheduled = false;
+    private long coalesced = 0;
+
+    public static synchronized PersistenceQueue getInstance(Context context) {
+        if (instance == null) {
+            instance = new PersistenceQueue(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PersistenceQueue(Context context) {
+        this.dbHelper = DBHelper.getInstance(context);
+        this.writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PersistenceQueue-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Key of the row a table holds for one pin of a circuit. */
+    public static String key(String table, String username, String circuitName, Coordinate coord) {
+        return table + "|" + username + "|" + circuitName + "|" + coord.s + ":" + coord.r + ":" + coord.c;
+    }
+
+    public void insert(String key, String description, Write write) {
+        enqueue(new Pending(key, INSERT, description, write, null));
+    }
+
+    public void delete(String key, String description, Write write) {
+        enqueue(new Pending(key, DELETE, description, write, null));
+    }
+
+    /** A write over many rows, kept in order with everything around it. */
+    public void write(String description, Write write) {
+        write(description, write, null);
+    }
+
+    /** As write(description, write), running onCommitted on the writer thread once it is committed. */
+    public void write(String description, Write write, Runnable onCommitted) {
+        enqueue(new Pending(null, OTHER, description, write, onCommitted));
+    }
+
+    private synchronized void enqueue(Pending write) {
+        if (write.kind == OTHER) {
+            lastByKey.clear();
+        } else {
+            Pending last = lastByKey.get(write.key);
+            if (last != null && last.kind == INSERT && write.kind == DELETE) {
+                // Added and removed before either reached the disk
+                last.cancelled = true;
+                lastByKey.remove(write.key);
+                coalesced += 2;
+                return;
+            }
+            if (last != null && last.kind == write.kind) {
+                coalesced++;
+                return;
+            }
+            lastByKey.put(write.key, write);
+        }
+        pending.add(write);
+        if (!scheduled) {
+            scheduled = true;
+            writer.schedule(this::drain, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Start committing pending writes now, without waiting. */
+    public void flush() {
+        writer.execute(this::drain);
+    }
+
+    /**
+     * Commit every write queued so far, then run action on the main thread. For UI code that
+     * reads the tables, so it sees queued edits without blocking on the writer.
+     */
+    public void flushThen(Runnable action) {
+        writer.execute(() -> {
+            drain();
+            mainHandler.post(action);
+        });
+    }
+
+    /**
+     * Commit every write queued so far and wait for it; never from the writer thread, whose
+     * own drain it would wait on. Returns false if interrupted or any of the writes failed.
+     */
+    public boolean flushAndWait() {
+        try {
+            return writer.submit(this::drain).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            System.err.println("Error flushing persistence queue: " + e.getCause());
+            return false;
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalesced;
+    }
+
+    // Runs on the writer thread only
+    private boolean drain() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new ArrayList<>();
+            lastByKey.clear();
+            scheduled = false;
+        }
+        List<Pending> writes = new ArrayList<>(batch.size());
+        for (Pending write : batch) {
+            if (!write.cancelled) writes.add(write);
+        }
+        if (writes.isEmpty()) return true;
+
+        if (commit(writes)) {
+            System.out.println("PersistenceQueue: committed " + writes.size() + " of " + batch.size() + " queued writes");
+            return true;
+        }
+
+        // One bad write must not lose the rest of the batch: redo it a write per transaction
+        int failed = 0;
+        for (Pending write : writes) {
+            if (!commit(Collections.singletonList(write))) failed++;
+        }
+        System.err.println("PersistenceQueue: " + failed + " of " + writes.size() + " queued writes failed");
+        return failed == 0;
+    }
+
+    // Run writes in one transaction, committed only if all of them succeed
+    private boolean commit(List<Pending> writes) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        boolean succeeded = true;
+        db.beginTransaction();
+        try {
+            for (Pending write : writes) {
+                if (!run(write)) {
+                    succeeded = false;
+                    break;
+                }
+            }
+            if (succeeded) db.setTransactionSuccessful();
+        } finally {
+            try {
+                db.endTransaction();
+            } catch (Exception e) {
+                System.err.println("Error committing " + writes.size() + " queued writes: " + e.getMessage());
+                succeeded = false;
+            }
+        }
+        if (!succeeded) return false;
+
+        for (Pending write : writes) {
+            if (write.onCommitted == null) continue;
+            try {
+                write.onCommitted.run();
+            } catch (Exception e) {
+                System.err.println("Error after trying to " + write.description + ": " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private static boolean run(Pending write) {
+        try {
+            if (write.write.run()) return true;
+            System.err.println("Failed to " + write.description);
+        } catch (Exception e) {
+            System.err.println("Error trying to " + write.description + ": " + e.getMessage());
+        }
+        return false;
+    }
+}
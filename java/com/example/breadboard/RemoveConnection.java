@@ -1,14 +1,12 @@
 package com.example.breadboard;
 
 import android.app.AlertDialog;
-import android.widget.FrameLayout;
-import android.widget.GridLayout;
-import android.widget.ImageButton;
-import android.widget.TextView;
 
 import com.example.breadboard.InputManager.InputInfo;
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
 
 import java.util.List;
 import java.util.Map;
@@ -16,35 +14,30 @@ import java.util.Map;
 public class RemoveConnection {
     
     private MainActivity mainActivity;
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private Attribute[][][] pinAttributes;
-    private GridLayout middleGrid;
     private List<Coordinate> inputs;
     private List<Coordinate> vccPins;
     private List<Coordinate> gndPins;
     private Map<Coordinate, InputInfo> inputNames;
-    private Map<Coordinate, TextView> inputLabels;
     private InputManager inputManager;
     private OutputManager outputManager;
     
     // Constants
     private static final int ROWS = 5;
     
-    public RemoveConnection(MainActivity mainActivity, ImageButton[][][] pins,
-                            Attribute[][][] pinAttributes, GridLayout middleGrid,
+    public RemoveConnection(MainActivity mainActivity, BreadboardView breadboardView,
+                            Attribute[][][] pinAttributes,
                             List<Coordinate> inputs, List<Coordinate> vccPins,
                             List<Coordinate> gndPins, Map<Coordinate, InputInfo> inputNames,
-                            Map<Coordinate, TextView> inputLabels, InputManager inputManager,
-                            OutputManager outputManager) {
+                            InputManager inputManager, OutputManager outputManager) {
         this.mainActivity = mainActivity;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.pinAttributes = pinAttributes;
-        this.middleGrid = middleGrid;
         this.inputs = inputs;
         this.vccPins = vccPins;
         this.gndPins = gndPins;
         this.inputNames = inputNames;
-        this.inputLabels = inputLabels;
         this.inputManager = inputManager;
         this.outputManager = outputManager;
     }
@@ -68,6 +61,8 @@ public class RemoveConnection {
     }
     
     public void removeConnection(Coordinate coord) {
+        recordRemoval(coord);
+
         // Remove from database first if it's an input
         if (inputNames.containsKey(coord)) {
             inputManager.removeInputFromDatabase(coord);
@@ -86,59 +81,8 @@ public class RemoveConnection {
         // Remove input name if it exists
         inputNames.remove(coord);
 
-        // Handle input label removal (FrameLayout case)
-        TextView inputLabel = inputLabels.get(coord);
-        if (inputLabel != null) {
-            try {
-                // Get the FrameLayout parent
-                FrameLayout frameLayout = (FrameLayout) inputLabel.getParent();
-                if (frameLayout != null && frameLayout.getParent() == middleGrid) {
-                    // Get the FrameLayout's layout parameters before removal
-                    GridLayout.LayoutParams frameParams = (GridLayout.LayoutParams) frameLayout.getLayoutParams();
-
-                    // Remove FrameLayout from grid
-                    middleGrid.removeView(frameLayout);
-
-                    // Create a completely new pin button
-                    ImageButton newPin = new ImageButton(mainActivity);
-                    newPin.setImageResource(R.drawable.breadboard_pin);
-                    newPin.setBackground(null);
-                    newPin.setScaleType(ImageButton.ScaleType.CENTER_INSIDE);
-
-                    // Set up the click listener
-                    final int s = coord.s, r = coord.r, c = coord.c;
-                    newPin.setOnClickListener(v -> mainActivity.onPinClicked(new Coordinate(s, r, c)));
-
-                    // Create fresh layout parameters for the new pin
-                    GridLayout.LayoutParams newParams = new GridLayout.LayoutParams();
-                    int originalSize = mainActivity.getResources().getDimensionPixelSize(R.dimen.pin_size);
-                    newParams.width = originalSize;
-                    newParams.height = originalSize;
-                    newParams.setMargins(2, -2, 2, -2); // Use original pin margins
-                    newParams.rowSpec = frameParams.rowSpec;
-                    newParams.columnSpec = frameParams.columnSpec;
-
-                    newPin.setLayoutParams(newParams);
-
-                    // Update the pins array reference
-                    pins[coord.s][coord.r][coord.c] = newPin;
-
-                    // Add new pin to grid
-                    middleGrid.addView(newPin);
-                }
-
-                // Remove from labels map
-                inputLabels.remove(coord);
-
-            } catch (ClassCastException | NullPointerException e) {
-                // Handle case where FrameLayout structure is not as expected
-                // Fall back to normal pin reset
-                resetPinToOriginal(coord);
-            }
-        } else {
-            // For non-input pins, reset normally
-            resetPinToOriginal(coord);
-        }
+        // Back to a plain pin; this also drops an input's name label
+        breadboardView.resetPin(coord);
 
         // Reset attributes - IMPORTANT: Only reset if it wasn't an output (output manager handles its own cleanup)
         if (!outputManager.isOutput(coord)) {
@@ -155,108 +99,20 @@ public class RemoveConnection {
         mainActivity.updateInputDisplay();
     }
     
-    private void resetPinToOriginal(Coordinate coord) {
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-        if (pin != null) {
-            // Reset pin image
-            pin.setImageResource(R.drawable.breadboard_pin);
-
-            // Check if pin is currently in a FrameLayout (input case)
-            if (pin.getParent() instanceof FrameLayout) {
-                FrameLayout frameLayout = (FrameLayout) pin.getParent();
-                if (frameLayout.getParent() == middleGrid) {
-                    // Get the FrameLayout's GridLayout parameters
-                    GridLayout.LayoutParams frameParams = (GridLayout.LayoutParams) frameLayout.getLayoutParams();
-
-                    // Remove FrameLayout from grid
-                    middleGrid.removeView(frameLayout);
-
-                    // Create new pin with proper GridLayout parameters
-                    ImageButton newPin = new ImageButton(mainActivity);
-                    newPin.setImageResource(R.drawable.breadboard_pin);
-                    newPin.setBackground(null);
-                    newPin.setScaleType(ImageButton.ScaleType.CENTER_INSIDE);
-
-                    // Set up the click listener
-                    final int s = coord.s, r = coord.r, c = coord.c;
-                    newPin.setOnClickListener(v -> mainActivity.onPinClicked(new Coordinate(s, r, c)));
-
-                    // Create fresh GridLayout parameters
-                    GridLayout.LayoutParams newParams = new GridLayout.LayoutParams();
-                    int originalSize = mainActivity.getResources().getDimensionPixelSize(R.dimen.pin_size);
-                    newParams.width = originalSize;
-                    newParams.height = originalSize;
-                    newParams.setMargins(2, -2, 2, -2);
-                    newParams.rowSpec = frameParams.rowSpec;
-                    newParams.columnSpec = frameParams.columnSpec;
-
-                    newPin.setLayoutParams(newParams);
-
-                    // Update pins array reference
-                    pins[coord.s][coord.r][coord.c] = newPin;
-
-                    // Add to grid
-                    middleGrid.addView(newPin);
-                }
-            } else {
-                // Pin is directly in GridLayout, safe to cast
-                try {
-                    GridLayout.LayoutParams params = (GridLayout.LayoutParams) pin.getLayoutParams();
-                    if (params != null) {
-                        int originalSize = mainActivity.getResources().getDimensionPixelSize(R.dimen.pin_size);
-                        params.width = originalSize;
-                        params.height = originalSize;
-                        params.setMargins(2, -2, 2, -2);
-                        pin.setLayoutParams(params);
-                    }
-                } catch (ClassCastException e) {
-                    // If cast fails, recreate the pin properly
-                    recreatePinInGrid(coord);
-                }
-            }
+    // Tell the edit history what this pin held before it is cleared
+    private void recordRemoval(Coordinate coord) {
+        InputInfo info = inputNames.get(coord);
+        if (info != null) {
+            mainActivity.recordEdit(BoardEdit.remove(BoardElement.input(info.name, coord)));
+        } else if (outputManager.isOutput(coord)) {
+            mainActivity.recordEdit(BoardEdit.remove(BoardElement.output(coord)));
+        } else if (vccPins.contains(coord)) {
+            mainActivity.recordEdit(BoardEdit.remove(BoardElement.power(ComponentToDB.VCC, coord)));
+        } else if (gndPins.contains(coord)) {
+            mainActivity.recordEdit(BoardEdit.remove(BoardElement.power(ComponentToDB.GND, coord)));
         }
     }
-    
-    private void recreatePinInGrid(Coordinate coord) {
-        ImageButton oldPin = pins[coord.s][coord.r][coord.c];
-        if (oldPin != null && oldPin.getParent() != null) {
-            // Remove old pin from its parent
-            ((android.view.ViewGroup) oldPin.getParent()).removeView(oldPin);
-        }
-
-        // Create new pin
-        ImageButton newPin = new ImageButton(mainActivity);
-        newPin.setImageResource(R.drawable.breadboard_pin);
-        newPin.setBackground(null);
-        newPin.setScaleType(ImageButton.ScaleType.CENTER_INSIDE);
 
-        // Set up click listener
-        final int s = coord.s, r = coord.r, c = coord.c;
-        newPin.setOnClickListener(v -> mainActivity.onPinClicked(new Coordinate(s, r, c)));
-
-        // Create proper GridLayout parameters
-        GridLayout.LayoutParams params = new GridLayout.LayoutParams();
-        int originalSize = mainActivity.getResources().getDimensionPixelSize(R.dimen.pin_size);
-        params.width = originalSize;
-        params.height = originalSize;
-        params.setMargins(2, -2, 2, -2);
-
-        // Calculate grid position
-        int gridRow = coord.s == 0 ? coord.r : coord.r + 6;
-        int gridCol = coord.c + 1;
-
-        params.rowSpec = GridLayout.spec(gridRow);
-        params.columnSpec = GridLayout.spec(gridCol);
-
-        newPin.setLayoutParams(params);
-
-        // Update pins array reference
-        pins[coord.s][coord.r][coord.c] = newPin;
-
-        // Add to grid
-        middleGrid.addView(newPin);
-    }
-    
     public void removeValue(Coordinate src) {
         int tmp;
 
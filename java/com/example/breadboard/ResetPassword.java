@@ -47,7 +47,7 @@ public class ResetPassword extends AppCompatActivity {
 
     private void initializeViews() {
         // Initialize database helper
-        dbHelper = new DBHelper(this);
+        dbHelper = DBHelper.getInstance(this);
 
         // Initialize text inputs
         usernameEditText = findViewById(R.id.username_edittext);
@@ -332,12 +332,4 @@ public class ResetPassword extends AppCompatActivity {
             e.printStackTrace();
         }
     }
-
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        if (dbHelper != null) {
-            dbHelper.close();
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,200 @@
+package com.example.breadboard;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Runs the database schema upgrade as an ordered list of migrations, one per version. Each
+ * migration is applied once, oldest first, when the stored version is below its own.
+ *
+ * Migrations never drop data to recover from an error: a failing migration throws, the upgrade
+ * transaction that SQLiteOpenHelper opens around onUpgrade rolls back, and the database stays
+ * at its old version with every row intact, to be upgraded again on the next open. Tables that
+ * change shape are rebuilt copy-on-migrate: the new table is created beside the old one, rows
+ * are copied BATCH_SIZE at a time in rowid order, and only then is the old table dropped.
+ */
+public class SchemaMigrator {
+    // Rows per copy statement when rebuilding a table
+    public static final int BATCH_SIZE = 1000;
+
+    /** Told how far the running migration is; done == total when it finishes. */
+    public interface ProgressListener {
+        void onProgress(int version, String description, long done, long total);
+    }
+
+    public interface Step {
+        void apply(SQLiteDatabase db, SchemaMigrator migrator);
+    }
+
+    public static final class Migration {
+        public final int version;
+        public final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    private final List<Migration> migrations;
+    private ProgressListener listener;
+    private Migration current;
+
+    /** Migrations must be given in strictly increasing version order. */
+    public SchemaMigrator(List<Migration> migrations) {
+        for (int i = 1; i < migrations.size(); i++) {
+            if (migrations.get(i).version <= migrations.get(i - 1).version) {
+                throw new IllegalArgumentException("Migration to version " + migrations.get(i).version
+                        + " is out of order");
+            }
+        }
+        this.migrations = Collections.unmodifiableList(new ArrayList<>(migrations));
+    }
+
+    public static Migration migration(int version, String description, Step step) {
+        return new Migration(version, description, step);
+    }
+
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    public int getLatestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version;
+    }
+
+    /** Apply every migration above oldVersion up to newVersion, in order. */
+    public void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (newVersion > getLatestVersion()) {
+            throw new IllegalStateException("No migration reaches database version " + newVersion);
+        }
+        for (Migration migration : migrations) {
+            if (migration.version <= oldVersion || migration.version > newVersion) continue;
+            current = migration;
+            long start = System.nanoTime();
+            progress(0, 1);
+            try {
+                migration.step.apply(db, this);
+            } catch (RuntimeException e) {
+                System.err.println("Error migrating to version " + migration.version + " ("
+                        + migration.description + "): " + e.getMessage());
+                throw e;
+            } finally {
+                current = null;
+            }
+            report(migration, 1, 1);
+            System.out.println("Migrated to version " + migration.version + " (" + migration.description
+                    + ") in " + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+
+    /** Report progress of the running migration. */
+    public void progress(long done, long total) {
+        if (current != null) report(current, done, total);
+    }
+
+    private void report(Migration migration, long done, long total) {
+        if (listener != null) {
+            listener.onProgress(migration.version, migration.description, done, total);
+        }
+    }
+
+    /**
+     * Give table a new definition (the part between the parentheses of CREATE TABLE) without
+     * losing its rows. Columns the old and new layouts share are copied across; a table that
+     * does not exist yet is simply created. Indexes and triggers are left to the caller.
+     */
+    public void rebuildTable(SQLiteDatabase db, String table, String definition) {
+        List<String> oldColumns = columns(db, table);
+        if (oldColumns.isEmpty()) {
+            db.execSQL("create Table " + table + "(" + definition + ")");
+            return;
+        }
+
+        String rebuilt = table + "_migrating";
+        db.execSQL("DROP TABLE IF EXISTS " + rebuilt);
+        db.execSQL("create Table " + rebuilt + "(" + definition + ")");
+
+        Set<String> newColumns = new HashSet<>(columns(db, rebuilt));
+        StringBuilder shared = new StringBuilder();
+        for (String column : oldColumns) {
+            if (!newColumns.contains(column)) continue;
+            if (shared.length() > 0) shared.append(", ");
+            shared.append(column);
+        }
+        if (shared.length() > 0) {
+            copyRows(db, table, rebuilt, shared.toString(), shared.toString());
+        }
+
+        db.execSQL("DROP TABLE " + table);
+        db.execSQL("ALTER TABLE " + rebuilt + " RENAME TO " + table);
+    }
+
+    /**
+     * INSERT OR IGNORE INTO to(toColumns) SELECT selectColumns FROM from t, run over BATCH_SIZE
+     * rows of from at a time in rowid order so no one statement has to hold a whole large table,
+     * reporting progress after each batch. selectColumns may refer to the source row as t.
+     * Returns the number of source rows read.
+     */
+    public long copyRows(SQLiteDatabase db, String from, String to, String toColumns, String selectColumns) {
+        long total = rowCount(db, from);
+        String insert = "INSERT OR IGNORE INTO " + to + "(" + toColumns + ") SELECT " + selectColumns +
+                " FROM " + from + " t WHERE t.rowid > ? AND t.rowid <= ?";
+        String nextBatch = "SELECT MAX(rowid), COUNT(*) FROM (SELECT rowid FROM " + from +
+                " WHERE rowid > CAST(? AS INTEGER) ORDER BY rowid LIMIT " + BATCH_SIZE + ")";
+
+        long lastRowId = Long.MIN_VALUE;
+        long done = 0;
+        progress(0, total);
+        while (true) {
+            long upper;
+            long rows;
+            Cursor cursor = db.rawQuery(nextBatch, new String[]{String.valueOf(lastRowId)});
+            try {
+                cursor.moveToFirst();
+                rows = cursor.getLong(1);
+                upper = cursor.getLong(0);
+            } finally {
+                cursor.close();
+            }
+            if (rows == 0) break;
+
+            db.execSQL(insert, new Object[]{lastRowId, upper});
+            lastRowId = upper;
+            done += rows;
+            progress(done, total);
+        }
+        System.out.println("Copied " + done + " rows from " + from + " to " + to);
+        return done;
+    }
+
+    private static List<String> columns(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(cursor.getColumnIndexOrThrow("name")));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    private static long rowCount(SQLiteDatabase db, String table) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + table, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
@@ -64,7 +64,7 @@ public class SigninActivity extends AppCompatActivity {
     }
 
     private void setupDatabase() {
-        DB = new DBHelper(this);
+        DB = DBHelper.getInstance(this);
     }
 
     private void setupPasswordValidation() {
@@ -0,0 +1,475 @@
+package com.example.breadboard;
+
+import android.content.Context;
+
+import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.Netlist;
+import com.example.breadboard.sim.NetlistCache;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Small embedded HTTP service on the loopback interface that simulates circuits for the
+ * autograder and lab dashboards.
+ *
+ * POST /simulate takes a JSON document. The circuit is either referenced by
+ * {"username", "circuit_name"} and loaded from the database, or given inline with arrays
+ * named after the tables and columns it is stored in:
+ * <pre>
+ * {"ics":              [{"ic_type": "NAND", "section": 0, "row_pos": 4, "column_pos": 10}],
+ *  "wires":            [{"src_section": 1, "src_row": 1, "src_column": 12,
+ *                        "dst_section": 1, "dst_row": 1, "dst_column": 20}],
+ *  "inputs":           [{"name": "A", "section": 1, "row_pos": 2, "column_pos": 10}],
+ *  "outputs":          [{"section": 1, "row_pos": 3, "column_pos": 12}],
+ *  "power_components": [{"value": 1, "section": 0, "row_pos": 0, "column_pos": 10}],
+ *  "vectors":          ["01", [1, 1]]}
+ * </pre>
+ * Vector bits follow the input names sorted alphabetically. The response lists the input
+ * names, output labels (section:row:column) and one output vector per input vector.
+ * GET /health answers "ok".
+ *
+ * Every request must carry an "Authorization: Bearer" header with the token of this instance
+ * (getToken()), made fresh each time the service is constructed; other requests get 401.
+ * Malformed requests get 400, and any other failure 500, after which the connection closes.
+ *
+ * Each connection is handled on its own thread: a virtual thread where the runtime has them,
+ * otherwise a pooled platform thread. Compiled netlists are shared across requests.
+ */
+public class SimulationService {
+    public static final int DEFAULT_PORT = 8765;
+    private static final int MAX_BODY_BYTES = 8 * 1024 * 1024;
+    private static final int MAX_LINE_BYTES = 8 * 1024;     // request line or one header
+    private static final int MAX_HEADER_BYTES = 32 * 1024;  // all headers of a request
+
+    private Context context;
+    private int port;
+    private NetlistCache netlistCache;
+    private CircuitToDB circuitToDB;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Thread acceptThread;
+    private volatile boolean running = false;
+    private final String token = newToken();
+
+    public SimulationService(Context context) {
+        this(context, DEFAULT_PORT, 256);
+    }
+
+    public SimulationService(Context context, int port, int cacheSize) {
+        this.context = context.getApplicationContext();
+        this.port = port;
+        this.netlistCache = new NetlistCache(cacheSize);
+        this.circuitToDB = new CircuitToDB(this.context);
+    }
+
+    /**
+     * Start listening. The app itself never starts the service: this is the entry point for
+     * instrumentation tests and lab tooling, which construct it and hand getToken() to their
+     * clients.
+     */
+    public synchronized boolean start() {
+        if (running) return true;
+        try {
+            serverSocket = new ServerSocket(port, 128, InetAddress.getByName("127.0.0.1"));
+            executor = newRequestExecutor();
+            running = true;
+            acceptThread = new Thread(this::acceptLoop, "SimulationService-accept");
+            acceptThread.start();
+            System.out.println("Simulation service listening on 127.0.0.1:" + serverSocket.getLocalPort());
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error starting simulation service: " + e.getMessage());
+            return false;
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing simulation service: " + e.getMessage());
+        }
+        if (executor != null) executor.shutdownNow();
+        serverSocket = null;
+        executor = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public NetlistCache getNetlistCache() {
+        return netlistCache;
+    }
+
+    /** Bearer token that requests to this instance must present. */
+    public String getToken() {
+        return token;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) hex.append(String.format(Locale.ROOT, "%02x", b));
+        return hex.toString();
+    }
+
+    // Constant-time comparison of the Authorization header against the token
+    private boolean authorized(String authorization) {
+        if (authorization == null || !authorization.startsWith("Bearer ")) return false;
+        return MessageDigest.isEqual(authorization.substring(7).trim().getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor where available, looked up reflectively so
+    // the class still loads on runtimes without virtual threads
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                executor.execute(() -> handleConnection(socket));
+            } catch (SocketException e) {
+                // Socket closed by stop()
+                break;
+            } catch (Exception e) {
+                System.err.println("Simulation service accept error: " + e.getMessage());
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            try {
+                serve(in, out);
+            } catch (RuntimeException e) {
+                // Thrown outside simulate(), before any response to this request was started
+                System.err.println("Simulation service connection error: " + e);
+                writeResponse(out, 500, errorJson("internal error"), false);
+            }
+        } catch (IOException e) {
+            System.err.println("Simulation service connection error: " + e.getMessage());
+        }
+    }
+
+    // Requests of one connection until it closes or asks not to be kept alive
+    private void serve(InputStream in, OutputStream out) throws IOException {
+        boolean keepAlive = true;
+        while (keepAlive && running) {
+            // Lines are capped: they are read before the token can be checked
+            String requestLine;
+            try {
+                requestLine = readLine(in, MAX_LINE_BYTES);
+            } catch (LineTooLongException e) {
+                writeResponse(out, 400, errorJson("request line too long"), false);
+                break;
+            }
+            if (requestLine == null || requestLine.isEmpty()) break;
+            String[] parts = requestLine.split(" ");
+            if (parts.length < 3) {
+                writeResponse(out, 400, "{\"error\":\"bad request line\"}", false);
+                break;
+            }
+
+            int contentLength = 0;
+            boolean badLength = false;
+            String authorization = null;
+            keepAlive = !parts[2].equals("HTTP/1.0");
+            String header;
+            int headerBytes = 0;
+            boolean headersTooLarge = false;
+            while (true) {
+                try {
+                    header = readLine(in, Math.min(MAX_LINE_BYTES, MAX_HEADER_BYTES - headerBytes));
+                } catch (LineTooLongException e) {
+                    headersTooLarge = true;
+                    break;
+                }
+                if (header == null || header.isEmpty()) break;
+                headerBytes += header.length() + 2;
+                int colon = header.indexOf(':');
+                if (colon < 0) continue;
+                String name = header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = header.substring(colon + 1).trim();
+                if (name.equals("content-length")) {
+                    try {
+                        contentLength = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        badLength = true;
+                    }
+                }
+                if (name.equals("connection")) keepAlive = !value.equalsIgnoreCase("close");
+                if (name.equals("authorization")) authorization = value;
+            }
+            if (headersTooLarge) {
+                writeResponse(out, 431, errorJson("request headers too large"), false);
+                break;
+            }
+            // The body cannot be skipped without a length, so these close the connection
+            if (badLength || contentLength < 0) {
+                writeResponse(out, 400, errorJson("bad Content-Length"), false);
+                break;
+            }
+            if (contentLength > MAX_BODY_BYTES) {
+                writeResponse(out, 413, errorJson("body too large"), false);
+                break;
+            }
+            byte[] body = readBody(in, contentLength);
+            if (body == null) break;
+            if (!authorized(authorization)) {
+                writeResponse(out, 401, errorJson("missing or wrong token"), false);
+                break;
+            }
+
+            String method = parts[0];
+            String path = parts[1];
+            if (method.equals("GET") && path.equals("/health")) {
+                writeResponse(out, 200, "ok", keepAlive);
+            } else if (method.equals("POST") && path.equals("/simulate")) {
+                try {
+                    String response = simulate(new JSONObject(new String(body, StandardCharsets.UTF_8)));
+                    writeResponse(out, 200, response, keepAlive);
+                } catch (JSONException | IllegalArgumentException e) {
+                    writeResponse(out, 400, errorJson(e.getMessage()), keepAlive);
+                } catch (Exception e) {
+                    System.err.println("Simulation service request error: " + e);
+                    writeResponse(out, 500, errorJson("internal error"), false);
+                    break;
+                }
+            } else {
+                writeResponse(out, 404, errorJson("unknown endpoint " + method + " " + path), keepAlive);
+            }
+        }
+    }
+
+    /** Evaluate the vectors of one request document and build the JSON response. */
+    String simulate(JSONObject request) throws JSONException {
+        long start = System.nanoTime();
+        Netlist netlist;
+        if (request.has("circuit_name") && !request.has("ics")) {
+            netlist = savedNetlist(request.getString("username"), request.getString("circuit_name"));
+        } else {
+            Netlist.Builder builder = builderFromJson(request);
+            for (String placement : builder.skipped()) {
+                System.out.println("Simulation service: skipping " + placement);
+            }
+            netlist = netlistCache.get(builder);
+        }
+
+        JSONArray vectors = request.optJSONArray("vectors");
+        int vectorCount = vectors != null ? vectors.length() : 0;
+        int inputCount = netlist.inputCount();
+        int outputCount = netlist.outputCount();
+        int[][] results = new int[vectorCount][outputCount];
+
+        // 64 vectors per simulation pass
+        long[] words = new long[inputCount];
+        long[] values = netlist.newState();
+        for (int base = 0; base < vectorCount; base += 64) {
+            int count = Math.min(64, vectorCount - base);
+            Arrays.fill(words, 0L);
+            for (int k = 0; k < count; k++) {
+                int[] bits = parseVector(vectors.get(base + k), inputCount);
+                for (int i = 0; i < inputCount; i++) {
+                    if (bits[i] != 0) words[i] |= 1L << k;
+                }
+            }
+            netlist.simulate(words, values);
+            for (int o = 0; o < outputCount; o++) {
+                long word = values[netlist.outputNet(o)];
+                for (int k = 0; k < count; k++) results[base + k][o] = (int) ((word >>> k) & 1L);
+            }
+        }
+
+        JSONObject response = new JSONObject();
+        JSONArray inputNames = new JSONArray();
+        for (int i = 0; i < inputCount; i++) inputNames.put(netlist.inputName(i));
+        JSONArray outputLabels = new JSONArray();
+        for (int o = 0; o < outputCount; o++) outputLabels.put(netlist.outputLabel(o));
+        JSONArray outputVectors = new JSONArray();
+        StringBuilder bits = new StringBuilder();
+        for (int[] result : results) {
+            bits.setLength(0);
+            for (int bit : result) bits.append(bit);
+            outputVectors.put(bits.toString());
+        }
+        response.put("inputs", inputNames);
+        response.put("outputs", outputLabels);
+        response.put("results", outputVectors);
+        response.put("micros", (System.nanoTime() - start) / 1000);
+        return response.toString();
+    }
+
+    // Looked up by circuit id and content hash first, so a cache hit reads no circuit tables
+    private Netlist savedNetlist(String username, String circuitName) {
+        String contentKey = circuitToDB.getContentKey(username, circuitName);
+        if (contentKey != null) {
+            Netlist cached = netlistCache.get(contentKey);
+            if (cached != null) return cached;
+        }
+        Netlist netlist = netlistCache.get(new CircuitLoader(context).loadBuilder(username, circuitName));
+        // Only if the circuit did not change while it was being read
+        if (contentKey != null && contentKey.equals(circuitToDB.getContentKey(username, circuitName))) {
+            netlistCache.put(contentKey, netlist);
+        }
+        return netlist;
+    }
+
+    static Netlist.Builder builderFromJson(JSONObject request) throws JSONException {
+        Netlist.Builder builder = new Netlist.Builder();
+        JSONArray ics = request.optJSONArray("ics");
+        for (int i = 0; ics != null && i < ics.length(); i++) {
+            JSONObject ic = ics.getJSONObject(i);
+            builder.addIC(ic.getString("ic_type"), coordinate(ic, "section", "row_pos", "column_pos"));
+        }
+        JSONArray wires = request.optJSONArray("wires");
+        for (int i = 0; wires != null && i < wires.length(); i++) {
+            JSONObject wire = wires.getJSONObject(i);
+            builder.addWire(coordinate(wire, "src_section", "src_row", "src_column"),
+                    coordinate(wire, "dst_section", "dst_row", "dst_column"));
+        }
+        JSONArray inputs = request.optJSONArray("inputs");
+        for (int i = 0; inputs != null && i < inputs.length(); i++) {
+            JSONObject input = inputs.getJSONObject(i);
+            builder.addInput(input.getString("name"), coordinate(input, "section", "row_pos", "column_pos"));
+        }
+        JSONArray outputs = request.optJSONArray("outputs");
+        for (int i = 0; outputs != null && i < outputs.length(); i++) {
+            builder.addOutput(coordinate(outputs.getJSONObject(i), "section", "row_pos", "column_pos"));
+        }
+        JSONArray powers = request.optJSONArray("power_components");
+        for (int i = 0; powers != null && i < powers.length(); i++) {
+            JSONObject power = powers.getJSONObject(i);
+            builder.addPower(power.getInt("value"), coordinate(power, "section", "row_pos", "column_pos"));
+        }
+        return builder;
+    }
+
+    private static Coordinate coordinate(JSONObject obj, String section, String row, String column) throws JSONException {
+        return new Coordinate(obj.getInt(section), obj.optInt(row, 0), obj.getInt(column));
+    }
+
+    // A vector is either a bit string "0110" or an array of 0/1 numbers
+    private static int[] parseVector(Object vector, int inputCount) throws JSONException {
+        int[] bits = new int[inputCount];
+        if (vector instanceof JSONArray) {
+            JSONArray array = (JSONArray) vector;
+            if (array.length() != inputCount) {
+                throw new IllegalArgumentException("vector has " + array.length() + " bits, expected " + inputCount);
+            }
+            for (int i = 0; i < inputCount; i++) bits[i] = bit(array.get(i));
+        } else {
+            String text = String.valueOf(vector);
+            if (text.length() != inputCount) {
+                throw new IllegalArgumentException("vector \"" + text + "\" has " + text.length()
+                        + " bits, expected " + inputCount);
+            }
+            for (int i = 0; i < inputCount; i++) bits[i] = bit(text.charAt(i));
+        }
+        return bits;
+    }
+
+    private static int bit(Object value) {
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (number == 0) return 0;
+            if (number == 1) return 1;
+        }
+        throw new IllegalArgumentException("vector bit " + value + " is not 0 or 1");
+    }
+
+    private static int bit(char digit) {
+        if (digit != '0' && digit != '1') {
+            throw new IllegalArgumentException("vector bit '" + digit + "' is not 0 or 1");
+        }
+        return digit - '0';
+    }
+
+    private static String errorJson(String message) {
+        return "{\"error\":" + JSONObject.quote(String.valueOf(message)) + "}";
+    }
+
+    // Thrown by readLine for a line longer than its limit
+    private static class LineTooLongException extends IOException {
+    }
+
+    private static String readLine(InputStream in, int limit) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') break;
+            if (b == '\r') continue;
+            if (line.size() >= limit) throw new LineTooLongException();
+            line.write(b);
+        }
+        if (b == -1 && line.size() == 0) return null;
+        return line.toString("ISO-8859-1");
+    }
+
+    private static byte[] readBody(InputStream in, int length) throws IOException {
+        byte[] body = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(body, read, length - read);
+            if (n == -1) return null;
+            read += n;
+        }
+        return body;
+    }
+
+    private static void writeResponse(OutputStream out, int status, String body, boolean keepAlive) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        String reason;
+        switch (status) {
+            case 200: reason = "OK"; break;
+            case 401: reason = "Unauthorized"; break;
+            case 404: reason = "Not Found"; break;
+            case 413: reason = "Payload Too Large"; break;
+            case 431: reason = "Request Header Fields Too Large"; break;
+            case 500: reason = "Internal Server Error"; break;
+            default: reason = "Bad Request"; break;
+        }
+        String type = body.startsWith("{") ? "application/json" : "text/plain";
+        String head = "HTTP/1.1 " + status + " " + reason + "\r\n"
+                + "Content-Type: " + type + "; charset=utf-8\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+        out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(bytes);
+        out.flush();
+    }
+}
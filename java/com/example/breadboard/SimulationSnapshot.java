@@ -0,0 +1,124 @@
+package com.example.breadboard;
+
+import com.example.breadboard.InputManager.InputInfo;
+import com.example.breadboard.model.Attribute;
+import com.example.breadboard.model.Coordinate;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Captures the complete simulation state of the board into one int[] and restores it, for
+ * checkpoints, "what-if" runs and undo without clearing the circuit and reloading it.
+ *
+ * Layout: [VERSION, input count, pin links..., pin values..., net values..., then one
+ * (pin index, value) pair per named input]. Pins are indexed section, row, column. IC output
+ * pins live in pinAttributes, so they are part of the pin values. A snapshot only fits the
+ * board layout it was taken from; restore refuses anything else.
+ */
+public class SimulationSnapshot {
+    public static final int SECTIONS = 2;
+    public static final int ROWS = 5;
+    public static final int COLS = 64;
+    public static final int PIN_COUNT = SECTIONS * ROWS * COLS;
+    public static final int NO_VALUE = Integer.MIN_VALUE;
+
+    private static final int VERSION = 1;
+    private static final int HEADER = 2;
+    private static final int LINKS = HEADER;
+    private static final int VALUES = LINKS + PIN_COUNT;
+    private static final int NETS = VALUES + PIN_COUNT;
+    private static final int INPUTS = NETS + PIN_COUNT;
+
+    private Attribute[][][] pinAttributes;
+    private Map<Coordinate, InputInfo> inputNames;
+    private ConnectionManager connectionManager;
+    private InputManager inputManager;
+    private OutputManager outputManager;
+
+    public SimulationSnapshot(Attribute[][][] pinAttributes, Map<Coordinate, InputInfo> inputNames,
+                              ConnectionManager connectionManager, InputManager inputManager,
+                              OutputManager outputManager) {
+        this.pinAttributes = pinAttributes;
+        this.inputNames = inputNames;
+        this.connectionManager = connectionManager;
+        this.inputManager = inputManager;
+        this.outputManager = outputManager;
+    }
+
+    public static int pinIndex(Coordinate coord) {
+        return (coord.s * ROWS + coord.r) * COLS + coord.c;
+    }
+
+    public static Coordinate pinCoordinate(int index) {
+        return new Coordinate(index / (ROWS * COLS), (index / COLS) % ROWS, index % COLS);
+    }
+
+    public int[] capture() {
+        int[] snapshot = new int[INPUTS + inputNames.size() * 2];
+        snapshot[0] = VERSION;
+        snapshot[1] = inputNames.size();
+        int i = 0;
+        for (int s = 0; s < SECTIONS; s++) {
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = 0; c < COLS; c++, i++) {
+                    Attribute attr = pinAttributes[s][r][c];
+                    snapshot[LINKS + i] = attr.link;
+                    snapshot[VALUES + i] = attr.value;
+                }
+            }
+        }
+        if (connectionManager != null) {
+            connectionManager.exportPropagatedValues(snapshot, NETS);
+        } else {
+            Arrays.fill(snapshot, NETS, INPUTS, NO_VALUE);
+        }
+        int p = INPUTS;
+        for (Map.Entry<Coordinate, InputInfo> entry : inputNames.entrySet()) {
+            snapshot[p++] = pinIndex(entry.getKey());
+            snapshot[p++] = entry.getValue().value;
+        }
+        return snapshot;
+    }
+
+    /** Put a captured state back; returns false and changes nothing if it does not fit the board. */
+    public boolean restore(int[] snapshot) {
+        if (!fits(snapshot)) {
+            System.err.println("Simulation snapshot does not match the current board");
+            return false;
+        }
+        // Field by field: the live state is the Attribute and InputInfo objects every manager
+        // reads and writes, with no primitive array behind them for a System.arraycopy
+        int i = 0;
+        for (int s = 0; s < SECTIONS; s++) {
+            for (int r = 0; r < ROWS; r++) {
+                for (int c = 0; c < COLS; c++, i++) {
+                    Attribute attr = pinAttributes[s][r][c];
+                    attr.link = snapshot[LINKS + i];
+                    attr.value = snapshot[VALUES + i];
+                }
+            }
+        }
+        for (int p = INPUTS; p < snapshot.length; p += 2) {
+            inputNames.get(pinCoordinate(snapshot[p])).value = snapshot[p + 1];
+        }
+        if (connectionManager != null) {
+            connectionManager.importPropagatedValues(snapshot, NETS);
+        }
+
+        // Views follow the restored values
+        if (inputManager != null) inputManager.updateInputDisplay();
+        if (outputManager != null) outputManager.updateAllOutputs();
+        return true;
+    }
+
+    private boolean fits(int[] snapshot) {
+        if (snapshot == null || snapshot.length < INPUTS || snapshot[0] != VERSION) return false;
+        if (snapshot[1] != inputNames.size() || snapshot.length != INPUTS + snapshot[1] * 2) return false;
+        for (int p = INPUTS; p < snapshot.length; p += 2) {
+            if (snapshot[p] < 0 || snapshot[p] >= PIN_COUNT) return false;
+            if (!inputNames.containsKey(pinCoordinate(snapshot[p]))) return false;
+        }
+        return true;
+    }
+}
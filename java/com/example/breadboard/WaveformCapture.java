@@ -0,0 +1,113 @@
+package com.example.breadboard;
+
+import com.example.breadboard.InputManager.InputInfo;
+import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.WaveformRecorder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recording mode for the live board: samples the named inputs, the outputs and any probed
+ * nets after every simulation step and keeps the changes in a WaveformRecorder.
+ */
+public class WaveformCapture {
+    public static final int DEFAULT_CAPACITY_BYTES = 256 * 1024;
+
+    private Map<Coordinate, InputInfo> inputNames;
+    private OutputManager outputManager;
+    private ICPinManager icPinManager;
+
+    private WaveformRecorder recorder;
+    private List<Coordinate> inputCoords = new ArrayList<>();
+    private List<Coordinate> outputCoords = new ArrayList<>();
+    private List<Coordinate> netCoords = new ArrayList<>();
+    private int[] values;
+    private long step = 0;
+
+    public WaveformCapture(Map<Coordinate, InputInfo> inputNames, OutputManager outputManager,
+                           ICPinManager icPinManager) {
+        this.inputNames = inputNames;
+        this.outputManager = outputManager;
+        this.icPinManager = icPinManager;
+    }
+
+    /** Start a new recording over the current inputs and outputs plus the given nets. */
+    public void start(List<Coordinate> probedNets, int capacityBytes) {
+        recorder = new WaveformRecorder(capacityBytes);
+        step = 0;
+
+        inputCoords.clear();
+        List<String> sortedNames = new ArrayList<>();
+        for (InputInfo info : inputNames.values()) sortedNames.add(info.name);
+        Collections.sort(sortedNames);
+        for (String name : sortedNames) {
+            for (Map.Entry<Coordinate, InputInfo> entry : inputNames.entrySet()) {
+                if (entry.getValue().name.equals(name)) {
+                    inputCoords.add(entry.getKey());
+                    recorder.addSignal(name);
+                    break;
+                }
+            }
+        }
+
+        outputCoords.clear();
+        for (Coordinate coord : outputManager.getAllOutputs()) {
+            outputCoords.add(coord);
+            recorder.addSignal("out_" + coord.s + "_" + coord.r + "_" + coord.c);
+        }
+
+        netCoords.clear();
+        if (probedNets != null) {
+            for (Coordinate coord : probedNets) {
+                netCoords.add(coord);
+                recorder.addSignal("s" + coord.s + "c" + coord.c);
+            }
+        }
+        values = new int[recorder.signalCount()];
+        sample();
+    }
+
+    public void stop() {
+        // Keep the recorder so the capture can still be exported
+        values = null;
+    }
+
+    public boolean isRecording() {
+        return recorder != null && values != null;
+    }
+
+    /** Sample every signal once; call after each simulation step. */
+    public void sample() {
+        if (!isRecording()) return;
+        int s = 0;
+        for (Coordinate coord : inputCoords) {
+            InputInfo info = inputNames.get(coord);
+            values[s++] = info != null ? info.value : 0;
+        }
+        for (Coordinate coord : outputCoords) {
+            values[s++] = outputManager.getOutputState(coord) ? 1 : 0;
+        }
+        for (Coordinate coord : netCoords) {
+            values[s++] = icPinManager.getValue(coord) == 1 ? 1 : 0;
+        }
+        recorder.sample(step++, values);
+    }
+
+    public boolean exportVcd(File destination) {
+        if (recorder == null) return false;
+        try (Writer writer = new FileWriter(destination)) {
+            recorder.writeVcd(writer, "1 us");
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error exporting waveform: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -2,29 +2,25 @@ package com.example.breadboard;
 
 import android.app.AlertDialog;
 import android.graphics.Color;
-import android.graphics.drawable.GradientDrawable;
 import android.view.View;
-import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.GridLayout;
-import android.widget.ImageButton;
-import android.widget.ImageView;
-import android.widget.RelativeLayout;
 import android.widget.Toast;
 
 import com.example.breadboard.model.Attribute;
 import com.example.breadboard.model.Coordinate;
 import com.example.breadboard.model.Pins;
+import com.example.breadboard.sim.BoardEdit;
+import com.example.breadboard.sim.BoardElement;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 public class WireManager {
     private MainActivity mainActivity;
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private Attribute[][][] pinAttributes;
     private List<Pins> wires;
     private ICPinManager icPinManager;
@@ -39,27 +35,11 @@ public class WireManager {
     private static final int WIRE_COLOR_CONNECTED = Color.parseColor("#4CAF50"); // Green
 
     // Visual wire drawing
-    private ViewGroup breadboardContainer; // The main container holding the breadboard
-    private List<ImageView> wireViews = new ArrayList<>(); // Store visual wire elements
-    private Random colorGenerator = new Random();
+    private WireVisualManager wireVisualManager; // Draws every wire in one overlay
 
     private OutputManager outputManager;
     private ConnectionManager connectionManager; // Add reference to ConnectionManager
 
-    // Wire colors array for variety
-    private static final int[] WIRE_COLORS = {
-            Color.parseColor("#FF5722"), // Red
-            Color.parseColor("#2196F3"), // Blue
-            Color.parseColor("#4CAF50"), // Green
-            Color.parseColor("#FF9800"), // Orange
-            Color.parseColor("#9C27B0"), // Purple
-            Color.parseColor("#607D8B"), // Blue Grey
-            Color.parseColor("#795548"), // Brown
-            Color.parseColor("#000000"), // Black
-            Color.parseColor("#FFEB3B"), // Yellow
-            Color.parseColor("#E91E63")  // Pink
-    };
-
     /**
      * Update wire values by propagating signals through wire connections
      * This method is called during circuit execution to ensure all connected pins
@@ -349,15 +329,18 @@ public class WireManager {
         }
     }
 
-    public WireManager(MainActivity mainActivity, ImageButton[][][] pins,
+    public WireManager(MainActivity mainActivity, BreadboardView breadboardView,
                        Attribute[][][] pinAttributes, List<Pins> wires,
-                       ICPinManager icPinManager, ViewGroup breadboardContainer) {
+                       ICPinManager icPinManager, WireVisualManager wireVisualManager) {
         this.mainActivity = mainActivity;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.pinAttributes = pinAttributes;
         this.wires = wires;
         this.icPinManager = icPinManager;
-        this.breadboardContainer = breadboardContainer;
+        this.wireVisualManager = wireVisualManager;
+
+        // A tap on a drawn wire offers to remove it
+        breadboardView.setBoardTapListener(this::handleWireTap);
     }
 
     public void setOutputManager(OutputManager outputManager) {
@@ -485,6 +468,32 @@ public class WireManager {
 
         showToast("Wire connected!");
         System.out.println("Wire created: " + pin1 + " <-> " + pin2 + " (link=" + linkId + ")");
+        mainActivity.recordEdit(BoardEdit.add(BoardElement.wire(pin1, pin2)));
+    }
+
+    /**
+     * Recreate the wires stored for a circuit, e.g. when the board is opened
+     */
+    public void loadWiresFromDatabase(String username, String circuitName) {
+        List<WireToDB.WireData> stored = new WireToDB(mainActivity).getWiresForCircuit(username, circuitName);
+        for (WireToDB.WireData wire : stored) {
+            createWire(wire.getSourceCoordinate(), wire.getDestinationCoordinate());
+        }
+        System.out.println("Loaded " + stored.size() + " wires for circuit: " + circuitName);
+    }
+
+    /**
+     * Connect two pins without the selection UI, e.g. when redoing an edit
+     */
+    public void connectPins(Coordinate pin1, Coordinate pin2) {
+        createWire(pin1, pin2);
+    }
+
+    /**
+     * Remove the wire between two pins, e.g. when undoing an edit
+     */
+    public void disconnectPins(Coordinate pin1, Coordinate pin2) {
+        removeSpecificWire(pin1, pin2);
     }
 
     private void updateConnectedOutputs(Coordinate pin1, Coordinate pin2) {
@@ -512,97 +521,25 @@ public class WireManager {
      * Create visual wire representation between two pins
      */
     private void createVisualWire(Coordinate pin1, Coordinate pin2) {
-        ImageButton button1 = pins[pin1.s][pin1.r][pin1.c];
-        ImageButton button2 = pins[pin2.s][pin2.r][pin2.c];
-
-        if (button1 == null || button2 == null) return;
-
-        // Get pin positions
-        int[] location1 = new int[2];
-        int[] location2 = new int[2];
-        button1.getLocationInWindow(location1);
-        button2.getLocationInWindow(location2);
-
-        // Get container position for relative positioning
-        int[] containerLocation = new int[2];
-        breadboardContainer.getLocationInWindow(containerLocation);
-
-        // Calculate relative positions
-        int x1 = location1[0] - containerLocation[0] + button1.getWidth() / 2;
-        int y1 = location1[1] - containerLocation[1] + button1.getHeight() / 2;
-        int x2 = location2[0] - containerLocation[0] + button2.getWidth() / 2;
-        int y2 = location2[1] - containerLocation[1] + button2.getHeight() / 2;
-
-        // Create wire path (simple straight line for now)
-        createStraightWire(x1, y1, x2, y2, pin1, pin2);
+        // Colour varies from wire to wire but stays the same when the circuit is reopened
+        wireVisualManager.addVisualWire(pin1, pin2);
     }
 
     /**
-     * Create a straight wire line between two points
+     * A tap on the board at (x, y): if it lands on a wire, offer to remove it. Pins keep
+     * their taps in wire mode and at the wire's own ends, so wired pins stay usable.
      */
-    private void createStraightWire(int x1, int y1, int x2, int y2, Coordinate pin1, Coordinate pin2) {
-        // Create ImageView for the wire
-        ImageView wireView = new ImageView(mainActivity);
-
-        // Calculate wire dimensions and position
-        int dx = x2 - x1;
-        int dy = y2 - y1;
-        double length = Math.sqrt(dx * dx + dy * dy);
-        double angle = Math.atan2(dy, dx) * 180 / Math.PI;
-
-        // Create wire drawable (rounded rectangle)
-        GradientDrawable wireDrawable = new GradientDrawable();
-        wireDrawable.setShape(GradientDrawable.RECTANGLE);
-        wireDrawable.setCornerRadius(4f); // Rounded ends
-
-        // Select wire color
-        int wireColor = WIRE_COLORS[colorGenerator.nextInt(WIRE_COLORS.length)];
-        wireDrawable.setColor(wireColor);
-
-        wireView.setImageDrawable(wireDrawable);
-
-        // Set wire dimensions
-        int wireWidth = (int) length;
-        int wireHeight = 8; // Wire thickness
+    private boolean handleWireTap(float x, float y) {
+        if (isWireMode) return false;
 
-        // Position the wire
-        RelativeLayout.LayoutParams params = new RelativeLayout.LayoutParams(wireWidth, wireHeight);
-        params.leftMargin = Math.min(x1, x2);
-        params.topMargin = Math.min(y1, y2) - wireHeight / 2;
+        Coordinate[] wire = wireVisualManager.findWireAt(x, y);
+        if (wire == null) return false;
 
-        // Apply rotation
-        wireView.setRotation((float) angle);
-        wireView.setPivotX(0);
-        wireView.setPivotY(wireHeight / 2f);
+        Coordinate pin = breadboardView.pinAt(x, y);
+        if (wire[0].equals(pin) || wire[1].equals(pin)) return false;
 
-        // Adjust position for rotation
-        if (x2 < x1) {
-            params.leftMargin = x2;
-            wireView.setRotation((float) (angle + 180));
-        } else {
-            params.leftMargin = x1;
-        }
-
-        wireView.setLayoutParams(params);
-
-        // Store reference to wire view with coordinate info
-        wireView.setTag(pin1.toString() + ":" + pin2.toString());
-
-        // Add to container
-        if (breadboardContainer instanceof RelativeLayout) {
-            ((RelativeLayout) breadboardContainer).addView(wireView);
-        } else {
-            // If container is not RelativeLayout, wrap in one or handle differently
-            // This is a fallback - you might need to adjust based on your layout
-            ViewGroup.LayoutParams layoutParams = new ViewGroup.LayoutParams(wireWidth, wireHeight);
-            wireView.setLayoutParams(layoutParams);
-            breadboardContainer.addView(wireView);
-        }
-
-        wireViews.add(wireView);
-
-        // Make wire clickable for removal
-        wireView.setOnClickListener(v -> showWireRemovalDialog(pin1, pin2, wireView));
+        showWireRemovalDialog(wire[0], wire[1]);
+        return true;
     }
 
     private boolean canConnectPins(Coordinate pin1, Coordinate pin2) {
@@ -685,24 +622,11 @@ public class WireManager {
      */
     public void removeWire(Coordinate coord) {
         List<Pins> wiresToRemove = new ArrayList<>();
-        List<ImageView> wireViewsToRemove = new ArrayList<>();
 
         // Find all wires connected to this coordinate
         for (Pins wire : wires) {
             if (wire.getSrc().equals(coord) || wire.getDst().equals(coord)) {
                 wiresToRemove.add(wire);
-
-                // Find corresponding visual wire
-                String wireTag = wire.getSrc().toString() + ":" + wire.getDst().toString();
-                String reverseWireTag = wire.getDst().toString() + ":" + wire.getSrc().toString();
-
-                for (ImageView wireView : wireViews) {
-                    String viewTag = (String) wireView.getTag();
-                    if (wireTag.equals(viewTag) || reverseWireTag.equals(viewTag)) {
-                        wireViewsToRemove.add(wireView);
-                        break;
-                    }
-                }
             }
         }
 
@@ -719,18 +643,16 @@ public class WireManager {
             resetPinHighlight(wire.getSrc());
             resetPinHighlight(wire.getDst());
 
+            // Remove visual wire representation
+            wireVisualManager.removeVisualWire(wire.getSrc(), wire.getDst());
+
             // Notify ConnectionManager about wire removal
             if (connectionManager != null) {
                 connectionManager.onWireRemoved(wire.getSrc(), wire.getDst());
             }
 
             System.out.println("Wire removed: " + wire.getSrc() + " <-> " + wire.getDst());
-        }
-
-        // Remove visual wire representations
-        for (ImageView wireView : wireViewsToRemove) {
-            breadboardContainer.removeView(wireView);
-            wireViews.remove(wireView);
+            mainActivity.recordEdit(BoardEdit.remove(BoardElement.wire(wire.getSrc(), wire.getDst())));
         }
 
         wires.removeAll(wiresToRemove);
@@ -743,13 +665,13 @@ public class WireManager {
     /**
      * Show wire removal dialog for specific wire
      */
-    public void showWireRemovalDialog(Coordinate pin1, Coordinate pin2, ImageView wireView) {
+    public void showWireRemovalDialog(Coordinate pin1, Coordinate pin2) {
         AlertDialog.Builder builder = new AlertDialog.Builder(mainActivity);
         builder.setTitle("Remove Wire");
         builder.setMessage("Remove this wire connection?");
 
         builder.setPositiveButton("Remove", (dialog, which) -> {
-            removeSpecificWire(pin1, pin2, wireView);
+            removeSpecificWire(pin1, pin2);
         });
 
         builder.setNegativeButton("Cancel", null);
@@ -759,7 +681,7 @@ public class WireManager {
     /**
      * Remove a specific wire connection
      */
-    private void removeSpecificWire(Coordinate pin1, Coordinate pin2, ImageView wireView) {
+    private void removeSpecificWire(Coordinate pin1, Coordinate pin2) {
         // Find and remove the specific wire
         Pins wireToRemove = null;
         for (Pins wire : wires) {
@@ -784,8 +706,7 @@ public class WireManager {
             resetPinHighlight(wireToRemove.getDst());
 
             // Remove visual wire
-            breadboardContainer.removeView(wireView);
-            wireViews.remove(wireView);
+            wireVisualManager.removeVisualWire(wireToRemove.getSrc(), wireToRemove.getDst());
 
             // Remove from wires list
             wires.remove(wireToRemove);
@@ -797,6 +718,7 @@ public class WireManager {
 
             showToast("Wire removed");
             System.out.println("Wire removed: " + wireToRemove.getSrc() + " <-> " + wireToRemove.getDst());
+            mainActivity.recordEdit(BoardEdit.remove(BoardElement.wire(wireToRemove.getSrc(), wireToRemove.getDst())));
         }
     }
 
@@ -877,20 +799,14 @@ public class WireManager {
      * Highlight a pin with the specified color
      */
     private void highlightPin(Coordinate coord, int color) {
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-        if (pin != null) {
-            pin.setColorFilter(color);
-        }
+        breadboardView.setPinTint(coord, color);
     }
 
     /**
      * Reset pin highlighting
      */
     private void resetPinHighlight(Coordinate coord) {
-        ImageButton pin = pins[coord.s][coord.r][coord.c];
-        if (pin != null) {
-            pin.clearColorFilter();
-        }
+        breadboardView.setPinTint(coord, 0);
     }
 
     /**
@@ -929,7 +845,7 @@ public class WireManager {
     public String getWireDebugInfo() {
         StringBuilder debug = new StringBuilder();
         debug.append("Wires: ").append(wires.size()).append("\n");
-        debug.append("Visual Wires: ").append(wireViews.size()).append("\n");
+        debug.append("Visual Wires: ").append(wireVisualManager.getVisualWireCount()).append("\n");
 
         for (int i = 0; i < wires.size(); i++) {
             Pins wire = wires.get(i);
@@ -961,14 +877,11 @@ public class WireManager {
         }
 
         // Remove all visual wire representations
-        for (ImageView wireView : wireViews) {
-            breadboardContainer.removeView(wireView);
-        }
+        wireVisualManager.removeAllVisualWires();
 
         // Clear data structures
         wires.clear();
         wireConnections.clear();
-        wireViews.clear();
 
         // Reset wire mode
         isWireMode = false;
@@ -981,16 +894,7 @@ public class WireManager {
      * Refresh all visual wires (useful after layout changes)
      */
     public void refreshVisualWires() {
-        // Remove all visual wires
-        for (ImageView wireView : wireViews) {
-            breadboardContainer.removeView(wireView);
-        }
-        wireViews.clear();
-
-        // Recreate visual wires
-        for (Pins wire : wires) {
-            createVisualWire(wire.getSrc(), wire.getDst());
-        }
+        wireVisualManager.refreshWirePositions();
     }
 
     /**
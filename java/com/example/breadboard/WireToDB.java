@@ -16,7 +16,7 @@ public class WireToDB {
 
     public WireToDB(Context context) {
         this.context = context;
-        this.dbHelper = new DBHelper(context);
+        this.dbHelper = DBHelper.getInstance(context);
     }
 
     public static class WireData {
@@ -85,20 +85,10 @@ public class WireToDB {
             throw new IllegalArgumentException("Source and destination coordinates cannot be the same");
         }
 
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        ContentValues values = new ContentValues();
-
-        values.put("username", username);
-        values.put("circuit_name", circuitName);
-        values.put("src_section", srcCoord.s);
-        values.put("src_row", srcCoord.r);
-        values.put("src_column", srcCoord.c);
-        values.put("dst_section", dstCoord.s);
-        values.put("dst_row", dstCoord.r);
-        values.put("dst_column", dstCoord.c);
-
-        long result = db.insert("wires", null, values);
-        db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        long result = dbHelper.executeInsert("INSERT OR IGNORE INTO wires(circuit_id, src_section, src_row, src_column, dst_section, dst_row, dst_column) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                circuitId, srcCoord.s, srcCoord.r, srcCoord.c, dstCoord.s, dstCoord.r, dstCoord.c);
 
         return result != -1;
     }
@@ -110,6 +100,7 @@ public class WireToDB {
                                           Coordinate oldSrcCoord, Coordinate oldDstCoord, 
                                           Coordinate newSrcCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
 
         values.put("src_section", newSrcCoord.s);
@@ -117,12 +108,11 @@ public class WireToDB {
         values.put("src_column", newSrcCoord.c);
 
         int rowsAffected = db.update("wires", values,
-                "username = ? AND circuit_name = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
+                "circuit_id = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
                 "AND dst_section = ? AND dst_row = ? AND dst_column = ?",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(oldSrcCoord.s), String.valueOf(oldSrcCoord.r), String.valueOf(oldSrcCoord.c),
                            String.valueOf(oldDstCoord.s), String.valueOf(oldDstCoord.r), String.valueOf(oldDstCoord.c)});
-        db.close();
 
         return rowsAffected > 0;
     }
@@ -134,6 +124,7 @@ public class WireToDB {
                                                Coordinate oldSrcCoord, Coordinate oldDstCoord, 
                                                Coordinate newDstCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
 
         values.put("dst_section", newDstCoord.s);
@@ -141,12 +132,11 @@ public class WireToDB {
         values.put("dst_column", newDstCoord.c);
 
         int rowsAffected = db.update("wires", values,
-                "username = ? AND circuit_name = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
+                "circuit_id = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
                 "AND dst_section = ? AND dst_row = ? AND dst_column = ?",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(oldSrcCoord.s), String.valueOf(oldSrcCoord.r), String.valueOf(oldSrcCoord.c),
                            String.valueOf(oldDstCoord.s), String.valueOf(oldDstCoord.r), String.valueOf(oldDstCoord.c)});
-        db.close();
 
         return rowsAffected > 0;
     }
@@ -158,6 +148,7 @@ public class WireToDB {
                             Coordinate oldSrcCoord, Coordinate oldDstCoord,
                             Coordinate newSrcCoord, Coordinate newDstCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         ContentValues values = new ContentValues();
 
         values.put("src_section", newSrcCoord.s);
@@ -168,12 +159,11 @@ public class WireToDB {
         values.put("dst_column", newDstCoord.c);
 
         int rowsAffected = db.update("wires", values,
-                "username = ? AND circuit_name = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
+                "circuit_id = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
                 "AND dst_section = ? AND dst_row = ? AND dst_column = ?",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(oldSrcCoord.s), String.valueOf(oldSrcCoord.r), String.valueOf(oldSrcCoord.c),
                            String.valueOf(oldDstCoord.s), String.valueOf(oldDstCoord.r), String.valueOf(oldDstCoord.c)});
-        db.close();
 
         return rowsAffected > 0;
     }
@@ -183,13 +173,13 @@ public class WireToDB {
      */
     public boolean deleteWire(String username, String circuitName, Coordinate srcCoord, Coordinate dstCoord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("wires",
-                "username = ? AND circuit_name = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
+                "circuit_id = ? AND src_section = ? AND src_row = ? AND src_column = ? " +
                 "AND dst_section = ? AND dst_row = ? AND dst_column = ?",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(srcCoord.s), String.valueOf(srcCoord.r), String.valueOf(srcCoord.c),
                            String.valueOf(dstCoord.s), String.valueOf(dstCoord.r), String.valueOf(dstCoord.c)});
-        db.close();
 
         return rowsDeleted > 0;
     }
@@ -199,13 +189,13 @@ public class WireToDB {
      */
     public boolean deleteWiresConnectedTo(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
         int rowsDeleted = db.delete("wires",
-                "username = ? AND circuit_name = ? AND ((src_section = ? AND src_row = ? AND src_column = ?) " +
+                "circuit_id = ? AND ((src_section = ? AND src_row = ? AND src_column = ?) " +
                 "OR (dst_section = ? AND dst_row = ? AND dst_column = ?))",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c),
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
-        db.close();
 
         return rowsDeleted > 0;
     }
@@ -216,16 +206,18 @@ public class WireToDB {
     public List<WireData> getWiresForCircuit(String username, String circuitName) {
         List<WireData> wireList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM wires WHERE username = ? AND circuit_name = ? " +
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, src_section, src_row, src_column, dst_section, dst_row, dst_column " +
+                "FROM wires WHERE circuit_id = ? " +
                 "ORDER BY src_section, src_row, src_column",
-                new String[]{username, circuitName});
+                new String[]{String.valueOf(circuitId)});
 
         if (cursor.moveToFirst()) {
             do {
                 WireData wireData = new WireData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("src_section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("src_row")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("src_column")),
@@ -238,7 +230,6 @@ public class WireToDB {
         }
 
         cursor.close();
-        db.close();
 
         return wireList;
     }
@@ -249,10 +240,12 @@ public class WireToDB {
     public List<WireData> getWiresConnectedTo(String username, String circuitName, Coordinate coord) {
         List<WireData> wireList = new ArrayList<>();
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM wires WHERE username = ? AND circuit_name = ? AND " +
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, src_section, src_row, src_column, dst_section, dst_row, dst_column " +
+                "FROM wires WHERE circuit_id = ? AND " +
                 "((src_section = ? AND src_row = ? AND src_column = ?) OR " +
                 "(dst_section = ? AND dst_row = ? AND dst_column = ?))",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c),
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
 
@@ -260,8 +253,8 @@ public class WireToDB {
             do {
                 WireData wireData = new WireData(
                         cursor.getInt(cursor.getColumnIndexOrThrow("id")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                        cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                        username,
+                        circuitName,
                         cursor.getInt(cursor.getColumnIndexOrThrow("src_section")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("src_row")),
                         cursor.getInt(cursor.getColumnIndexOrThrow("src_column")),
@@ -274,7 +267,6 @@ public class WireToDB {
         }
 
         cursor.close();
-        db.close();
 
         return wireList;
     }
@@ -284,9 +276,9 @@ public class WireToDB {
      */
     public boolean clearWiresForCircuit(String username, String circuitName) {
         SQLiteDatabase db = dbHelper.getWritableDatabase();
-        int rowsDeleted = db.delete("wires", "username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-        db.close();
+        long circuitId = dbHelper.findWritableCircuitId(username, circuitName);
+        int rowsDeleted = db.delete("wires", "circuit_id = ?",
+                new String[]{String.valueOf(circuitId)});
 
         return rowsDeleted >= 0;
     }
@@ -302,43 +294,14 @@ public class WireToDB {
      * Save current circuit wires to database (replaces all existing wires)
      */
     public boolean syncWiresForCircuit(String username, String circuitName, List<WireData> currentWires) {
-        SQLiteDatabase db = dbHelper.getWritableDatabase();
-        db.beginTransaction();
-
-        try {
-            // Clear existing wires for this circuit
-            db.delete("wires", "username = ? AND circuit_name = ?",
-                    new String[]{username, circuitName});
-
-            // Insert current wires
-            ContentValues values = new ContentValues();
-            for (WireData wire : currentWires) {
-                values.clear();
-                values.put("username", username);
-                values.put("circuit_name", circuitName);
-                values.put("src_section", wire.srcSection);
-                values.put("src_row", wire.srcRow);
-                values.put("src_column", wire.srcColumn);
-                values.put("dst_section", wire.dstSection);
-                values.put("dst_row", wire.dstRow);
-                values.put("dst_column", wire.dstColumn);
-
-                long result = db.insert("wires", null, values);
-                if (result == -1) {
-                    throw new Exception("Failed to insert wire: " + wire.getWireDescription());
-                }
-            }
-
-            db.setTransactionSuccessful();
-            return true;
-
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
-        } finally {
-            db.endTransaction();
-            db.close();
+        long circuitId = dbHelper.requireCircuitId(username, circuitName);
+        List<Object[]> rows = new ArrayList<>();
+        for (WireData wire : currentWires) {
+            rows.add(new Object[]{wire.srcSection, wire.srcRow, wire.srcColumn,
+                    wire.dstSection, wire.dstRow, wire.dstColumn});
         }
+        return dbHelper.syncCircuitRows("wires", circuitId,
+                new String[]{"src_section", "src_row", "src_column", "dst_section", "dst_row", "dst_column"}, rows);
     }
 
     /**
@@ -346,10 +309,11 @@ public class WireToDB {
      */
     public boolean wireExists(String username, String circuitName, Coordinate srcCoord, Coordinate dstCoord) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM wires WHERE username = ? AND circuit_name = ? AND " +
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM wires WHERE circuit_id = ? AND " +
                 "src_section = ? AND src_row = ? AND src_column = ? AND " +
                 "dst_section = ? AND dst_row = ? AND dst_column = ?",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(srcCoord.s), String.valueOf(srcCoord.r), String.valueOf(srcCoord.c),
                            String.valueOf(dstCoord.s), String.valueOf(dstCoord.r), String.valueOf(dstCoord.c)});
 
@@ -359,7 +323,6 @@ public class WireToDB {
         }
 
         cursor.close();
-        db.close();
         return exists;
     }
 
@@ -368,10 +331,11 @@ public class WireToDB {
      */
     public boolean wireConnectedTo(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM wires WHERE username = ? AND circuit_name = ? AND " +
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM wires WHERE circuit_id = ? AND " +
                 "((src_section = ? AND src_row = ? AND src_column = ?) OR " +
                 "(dst_section = ? AND dst_row = ? AND dst_column = ?))",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c),
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
 
@@ -381,7 +345,6 @@ public class WireToDB {
         }
 
         cursor.close();
-        db.close();
         return exists;
     }
 
@@ -390,10 +353,12 @@ public class WireToDB {
      */
     public WireData getWire(String username, String circuitName, Coordinate srcCoord, Coordinate dstCoord) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT * FROM wires WHERE username = ? AND circuit_name = ? AND " +
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT id, src_section, src_row, src_column, dst_section, dst_row, dst_column " +
+                "FROM wires WHERE circuit_id = ? AND " +
                 "src_section = ? AND src_row = ? AND src_column = ? AND " +
                 "dst_section = ? AND dst_row = ? AND dst_column = ?",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(srcCoord.s), String.valueOf(srcCoord.r), String.valueOf(srcCoord.c),
                            String.valueOf(dstCoord.s), String.valueOf(dstCoord.r), String.valueOf(dstCoord.c)});
 
@@ -401,8 +366,8 @@ public class WireToDB {
         if (cursor.moveToFirst()) {
             wire = new WireData(
                     cursor.getInt(cursor.getColumnIndexOrThrow("id")),
-                    cursor.getString(cursor.getColumnIndexOrThrow("username")),
-                    cursor.getString(cursor.getColumnIndexOrThrow("circuit_name")),
+                    username,
+                    circuitName,
                     cursor.getInt(cursor.getColumnIndexOrThrow("src_section")),
                     cursor.getInt(cursor.getColumnIndexOrThrow("src_row")),
                     cursor.getInt(cursor.getColumnIndexOrThrow("src_column")),
@@ -413,7 +378,6 @@ public class WireToDB {
         }
 
         cursor.close();
-        db.close();
         return wire;
     }
 
@@ -421,18 +385,9 @@ public class WireToDB {
      * Get total wire count for a specific circuit
      */
     public int getWireCountForCircuit(String username, String circuitName) {
-        SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM wires WHERE username = ? AND circuit_name = ?",
-                new String[]{username, circuitName});
-
-        int count = 0;
-        if (cursor.moveToFirst()) {
-            count = cursor.getInt(0);
-        }
-
-        cursor.close();
-        db.close();
-        return count;
+        // Read from the counter on circuits rather than counting rows
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        return (int) dbHelper.queryForLong("SELECT IFNULL((SELECT wire_count FROM circuits WHERE id = ?), 0)", circuitId);
     }
 
     /**
@@ -440,10 +395,11 @@ public class WireToDB {
      */
     public int getWireCountConnectedTo(String username, String circuitName, Coordinate coord) {
         SQLiteDatabase db = dbHelper.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM wires WHERE username = ? AND circuit_name = ? AND " +
+        long circuitId = dbHelper.findCircuitId(username, circuitName);
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM wires WHERE circuit_id = ? AND " +
                 "((src_section = ? AND src_row = ? AND src_column = ?) OR " +
                 "(dst_section = ? AND dst_row = ? AND dst_column = ?))",
-                new String[]{username, circuitName, 
+                new String[]{String.valueOf(circuitId), 
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c),
                            String.valueOf(coord.s), String.valueOf(coord.r), String.valueOf(coord.c)});
 
@@ -453,7 +409,6 @@ public class WireToDB {
         }
 
         cursor.close();
-        db.close();
         return count;
     }
 }
\ No newline at end of file
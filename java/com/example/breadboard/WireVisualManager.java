@@ -3,36 +3,59 @@ package com.example.breadboard;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.view.View;
-import android.widget.ImageButton;
 import android.widget.RelativeLayout;
 
 import com.example.breadboard.model.Coordinate;
 import com.example.breadboard.WireToDB.WireData;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Draws wires over the breadboard. Wire ends are kept in the breadboard view's own coordinates
+ * and indexed in a uniform grid (WireGrid), so a frame draws, and a touch tests, only the
+ * wires crossing the part of the board on screen rather than every wire on the 64 columns.
+ */
 public class WireVisualManager {
     private MainActivity mainActivity;
-    private ImageButton[][][] pins;
+    private BreadboardView breadboardView;
     private RelativeLayout breadboardContainer;
     private WireOverlayView wireOverlay;
     private List<VisualWire> visualWires;
     private Map<String, VisualWire> wireMap; // For quick lookup and removal
+    private WireGrid wireGrid;
+    
+    // Wire colors array for variety; a wire's style indexes it
+    private static final int[] WIRE_COLORS = {
+            Color.parseColor("#FF5722"), // Red
+            Color.parseColor("#2196F3"), // Blue
+            Color.parseColor("#4CAF50"), // Green
+            Color.parseColor("#FF9800"), // Orange
+            Color.parseColor("#9C27B0"), // Purple
+            Color.parseColor("#607D8B"), // Blue Grey
+            Color.parseColor("#795548"), // Brown
+            Color.parseColor("#000000"), // Black
+            Color.parseColor("#FFEB3B"), // Yellow
+            Color.parseColor("#E91E63")  // Pink
+    };
+    public static final int STYLE_COUNT = WIRE_COLORS.length;
     
     // Wire appearance constants
-    private static final int WIRE_COLOR = Color.RED;
-    private static final int WIRE_WIDTH = 6;
-    private static final int WIRE_ALPHA = 200;
+    private static final int WIRE_WIDTH = 8; // Wire thickness
+    // How far from a wire a touch still selects it
+    private static final float TOUCH_RADIUS = 24f;
     
-    public WireVisualManager(MainActivity mainActivity, ImageButton[][][] pins) {
+    public WireVisualManager(MainActivity mainActivity, BreadboardView breadboardView) {
         this.mainActivity = mainActivity;
-        this.pins = pins;
+        this.breadboardView = breadboardView;
         this.visualWires = new ArrayList<>();
         this.wireMap = new HashMap<>();
+        this.wireGrid = new WireGrid();
         
         setupWireOverlay();
     }
@@ -53,8 +76,11 @@ public class WireVisualManager {
             
             wireOverlay.setLayoutParams(params);
             
-            // Add the overlay to the breadboard container at index 0 so it doesn't interfere with existing views
-            breadboardContainer.addView(wireOverlay, 0);
+            // Add the overlay last so wires are drawn over the board; it takes no touches itself
+            breadboardContainer.addView(wireOverlay);
+            
+            // Wires follow the board as it scrolls, so draw again for the newly visible part
+            breadboardView.getViewTreeObserver().addOnScrollChangedListener(wireOverlay::invalidate);
             
             System.out.println("Wire overlay view added to breadboard container");
         } else {
@@ -62,13 +88,29 @@ public class WireVisualManager {
         }
     }
     
+    /** Add a wire in the style its ends give it, so it looks the same each time it is loaded. */
     public void addVisualWire(Coordinate srcCoord, Coordinate dstCoord) {
+        addVisualWire(srcCoord, dstCoord, styleFor(srcCoord, dstCoord));
+    }
+
+    /** Style of a wire between two pins, whichever end is given first. */
+    public static int styleFor(Coordinate a, Coordinate b) {
+        int hash = Math.min(pinHash(a), pinHash(b)) * 31 + Math.max(pinHash(a), pinHash(b));
+        return Math.floorMod(hash * 0x9E3779B9, STYLE_COUNT);
+    }
+
+    private static int pinHash(Coordinate coord) {
+        return (coord.s * 8 + coord.r) * 64 + coord.c;
+    }
+    
+    /** Add a wire drawn in WIRE_COLORS[style]. */
+    public void addVisualWire(Coordinate srcCoord, Coordinate dstCoord, int style) {
         if (wireOverlay == null) {
             System.err.println("Wire overlay not initialized, cannot add visual wire");
             return;
         }
         
-        // Calculate pin positions using actual pin locations (like WireManager does)
+        // Pin centres on the board
         float[] srcPos = calculateActualPinPosition(srcCoord);
         float[] dstPos = calculateActualPinPosition(dstCoord);
         
@@ -79,13 +121,15 @@ public class WireVisualManager {
         
         // Create visual wire
         VisualWire wire = new VisualWire(srcCoord, dstCoord, srcPos[0], srcPos[1], dstPos[0], dstPos[1]);
+        wire.style = style;
         
         // Add to collections
         visualWires.add(wire);
         wireMap.put(generateWireKey(srcCoord, dstCoord), wire);
+        wireGrid.add(wire);
         
         // Trigger redraw
-        wireOverlay.invalidate();
+        wireOverlay.wiresChanged();
         
         System.out.println("Added visual wire from " + srcCoord + " to " + dstCoord);
     }
@@ -101,9 +145,10 @@ public class WireVisualManager {
         
         if (wire != null) {
             visualWires.remove(wire);
+            wireGrid.remove(wire);
             
             if (wireOverlay != null) {
-                wireOverlay.invalidate();
+                wireOverlay.wiresChanged();
             }
             
             System.out.println("Removed visual wire from " + srcCoord + " to " + dstCoord);
@@ -115,9 +160,10 @@ public class WireVisualManager {
     public void removeAllVisualWires() {
         visualWires.clear();
         wireMap.clear();
+        wireGrid.clear();
         
         if (wireOverlay != null) {
-            wireOverlay.invalidate();
+            wireOverlay.wiresChanged();
         }
         
         System.out.println("Removed all visual wires");
@@ -138,38 +184,18 @@ public class WireVisualManager {
     }
     
     /**
-     * Calculate actual pin position using the same approach as WireManager
-     * This gets the real position of the pin in the layout
+     * Centre of a pin in the breadboard view's own coordinates, which stay the same
+     * however the board is scrolled
      */
     private float[] calculateActualPinPosition(Coordinate coord) {
         try {
             // Validate coordinate bounds
-            if (coord.s < 0 || coord.s >= pins.length ||
-                coord.r < 0 || coord.r >= pins[coord.s].length ||
-                coord.c < 0 || coord.c >= pins[coord.s][coord.r].length) {
+            if (!BreadboardView.isOnBoard(coord)) {
                 System.err.println("Invalid coordinate bounds: " + coord);
                 return null;
             }
             
-            ImageButton pin = pins[coord.s][coord.r][coord.c];
-            if (pin == null) {
-                System.err.println("Pin is null at coordinate: " + coord);
-                return null;
-            }
-            
-            // Get pin positions using the same method as WireManager
-            int[] pinLocation = new int[2];
-            pin.getLocationInWindow(pinLocation);
-            
-            // Get container position for relative positioning
-            int[] containerLocation = new int[2];
-            breadboardContainer.getLocationInWindow(containerLocation);
-            
-            // Calculate relative positions (center of the pin)
-            float x = pinLocation[0] - containerLocation[0] + pin.getWidth() / 2f;
-            float y = pinLocation[1] - containerLocation[1] + pin.getHeight() / 2f;
-            
-            return new float[]{x, y};
+            return new float[]{breadboardView.pinCenterX(coord), breadboardView.pinCenterY(coord)};
             
         } catch (Exception e) {
             System.err.println("Error calculating actual pin position for " + coord + ": " + e.getMessage());
@@ -178,73 +204,6 @@ public class WireVisualManager {
         }
     }
     
-    /**
-     * Fallback method for calculating pin positions when pins aren't laid out yet
-     * This uses the same calculation logic as the original method
-     */
-    private float[] calculatePinPosition(Coordinate coord) {
-        try {
-            // Validate coordinate bounds
-            if (coord.s < 0 || coord.s >= pins.length ||
-                coord.r < 0 || coord.r >= pins[coord.s].length ||
-                coord.c < 0 || coord.c >= pins[coord.s][coord.r].length) {
-                System.err.println("Invalid coordinate bounds: " + coord);
-                return null;
-            }
-            
-            ImageButton pin = pins[coord.s][coord.r][coord.c];
-            if (pin == null) {
-                System.err.println("Pin is null at coordinate: " + coord);
-                return null;
-            }
-            
-            // Get pin dimensions and position
-            int pinSize = 0;
-            try {
-                pinSize = mainActivity.getResources().getDimensionPixelSize(R.dimen.pin_size);
-            } catch (Exception e) {
-                pinSize = 40; // Default fallback
-            }
-            
-            int pinMarginLeft = Math.round(1 * mainActivity.getResources().getDisplayMetrics().density);
-            int scrollPadding = Math.round(5 * mainActivity.getResources().getDisplayMetrics().density);
-            int gridPadding = Math.round(4 * mainActivity.getResources().getDisplayMetrics().density);
-            
-            // Calculate position based on coordinate and layout parameters
-            float x = scrollPadding + gridPadding + pinMarginLeft + 
-                     (coord.c * (pinSize + (pinMarginLeft * 2))) + (pinSize / 2.0f);
-            
-            // Calculate Y position based on section and row
-            float y;
-            if (coord.s == 0) {
-                // Top section (rows A-E)
-                y = gridPadding + (coord.r * (pinSize + (pinMarginLeft * 2))) + (pinSize / 2.0f);
-            } else {
-                // Bottom section (rows F-J)
-                // Account for IC container height
-                int icContainerHeight = 0;
-                try {
-                    icContainerHeight = mainActivity.getResources().getDimensionPixelSize(R.dimen.ic_height);
-                } catch (Exception e) {
-                    icContainerHeight = 50; // Default fallback
-                }
-                if (icContainerHeight == 0) {
-                    icContainerHeight = 50; // Default fallback
-                }
-                
-                y = gridPadding + (5 * (pinSize + (pinMarginLeft * 2))) + icContainerHeight + 
-                    (coord.r * (pinSize + (pinMarginLeft * 2))) + (pinSize / 2.0f);
-            }
-            
-            return new float[]{x, y};
-            
-        } catch (Exception e) {
-            System.err.println("Error calculating pin position for " + coord + ": " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        }
-    }
-    
     private String generateWireKey(Coordinate coord1, Coordinate coord2) {
         return coord1.toString() + "->" + coord2.toString();
     }
@@ -270,28 +229,60 @@ public class WireVisualManager {
             float[] dstPos = calculateActualPinPosition(wire.dstCoord);
             
             if (srcPos != null && dstPos != null) {
-                // Update wire positions
+                // Update wire positions, and the cells it is indexed under
+                wireGrid.remove(wire);
                 wire.startX = srcPos[0];
                 wire.startY = srcPos[1];
                 wire.endX = dstPos[0];
                 wire.endY = dstPos[1];
+                wireGrid.add(wire);
             }
         }
         
         // Trigger redraw with updated positions
-        wireOverlay.invalidate();
+        wireOverlay.wiresChanged();
     }
     
     public int getVisualWireCount() {
         return visualWires.size();
     }
     
+    /**
+     * The wire under a touch at (x, y) in the breadboard view's coordinates, as its
+     * {source, destination}, or null. Only wires on the visible part of the board are tested.
+     */
+    public Coordinate[] findWireAt(float x, float y) {
+        Rect viewport = new Rect();
+        if (!breadboardView.getLocalVisibleRect(viewport) || !viewport.contains((int) x, (int) y)) {
+            return null;
+        }
+        
+        List<VisualWire> nearby = new ArrayList<>();
+        wireGrid.query(new Rect((int) (x - TOUCH_RADIUS), (int) (y - TOUCH_RADIUS),
+                (int) (x + TOUCH_RADIUS) + 1, (int) (y + TOUCH_RADIUS) + 1), nearby);
+        
+        VisualWire closest = null;
+        float closestDistance = TOUCH_RADIUS;
+        for (VisualWire wire : nearby) {
+            float distance = wire.distanceTo(x, y);
+            if (distance <= closestDistance) {
+                closest = wire;
+                closestDistance = distance;
+            }
+        }
+        return closest == null ? null : new Coordinate[]{closest.srcCoord, closest.dstCoord};
+    }
+    
     // Inner class for visual wire representation
     private static class VisualWire {
         public final Coordinate srcCoord;
         public final Coordinate dstCoord;
         public float startX, startY;
         public float endX, endY;
+        public int style;
+        // Grid cells the wire is indexed under, and the last query that visited it
+        private long[] cells = new long[0];
+        private int queryStamp;
         
         public VisualWire(Coordinate srcCoord, Coordinate dstCoord, 
                          float startX, float startY, float endX, float endY) {
@@ -302,52 +293,240 @@ public class WireVisualManager {
             this.endX = endX;
             this.endY = endY;
         }
+        
+        // Distance from (x, y) to the nearest point of the wire
+        float distanceTo(float x, float y) {
+            float dx = endX - startX;
+            float dy = endY - startY;
+            float lengthSquared = dx * dx + dy * dy;
+            float t = lengthSquared == 0 ? 0 : ((x - startX) * dx + (y - startY) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+            float nearestX = startX + t * dx;
+            float nearestY = startY + t * dy;
+            return (float) Math.hypot(x - nearestX, y - nearestY);
+        }
+    }
+    
+    /**
+     * Uniform grid over the board in CELL_SIZE pixel squares. A wire is listed in every cell
+     * its segment, widened by the stroke, passes through, so a query over a rectangle only
+     * looks at the cells that rectangle covers. Adding and removing a wire touches only its
+     * own cells.
+     */
+    private static class WireGrid {
+        private static final int CELL_SIZE = 128;
+        private static final float PAD = WIRE_WIDTH;
+        
+        private final Map<Long, List<VisualWire>> cells = new HashMap<>();
+        private int queryStamp = 0;
+        
+        void add(VisualWire wire) {
+            wire.cells = cellsOf(wire);
+            for (long key : wire.cells) {
+                List<VisualWire> cell = cells.get(key);
+                if (cell == null) {
+                    cell = new ArrayList<>();
+                    cells.put(key, cell);
+                }
+                cell.add(wire);
+            }
+        }
+        
+        void remove(VisualWire wire) {
+            for (long key : wire.cells) {
+                List<VisualWire> cell = cells.get(key);
+                if (cell == null) continue;
+                cell.remove(wire);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+            wire.cells = new long[0];
+        }
+        
+        void clear() {
+            cells.clear();
+        }
+        
+        // The cells covering area, as a rectangle of column and row numbers
+        static void cellRange(Rect area, Rect out) {
+            out.set(cell(area.left), cell(area.top), cell(area.right), cell(area.bottom));
+        }
+        
+        // Replace out with the wires in the cells covering area, each once
+        void query(Rect area, List<VisualWire> out) {
+            out.clear();
+            queryStamp++;
+            int lastColumn = cell(area.right);
+            int lastRow = cell(area.bottom);
+            for (int column = cell(area.left); column <= lastColumn; column++) {
+                for (int row = cell(area.top); row <= lastRow; row++) {
+                    List<VisualWire> cell = cells.get(key(column, row));
+                    if (cell == null) continue;
+                    for (VisualWire wire : cell) {
+                        if (wire.queryStamp != queryStamp) {
+                            wire.queryStamp = queryStamp;
+                            out.add(wire);
+                        }
+                    }
+                }
+            }
+        }
+        
+        // Walk the columns of cells the wire spans and, in each, the rows its segment crosses there
+        private static long[] cellsOf(VisualWire wire) {
+            float minX = Math.min(wire.startX, wire.endX);
+            float maxX = Math.max(wire.startX, wire.endX);
+            List<Long> keys = new ArrayList<>();
+            int lastColumn = cell(maxX + PAD);
+            for (int column = cell(minX - PAD); column <= lastColumn; column++) {
+                float left = Math.max(minX, column * CELL_SIZE - PAD);
+                float right = Math.min(maxX, (column + 1) * CELL_SIZE + PAD);
+                float y1 = yAt(wire, left, true);
+                float y2 = yAt(wire, right, false);
+                int lastRow = cell(Math.max(y1, y2) + PAD);
+                for (int row = cell(Math.min(y1, y2) - PAD); row <= lastRow; row++) {
+                    keys.add(key(column, row));
+                }
+            }
+            long[] result = new long[keys.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = keys.get(i);
+            }
+            return result;
+        }
+        
+        // y of the segment at x; a vertical segment spans its whole height, so give its top or bottom
+        private static float yAt(VisualWire wire, float x, boolean top) {
+            float dx = wire.endX - wire.startX;
+            if (Math.abs(dx) < 1f) {
+                return top ? Math.min(wire.startY, wire.endY) : Math.max(wire.startY, wire.endY);
+            }
+            return wire.startY + (x - wire.startX) * (wire.endY - wire.startY) / dx;
+        }
+        
+        private static int cell(float position) {
+            return (int) Math.floor(position / CELL_SIZE);
+        }
+        
+        private static long key(int column, int row) {
+            return ((long) column << 32) | (row & 0xffffffffL);
+        }
+    }
+    
+    /**
+     * The visible wires of one style as flat line and point arrays, so a frame draws them
+     * with one drawLines and one drawPoints call. The arrays grow as needed and are reused.
+     */
+    private static class WireBatch {
+        private final Paint paint;
+        private float[] lines = new float[64];
+        private float[] points = new float[64];
+        private int lineCount;
+        private int pointCount;
+        
+        WireBatch(int color) {
+            paint = new Paint();
+            paint.setColor(color);
+            paint.setStrokeWidth(WIRE_WIDTH);
+            paint.setAntiAlias(true);
+            // Round caps and points give the rounded ends the wire and its connection points had
+            paint.setStrokeCap(Paint.Cap.ROUND);
+        }
+        
+        void clear() {
+            lineCount = 0;
+            pointCount = 0;
+        }
+        
+        void add(VisualWire wire) {
+            if (lineCount + 4 > lines.length) {
+                lines = Arrays.copyOf(lines, lines.length * 2);
+                points = Arrays.copyOf(points, lines.length);
+            }
+            lines[lineCount++] = wire.startX;
+            lines[lineCount++] = wire.startY;
+            lines[lineCount++] = wire.endX;
+            lines[lineCount++] = wire.endY;
+            // Connection points at both ends
+            points[pointCount++] = wire.startX;
+            points[pointCount++] = wire.startY;
+            points[pointCount++] = wire.endX;
+            points[pointCount++] = wire.endY;
+        }
+        
+        void draw(Canvas canvas) {
+            if (lineCount == 0) return;
+            canvas.drawLines(lines, 0, lineCount, paint);
+            canvas.drawPoints(points, 0, pointCount, paint);
+        }
     }
     
     // Custom view for drawing wire overlays
     private class WireOverlayView extends View {
-        private Paint wirePaint;
+        private final WireBatch[] batches = new WireBatch[WIRE_COLORS.length];
+        private final Rect viewport = new Rect();
+        // Grid cells the batches were built for, and whether wires changed since
+        private final Rect batchedCells = new Rect();
+        private final Rect visibleCells = new Rect();
+        private boolean batchesStale = true;
+        private final int[] boardLocation = new int[2];
+        private final int[] overlayLocation = new int[2];
+        private final List<VisualWire> visible = new ArrayList<>();
         
         public WireOverlayView() {
             super(mainActivity);
-            setupPaint();
+            for (int style = 0; style < batches.length; style++) {
+                batches[style] = new WireBatch(WIRE_COLORS[style]);
+            }
             // Make sure the overlay doesn't interfere with touch events
             setClickable(false);
             setFocusable(false);
         }
         
-        private void setupPaint() {
-            wirePaint = new Paint();
-            wirePaint.setColor(WIRE_COLOR);
-            wirePaint.setStrokeWidth(WIRE_WIDTH);
-            wirePaint.setAlpha(WIRE_ALPHA);
-            wirePaint.setAntiAlias(true);
-            wirePaint.setStrokeCap(Paint.Cap.ROUND);
+        // Wires were added, removed or moved: rebuild the batches on the next frame
+        void wiresChanged() {
+            batchesStale = true;
+            invalidate();
         }
         
         @Override
         protected void onDraw(Canvas canvas) {
             super.onDraw(canvas);
             
-            // Draw all visual wires
-            for (VisualWire wire : visualWires) {
-                drawWire(canvas, wire);
+            // Part of the board on screen, in board coordinates
+            if (!breadboardView.getLocalVisibleRect(viewport)) {
+                return;
+            }
+            breadboardView.getLocationInWindow(boardLocation);
+            getLocationInWindow(overlayLocation);
+            
+            // Rebuild the batches only when wires changed or scrolling brought other cells into view
+            WireGrid.cellRange(viewport, visibleCells);
+            if (batchesStale || !visibleCells.equals(batchedCells)) {
+                rebuildBatches();
             }
+            
+            // Draw the wires crossing it, from board coordinates
+            canvas.save();
+            canvas.translate(boardLocation[0] - overlayLocation[0], boardLocation[1] - overlayLocation[1]);
+            canvas.clipRect(viewport);
+            for (WireBatch batch : batches) {
+                batch.draw(canvas);
+            }
+            canvas.restore();
         }
         
-        private void drawWire(Canvas canvas, VisualWire wire) {
-            try {
-                // Draw the main wire line
-                canvas.drawLine(wire.startX, wire.startY, wire.endX, wire.endY, wirePaint);
-                
-                // Draw connection points (small circles at endpoints)
-                float connectionRadius = WIRE_WIDTH / 2.0f;
-                canvas.drawCircle(wire.startX, wire.startY, connectionRadius, wirePaint);
-                canvas.drawCircle(wire.endX, wire.endY, connectionRadius, wirePaint);
-                
-            } catch (Exception e) {
-                System.err.println("Error drawing wire from " + wire.srcCoord + " to " + wire.dstCoord + ": " + e.getMessage());
+        private void rebuildBatches() {
+            for (WireBatch batch : batches) {
+                batch.clear();
+            }
+            wireGrid.query(viewport, visible);
+            for (VisualWire wire : visible) {
+                batches[wire.style].add(wire);
             }
+            batchedCells.set(visibleCells);
+            batchesStale = false;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package com.example.breadboard.logic;
+
+import android.widget.Button;
+
+import com.example.breadboard.ICPinManager;
+import com.example.breadboard.MainActivity;
+import com.example.breadboard.model.Coordinate;
+import com.example.breadboard.sim.ICPinout;
+import com.example.breadboard.sim.Netlist;
+
+/**
+ * A saved circuit placed on the board as a 14-pin IC. The compiled definition is shared
+ * with every other instance of the same circuit; this object only knows its pins.
+ */
+public class SubcircuitIC extends ICGate {
+    ICPinManager icPinManager;
+    MainActivity mainActivity;
+
+    private Netlist definition;
+    private int[] inputPins;
+    private int[] outputPins;
+
+    public SubcircuitIC(String type, Coordinate position, Button button, MainActivity mainActivity,
+                        Netlist definition) {
+        super(type, position, button, mainActivity);
+        this.mainActivity = mainActivity;
+        this.icPinManager = mainActivity.getICPinManager();
+        this.definition = definition;
+        this.inputPins = ICPinout.subcircuitInputPins(definition.inputCount());
+        this.outputPins = ICPinout.subcircuitOutputPins(definition.inputCount(), definition.outputCount());
+    }
+
+    @Override
+    public void init() {
+        System.out.println("Subcircuit " + type + " initialized with " + inputPins.length
+                + " inputs and " + outputPins.length + " outputs");
+        if (mainActivity != null) {
+            registerPinFunctions();
+        }
+    }
+
+    private void registerPinFunctions() {
+        for (int pin : inputPins) {
+            icPinManager.registerICPin(ICPinout.pinCoordinate(pin, position.c), "INPUT", this);
+        }
+        for (int pin : outputPins) {
+            icPinManager.registerICPin(ICPinout.pinCoordinate(pin, position.c), "OUTPUT", this);
+        }
+        icPinManager.registerICPin(ICPinout.pinCoordinate(ICPinout.VCC_PIN, position.c), "VCC", this);
+        icPinManager.registerICPin(ICPinout.pinCoordinate(ICPinout.GND_PIN, position.c), "GND", this);
+    }
+
+    @Override
+    public int execute(int[] inputs) {
+        int[] outputs = executeAllGates(inputs);
+        return outputs.length > 0 ? outputs[0] : 0;
+    }
+
+    // Evaluate the whole definition; inputs follow the definition's input order
+    public int[] executeAllGates(int[] inputs) {
+        return definition.evaluate(inputs);
+    }
+
+    public Netlist getDefinition() {
+        return definition;
+    }
+
+    public int[] getInputPins() {
+        return inputPins;
+    }
+
+    public int[] getOutputPins() {
+        return outputPins;
+    }
+}
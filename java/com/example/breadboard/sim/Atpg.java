@@ -0,0 +1,311 @@
+package com.example.breadboard.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Automatic test pattern generation for combinational netlists.
+ *
+ * Easy faults are removed first with random 64-pattern batches through the parallel fault
+ * simulator. Each remaining fault gets a PODEM search over the named inputs; every vector
+ * found is fault-simulated so the faults it detects by accident are dropped. A final
+ * reverse-order pass discards vectors that detect nothing new.
+ */
+public class Atpg {
+    private static final int X = 2;
+
+    private static final int DETECTED = 0;
+    private static final int REDUNDANT = 1;
+    private static final int ABORTED = 2;
+
+    private final Netlist netlist;
+    private final FaultSimulator faultSimulator;
+    private final Random random = new Random(1);
+    private int backtrackLimit = 1000;
+    private int randomBatches = 8;
+
+    // PODEM working state, three-valued (0, 1, X) for the good and the faulty circuit
+    private final int[] good;
+    private final int[] bad;
+    private final int[] assignment;
+
+    public static class Result {
+        public final TestBench testBench;
+        public final int totalFaults;
+        public final int detected;
+        public final int redundant;
+        public final int aborted;
+        public final List<Fault> undetected;
+
+        public Result(TestBench testBench, int totalFaults, int detected, int redundant,
+                      int aborted, List<Fault> undetected) {
+            this.testBench = testBench;
+            this.totalFaults = totalFaults;
+            this.detected = detected;
+            this.redundant = redundant;
+            this.aborted = aborted;
+            this.undetected = undetected;
+        }
+
+        /** Fraction of detectable (non-redundant) faults the vectors detect. */
+        public double coverage() {
+            int detectable = totalFaults - redundant;
+            return detectable == 0 ? 1.0 : (double) detected / detectable;
+        }
+
+        @Override
+        public String toString() {
+            return testBench.size() + " vectors, " + detected + "/" + totalFaults + " faults detected, "
+                    + redundant + " redundant, " + aborted + " aborted";
+        }
+    }
+
+    /** Subcircuit instances are inlined first, so faults inside them are targeted too. */
+    public Atpg(Netlist netlist) {
+        netlist = netlist.flatten();
+        if (netlist.isCyclic()) {
+            throw new IllegalArgumentException("ATPG needs a combinational circuit; this one has feedback loops");
+        }
+        this.netlist = netlist;
+        this.faultSimulator = new FaultSimulator(netlist);
+        this.good = new int[netlist.netCount()];
+        this.bad = new int[netlist.netCount()];
+        this.assignment = new int[netlist.inputCount()];
+    }
+
+    public void setBacktrackLimit(int backtrackLimit) {
+        this.backtrackLimit = backtrackLimit;
+    }
+
+    public void setRandomBatches(int randomBatches) {
+        this.randomBatches = randomBatches;
+    }
+
+    public Result run() {
+        List<Fault> all = faultSimulator.allFaults();
+        List<Fault> remaining = new ArrayList<>(all);
+        List<int[]> vectors = new ArrayList<>();
+        int inputCount = netlist.inputCount();
+
+        // Random phase: keep only the patterns that are first to detect some fault
+        for (int batch = 0; batch < randomBatches && !remaining.isEmpty(); batch++) {
+            long[] words = new long[inputCount];
+            for (int i = 0; i < inputCount; i++) words[i] = random.nextLong();
+            long[] goodValues = faultSimulator.simulateGood(words);
+            long needed = 0L;
+            for (int f = remaining.size() - 1; f >= 0; f--) {
+                long mask = faultSimulator.detect(remaining.get(f), goodValues, -1L);
+                if (mask != 0L) {
+                    needed |= Long.lowestOneBit(mask);
+                    remaining.remove(f);
+                }
+            }
+            if (needed == 0L) break;
+            for (int k = 0; k < 64; k++) {
+                if ((needed & (1L << k)) == 0) continue;
+                int[] vector = new int[inputCount];
+                for (int i = 0; i < inputCount; i++) vector[i] = (int) ((words[i] >>> k) & 1L);
+                vectors.add(vector);
+            }
+        }
+
+        // Deterministic phase
+        int redundant = 0;
+        int aborted = 0;
+        List<Fault> undetected = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            Fault fault = remaining.remove(0);
+            int status = podem(fault);
+            if (status == DETECTED) {
+                int[] vector = new int[inputCount];
+                for (int i = 0; i < inputCount; i++) {
+                    vector[i] = assignment[i] == X ? random.nextInt(2) : assignment[i];
+                }
+                vectors.add(vector);
+                faultSimulator.dropDetected(remaining, FaultSimulator.pack(vectors, vectors.size() - 1, 1, inputCount), 1L);
+            } else if (status == REDUNDANT) {
+                redundant++;
+                undetected.add(fault);
+            } else {
+                aborted++;
+                undetected.add(fault);
+            }
+        }
+
+        // Reverse-order compaction
+        Set<Fault> skip = new HashSet<>(undetected);
+        List<Fault> targets = new ArrayList<>();
+        for (Fault fault : all) {
+            if (!skip.contains(fault)) targets.add(fault);
+        }
+        List<int[]> kept = new ArrayList<>();
+        for (int v = vectors.size() - 1; v >= 0 && !targets.isEmpty(); v--) {
+            if (faultSimulator.dropDetected(targets, FaultSimulator.pack(vectors, v, 1, inputCount), 1L) > 0) {
+                kept.add(vectors.get(v));
+            }
+        }
+        Collections.reverse(kept);
+
+        TestBench bench = TestBench.forNetlist(netlist);
+        for (int[] vector : kept) bench.addVector(vector, netlist.evaluate(vector));
+        int detected = all.size() - undetected.size() - targets.size();
+        return new Result(bench, all.size(), detected, redundant, aborted, undetected);
+    }
+
+    private int podem(Fault fault) {
+        Arrays.fill(assignment, X);
+        int[] stackInput = new int[assignment.length];
+        boolean[] stackFlipped = new boolean[assignment.length];
+        int depth = 0;
+        int backtracks = 0;
+
+        while (true) {
+            imply(fault);
+            if (faultDetected()) return DETECTED;
+
+            int[] target = null;
+            if (good[fault.net] != fault.stuckAt) {
+                int[] objective = objective(fault);
+                if (objective != null) target = backtrace(objective[0], objective[1]);
+            }
+            if (target != null) {
+                assignment[target[0]] = target[1];
+                stackInput[depth] = target[0];
+                stackFlipped[depth] = false;
+                depth++;
+                continue;
+            }
+
+            // Backtrack: undo exhausted decisions, then flip the most recent open one
+            while (depth > 0 && stackFlipped[depth - 1]) {
+                assignment[stackInput[--depth]] = X;
+            }
+            if (depth == 0) return REDUNDANT;
+            if (++backtracks > backtrackLimit) return ABORTED;
+            int input = stackInput[depth - 1];
+            assignment[input] = 1 - assignment[input];
+            stackFlipped[depth - 1] = true;
+        }
+    }
+
+    private void imply(Fault fault) {
+        for (int net = 0; net < good.length; net++) {
+            int value = 0;
+            if (netlist.driverKind(net) == Netlist.DRIVEN_BY_CONSTANT) {
+                value = netlist.driverIndex(net);
+            } else if (netlist.driverKind(net) == Netlist.DRIVEN_BY_INPUT) {
+                value = assignment[netlist.driverIndex(net)];
+            }
+            good[net] = value;
+            bad[net] = value;
+        }
+        bad[fault.net] = fault.stuckAt;
+        for (int g : netlist.order()) {
+            int[] in = netlist.gateInputs(g);
+            int out = netlist.gateOutput(g);
+            int kind = netlist.gateKind(g);
+            good[out] = eval3(kind, good[in[0]], in.length > 1 ? good[in[1]] : X);
+            if (out != fault.net) bad[out] = eval3(kind, bad[in[0]], in.length > 1 ? bad[in[1]] : X);
+        }
+    }
+
+    private boolean faultDetected() {
+        for (int o = 0; o < netlist.outputCount(); o++) {
+            if (hasFaultEffect(netlist.outputNet(o))) return true;
+        }
+        return false;
+    }
+
+    private boolean hasFaultEffect(int net) {
+        return good[net] != X && bad[net] != X && good[net] != bad[net];
+    }
+
+    // Next value to justify: excite the fault, else push the effect through the D-frontier
+    private int[] objective(Fault fault) {
+        if (good[fault.net] == X) return new int[]{fault.net, 1 - fault.stuckAt};
+
+        int bestNet = -1;
+        int bestValue = 0;
+        int bestLevel = -1;
+        for (int g : netlist.order()) {
+            int out = netlist.gateOutput(g);
+            if (good[out] != X && bad[out] != X) continue;
+            int[] in = netlist.gateInputs(g);
+            boolean frontier = false;
+            int open = -1;
+            for (int net : in) {
+                if (hasFaultEffect(net)) frontier = true;
+                else if (good[net] == X && open == -1) open = net;
+            }
+            if (!frontier || open == -1) continue;
+            if (netlist.level(out) > bestLevel) {
+                bestLevel = netlist.level(out);
+                bestNet = open;
+                bestValue = nonControlling(netlist.gateKind(g));
+            }
+        }
+        return bestNet == -1 ? null : new int[]{bestNet, bestValue};
+    }
+
+    private static int nonControlling(int kind) {
+        return kind == Netlist.AND || kind == Netlist.NAND ? 1 : 0;
+    }
+
+    // Walk an objective back to an unassigned input through X-valued nets
+    private int[] backtrace(int net, int value) {
+        while (true) {
+            int driver = netlist.driverKind(net);
+            if (driver == Netlist.DRIVEN_BY_INPUT) return new int[]{netlist.driverIndex(net), value};
+            if (driver != Netlist.DRIVEN_BY_GATE) return null;
+
+            int g = netlist.driverIndex(net);
+            int kind = netlist.gateKind(g);
+            int[] in = netlist.gateInputs(g);
+            if (kind == Netlist.NAND || kind == Netlist.NOR || kind == Netlist.NOT) value = 1 - value;
+
+            int next = -1;
+            for (int i = 0; i < in.length; i++) {
+                if (good[in[i]] != X) continue;
+                next = in[i];
+                if (kind == Netlist.XOR) {
+                    int other = good[in[1 - i]];
+                    if (other != X) value ^= other;
+                }
+                break;
+            }
+            if (next == -1) return null;
+            net = next;
+        }
+    }
+
+    static int eval3(int kind, int a, int b) {
+        switch (kind) {
+            case Netlist.AND: return and3(a, b);
+            case Netlist.OR: return or3(a, b);
+            case Netlist.NAND: return not3(and3(a, b));
+            case Netlist.NOR: return not3(or3(a, b));
+            case Netlist.XOR: return a == X || b == X ? X : a ^ b;
+            case Netlist.NOT: return not3(a);
+            default: return X;
+        }
+    }
+
+    private static int and3(int a, int b) {
+        if (a == 0 || b == 0) return 0;
+        return a == 1 && b == 1 ? 1 : X;
+    }
+
+    private static int or3(int a, int b) {
+        if (a == 1 || b == 1) return 1;
+        return a == 0 && b == 0 ? 0 : X;
+    }
+
+    private static int not3(int a) {
+        return a == X ? X : 1 - a;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.breadboard.sim;
+
+/** Adding or removing one BoardElement. Every edit has an exact inverse. */
+public final class BoardEdit {
+    public final boolean add;
+    public final BoardElement element;
+
+    private BoardEdit(boolean add, BoardElement element) {
+        this.add = add;
+        this.element = element;
+    }
+
+    public static BoardEdit add(BoardElement element) {
+        return new BoardEdit(true, element);
+    }
+
+    public static BoardEdit remove(BoardElement element) {
+        return new BoardEdit(false, element);
+    }
+
+    public BoardEdit inverse() {
+        return new BoardEdit(!add, element);
+    }
+
+    @Override
+    public String toString() {
+        return (add ? "+ " : "- ") + element;
+    }
+}
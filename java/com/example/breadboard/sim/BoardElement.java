@@ -0,0 +1,92 @@
+package com.example.breadboard.sim;
+
+import com.example.breadboard.model.Coordinate;
+
+/**
+ * One thing placed on the board, as the edit history sees it. Elements are immutable and
+ * identified by key(): an IC by its base pin, a wire by its two ends in either order, and an
+ * input, output or power pin by its coordinate.
+ */
+public final class BoardElement {
+    public static final int IC = 0;
+    public static final int WIRE = 1;
+    public static final int INPUT = 2;
+    public static final int OUTPUT = 3;
+    public static final int POWER = 4;
+
+    private static final String[] TYPE_NAMES = {"IC", "WIRE", "INPUT", "OUTPUT", "POWER"};
+
+    public final int type;
+    public final Coordinate position;
+    public final Coordinate end;     // other end of a wire, else null
+    public final String label;       // IC type or input name, else null
+    public final int value;          // power value as in ComponentToDB, else 0
+
+    private final String key;
+
+    private BoardElement(int type, Coordinate position, Coordinate end, String label, int value) {
+        this.type = type;
+        this.position = copy(position);
+        this.end = copy(end);
+        this.label = label;
+        this.value = value;
+        this.key = makeKey(type, this.position, this.end);
+    }
+
+    public static BoardElement ic(String icType, Coordinate position) {
+        return new BoardElement(IC, position, null, icType, 0);
+    }
+
+    public static BoardElement wire(Coordinate src, Coordinate dst) {
+        return new BoardElement(WIRE, src, dst, null, 0);
+    }
+
+    public static BoardElement input(String name, Coordinate coord) {
+        return new BoardElement(INPUT, coord, null, name, 0);
+    }
+
+    public static BoardElement output(Coordinate coord) {
+        return new BoardElement(OUTPUT, coord, null, null, 0);
+    }
+
+    public static BoardElement power(int value, Coordinate coord) {
+        return new BoardElement(POWER, coord, null, null, value);
+    }
+
+    // Coordinate fields are public and mutable, so keep a private copy
+    private static Coordinate copy(Coordinate coord) {
+        return coord != null ? new Coordinate(coord.s, coord.r, coord.c) : null;
+    }
+
+    private static String makeKey(int type, Coordinate a, Coordinate b) {
+        String first = a.s + ":" + a.r + ":" + a.c;
+        if (type != WIRE) return TYPE_NAMES[type] + "@" + first;
+        String second = b.s + ":" + b.r + ":" + b.c;
+        return first.compareTo(second) <= 0 ? "WIRE@" + first + "-" + second : "WIRE@" + second + "-" + first;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof BoardElement)) return false;
+        BoardElement that = (BoardElement) obj;
+        return key.equals(that.key) && value == that.value
+                && (label == null ? that.label == null : label.equals(that.label));
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        if (type == IC || type == INPUT) return key + " " + label;
+        if (type == POWER) return key + " " + value;
+        return key;
+    }
+}
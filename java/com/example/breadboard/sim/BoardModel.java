@@ -0,0 +1,116 @@
+package com.example.breadboard.sim;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of everything placed on the board. Applying an edit returns a new
+ * model that shares all untouched structure with this one, so keeping every past version
+ * costs only the nodes each edit copied.
+ */
+public final class BoardModel {
+    private static final BoardModel EMPTY = new BoardModel(PersistentMap.<String, BoardElement>empty());
+
+    private final PersistentMap<String, BoardElement> elements;
+
+    private BoardModel(PersistentMap<String, BoardElement> elements) {
+        this.elements = elements;
+    }
+
+    public static BoardModel empty() {
+        return EMPTY;
+    }
+
+    /**
+     * The model after edit; this model if the edit changes nothing. An add never replaces a
+     * different element under the same key, since its inverse could not bring that one back;
+     * such an add changes nothing here and must go through steps() instead.
+     */
+    public BoardModel apply(BoardEdit edit) {
+        BoardElement element = edit.element;
+        PersistentMap<String, BoardElement> next;
+        if (edit.add) {
+            if (elements.get(element.key()) != null) return this;
+            next = elements.with(element.key(), element);
+        } else {
+            if (!element.equals(elements.get(element.key()))) return this;
+            next = elements.without(element.key());
+        }
+        return new BoardModel(next);
+    }
+
+    /**
+     * edit as steps that each apply cleanly to this model and the ones after it: an add over
+     * a different element with the same key becomes a remove of that element, then the add.
+     */
+    public List<BoardEdit> steps(BoardEdit edit) {
+        BoardElement existing = edit.add ? elements.get(edit.element.key()) : null;
+        if (existing == null || existing.equals(edit.element)) return Collections.singletonList(edit);
+        return Arrays.asList(BoardEdit.remove(existing), edit);
+    }
+
+    /** Whether this model holds exactly the same elements as other. */
+    public boolean sameElements(BoardModel other) {
+        if (size() != other.size()) return false;
+        for (BoardElement element : elements()) {
+            if (!other.contains(element)) return false;
+        }
+        return true;
+    }
+
+    /** Whether applying edit would change this model. */
+    public boolean changes(BoardEdit edit) {
+        return apply(edit) != this;
+    }
+
+    public boolean contains(BoardElement element) {
+        return element.equals(elements.get(element.key()));
+    }
+
+    public BoardElement get(String key) {
+        return elements.get(key);
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    public List<BoardElement> elements() {
+        return elements.values();
+    }
+
+    /** The model reached by applying edits in order, e.g. a saved history. */
+    public BoardModel replay(List<BoardEdit> edits) {
+        BoardModel model = this;
+        for (BoardEdit edit : edits) model = model.apply(edit);
+        return model;
+    }
+
+    /** A netlist builder for this board. Subcircuit ICs need their definitions and are skipped. */
+    public Netlist.Builder toBuilder() {
+        Netlist.Builder builder = new Netlist.Builder();
+        for (BoardElement element : elements()) {
+            switch (element.type) {
+                case BoardElement.IC:
+                    builder.addIC(element.label, element.position);
+                    break;
+                case BoardElement.WIRE:
+                    builder.addWire(element.position, element.end);
+                    break;
+                case BoardElement.INPUT:
+                    builder.addInput(element.label, element.position);
+                    break;
+                case BoardElement.OUTPUT:
+                    builder.addOutput(element.position);
+                    break;
+                case BoardElement.POWER:
+                    builder.addPower(element.value, element.position);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return builder;
+    }
+}
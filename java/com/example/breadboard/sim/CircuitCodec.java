@@ -0,0 +1,248 @@
+package com.example.breadboard.sim;
+
+import com.example.breadboard.model.Coordinate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary form of a whole board, used both to store a circuit in one row and as its
+ * export format.
+ *
+ * Layout: the magic "BBC", a format version byte, a string table, then ICs, wires, inputs,
+ * outputs and power pins, each as a count followed by its records, and a CRC-32 of everything
+ * before it. A coordinate is packed into one int, pin = (s * ROWS + r) * COLUMNS + c; records
+ * are sorted by pin and each stores the gap from the previous one, so a typical board costs
+ * one or two bytes per element. Integers are unsigned LEB128 varints, signed ones zigzagged.
+ *
+ * The encoding is canonical: strings and records are fully sorted, so equal boards encode to
+ * equal bytes whatever order they were built in, and contentHash can compare circuits.
+ */
+public final class CircuitCodec {
+    public static final int VERSION = 1;
+    public static final int ROWS = 5;
+    public static final int COLUMNS = 64;
+
+    private static final byte[] MAGIC = {'B', 'B', 'C'};
+
+    private static final Comparator<BoardElement> BY_PIN = new Comparator<BoardElement>() {
+        @Override
+        public int compare(BoardElement a, BoardElement b) {
+            int order = Integer.compare(pack(a.position), pack(b.position));
+            if (order == 0 && a.end != null) order = Integer.compare(pack(a.end), pack(b.end));
+            if (order == 0) order = Integer.compare(a.value, b.value);
+            if (order == 0 && a.label != null && b.label != null) order = a.label.compareTo(b.label);
+            return order;
+        }
+    };
+
+    private CircuitCodec() {
+    }
+
+    public static int pack(Coordinate coord) {
+        if (coord.s < 0 || coord.r < 0 || coord.r >= ROWS || coord.c < 0 || coord.c >= COLUMNS) {
+            throw new IllegalArgumentException("Coordinate off the board: " + coord);
+        }
+        return (coord.s * ROWS + coord.r) * COLUMNS + coord.c;
+    }
+
+    public static Coordinate unpack(int pin) {
+        return new Coordinate(pin / (ROWS * COLUMNS), pin / COLUMNS % ROWS, pin % COLUMNS);
+    }
+
+    public static byte[] encode(BoardModel model) {
+        List<List<BoardElement>> byType = new ArrayList<>();
+        for (int type = BoardElement.IC; type <= BoardElement.POWER; type++) byType.add(new ArrayList<>());
+        for (BoardElement element : model.elements()) byType.get(element.type).add(element);
+
+        // IC types repeat across a board, so labels go into a table and records refer to it
+        TreeSet<String> strings = new TreeSet<>();
+        for (BoardElement element : model.elements()) {
+            if (element.label != null) strings.add(element.label);
+        }
+        Map<String, Integer> stringIndex = new HashMap<>();
+        for (String string : strings) stringIndex.put(string, stringIndex.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + model.size() * 3);
+        out.write(MAGIC, 0, MAGIC.length);
+        out.write(VERSION);
+        writeVarint(out, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        for (int type = BoardElement.IC; type <= BoardElement.POWER; type++) {
+            List<BoardElement> elements = byType.get(type);
+            elements.sort(BY_PIN);
+            writeVarint(out, elements.size());
+            int previous = 0;
+            for (BoardElement element : elements) {
+                int pin = pack(element.position);
+                writeVarint(out, pin - previous);
+                previous = pin;
+                if (type == BoardElement.WIRE) {
+                    // Keep the stored direction; the other end is coded relative to this one
+                    writeVarint(out, zigzag(pack(element.end) - pin));
+                } else if (type == BoardElement.POWER) {
+                    writeVarint(out, zigzag(element.value));
+                } else if (type == BoardElement.IC || type == BoardElement.INPUT) {
+                    // 0 for no label, else the string table index plus one
+                    writeVarint(out, element.label == null ? 0 : stringIndex.get(element.label) + 1);
+                }
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] body = out.toByteArray();
+        crc.update(body, 0, body.length);
+        long checksum = crc.getValue();
+        for (int shift = 24; shift >= 0; shift -= 8) out.write((int) (checksum >>> shift));
+        return out.toByteArray();
+    }
+
+    /** Hex SHA-256 of the encoding; equal for circuits with the same contents. */
+    public static String contentHash(BoardModel model) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest(encode(model))) {
+            hex.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /** The board a blob describes; IllegalArgumentException when it is damaged or too new. */
+    public static BoardModel decode(byte[] data) {
+        if (data == null || data.length < MAGIC.length + 5) {
+            throw new IllegalArgumentException("Circuit data is truncated");
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) throw new IllegalArgumentException("Not circuit data");
+        }
+        int version = data[MAGIC.length] & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported circuit format version " + version);
+        }
+        int end = data.length - 4;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, end);
+        long stored = 0;
+        for (int i = end; i < data.length; i++) stored = stored << 8 | (data[i] & 0xFF);
+        if (stored != crc.getValue()) throw new IllegalArgumentException("Circuit data is corrupt");
+
+        Reader in = new Reader(data, MAGIC.length + 1, end);
+        String[] strings = new String[in.count()];
+        for (int i = 0; i < strings.length; i++) {
+            int length = in.count();
+            strings[i] = new String(data, in.take(length), length, StandardCharsets.UTF_8);
+        }
+
+        BoardModel model = BoardModel.empty();
+        for (int type = BoardElement.IC; type <= BoardElement.POWER; type++) {
+            int count = in.count();
+            int pin = 0;
+            for (int i = 0; i < count; i++) {
+                pin += in.count();
+                Coordinate position = unpack(pin);
+                BoardElement element;
+                switch (type) {
+                    case BoardElement.IC:
+                        element = BoardElement.ic(in.string(strings), position);
+                        break;
+                    case BoardElement.WIRE:
+                        int other = pin + unzigzag(in.varint());
+                        if (other < 0) throw new IllegalArgumentException("Circuit data is corrupt");
+                        element = BoardElement.wire(position, unpack(other));
+                        break;
+                    case BoardElement.INPUT:
+                        element = BoardElement.input(in.string(strings), position);
+                        break;
+                    case BoardElement.OUTPUT:
+                        element = BoardElement.output(position);
+                        break;
+                    default:
+                        element = BoardElement.power(unzigzag(in.varint()), position);
+                        break;
+                }
+                model = model.apply(BoardEdit.add(element));
+            }
+        }
+        if (in.position != end) throw new IllegalArgumentException("Circuit data has trailing bytes");
+        return model;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Bounds-checked cursor over the body of a blob
+    private static final class Reader {
+        private final byte[] data;
+        private final int end;
+        private int position;
+
+        Reader(byte[] data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position >= end) throw new IllegalArgumentException("Circuit data is truncated");
+                int b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Circuit data is corrupt");
+        }
+
+        // A varint that counts or offsets something, so it cannot be negative
+        int count() {
+            int value = varint();
+            if (value < 0) throw new IllegalArgumentException("Circuit data is corrupt");
+            return value;
+        }
+
+        int take(int length) {
+            if (length > end - position) throw new IllegalArgumentException("Circuit data is truncated");
+            int start = position;
+            position += length;
+            return start;
+        }
+
+        String string(String[] strings) {
+            int index = count();
+            if (index > strings.length) throw new IllegalArgumentException("Circuit data is corrupt");
+            return index == 0 ? null : strings[index - 1];
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.breadboard.sim;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Structural features of a board, the terms of the search index: the IC types placed, the
+ * input names, and chains of up to MAX_CHAIN primitive gates where each drives an input of
+ * the next ("NAND feeding a NOR"). Features are plain strings built by the static helpers
+ * below, so a query names a feature the same way the index stores it.
+ *
+ * Gates inside subcircuit ICs are not looked into; the subcircuit shows up as its IC type.
+ */
+public final class CircuitFeatures {
+    public static final int MAX_CHAIN = 3;
+
+    private CircuitFeatures() {
+    }
+
+    public static String ic(String icType) {
+        return "ic:" + icType;
+    }
+
+    public static String input(String name) {
+        return "input:" + name;
+    }
+
+    /** A chain of gate kinds (Netlist.kindName), each feeding the next. */
+    public static String chain(String... kinds) {
+        if (kinds.length < 2 || kinds.length > MAX_CHAIN) {
+            throw new IllegalArgumentException("A chain has 2 to " + MAX_CHAIN + " gates");
+        }
+        StringBuilder feature = new StringBuilder("feeds:");
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) feature.append('>');
+            feature.append(kinds[i].toUpperCase());
+        }
+        return feature.toString();
+    }
+
+    /** Every feature of model, sorted. */
+    public static Set<String> of(BoardModel model) {
+        Set<String> features = new TreeSet<>();
+        for (BoardElement element : model.elements()) {
+            if (element.type == BoardElement.IC) {
+                features.add(ic(element.label));
+            } else if (element.type == BoardElement.INPUT && element.label != null) {
+                features.add(input(element.label));
+            }
+        }
+
+        Netlist netlist = model.toBuilder().build();
+        for (int gate = 0; gate < netlist.gateCount(); gate++) {
+            if (netlist.gateKind(gate) == Netlist.SUB) continue;
+            addChains(netlist, gate, Netlist.kindName(netlist.gateKind(gate)), 1, features);
+        }
+        return features;
+    }
+
+    // suffix is a chain of length gates starting at gate; add it lengthened by each driver of gate
+    private static void addChains(Netlist netlist, int gate, String suffix, int length, Set<String> features) {
+        if (length == MAX_CHAIN) return;
+        for (int net : netlist.gateInputs(gate)) {
+            if (netlist.driverKind(net) != Netlist.DRIVEN_BY_GATE) continue;
+            int driver = netlist.driverIndex(net);
+            if (netlist.gateKind(driver) == Netlist.SUB) continue;
+            String chain = Netlist.kindName(netlist.gateKind(driver)) + ">" + suffix;
+            features.add("feeds:" + chain);
+            addChains(netlist, driver, chain, length + 1, features);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.breadboard.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Undo/redo log over a BoardModel. Each step keeps the model before and after its edit;
+ * because models share structure those versions are cheap, and undo or redo is a pointer
+ * swap plus the one edit the caller has to perform on the live board.
+ *
+ * The steps still on the undo stack, applied to getBase(), rebuild the current model, so
+ * history() doubles as a replay source.
+ */
+public class EditLog {
+    public static final int DEFAULT_LIMIT = 500;
+
+    private static final class Step {
+        final BoardEdit edit;
+        final BoardModel before;
+        final BoardModel after;
+
+        Step(BoardEdit edit, BoardModel before, BoardModel after) {
+            this.edit = edit;
+            this.before = before;
+            this.after = after;
+        }
+    }
+
+    private final int limit;
+    private final ArrayList<Step> undoSteps = new ArrayList<>();
+    private final ArrayList<Step> redoSteps = new ArrayList<>();
+    private BoardModel base;
+    private BoardModel model;
+
+    public EditLog() {
+        this(BoardModel.empty(), DEFAULT_LIMIT);
+    }
+
+    public EditLog(BoardModel initial, int limit) {
+        this.base = initial;
+        this.model = initial;
+        this.limit = Math.max(1, limit);
+    }
+
+    /**
+     * Record an edit already made on the board; returns false if it changed nothing. An add
+     * that replaced another element is recorded as its two steps (BoardModel.steps).
+     */
+    public boolean record(BoardEdit edit) {
+        boolean changed = false;
+        for (BoardEdit step : model.steps(edit)) {
+            changed |= recordStep(step);
+        }
+        return changed;
+    }
+
+    private boolean recordStep(BoardEdit edit) {
+        BoardModel next = model.apply(edit);
+        if (next == model) return false;
+        undoSteps.add(new Step(edit, model, next));
+        model = next;
+        redoSteps.clear();
+        if (undoSteps.size() > limit) {
+            // The oldest step falls off; its result becomes the new replay base
+            base = undoSteps.remove(0).after;
+        }
+        return true;
+    }
+
+    /** The edit that undoes the last step, or null; the caller performs it on the board. */
+    public BoardEdit undo() {
+        if (undoSteps.isEmpty()) return null;
+        Step step = undoSteps.remove(undoSteps.size() - 1);
+        model = step.before;
+        redoSteps.add(step);
+        return step.edit.inverse();
+    }
+
+    /** The edit that redoes the last undone step, or null. */
+    public BoardEdit redo() {
+        if (redoSteps.isEmpty()) return null;
+        Step step = redoSteps.remove(redoSteps.size() - 1);
+        model = step.after;
+        undoSteps.add(step);
+        return step.edit;
+    }
+
+    public boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /** Forget all steps and start again from model. */
+    public void reset(BoardModel model) {
+        undoSteps.clear();
+        redoSteps.clear();
+        this.base = model;
+        this.model = model;
+    }
+
+    public BoardModel getModel() {
+        return model;
+    }
+
+    public BoardModel getBase() {
+        return base;
+    }
+
+    /** Edits that take getBase() to getModel(), oldest first. */
+    public List<BoardEdit> history() {
+        List<BoardEdit> edits = new ArrayList<>(undoSteps.size());
+        for (Step step : undoSteps) edits.add(step.edit);
+        return edits;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.breadboard.sim;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded memo table for one IC or subcircuit instance, mapping a packed input vector to
+ * its packed outputs.
+ *
+ * A 14-pin IC has at most 12 signal pins, so key and value fit together in one int and each
+ * slot is read and written in a single access; that keeps the table safe to share between
+ * threads without locking. A thread may not see another's latest store and miss instead, but
+ * any slot it does see holds a complete, correct entry. Slots are direct-mapped: when the
+ * table is smaller than the input space a new vector evicts whatever shared its slot. The
+ * counters are LongAdders, exact however many threads use the table.
+ */
+public class EvaluationMemo {
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int MISS = -1;
+
+    private static final int MAX_BITS = 30;
+    private static final int VALID = 1 << MAX_BITS;
+
+    private final int inputBits;
+    private final int outputBits;
+    private final int[] slots;      // 0 when empty, else VALID | key << outputBits | value
+    private final int shift;        // for hashing keys into a table smaller than the input space
+    private final boolean direct;   // one slot per possible input vector
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public EvaluationMemo(int inputBits, int outputBits, int capacity) {
+        if (!fits(inputBits, outputBits)) {
+            throw new IllegalArgumentException("Memo entries are limited to " + MAX_BITS + " bits");
+        }
+        this.inputBits = inputBits;
+        this.outputBits = outputBits;
+        int size = 1;
+        while (size < capacity && size < (1 << inputBits)) size <<= 1;
+        this.slots = new int[size];
+        this.direct = size == (1 << inputBits);
+        this.shift = 32 - Integer.numberOfTrailingZeros(size);
+    }
+
+    public static boolean fits(int inputBits, int outputBits) {
+        return inputBits >= 0 && outputBits >= 0 && inputBits + outputBits <= MAX_BITS;
+    }
+
+    /** Packed outputs for a packed input vector, or MISS. */
+    public int lookup(int key) {
+        int slot = slots[indexOf(key)];
+        if (slot != 0 && (slot & ~VALID) >>> outputBits == key) {
+            hits.increment();
+            return slot & ((1 << outputBits) - 1);
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    public void store(int key, int value) {
+        int index = indexOf(key);
+        int previous = slots[index];
+        if (previous != 0 && (previous & ~VALID) >>> outputBits != key) evictions.increment();
+        slots[index] = VALID | (key << outputBits) | (value & ((1 << outputBits) - 1));
+    }
+
+    private int indexOf(int key) {
+        if (direct) return key;
+        // Fibonacci hashing spreads neighbouring vectors over the table
+        return shift == 32 ? 0 : (key * 0x9E3779B9) >>> shift;
+    }
+
+    /** Bit i of the result is bits[i]; MISS when any value is not 0 or 1. */
+    public static int pack(int[] bits) {
+        int packed = 0;
+        for (int i = 0; i < bits.length; i++) {
+            if (bits[i] != 0 && bits[i] != 1) return MISS;
+            packed |= bits[i] << i;
+        }
+        return packed;
+    }
+
+    public static int[] unpack(int packed, int count) {
+        int[] bits = new int[count];
+        for (int i = 0; i < count; i++) bits[i] = (packed >>> i) & 1;
+        return bits;
+    }
+
+    public int getInputBits() {
+        return inputBits;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.breadboard.sim;
+
+import java.util.Objects;
+
+/**
+ * A single stuck-at fault on a net.
+ */
+public class Fault {
+    public final int net;
+    public final int stuckAt; // 0 or 1
+
+    public Fault(int net, int stuckAt) {
+        this.net = net;
+        this.stuckAt = stuckAt;
+    }
+
+    public String describe(Netlist netlist) {
+        return netlist.netName(net) + "/SA" + stuckAt;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        Fault that = (Fault) obj;
+        return net == that.net && stuckAt == that.stuckAt;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(net, stuckAt);
+    }
+
+    @Override
+    public String toString() {
+        return "n" + net + "/SA" + stuckAt;
+    }
+}
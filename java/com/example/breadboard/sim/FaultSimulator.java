@@ -0,0 +1,164 @@
+package com.example.breadboard.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Parallel-pattern single-fault simulator over a Netlist.
+ *
+ * The good circuit is simulated once per batch of up to 64 patterns; each fault is then
+ * injected and only gates whose inputs differ from the good values are re-evaluated,
+ * walking forward in levelised order from the fault site.
+ */
+public class FaultSimulator {
+    private final Netlist netlist;
+    private final long[] faulty;
+    private final int[] touched;
+    private final boolean[] isTouched;
+
+    public FaultSimulator(Netlist netlist) {
+        if (netlist.isHierarchical()) {
+            throw new IllegalArgumentException("Fault simulation needs a flat netlist; call flatten() first");
+        }
+        this.netlist = netlist;
+        this.faulty = netlist.newState();
+        this.touched = new int[netlist.netCount()];
+        this.isTouched = new boolean[netlist.netCount()];
+    }
+
+    /** Stuck-at-0 and stuck-at-1 on every net that reaches a gate or an output. */
+    public List<Fault> allFaults() {
+        boolean[] observed = new boolean[netlist.netCount()];
+        for (int i = 0; i < netlist.outputCount(); i++) observed[netlist.outputNet(i)] = true;
+        List<Fault> faults = new ArrayList<>();
+        for (int net = 0; net < netlist.netCount(); net++) {
+            if (netlist.driverKind(net) == Netlist.DRIVEN_BY_CONSTANT) continue;
+            if (netlist.driverKind(net) == Netlist.UNDRIVEN) continue;
+            if (!observed[net] && netlist.fanout(net).length == 0) continue;
+            faults.add(new Fault(net, 0));
+            faults.add(new Fault(net, 1));
+        }
+        return faults;
+    }
+
+    /** Good-circuit values for a batch of patterns. */
+    public long[] simulateGood(long[] inputWords) {
+        long[] good = netlist.newState();
+        netlist.simulate(inputWords, good);
+        return good;
+    }
+
+    /**
+     * Bit mask of the patterns (within patternMask) that detect the fault, given the good
+     * values from simulateGood.
+     */
+    public long detect(Fault fault, long[] good, long patternMask) {
+        long forced = fault.stuckAt == 1 ? -1L : 0L;
+        if (((good[fault.net] ^ forced) & patternMask) == 0) return 0L;
+        if (netlist.isCyclic()) return detectBySimulation(fault, good, patternMask);
+
+        System.arraycopy(good, 0, faulty, 0, good.length);
+        int touchedCount = 0;
+        faulty[fault.net] = forced;
+        touched[touchedCount++] = fault.net;
+        isTouched[fault.net] = true;
+
+        int[] order = netlist.order();
+        int start = order.length;
+        for (int reader : netlist.fanout(fault.net)) {
+            int pos = netlist.orderPosition(reader);
+            if (pos >= 0 && pos < start) start = pos;
+        }
+        for (int i = start; i < order.length; i++) {
+            int g = order[i];
+            int[] in = netlist.gateInputs(g);
+            boolean affected = false;
+            for (int net : in) {
+                if (isTouched[net]) {
+                    affected = true;
+                    break;
+                }
+            }
+            if (!affected) continue;
+            int out = netlist.gateOutput(g);
+            if (out == fault.net) continue;
+            long v = Netlist.evalGate(netlist.gateKind(g), faulty[in[0]], in.length > 1 ? faulty[in[1]] : 0L);
+            if (v != good[out]) {
+                faulty[out] = v;
+                if (!isTouched[out]) {
+                    touched[touchedCount++] = out;
+                    isTouched[out] = true;
+                }
+            }
+        }
+
+        long detected = 0L;
+        for (int o = 0; o < netlist.outputCount(); o++) {
+            int net = netlist.outputNet(o);
+            detected |= faulty[net] ^ good[net];
+        }
+        for (int i = 0; i < touchedCount; i++) isTouched[touched[i]] = false;
+        return detected & patternMask;
+    }
+
+    // Feedback loops need the full settle loop, so re-simulate with the net pinned
+    private long detectBySimulation(Fault fault, long[] good, long patternMask) {
+        long forced = fault.stuckAt == 1 ? -1L : 0L;
+        long[] values = netlist.newState();
+        long[] previous = new long[values.length];
+        int[] order = netlist.order();
+        System.arraycopy(good, 0, values, 0, good.length);
+        values[fault.net] = forced;
+        for (int pass = 0; pass < Netlist.MAX_SETTLE_PASSES; pass++) {
+            System.arraycopy(values, 0, previous, 0, values.length);
+            for (int g : order) {
+                int out = netlist.gateOutput(g);
+                if (out == fault.net) continue;
+                int[] in = netlist.gateInputs(g);
+                values[out] = Netlist.evalGate(netlist.gateKind(g), values[in[0]], in.length > 1 ? values[in[1]] : 0L);
+            }
+            if (Arrays.equals(values, previous)) break;
+        }
+        long detected = 0L;
+        for (int o = 0; o < netlist.outputCount(); o++) {
+            int net = netlist.outputNet(o);
+            detected |= values[net] ^ good[net];
+        }
+        return detected & patternMask;
+    }
+
+    /**
+     * Simulate a batch of patterns and drop every fault it detects from the list.
+     * Returns the number of faults dropped.
+     */
+    public int dropDetected(List<Fault> faults, long[] inputWords, long patternMask) {
+        long[] good = simulateGood(inputWords);
+        int dropped = 0;
+        Iterator<Fault> it = faults.iterator();
+        while (it.hasNext()) {
+            if (detect(it.next(), good, patternMask) != 0L) {
+                it.remove();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /** Pack single vectors (0/1 per input) into per-input words, vector k in bit k. */
+    public static long[] pack(List<int[]> vectors, int from, int count, int inputCount) {
+        long[] words = new long[inputCount];
+        for (int k = 0; k < count; k++) {
+            int[] vector = vectors.get(from + k);
+            for (int i = 0; i < inputCount; i++) {
+                if (vector[i] != 0) words[i] |= 1L << k;
+            }
+        }
+        return words;
+    }
+
+    public static long maskFor(int count) {
+        return count >= 64 ? -1L : (1L << count) - 1L;
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.breadboard.sim;
+
+import com.example.breadboard.model.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Static hazard and reconvergent fan-out analysis over a Netlist, reported per output.
+ *
+ * One levelised pass carries, per net, bit masks over the first 64 inputs: which inputs reach
+ * the net through an even or odd number of inversions, and which may cause a static-0 or
+ * static-1 glitch there. It also keeps the shortest and longest path from each input. An
+ * input reconverging with both polarities at an AND-type gate gives a static-0 hazard and at
+ * an OR-type gate a static-1 hazard; inverting gates swap the two, and an XOR turns any
+ * reconvergence over unequal depths into both. Constants are folded so blocked paths do not
+ * count.
+ *
+ * The analysis is conservative: it does not check that side inputs can sensitise a path, so
+ * it may report hazards no transition excites, but it never misses a reconvergence. Cost is
+ * one pass over the gates with 64-bit masks plus one depth entry per input in a net's support.
+ */
+public class HazardAnalyzer {
+    public static final int MAX_INPUTS = 64;
+
+    private static final int UNKNOWN = -1;
+
+    /** An input reaching an output over paths of different length. */
+    public static class Reconvergence {
+        public final int input;
+        public final String inputName;
+        public final int minDepth;
+        public final int maxDepth;
+
+        Reconvergence(int input, String inputName, int minDepth, int maxDepth) {
+            this.input = input;
+            this.inputName = inputName;
+            this.minDepth = minDepth;
+            this.maxDepth = maxDepth;
+        }
+
+        @Override
+        public String toString() {
+            return inputName + " reconverges over paths of depth " + minDepth + ".." + maxDepth;
+        }
+    }
+
+    public static class OutputReport {
+        public final int output;
+        public final String outputLabel;
+        public final Coordinate coordinate;
+        public final long static0Inputs;   // bit i: input i may glitch the output high while it should stay 0
+        public final long static1Inputs;   // bit i: input i may glitch the output low while it should stay 1
+        public final List<Reconvergence> reconvergences;
+        private final String[] inputNames;
+
+        OutputReport(int output, String outputLabel, Coordinate coordinate, long static0Inputs,
+                     long static1Inputs, List<Reconvergence> reconvergences, String[] inputNames) {
+            this.output = output;
+            this.outputLabel = outputLabel;
+            this.coordinate = coordinate;
+            this.static0Inputs = static0Inputs;
+            this.static1Inputs = static1Inputs;
+            this.reconvergences = reconvergences;
+            this.inputNames = inputNames;
+        }
+
+        public boolean hasHazard() {
+            return static0Inputs != 0 || static1Inputs != 0;
+        }
+
+        public boolean isClean() {
+            return !hasHazard() && reconvergences.isEmpty();
+        }
+
+        public List<String> static0InputNames() {
+            return names(static0Inputs);
+        }
+
+        public List<String> static1InputNames() {
+            return names(static1Inputs);
+        }
+
+        private List<String> names(long mask) {
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < inputNames.length; i++) {
+                if ((mask & (1L << i)) != 0) names.add(inputNames[i]);
+            }
+            return names;
+        }
+
+        @Override
+        public String toString() {
+            if (isClean()) return outputLabel + ": no hazards";
+            StringBuilder text = new StringBuilder(outputLabel).append(':');
+            if (static0Inputs != 0) text.append(" static-0 hazard on ").append(static0InputNames()).append(';');
+            if (static1Inputs != 0) text.append(" static-1 hazard on ").append(static1InputNames()).append(';');
+            for (Reconvergence reconvergence : reconvergences) text.append(' ').append(reconvergence).append(';');
+            return text.toString();
+        }
+    }
+
+    public static class Result {
+        public final List<OutputReport> outputs;
+        public final boolean cyclic;      // feedback loops were analysed in a single pass only
+        public final boolean truncated;   // inputs past MAX_INPUTS were not tracked
+
+        Result(List<OutputReport> outputs, boolean cyclic, boolean truncated) {
+            this.outputs = outputs;
+            this.cyclic = cyclic;
+            this.truncated = truncated;
+        }
+
+        public int hazardCount() {
+            int count = 0;
+            for (OutputReport report : outputs) {
+                if (report.hasHazard()) count++;
+            }
+            return count;
+        }
+    }
+
+    private HazardAnalyzer() {
+    }
+
+    public static Result analyze(Netlist netlist) {
+        Netlist flat = netlist.flatten();
+        int nets = flat.netCount();
+        int tracked = Math.min(flat.inputCount(), MAX_INPUTS);
+        String[] inputNames = new String[tracked];
+        for (int i = 0; i < tracked; i++) inputNames[i] = flat.inputName(i);
+
+        long[] even = new long[nets];
+        long[] odd = new long[nets];
+        long[] hazard0 = new long[nets];
+        long[] hazard1 = new long[nets];
+        int[] constant = new int[nets];
+        int[][] minDepth = new int[nets][];
+        int[][] maxDepth = new int[nets][];
+        Arrays.fill(constant, UNKNOWN);
+
+        for (int net = 0; net < nets; net++) {
+            int kind = flat.driverKind(net);
+            if (kind == Netlist.DRIVEN_BY_CONSTANT) {
+                constant[net] = flat.driverIndex(net);
+            } else if (kind == Netlist.UNDRIVEN) {
+                constant[net] = 0;   // simulation leaves undriven nets low
+            } else if (kind == Netlist.DRIVEN_BY_INPUT && flat.driverIndex(net) < tracked) {
+                int i = flat.driverIndex(net);
+                even[net] = 1L << i;
+                minDepth[net] = new int[tracked];
+                maxDepth[net] = new int[tracked];
+            }
+        }
+
+        for (int g : flat.order()) {
+            int kind = flat.gateKind(g);
+            int[] in = flat.gateInputs(g);
+            int out = flat.gateOutput(g);
+            int a = in[0];
+            int b = in.length > 1 && in[1] != in[0] ? in[1] : -1;
+            // ICs inlined from subcircuits buffer their pins with AND(x, x); that adds no depth
+            int step = kind == Netlist.AND && in.length > 1 && in[0] == in[1] ? 0 : 1;
+
+            int folded = fold(kind, constant[a], b >= 0 ? constant[b] : constant[a], b >= 0);
+            if (folded != UNKNOWN) {
+                constant[out] = folded;
+                continue;
+            }
+
+            long e = even[a] | (b >= 0 ? even[b] : 0L);
+            long o = odd[a] | (b >= 0 ? odd[b] : 0L);
+            long h0 = hazard0[a] | (b >= 0 ? hazard0[b] : 0L);
+            long h1 = hazard1[a] | (b >= 0 ? hazard1[b] : 0L);
+            long opposite = b >= 0 ? (even[a] & odd[b]) | (odd[a] & even[b]) : 0L;
+
+            switch (kind) {
+                case Netlist.AND:
+                case Netlist.NAND:
+                    h0 |= opposite;
+                    break;
+                case Netlist.OR:
+                case Netlist.NOR:
+                    h1 |= opposite;
+                    break;
+                case Netlist.XOR: {
+                    // Either polarity can come out of an XOR, so any glitch or skew does too
+                    long skewed = b >= 0 ? unequalDepths(a, b, (even[a] | odd[a]) & (even[b] | odd[b]),
+                            minDepth, maxDepth) : 0L;
+                    h0 = h1 = h0 | h1 | skewed;
+                    e = o = e | o;
+                    break;
+                }
+                default:
+                    break;
+            }
+            if (kind == Netlist.NOT || kind == Netlist.NAND || kind == Netlist.NOR) {
+                long swap = e;
+                e = o;
+                o = swap;
+                swap = h0;
+                h0 = h1;
+                h1 = swap;
+            }
+            even[out] = e;
+            odd[out] = o;
+            hazard0[out] = h0;
+            hazard1[out] = h1;
+
+            long support = e | o;
+            if (support != 0) {
+                minDepth[out] = new int[tracked];
+                maxDepth[out] = new int[tracked];
+                for (long bits = support; bits != 0; bits &= bits - 1) {
+                    int i = Long.numberOfTrailingZeros(bits);
+                    int min = Integer.MAX_VALUE;
+                    int max = 0;
+                    if (((even[a] | odd[a]) & (1L << i)) != 0) {
+                        min = minDepth[a][i];
+                        max = maxDepth[a][i];
+                    }
+                    if (b >= 0 && ((even[b] | odd[b]) & (1L << i)) != 0) {
+                        min = Math.min(min, minDepth[b][i]);
+                        max = Math.max(max, maxDepth[b][i]);
+                    }
+                    minDepth[out][i] = min + step;
+                    maxDepth[out][i] = max + step;
+                }
+            }
+        }
+
+        List<OutputReport> reports = new ArrayList<>();
+        for (int index = 0; index < flat.outputCount(); index++) {
+            int net = flat.outputNet(index);
+            List<Reconvergence> reconvergences = new ArrayList<>();
+            if (constant[net] == UNKNOWN) {
+                for (long bits = even[net] | odd[net]; bits != 0; bits &= bits - 1) {
+                    int i = Long.numberOfTrailingZeros(bits);
+                    if (minDepth[net][i] != maxDepth[net][i]) {
+                        reconvergences.add(new Reconvergence(i, inputNames[i], minDepth[net][i], maxDepth[net][i]));
+                    }
+                }
+            }
+            boolean varies = constant[net] == UNKNOWN;
+            reports.add(new OutputReport(index, flat.outputLabel(index), flat.outputCoordinate(index),
+                    varies ? hazard0[net] : 0L, varies ? hazard1[net] : 0L, reconvergences, inputNames));
+        }
+        return new Result(reports, flat.isCyclic(), flat.inputCount() > tracked);
+    }
+
+    // Constant value of a gate output, or UNKNOWN; a controlling constant decides the gate alone
+    private static int fold(int kind, int a, int b, boolean twoInputs) {
+        int value;
+        switch (kind) {
+            case Netlist.NOT:
+                return a == UNKNOWN ? UNKNOWN : 1 - a;
+            case Netlist.AND:
+            case Netlist.NAND:
+                value = a == 0 || b == 0 ? 0 : a == 1 && b == 1 ? 1 : UNKNOWN;
+                break;
+            case Netlist.OR:
+            case Netlist.NOR:
+                value = a == 1 || b == 1 ? 1 : a == 0 && b == 0 ? 0 : UNKNOWN;
+                break;
+            case Netlist.XOR:
+                if (!twoInputs) return 0;   // x ^ x
+                value = a == UNKNOWN || b == UNKNOWN ? UNKNOWN : a ^ b;
+                break;
+            default:
+                return UNKNOWN;
+        }
+        if (value == UNKNOWN) return UNKNOWN;
+        return kind == Netlist.NAND || kind == Netlist.NOR ? 1 - value : value;
+    }
+
+    // Inputs reaching both operands whose path lengths differ, so the XOR sees them skewed
+    private static long unequalDepths(int a, int b, long shared, int[][] minDepth, int[][] maxDepth) {
+        long skewed = 0L;
+        for (long bits = shared; bits != 0; bits &= bits - 1) {
+            int i = Long.numberOfTrailingZeros(bits);
+            if (minDepth[a][i] != maxDepth[b][i] || maxDepth[a][i] != minDepth[b][i]) skewed |= 1L << i;
+        }
+        return skewed;
+    }
+}
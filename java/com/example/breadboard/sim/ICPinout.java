@@ -0,0 +1,103 @@
+package com.example.breadboard.sim;
+
+import com.example.breadboard.model.Coordinate;
+
+import java.util.Arrays;
+
+/**
+ * Pin layout of the 14-pin ICs offered by ICSetup, independent of any views.
+ */
+public final class ICPinout {
+    public static final int VCC_PIN = 14;
+    public static final int GND_PIN = 7;
+
+    /** ic_type prefix of a saved circuit placed as an IC, e.g. "SUB:Half adder". */
+    public static final String SUBCIRCUIT_PREFIX = "SUB:";
+    // Every pin except VCC and GND, in the order subcircuit signals are assigned
+    private static final int[] SIGNAL_PINS = {1, 2, 3, 4, 5, 6, 8, 9, 10, 11, 12, 13};
+    public static final int MAX_SUBCIRCUIT_PINS = SIGNAL_PINS.length;
+
+    private ICPinout() {
+    }
+
+    /** Netlist gate kind for an IC type, or -1 when the type is not a primitive gate IC. */
+    public static int gateKind(String icType) {
+        if (icType == null) return -1;
+        switch (icType.toUpperCase()) {
+            case "AND": return Netlist.AND;
+            case "OR": return Netlist.OR;
+            case "NAND": return Netlist.NAND;
+            case "NOR": return Netlist.NOR;
+            case "XOR": return Netlist.XOR;
+            case "NOT": return Netlist.NOT;
+            default: return -1;
+        }
+    }
+
+    // Same mapping ICSetup.getInputPinsForGate uses when executing the board
+    public static int[][] gateInputPins(String icType) {
+        switch (icType.toUpperCase()) {
+            case "AND":
+            case "NAND":
+            case "OR":
+            case "NOR":
+            case "XOR":
+                return new int[][]{{1, 2}, {4, 5}, {8, 9}, {11, 12}};
+            case "NOT":
+                return new int[][]{{1}, {3}, {5}, {8}, {10}, {12}};
+            default:
+                return new int[0][];
+        }
+    }
+
+    // Same mapping ICSetup.getOutputPinForGate uses when executing the board
+    public static int[] gateOutputPins(String icType) {
+        switch (icType.toUpperCase()) {
+            case "AND":
+            case "NAND":
+            case "OR":
+            case "NOR":
+            case "XOR":
+                return new int[]{3, 6, 10, 13};
+            case "NOT":
+                return new int[]{2, 4, 6, 9, 11, 13};
+            default:
+                return new int[0];
+        }
+    }
+
+    public static boolean isSubcircuit(String icType) {
+        return icType != null && icType.startsWith(SUBCIRCUIT_PREFIX);
+    }
+
+    public static String subcircuitType(String circuitName) {
+        return SUBCIRCUIT_PREFIX + circuitName;
+    }
+
+    public static String subcircuitName(String icType) {
+        return icType.substring(SUBCIRCUIT_PREFIX.length());
+    }
+
+    /** Logical pins of a subcircuit's inputs, in the definition's input order. */
+    public static int[] subcircuitInputPins(int inputCount) {
+        return Arrays.copyOfRange(SIGNAL_PINS, 0, Math.min(inputCount, SIGNAL_PINS.length));
+    }
+
+    /** Logical pins of a subcircuit's outputs; they follow the input pins. */
+    public static int[] subcircuitOutputPins(int inputCount, int outputCount) {
+        int from = Math.min(inputCount, SIGNAL_PINS.length);
+        return Arrays.copyOfRange(SIGNAL_PINS, from, Math.min(from + outputCount, SIGNAL_PINS.length));
+    }
+
+    /** Physical coordinate of a logical pin (1-14) for an IC whose pin 1 sits in column baseColumn. */
+    public static Coordinate pinCoordinate(int logicalPin, int baseColumn) {
+        if (logicalPin >= 1 && logicalPin <= 7) {
+            // Pins 1-7 are on section 1, row 0 (F)
+            return new Coordinate(1, 0, baseColumn + (logicalPin - 1));
+        } else if (logicalPin >= 8 && logicalPin <= 14) {
+            // Pins 8-14 are on section 0, row 4 (E) in reverse order
+            return new Coordinate(0, 4, baseColumn + (14 - logicalPin));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,736 @@
+package com.example.breadboard.sim;
+
+import com.example.breadboard.model.Coordinate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Headless, immutable gate-level view of a breadboard circuit.
+ *
+ * Every column of a section is one strip; wires merge strips into nets. IC gates, named
+ * inputs, VCC/GND components and outputs are attached to nets, and gates are levelised
+ * once so evaluation is a single pass. Callers keep their own long[] of net values (one bit
+ * per pattern, 64 patterns per word), so net values are never shared.
+ *
+ * A saved circuit placed as an IC stays a single SUB gate that refers to its compiled
+ * definition, so every instance shares one Netlist; flatten() inlines them when needed.
+ * Each SUB gate also has an EvaluationMemo, the only state a Netlist changes after it is
+ * built. It is shared by every thread using this instance (NetlistCache hands one instance
+ * to all requests) and is written to be: lock-free slots and atomic counters. So a Netlist
+ * is safe to share between threads, but memo statistics cover all of them.
+ */
+public class Netlist {
+    public static final int AND = 0;
+    public static final int OR = 1;
+    public static final int NAND = 2;
+    public static final int NOR = 3;
+    public static final int XOR = 4;
+    public static final int NOT = 5;
+    public static final int SUB = 6;    // instance of a saved circuit used as an IC
+
+    // Net driver kinds
+    public static final int UNDRIVEN = 0;
+    public static final int DRIVEN_BY_INPUT = 1;
+    public static final int DRIVEN_BY_CONSTANT = 2;
+    public static final int DRIVEN_BY_GATE = 3;
+
+    static final int SECTIONS = 2;
+    static final int ROWS = 5;
+    static final int COLS = 64;
+
+    static final int MAX_SETTLE_PASSES = 16;
+    private static final String[] KIND_NAMES = {"AND", "OR", "NAND", "NOR", "XOR", "NOT", "SUB"};
+
+    private final String key;
+    private final int netCount;
+    private final int[] stripNet;          // section * COLS + column -> net
+    private final String[] netLabels;      // names of nets created by flatten, else null
+    private final String[] inputNames;
+    private final int[] inputNets;
+    private final Coordinate[] outputCoords;
+    private final int[] outputNets;
+    private final int[] gateKind;
+    private final int[][] gateIn;
+    private final int[][] gateOuts;        // one net for primitives, one per output for SUB
+    private final Netlist[] gateSub;       // shared definition of a SUB gate, else null
+    private final EvaluationMemo[] gateMemo;  // per SUB instance, else null; shared by all threads
+    private final String[] gateLabel;
+    private final int[] driverKind;        // per net
+    private final int[] driverIndex;       // input index, constant value or gate index
+    private final int[][] fanout;          // per net -> reading gates
+    private final int[] order;             // driving gates in evaluation order
+    private final int[] orderPos;          // gate -> position in order, -1 if not driving
+    private final int[] level;             // per net
+    private final boolean cyclic;
+    private final boolean hierarchical;
+
+    // One gate before linking
+    private static final class GateSpec {
+        final int kind;
+        final int[] in;
+        final int[] out;
+        final Netlist sub;
+        final String label;
+
+        GateSpec(int kind, int[] in, int[] out, Netlist sub, String label) {
+            this.kind = kind;
+            this.in = in;
+            this.out = out;
+            this.sub = sub;
+            this.label = label;
+        }
+    }
+
+    private static Netlist compile(Builder b) {
+        // Merge strips into nets
+        int[] roots = new int[SECTIONS * COLS];
+        Arrays.fill(roots, -1);
+        int nets = 0;
+        int[] stripNet = new int[SECTIONS * COLS];
+        for (int strip = 0; strip < stripNet.length; strip++) {
+            int root = b.find(strip);
+            if (roots[root] == -1) roots[root] = nets++;
+            stripNet[strip] = roots[root];
+        }
+
+        int[] driverKind = new int[nets];
+        int[] driverIndex = new int[nets];
+        Arrays.fill(driverIndex, -1);
+
+        // Power components win over everything else on their net
+        for (int[] power : b.powers) {
+            int net = stripNet[power[1] * COLS + power[2]];
+            if (driverKind[net] == UNDRIVEN) {
+                driverKind[net] = DRIVEN_BY_CONSTANT;
+                driverIndex[net] = power[0] == 1 ? 1 : 0;
+            }
+        }
+
+        // Named inputs, ordered by name like the InputManager display
+        List<Object[]> inputs = new ArrayList<>(b.inputs);
+        Collections.sort(inputs, (a, c) -> ((String) a[0]).compareTo((String) c[0]));
+        String[] inputNames = new String[inputs.size()];
+        int[] inputNets = new int[inputs.size()];
+        for (int i = 0; i < inputs.size(); i++) {
+            Coordinate coord = (Coordinate) inputs.get(i)[1];
+            inputNames[i] = (String) inputs.get(i)[0];
+            inputNets[i] = stripNet[coord.s * COLS + coord.c];
+            if (driverKind[inputNets[i]] == UNDRIVEN) {
+                driverKind[inputNets[i]] = DRIVEN_BY_INPUT;
+                driverIndex[inputNets[i]] = i;
+            }
+        }
+
+        // Outputs in board order so equivalent builders give identical netlists
+        Coordinate[] outputCoords = b.outputs.toArray(new Coordinate[0]);
+        Arrays.sort(outputCoords, (a, c) -> a.s != c.s ? a.s - c.s : a.c != c.c ? a.c - c.c : a.r - c.r);
+        int[] outputNets = new int[outputCoords.length];
+        for (int i = 0; i < outputCoords.length; i++) {
+            outputNets[i] = stripNet[outputCoords[i].s * COLS + outputCoords[i].c];
+        }
+
+        // Expand every IC into its primitive gates; subcircuits stay one gate each
+        List<GateSpec> gates = new ArrayList<>();
+        for (Object[] ic : b.ics) {
+            String type = (String) ic[0];
+            int column = (Integer) ic[1];
+            int kind = ICPinout.gateKind(type);
+            int[][] inPins = ICPinout.gateInputPins(type);
+            int[] outPins = ICPinout.gateOutputPins(type);
+            for (int g = 0; g < outPins.length; g++) {
+                gates.add(new GateSpec(kind, pinNets(stripNet, inPins[g], column),
+                        new int[]{pinNet(stripNet, outPins[g], column)}, null,
+                        type.toUpperCase() + "@" + column + "#" + (g + 1)));
+            }
+        }
+        for (Object[] sub : b.subcircuits) {
+            String name = (String) sub[0];
+            Netlist definition = (Netlist) sub[1];
+            int column = (Integer) sub[2];
+            int[] inPins = ICPinout.subcircuitInputPins(definition.inputCount());
+            int[] outPins = ICPinout.subcircuitOutputPins(definition.inputCount(), definition.outputCount());
+            gates.add(new GateSpec(SUB, pinNets(stripNet, inPins, column), pinNets(stripNet, outPins, column),
+                    definition, name + "@" + column));
+        }
+
+        return new Netlist(b.key(), nets, stripNet, null, driverKind, driverIndex,
+                inputNames, inputNets, outputCoords, outputNets, gates);
+    }
+
+    private Netlist(String key, int netCount, int[] stripNet, String[] netLabels,
+                    int[] driverKind, int[] driverIndex, String[] inputNames, int[] inputNets,
+                    Coordinate[] outputCoords, int[] outputNets, List<GateSpec> specs) {
+        this.key = key;
+        this.netCount = netCount;
+        this.stripNet = stripNet;
+        this.netLabels = netLabels;
+        this.driverKind = driverKind;
+        this.driverIndex = driverIndex;
+        this.inputNames = inputNames;
+        this.inputNets = inputNets;
+        this.outputCoords = outputCoords;
+        this.outputNets = outputNets;
+
+        int gates = specs.size();
+        gateKind = new int[gates];
+        gateIn = new int[gates][];
+        gateOuts = new int[gates][];
+        gateSub = new Netlist[gates];
+        gateMemo = new EvaluationMemo[gates];
+        gateLabel = new String[gates];
+        boolean subs = false;
+        for (int g = 0; g < gates; g++) {
+            GateSpec spec = specs.get(g);
+            gateKind[g] = spec.kind;
+            gateIn[g] = spec.in;
+            gateOuts[g] = spec.out;
+            gateSub[g] = spec.sub;
+            if (spec.sub != null) {
+                gateMemo[g] = new EvaluationMemo(spec.sub.inputCount(), spec.sub.outputCount(),
+                        EvaluationMemo.DEFAULT_CAPACITY);
+            }
+            gateLabel[g] = spec.label;
+            subs |= spec.kind == SUB;
+            for (int out : spec.out) {
+                if (driverKind[out] == UNDRIVEN) {
+                    driverKind[out] = DRIVEN_BY_GATE;
+                    driverIndex[out] = g;
+                }
+            }
+        }
+        hierarchical = subs;
+
+        // Fanout lists
+        int[] fanoutCount = new int[netCount];
+        for (int g = 0; g < gates; g++) {
+            for (int net : gateIn[g]) fanoutCount[net]++;
+        }
+        fanout = new int[netCount][];
+        for (int n = 0; n < netCount; n++) fanout[n] = new int[fanoutCount[n]];
+        Arrays.fill(fanoutCount, 0);
+        for (int g = 0; g < gates; g++) {
+            for (int net : gateIn[g]) fanout[net][fanoutCount[net]++] = g;
+        }
+
+        // Levelise driving gates (Kahn); anything left over sits on a feedback loop
+        int[] pending = new int[gates];
+        int[] queue = new int[gates];
+        int head = 0;
+        int tail = 0;
+        level = new int[netCount];
+        orderPos = new int[gates];
+        Arrays.fill(orderPos, -1);
+        for (int g = 0; g < gates; g++) {
+            if (!isDriver(g)) continue;
+            for (int net : gateIn[g]) {
+                if (driverKind[net] == DRIVEN_BY_GATE) pending[g]++;
+            }
+            if (pending[g] == 0) queue[tail++] = g;
+        }
+        while (head < tail) {
+            int g = queue[head++];
+            int lvl = 0;
+            for (int net : gateIn[g]) lvl = Math.max(lvl, level[net]);
+            for (int out : gateOuts[g]) {
+                if (!drives(g, out)) continue;
+                level[out] = lvl + 1;
+                for (int reader : fanout[out]) {
+                    if (isDriver(reader) && --pending[reader] == 0) queue[tail++] = reader;
+                }
+            }
+        }
+        boolean loops = false;
+        for (int g = 0; g < gates; g++) {
+            if (isDriver(g) && pending[g] > 0) {
+                queue[tail++] = g;
+                loops = true;
+            }
+        }
+        cyclic = loops;
+        order = Arrays.copyOf(queue, tail);
+        for (int i = 0; i < order.length; i++) orderPos[order[i]] = i;
+    }
+
+    private static int pinNet(int[] stripNet, int logicalPin, int baseColumn) {
+        Coordinate coord = ICPinout.pinCoordinate(logicalPin, baseColumn);
+        return stripNet[coord.s * COLS + coord.c];
+    }
+
+    private static int[] pinNets(int[] stripNet, int[] logicalPins, int baseColumn) {
+        int[] nets = new int[logicalPins.length];
+        for (int p = 0; p < nets.length; p++) nets[p] = pinNet(stripNet, logicalPins[p], baseColumn);
+        return nets;
+    }
+
+    private boolean drives(int gate, int net) {
+        return driverKind[net] == DRIVEN_BY_GATE && driverIndex[net] == gate;
+    }
+
+    private boolean isDriver(int gate) {
+        for (int out : gateOuts[gate]) {
+            if (drives(gate, out)) return true;
+        }
+        return false;
+    }
+
+    /** Evaluate one primitive gate over 64 parallel patterns. */
+    public static long evalGate(int kind, long a, long b) {
+        switch (kind) {
+            case AND: return a & b;
+            case OR: return a | b;
+            case NAND: return ~(a & b);
+            case NOR: return ~(a | b);
+            case XOR: return a ^ b;
+            case NOT: return ~a;
+            default: return 0L;
+        }
+    }
+
+    public static String kindName(int kind) {
+        return kind >= 0 && kind < KIND_NAMES.length ? KIND_NAMES[kind] : "?";
+    }
+
+    public long[] newState() {
+        return new long[netCount];
+    }
+
+    /**
+     * Simulate 64 patterns at once. inputWords[i] holds one bit per pattern for input i;
+     * values receives one word per net.
+     */
+    public void simulate(long[] inputWords, long[] values) {
+        Arrays.fill(values, 0L);
+        for (int n = 0; n < netCount; n++) {
+            if (driverKind[n] == DRIVEN_BY_CONSTANT && driverIndex[n] == 1) values[n] = -1L;
+        }
+        for (int i = 0; i < inputNets.length; i++) {
+            int net = inputNets[i];
+            if (driverKind[net] == DRIVEN_BY_INPUT && driverIndex[net] == i) values[net] = inputWords[i];
+        }
+        int passes = cyclic ? MAX_SETTLE_PASSES : 1;
+        for (int pass = 0; pass < passes; pass++) {
+            boolean changed = false;
+            for (int g : order) {
+                if (evaluateGate(g, values)) changed = true;
+            }
+            if (!changed) break;
+        }
+    }
+
+    /**
+     * Re-evaluate one gate from the current net values and write the outputs it drives.
+     * Returns true when any of them changed.
+     */
+    public boolean evaluateGate(int gate, long[] values) {
+        int[] in = gateIn[gate];
+        if (gateKind[gate] == SUB) return evaluateSubcircuit(gate, values);
+        long v = evalGate(gateKind[gate], values[in[0]], in.length > 1 ? values[in[1]] : 0L);
+        int out = gateOuts[gate][0];
+        if (values[out] == v) return false;
+        values[out] = v;
+        return true;
+    }
+
+    // The definition is shared by every instance, so its state lives on the stack of this call
+    private boolean evaluateSubcircuit(int gate, long[] values) {
+        Netlist definition = gateSub[gate];
+        int[] in = gateIn[gate];
+        int[] outs = gateOuts[gate];
+        long[] words = new long[in.length];
+        for (int i = 0; i < in.length; i++) words[i] = values[in[i]];
+
+        // The memo applies when all 64 patterns carry the same vector, as in evaluate()
+        long[] results = new long[outs.length];
+        int key = uniformKey(words);
+        int cached = key != EvaluationMemo.MISS ? gateMemo[gate].lookup(key) : EvaluationMemo.MISS;
+        if (cached != EvaluationMemo.MISS) {
+            for (int o = 0; o < outs.length; o++) results[o] = ((cached >>> o) & 1) != 0 ? -1L : 0L;
+        } else {
+            long[] inner = definition.newState();
+            definition.simulate(words, inner);
+            int packed = 0;
+            for (int o = 0; o < outs.length; o++) {
+                results[o] = inner[definition.outputNets[o]];
+                packed |= (int) (results[o] & 1L) << o;
+            }
+            if (key != EvaluationMemo.MISS) gateMemo[gate].store(key, packed);
+        }
+
+        boolean changed = false;
+        for (int o = 0; o < outs.length; o++) {
+            if (!drives(gate, outs[o]) || firstIndexOf(outs, outs[o]) != o) continue;
+            long v = results[o];
+            if (values[outs[o]] != v) {
+                values[outs[o]] = v;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static int uniformKey(long[] words) {
+        int key = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] == -1L) key |= 1 << i;
+            else if (words[i] != 0L) return EvaluationMemo.MISS;
+        }
+        return key;
+    }
+
+    private static int firstIndexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Equivalent netlist with every subcircuit instance inlined as primitive gates, for the
+     * analyses that need to see individual gates (fault simulation, ATPG). Inputs, outputs
+     * and strip nets keep their indices; each instance pin gets a buffer (AND of the same
+     * net twice) so the inlined logic sees exactly what the shared definition would.
+     */
+    public Netlist flatten() {
+        if (!hierarchical) return this;
+        Flattener f = new Flattener(this);
+        for (int g = 0; g < gateKind.length; g++) {
+            if (gateKind[g] == SUB) {
+                f.inline(gateSub[g].flatten(), gateIn[g], gateOuts[g], gateLabel[g]);
+            } else {
+                f.gates.add(new GateSpec(gateKind[g], gateIn[g], gateOuts[g], null, gateLabel[g]));
+            }
+        }
+        return f.build();
+    }
+
+    private static final class Flattener {
+        final Netlist parent;
+        final List<GateSpec> gates = new ArrayList<>();
+        final List<String> labels = new ArrayList<>();
+        final List<int[]> constants = new ArrayList<>();   // {net, value}
+        int nets;
+
+        Flattener(Netlist parent) {
+            this.parent = parent;
+            this.nets = parent.netCount;
+        }
+
+        void inline(Netlist child, int[] parentIn, int[] parentOuts, String prefix) {
+            int[] map = new int[child.netCount];
+            for (int n = 0; n < map.length; n++) {
+                map[n] = nets++;
+                labels.add(prefix + "/" + child.netName(n));
+                if (child.driverKind[n] == DRIVEN_BY_CONSTANT) {
+                    constants.add(new int[]{map[n], child.driverIndex[n]});
+                }
+            }
+            for (int i = 0; i < child.inputNets.length; i++) {
+                int net = child.inputNets[i];
+                if (child.driverKind[net] != DRIVEN_BY_INPUT || child.driverIndex[net] != i) continue;
+                gates.add(new GateSpec(AND, new int[]{parentIn[i], parentIn[i]}, new int[]{map[net]},
+                        null, prefix + "/in:" + child.inputNames[i]));
+            }
+            for (int g = 0; g < child.gateKind.length; g++) {
+                gates.add(new GateSpec(child.gateKind[g], remap(child.gateIn[g], map),
+                        remap(child.gateOuts[g], map), null, prefix + "/" + child.gateLabel[g]));
+            }
+            for (int o = 0; o < child.outputNets.length; o++) {
+                int net = map[child.outputNets[o]];
+                gates.add(new GateSpec(AND, new int[]{net, net}, new int[]{parentOuts[o]},
+                        null, prefix + "/out:" + child.outputLabel(o)));
+            }
+        }
+
+        private static int[] remap(int[] nets, int[] map) {
+            int[] mapped = new int[nets.length];
+            for (int i = 0; i < nets.length; i++) mapped[i] = map[nets[i]];
+            return mapped;
+        }
+
+        Netlist build() {
+            String[] netLabels = new String[nets];
+            for (int i = 0; i < labels.size(); i++) netLabels[parent.netCount + i] = labels.get(i);
+            int[] driverKind = new int[nets];
+            int[] driverIndex = new int[nets];
+            Arrays.fill(driverIndex, -1);
+            // Gate drivers are recomputed while linking; constants and inputs carry over
+            for (int n = 0; n < parent.netCount; n++) {
+                if (parent.driverKind[n] == DRIVEN_BY_CONSTANT || parent.driverKind[n] == DRIVEN_BY_INPUT) {
+                    driverKind[n] = parent.driverKind[n];
+                    driverIndex[n] = parent.driverIndex[n];
+                }
+            }
+            for (int[] constant : constants) {
+                driverKind[constant[0]] = DRIVEN_BY_CONSTANT;
+                driverIndex[constant[0]] = constant[1];
+            }
+            return new Netlist(parent.key + "#flat", nets, parent.stripNet, netLabels, driverKind, driverIndex,
+                    parent.inputNames, parent.inputNets, parent.outputCoords, parent.outputNets, gates);
+        }
+    }
+
+    /** Evaluate a single vector of 0/1 input values, returning 0/1 per output. */
+    public int[] evaluate(int[] inputValues) {
+        long[] words = new long[inputNets.length];
+        for (int i = 0; i < words.length && i < inputValues.length; i++) {
+            words[i] = inputValues[i] != 0 ? -1L : 0L;
+        }
+        long[] values = newState();
+        simulate(words, values);
+        int[] result = new int[outputNets.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) (values[outputNets[i]] & 1L);
+        }
+        return result;
+    }
+
+    public int netCount() {
+        return netCount;
+    }
+
+    /** Net a breadboard coordinate belongs to. */
+    public int netOf(Coordinate coord) {
+        return stripNet[coord.s * COLS + coord.c];
+    }
+
+    public String netName(int net) {
+        if (netLabels != null && netLabels[net] != null) return netLabels[net];
+        for (int strip = 0; strip < stripNet.length; strip++) {
+            if (stripNet[strip] == net) return "s" + (strip / COLS) + "c" + (strip % COLS);
+        }
+        return "n" + net;
+    }
+
+    public int inputCount() {
+        return inputNames.length;
+    }
+
+    public String inputName(int index) {
+        return inputNames[index];
+    }
+
+    public int indexOfInput(String name) {
+        for (int i = 0; i < inputNames.length; i++) {
+            if (inputNames[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    public int inputNet(int index) {
+        return inputNets[index];
+    }
+
+    public int outputCount() {
+        return outputNets.length;
+    }
+
+    public Coordinate outputCoordinate(int index) {
+        return outputCoords[index];
+    }
+
+    /** Output label used in test benches and reports, "section:row:column". */
+    public String outputLabel(int index) {
+        Coordinate c = outputCoords[index];
+        return c.s + ":" + c.r + ":" + c.c;
+    }
+
+    public int outputNet(int index) {
+        return outputNets[index];
+    }
+
+    public int gateCount() {
+        return gateKind.length;
+    }
+
+    public int gateKind(int gate) {
+        return gateKind[gate];
+    }
+
+    public int[] gateInputs(int gate) {
+        return gateIn[gate];
+    }
+
+    /** First output net; the only one for primitive gates. */
+    public int gateOutput(int gate) {
+        return gateOuts[gate][0];
+    }
+
+    /** Output nets of a gate, one per definition output for SUB gates. */
+    public int[] gateOutputs(int gate) {
+        return gateOuts[gate];
+    }
+
+    /** Shared definition of a SUB gate, null for primitive gates. */
+    public Netlist subcircuit(int gate) {
+        return gateSub[gate];
+    }
+
+    /** Memo table of a SUB gate instance, null for primitive gates. */
+    public EvaluationMemo memo(int gate) {
+        return gateMemo[gate];
+    }
+
+    /** IC type, column and gate number, e.g. "NAND@12#2", or "name@column" for a subcircuit. */
+    public String gateLabel(int gate) {
+        return gateLabel[gate];
+    }
+
+    public int driverKind(int net) {
+        return driverKind[net];
+    }
+
+    /** Input index, constant value (0/1) or gate index depending on driverKind. */
+    public int driverIndex(int net) {
+        return driverIndex[net];
+    }
+
+    public int[] fanout(int net) {
+        return fanout[net];
+    }
+
+    /** Driving gates in evaluation order. */
+    public int[] order() {
+        return order;
+    }
+
+    public int orderPosition(int gate) {
+        return orderPos[gate];
+    }
+
+    public int level(int net) {
+        return level[net];
+    }
+
+    /** True when gates form a feedback loop; such netlists are settled iteratively. */
+    public boolean isCyclic() {
+        return cyclic;
+    }
+
+    /** True when the netlist contains SUB gates; see flatten. */
+    public boolean isHierarchical() {
+        return hierarchical;
+    }
+
+    /** Builder key this netlist was compiled from. */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Collects board records and compiles them into a Netlist. Rows are irrelevant to
+     * connectivity, so only section and column of each coordinate are used.
+     */
+    public static class Builder {
+        private final int[] parent = new int[SECTIONS * COLS];
+        private final List<Object[]> ics = new ArrayList<>();
+        private final List<Object[]> subcircuits = new ArrayList<>();
+        private final List<Object[]> inputs = new ArrayList<>();
+        private final List<Coordinate> outputs = new ArrayList<>();
+        private final List<int[]> powers = new ArrayList<>();
+        private final List<int[]> wires = new ArrayList<>();
+        private final List<String> skipped = new ArrayList<>();
+
+        public Builder() {
+            for (int i = 0; i < parent.length; i++) parent[i] = i;
+        }
+
+        private int find(int strip) {
+            while (parent[strip] != strip) {
+                parent[strip] = parent[parent[strip]];
+                strip = parent[strip];
+            }
+            return strip;
+        }
+
+        private static boolean onBoard(Coordinate coord) {
+            return coord != null && coord.s >= 0 && coord.s < SECTIONS && coord.c >= 0 && coord.c < COLS;
+        }
+
+        public Builder addIC(String icType, Coordinate position) {
+            // The IC spans seven columns starting at its position
+            if (ICPinout.gateKind(icType) < 0 || position == null
+                    || position.c < 0 || position.c + 6 >= COLS) {
+                skipped.add("IC " + icType + " at " + position);
+                return this;
+            }
+            ics.add(new Object[]{icType, position.c});
+            return this;
+        }
+
+        /**
+         * Place a compiled circuit as a 14-pin IC: its inputs (by name) then its outputs
+         * (board order) take the signal pins 1-6 and 8-13. The definition is shared, not copied.
+         */
+        public Builder addSubcircuit(String name, Netlist definition, Coordinate position) {
+            if (definition == null || position == null || position.c < 0 || position.c + 6 >= COLS
+                    || definition.inputCount() + definition.outputCount() > ICPinout.MAX_SUBCIRCUIT_PINS) {
+                skipped.add("subcircuit " + name + " at " + position);
+                return this;
+            }
+            subcircuits.add(new Object[]{name, definition, position.c});
+            return this;
+        }
+
+        /** ICs and subcircuits left out because they are unknown, off the board or unusable. */
+        public List<String> skipped() {
+            return Collections.unmodifiableList(skipped);
+        }
+
+        public Builder addWire(Coordinate src, Coordinate dst) {
+            if (!onBoard(src) || !onBoard(dst)) return this;
+            int from = src.s * COLS + src.c;
+            int to = dst.s * COLS + dst.c;
+            wires.add(new int[]{Math.min(from, to), Math.max(from, to)});
+            int a = find(from);
+            int b = find(to);
+            if (a != b) parent[a] = b;
+            return this;
+        }
+
+        public Builder addInput(String name, Coordinate coord) {
+            if (name != null && onBoard(coord)) inputs.add(new Object[]{name, coord});
+            return this;
+        }
+
+        public Builder addOutput(Coordinate coord) {
+            if (onBoard(coord)) outputs.add(coord);
+            return this;
+        }
+
+        /** value follows ComponentToDB: 1 for VCC, -2 for GND. */
+        public Builder addPower(int value, Coordinate coord) {
+            if (onBoard(coord)) powers.add(new int[]{value, coord.s, coord.c});
+            return this;
+        }
+
+        public Netlist build() {
+            return compile(this);
+        }
+
+        /**
+         * Canonical description of everything added so far. Two builders with the same key
+         * compile to equivalent netlists, regardless of the order records were added in.
+         */
+        public String key() {
+            List<String> parts = new ArrayList<>();
+            for (Object[] ic : ics) parts.add("I" + ((String) ic[0]).toUpperCase() + "@" + ic[1]);
+            for (Object[] sub : subcircuits) {
+                parts.add("S" + sub[0] + "@" + sub[2] + "{" + ((Netlist) sub[1]).key() + "}");
+            }
+            for (int[] wire : wires) parts.add("W" + wire[0] + "-" + wire[1]);
+            for (Object[] input : inputs) {
+                Coordinate coord = (Coordinate) input[1];
+                parts.add("N" + input[0] + "@" + coord.s + ":" + coord.c);
+            }
+            for (Coordinate output : outputs) parts.add("O" + output.s + ":" + output.r + ":" + output.c);
+            for (int[] power : powers) parts.add("P" + power[0] + "@" + power[1] + ":" + power[2]);
+            Collections.sort(parts);
+            StringBuilder key = new StringBuilder();
+            for (String part : parts) key.append(part).append(';');
+            return key.toString();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.breadboard.sim;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of compiled netlists keyed by Netlist.Builder.key(), shared between
+ * threads. Compilation happens outside the lock; if two threads race on the same key the
+ * first netlist stored wins. Callers that can identify contents more cheaply than by building
+ * them (e.g. a saved circuit's id and content hash) may also store netlists under own keys.
+ */
+public class NetlistCache {
+    private final Map<String, Netlist> entries;
+    private long hits;
+    private long misses;
+
+    public NetlistCache(final int capacity) {
+        this.entries = new LinkedHashMap<String, Netlist>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Netlist> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public Netlist get(Netlist.Builder builder) {
+        String key = builder.key();
+        synchronized (this) {
+            Netlist cached = entries.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        Netlist compiled = builder.build();
+        synchronized (this) {
+            Netlist raced = entries.get(key);
+            if (raced != null) return raced;
+            entries.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /** The netlist stored under key by put(), or null; counts a hit only. */
+    public synchronized Netlist get(String key) {
+        Netlist cached = entries.get(key);
+        if (cached != null) hits++;
+        return cached;
+    }
+
+    public synchronized void put(String key, Netlist netlist) {
+        entries.put(key, netlist);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
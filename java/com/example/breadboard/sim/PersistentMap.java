@@ -0,0 +1,181 @@
+package com.example.breadboard.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable hash map with structural sharing. with() and without() copy only the nodes on
+ * the path to the changed entry (at most seven 32-slot arrays), so every earlier version
+ * stays valid and a new version costs O(change) rather than O(size).
+ */
+public final class PersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    @SuppressWarnings("rawtypes")
+    private static final PersistentMap EMPTY = new PersistentMap<>(null, 0);
+
+    private final Object[] root;   // each slot is null, a Leaf chain or a child Object[]
+    private final int size;
+
+    // Entries sharing one full hash are chained
+    private static final class Leaf {
+        final int hash;
+        final Object key;
+        final Object value;
+        final Leaf next;
+
+        Leaf(int hash, Object key, Object value, Leaf next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    private PersistentMap(Object[] root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(K key) {
+        return find(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Leaf leaf = find(key);
+        return leaf != null ? (V) leaf.value : null;
+    }
+
+    private Leaf find(Object key) {
+        int hash = key.hashCode();
+        Object[] node = root;
+        for (int shift = 0; node != null; shift += BITS) {
+            Object slot = node[(hash >>> shift) & MASK];
+            if (slot instanceof Leaf) {
+                for (Leaf leaf = (Leaf) slot; leaf != null; leaf = leaf.next) {
+                    if (leaf.hash == hash && leaf.key.equals(key)) return leaf;
+                }
+                return null;
+            }
+            node = (Object[]) slot;
+        }
+        return null;
+    }
+
+    /** A map with key bound to value; this map is unchanged. */
+    public PersistentMap<K, V> with(K key, V value) {
+        Leaf existing = find(key);
+        if (existing != null && existing.value == value) return this;
+        int[] added = new int[1];
+        Object[] newRoot = insert(root, 0, key.hashCode(), key, value, added);
+        return new PersistentMap<>(newRoot, size + added[0]);
+    }
+
+    /** A map without key; this map is unchanged. */
+    public PersistentMap<K, V> without(K key) {
+        if (find(key) == null) return this;
+        int hash = key.hashCode();
+        Object rest = remove(root, 0, hash, key);
+        if (rest == null) return empty();
+        Object[] newRoot;
+        if (rest instanceof Leaf) {
+            newRoot = new Object[WIDTH];
+            newRoot[((Leaf) rest).hash & MASK] = rest;
+        } else {
+            newRoot = (Object[]) rest;
+        }
+        return new PersistentMap<>(newRoot, size - 1);
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size);
+        collect(root, values);
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void collect(Object[] node, List<V> values) {
+        if (node == null) return;
+        for (Object slot : node) {
+            if (slot instanceof Leaf) {
+                for (Leaf leaf = (Leaf) slot; leaf != null; leaf = leaf.next) values.add((V) leaf.value);
+            } else if (slot != null) {
+                collect((Object[]) slot, values);
+            }
+        }
+    }
+
+    private static Object[] insert(Object[] node, int shift, int hash, Object key, Object value, int[] added) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int index = (hash >>> shift) & MASK;
+        Object slot = copy[index];
+        if (slot == null) {
+            copy[index] = new Leaf(hash, key, value, null);
+            added[0] = 1;
+        } else if (slot instanceof Leaf) {
+            Leaf leaf = (Leaf) slot;
+            if (leaf.hash == hash) {
+                copy[index] = chainWith(leaf, hash, key, value, added);
+            } else {
+                // Different hashes always part within the 32 bits, so this recursion ends
+                Object[] child = new Object[WIDTH];
+                child[(leaf.hash >>> (shift + BITS)) & MASK] = leaf;
+                copy[index] = insert(child, shift + BITS, hash, key, value, added);
+            }
+        } else {
+            copy[index] = insert((Object[]) slot, shift + BITS, hash, key, value, added);
+        }
+        return copy;
+    }
+
+    private static Leaf chainWith(Leaf chain, int hash, Object key, Object value, int[] added) {
+        if (chain == null) {
+            added[0] = 1;
+            return new Leaf(hash, key, value, null);
+        }
+        if (chain.key.equals(key)) return new Leaf(hash, key, value, chain.next);
+        return new Leaf(chain.hash, chain.key, chain.value, chainWith(chain.next, hash, key, value, added));
+    }
+
+    private static Leaf chainWithout(Leaf chain, Object key) {
+        if (chain == null) return null;
+        if (chain.key.equals(key)) return chain.next;
+        return new Leaf(chain.hash, chain.key, chain.value, chainWithout(chain.next, key));
+    }
+
+    // Only called when the key is present; returns the node, a lone leaf chain or null
+    private static Object remove(Object[] node, int shift, int hash, Object key) {
+        Object[] copy = node.clone();
+        int index = (hash >>> shift) & MASK;
+        Object slot = copy[index];
+        if (slot instanceof Leaf) {
+            copy[index] = chainWithout((Leaf) slot, key);
+        } else {
+            copy[index] = remove((Object[]) slot, shift + BITS, hash, key);
+        }
+        // An emptied node disappears and a node left with one leaf chain is replaced by it
+        Object only = null;
+        for (Object child : copy) {
+            if (child == null) continue;
+            if (only != null || !(child instanceof Leaf)) return copy;
+            only = child;
+        }
+        return only;
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.breadboard.sim;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes signal value changes to Flow subscribers without ever blocking the publisher.
+ *
+ * Each subscriber gets its own bounded buffer and its own delivery executor. With conflation
+ * on, a newer change to a key replaces the buffered one, so a slow observer only sees the
+ * latest value per signal; without it, changes are queued in order. When a buffer is full
+ * the oldest entry is dropped and counted. Delivery honours request(n) demand.
+ */
+public class SignalProbe<K> implements Flow.Publisher<SignalProbe.Change<K>> {
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final CopyOnWriteArrayList<ProbeSubscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Executor defaultExecutor;
+
+    public static final class Change<K> {
+        public final K key;
+        public final int value;      // 0/1, or -1 when the signal disappeared
+        public final long sequence;  // publication order across all keys
+
+        public Change(K key, int value, long sequence) {
+            this.key = key;
+            this.value = value;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value + " #" + sequence;
+        }
+    }
+
+    public SignalProbe() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SignalProbe(Executor defaultExecutor) {
+        this.defaultExecutor = defaultExecutor;
+    }
+
+    /** Subscribe to every key with conflation, delivered on the default executor. */
+    @Override
+    public void subscribe(Flow.Subscriber<? super Change<K>> subscriber) {
+        subscribe(subscriber, null, defaultExecutor, DEFAULT_CAPACITY, true);
+    }
+
+    /**
+     * Subscribe to a set of keys (null for all). Callbacks for one subscriber run on the
+     * given executor one at a time.
+     */
+    public void subscribe(Flow.Subscriber<? super Change<K>> subscriber, Set<K> keys,
+                          Executor executor, int capacity, boolean conflate) {
+        if (subscriber == null) throw new NullPointerException("subscriber");
+        ProbeSubscription subscription = new ProbeSubscription(subscriber, keys, executor,
+                Math.max(1, capacity), conflate);
+        subscriptions.add(subscription);
+        // onSubscribe is the first step of the subscription's own drain, like every other signal
+        subscription.schedule();
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /** Changes discarded because a subscriber's buffer was full. */
+    public long getDroppedCount() {
+        long total = 0;
+        for (ProbeSubscription subscription : subscriptions) total += subscription.getDropped();
+        return total;
+    }
+
+    /** Offer a change to every interested subscriber; never blocks. */
+    public void publish(K key, int value) {
+        if (subscriptions.isEmpty()) return;
+        Change<K> change = new Change<>(key, value, sequence.incrementAndGet());
+        for (ProbeSubscription subscription : subscriptions) {
+            subscription.offer(change);
+        }
+    }
+
+    /** Complete every subscriber, e.g. when the circuit is closed. */
+    public void close() {
+        for (ProbeSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+        subscriptions.clear();
+    }
+
+    private final class ProbeSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super Change<K>> subscriber;
+        private final Set<K> keys;
+        private final Executor executor;
+        private final int capacity;
+        private final boolean conflate;
+
+        // Guarded by this
+        private final LinkedHashMap<K, Change<K>> latest = new LinkedHashMap<>();
+        private final ArrayDeque<Change<K>> queue = new ArrayDeque<>();
+        private long dropped = 0;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled = false;
+        private volatile boolean completed = false;
+        private volatile Throwable error = null; // signalled by the drain loop, like onNext failures
+        private boolean subscribed = false;      // only touched by the drain loop
+
+        ProbeSubscription(Flow.Subscriber<? super Change<K>> subscriber, Set<K> keys,
+                          Executor executor, int capacity, boolean conflate) {
+            this.subscriber = subscriber;
+            this.keys = keys;
+            this.executor = executor;
+            this.capacity = capacity;
+            this.conflate = conflate;
+        }
+
+        void offer(Change<K> change) {
+            if (cancelled || (keys != null && !keys.contains(change.key))) return;
+            synchronized (this) {
+                if (conflate) {
+                    // Replacing an existing key keeps its place in the buffer
+                    if (!latest.containsKey(change.key) && latest.size() >= capacity) {
+                        Iterator<Map.Entry<K, Change<K>>> eldest = latest.entrySet().iterator();
+                        eldest.next();
+                        eldest.remove();
+                        dropped++;
+                    }
+                    latest.put(change.key, change);
+                } else {
+                    if (queue.size() >= capacity) {
+                        queue.pollFirst();
+                        dropped++;
+                    }
+                    queue.addLast(change);
+                }
+            }
+            if (demand.get() > 0) schedule();
+        }
+
+        private synchronized Change<K> poll() {
+            if (conflate) {
+                Iterator<Map.Entry<K, Change<K>>> it = latest.entrySet().iterator();
+                if (!it.hasNext()) return null;
+                Change<K> change = it.next().getValue();
+                it.remove();
+                return change;
+            }
+            return queue.pollFirst();
+        }
+
+        synchronized long getDropped() {
+            return dropped;
+        }
+
+        void complete() {
+            completed = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) executor.execute(this);
+        }
+
+        // Drain loop; wip makes sure only one drain runs at a time per subscriber
+        @Override
+        public void run() {
+            if (!subscribed) {
+                // Signals raised meanwhile, request() calls included, wait in wip for this to return
+                subscribed = true;
+                try {
+                    subscriber.onSubscribe(this);
+                } catch (Throwable t) {
+                    cancel();
+                    return;
+                }
+            }
+            int missed = 1;
+            do {
+                if (error != null) {
+                    if (!cancelled) {
+                        cancel();
+                        subscriber.onError(error);
+                    }
+                    return;
+                }
+                long requested = demand.get();
+                long emitted = 0;
+                while (emitted < requested && !cancelled && error == null) {
+                    Change<K> change = poll();
+                    if (change == null) break;
+                    try {
+                        subscriber.onNext(change);
+                    } catch (Throwable t) {
+                        cancel();
+                        subscriber.onError(t);
+                        return;
+                    }
+                    emitted++;
+                }
+                if (emitted > 0) demand.addAndGet(-emitted);
+                if (completed && !cancelled && error == null) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // Through the drain, so onError never overlaps an onNext in progress (rule 1.3)
+                if (error == null) error = new IllegalArgumentException("request must be positive (rule 3.9)");
+                schedule();
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = demand.get();
+                next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            } while (!demand.compareAndSet(current, next));
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.breadboard.sim;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Input vectors over the named inputs with the expected output values.
+ *
+ * Text format, one record per line, '#' starts a comment:
+ * <pre>
+ * inputs A B C
+ * outputs 0:2:10 1:3:20
+ * 010 11
+ * 111 01
+ * </pre>
+ * Input bits follow the order of the inputs line, expected bits the order of the outputs
+ * line (outputs are labelled section:row:column).
+ */
+public class TestBench {
+    private final List<String> inputNames;
+    private final List<String> outputLabels;
+    private final List<int[]> vectors = new ArrayList<>();
+    private final List<int[]> expected = new ArrayList<>();
+
+    public TestBench(List<String> inputNames, List<String> outputLabels) {
+        this.inputNames = new ArrayList<>(inputNames);
+        this.outputLabels = new ArrayList<>(outputLabels);
+    }
+
+    /** Empty test bench with the input names and output labels of a netlist. */
+    public static TestBench forNetlist(Netlist netlist) {
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < netlist.inputCount(); i++) inputs.add(netlist.inputName(i));
+        List<String> outputs = new ArrayList<>();
+        for (int i = 0; i < netlist.outputCount(); i++) outputs.add(netlist.outputLabel(i));
+        return new TestBench(inputs, outputs);
+    }
+
+    public void addVector(int[] inputs, int[] outputs) {
+        vectors.add(inputs.clone());
+        expected.add(outputs.clone());
+    }
+
+    public int size() {
+        return vectors.size();
+    }
+
+    public int[] getVector(int index) {
+        return vectors.get(index);
+    }
+
+    public int[] getExpected(int index) {
+        return expected.get(index);
+    }
+
+    public List<String> getInputNames() {
+        return inputNames;
+    }
+
+    public List<String> getOutputLabels() {
+        return outputLabels;
+    }
+
+    public void write(Writer writer) throws IOException {
+        writer.write("# Breadboard test bench, " + vectors.size() + " vectors\n");
+        writer.write("inputs");
+        for (String name : inputNames) writer.write(" " + name);
+        writer.write("\noutputs");
+        for (String label : outputLabels) writer.write(" " + label);
+        writer.write("\n");
+        StringBuilder line = new StringBuilder();
+        for (int v = 0; v < vectors.size(); v++) {
+            line.setLength(0);
+            for (int bit : vectors.get(v)) line.append(bit);
+            line.append(' ');
+            for (int bit : expected.get(v)) line.append(bit);
+            line.append('\n');
+            writer.write(line.toString());
+        }
+        writer.flush();
+    }
+
+    public static TestBench read(Reader reader) throws IOException {
+        BufferedReader in = new BufferedReader(reader);
+        List<String> inputs = null;
+        List<String> outputs = null;
+        TestBench bench = null;
+        String line;
+        int lineNumber = 0;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            String[] parts = line.split("\\s+");
+            if (parts[0].equals("inputs")) {
+                inputs = Arrays.asList(parts).subList(1, parts.length);
+            } else if (parts[0].equals("outputs")) {
+                outputs = Arrays.asList(parts).subList(1, parts.length);
+            } else {
+                if (inputs == null || outputs == null) {
+                    throw new IOException("Line " + lineNumber + ": vector before inputs/outputs header");
+                }
+                if (bench == null) bench = new TestBench(inputs, outputs);
+                String inBits = parts[0];
+                String outBits = parts.length > 1 ? parts[1] : "";
+                if (inBits.length() != inputs.size() || outBits.length() != outputs.size()) {
+                    throw new IOException("Line " + lineNumber + ": expected " + inputs.size()
+                            + " input and " + outputs.size() + " output bits");
+                }
+                bench.addVector(parseBits(inBits, lineNumber), parseBits(outBits, lineNumber));
+            }
+        }
+        if (bench == null) {
+            if (inputs == null || outputs == null) throw new IOException("Missing inputs/outputs header");
+            bench = new TestBench(inputs, outputs);
+        }
+        return bench;
+    }
+
+    private static int[] parseBits(String bits, int lineNumber) throws IOException {
+        int[] values = new int[bits.length()];
+        for (int i = 0; i < values.length; i++) {
+            char ch = bits.charAt(i);
+            if (ch != '0' && ch != '1') throw new IOException("Line " + lineNumber + ": bad bit '" + ch + "'");
+            values[i] = ch - '0';
+        }
+        return values;
+    }
+
+    /**
+     * Run every vector against a netlist and return the indices of vectors whose outputs
+     * differ from the expected values. Inputs and outputs are matched by name/label.
+     */
+    public List<Integer> verify(Netlist netlist) {
+        int[] inputMap = new int[netlist.inputCount()];
+        for (int i = 0; i < inputMap.length; i++) {
+            inputMap[i] = inputNames.indexOf(netlist.inputName(i));
+            if (inputMap[i] < 0) {
+                throw new IllegalArgumentException("Test bench has no input " + netlist.inputName(i));
+            }
+        }
+        int[] outputMap = new int[outputLabels.size()];
+        for (int o = 0; o < outputMap.length; o++) {
+            outputMap[o] = -1;
+            for (int k = 0; k < netlist.outputCount(); k++) {
+                if (netlist.outputLabel(k).equals(outputLabels.get(o))) outputMap[o] = k;
+            }
+            if (outputMap[o] < 0) {
+                throw new IllegalArgumentException("Circuit has no output " + outputLabels.get(o));
+            }
+        }
+
+        List<Integer> failures = new ArrayList<>();
+        int[] inputs = new int[inputMap.length];
+        for (int v = 0; v < vectors.size(); v++) {
+            for (int i = 0; i < inputs.length; i++) inputs[i] = vectors.get(v)[inputMap[i]];
+            int[] actual = netlist.evaluate(inputs);
+            for (int o = 0; o < outputMap.length; o++) {
+                if (actual[outputMap[o]] != expected.get(v)[o]) {
+                    failures.add(v);
+                    break;
+                }
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.breadboard.sim;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records value changes of a fixed set of 1-bit signals into a bounded byte ring buffer and
+ * exports them as a VCD file.
+ *
+ * Only changes are stored, as varints: an even value is a time advance (delta &lt;&lt; 1), an odd
+ * value is a change ((signal &lt;&lt; 2) | (value &lt;&lt; 1) | 1). When the ring is full the oldest
+ * records are folded into a head snapshot, so the export always starts from a consistent
+ * state and memory never grows past the capacity given.
+ */
+public class WaveformRecorder {
+    private final byte[] ring;
+    private int head = 0;   // oldest byte
+    private int size = 0;   // bytes in use
+
+    private final List<String> names = new ArrayList<>();
+    private int[] last;         // last recorded value per signal
+    private int[] headValues;   // signal values at the head of the ring
+    private long headTime = 0;
+    private long lastTime = 0;
+    private boolean started = false;
+    private int[] boundNets;    // net per signal when created through forNetlist
+
+    public WaveformRecorder(int capacityBytes) {
+        this.ring = new byte[Math.max(16, capacityBytes)];
+    }
+
+    /**
+     * Recorder for a netlist covering its named inputs, its outputs and any extra nets;
+     * feed it with sampleNets after each simulation step.
+     */
+    public static WaveformRecorder forNetlist(Netlist netlist, int[] extraNets, int capacityBytes) {
+        WaveformRecorder recorder = new WaveformRecorder(capacityBytes);
+        int count = netlist.inputCount() + netlist.outputCount() + (extraNets != null ? extraNets.length : 0);
+        recorder.boundNets = new int[count];
+        int s = 0;
+        for (int i = 0; i < netlist.inputCount(); i++) {
+            recorder.addSignal(netlist.inputName(i));
+            recorder.boundNets[s++] = netlist.inputNet(i);
+        }
+        for (int o = 0; o < netlist.outputCount(); o++) {
+            recorder.addSignal("out_" + netlist.outputLabel(o).replace(':', '_'));
+            recorder.boundNets[s++] = netlist.outputNet(o);
+        }
+        if (extraNets != null) {
+            for (int net : extraNets) {
+                recorder.addSignal(netlist.netName(net));
+                recorder.boundNets[s++] = net;
+            }
+        }
+        return recorder;
+    }
+
+    /** Register a signal; only allowed before the first sample. Returns its index. */
+    public int addSignal(String name) {
+        if (started) throw new IllegalStateException("Signals must be added before recording starts");
+        names.add(name.replaceAll("\\s+", "_"));
+        return names.size() - 1;
+    }
+
+    public int signalCount() {
+        return names.size();
+    }
+
+    /** Record the signal values at a time step; times must not decrease. */
+    public void sample(long time, int[] values) {
+        if (!started) {
+            start(time, values);
+            return;
+        }
+        boolean advanced = false;
+        for (int s = 0; s < last.length; s++) {
+            int v = values[s] != 0 ? 1 : 0;
+            if (v != last[s]) advanced = change(time, s, v, advanced);
+        }
+    }
+
+    /** Record bit lane 0 of the bound nets; only for recorders made by forNetlist. */
+    public void sampleNets(long time, long[] netValues) {
+        if (!started) {
+            int[] values = new int[boundNets.length];
+            for (int s = 0; s < values.length; s++) values[s] = (int) (netValues[boundNets[s]] & 1L);
+            start(time, values);
+            return;
+        }
+        boolean advanced = false;
+        for (int s = 0; s < boundNets.length; s++) {
+            int v = (int) (netValues[boundNets[s]] & 1L);
+            if (v != last[s]) advanced = change(time, s, v, advanced);
+        }
+    }
+
+    private void start(long time, int[] values) {
+        started = true;
+        last = new int[names.size()];
+        for (int s = 0; s < last.length; s++) last[s] = values[s] != 0 ? 1 : 0;
+        headValues = last.clone();
+        headTime = time;
+        lastTime = time;
+    }
+
+    // The time advance is written once per step, before its first change
+    private boolean change(long time, int signal, int value, boolean advanced) {
+        if (!advanced) advanceTo(time);
+        last[signal] = value;
+        append(((long) signal << 2) | ((long) value << 1) | 1L);
+        return true;
+    }
+
+    private void advanceTo(long time) {
+        long delta = time - lastTime;
+        if (delta > 0) {
+            append(delta << 1);
+            lastTime = time;
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        started = false;
+        last = null;
+        headValues = null;
+    }
+
+    /** Bytes of change data currently held. */
+    public int bytesUsed() {
+        return size;
+    }
+
+    private void append(long record) {
+        int needed = varintLength(record);
+        while (ring.length - size < needed) evictOldest();
+        int pos = (head + size) % ring.length;
+        while ((record & ~0x7FL) != 0) {
+            ring[pos] = (byte) ((record & 0x7F) | 0x80);
+            pos = (pos + 1) % ring.length;
+            record >>>= 7;
+        }
+        ring[pos] = (byte) record;
+        size += needed;
+    }
+
+    // Fold the oldest record into the head snapshot
+    private void evictOldest() {
+        long record = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = ring[head] & 0xFF;
+            head = (head + 1) % ring.length;
+            size--;
+            record |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        if ((record & 1L) == 0) {
+            headTime += record >>> 1;
+        } else {
+            headValues[(int) (record >>> 2)] = (int) ((record >>> 1) & 1L);
+        }
+    }
+
+    private static int varintLength(long value) {
+        int length = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
+    }
+
+    /** Write the recorded changes as a Value Change Dump. */
+    public void writeVcd(Writer writer, String timescale) throws IOException {
+        writer.write("$version Breadboard simulator $end\n");
+        writer.write("$timescale " + timescale + " $end\n");
+        writer.write("$scope module breadboard $end\n");
+        for (int s = 0; s < names.size(); s++) {
+            writer.write("$var wire 1 " + identifier(s) + " " + names.get(s) + " $end\n");
+        }
+        writer.write("$upscope $end\n$enddefinitions $end\n");
+        if (!started) {
+            writer.flush();
+            return;
+        }
+
+        long time = headTime;
+        writer.write("#" + time + "\n$dumpvars\n");
+        for (int s = 0; s < headValues.length; s++) writer.write(headValues[s] + identifier(s) + "\n");
+        writer.write("$end\n");
+
+        long pendingTime = time;
+        int pos = head;
+        int remaining = size;
+        StringBuilder line = new StringBuilder();
+        while (remaining > 0) {
+            long record = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = ring[pos] & 0xFF;
+                pos = (pos + 1) % ring.length;
+                remaining--;
+                record |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            if ((record & 1L) == 0) {
+                pendingTime += record >>> 1;
+                continue;
+            }
+            if (pendingTime != time) {
+                time = pendingTime;
+                writer.write("#" + time + "\n");
+            }
+            line.setLength(0);
+            line.append((record >>> 1) & 1L).append(identifier((int) (record >>> 2))).append('\n');
+            writer.write(line.toString());
+        }
+        writer.flush();
+    }
+
+    // VCD identifier codes use the printable characters '!'..'~'
+    private static String identifier(int index) {
+        StringBuilder id = new StringBuilder();
+        do {
+            id.append((char) ('!' + index % 94));
+            index /= 94;
+        } while (index > 0);
+        return id.toString();
+    }
+}